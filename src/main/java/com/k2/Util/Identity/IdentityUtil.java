@@ -7,9 +7,9 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.Entity;
 import javax.persistence.IdClass;
@@ -38,7 +38,19 @@ public class IdentityUtil {
 	/**
 	 * The static map of identity fields for each class.
 	 */
-	private static Map<Class<?>, Member> identityMembersMap = new HashMap<Class<?>, Member>();
+	private static Map<Class<?>, Member> identityMembersMap = new ConcurrentHashMap<Class<?>, Member>();
+	
+	static {
+		ClassUtil.addEvictionListener(IdentityUtil::evict);
+	}
+	
+	/**
+	 * This static method discards the identity member cached for the given class. It is called by ClassUtil.evict()
+	 * @param cls	The class whose identity member is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		identityMembersMap.remove(cls);
+	}
 	
 	/**
 	 * This internal method extracts from class the field holding the id value.
@@ -75,15 +87,15 @@ public class IdentityUtil {
 		Member identity = identityMembersMap.get(cls);
 		if (identity != null) return identity;
 		
-		for (Method m : cls.getDeclaredMethods()) {
-			if (m.isAnnotationPresent(Identity.class)) {
+		for (Method m : ClassUtil.getDeclaredMethods(cls)) {
+			if (ClassUtil.isAnnotationPresent(m, Identity.class)) {
 				identityMembersMap.put(cls, m);
 				return m;
 			}
 		}
 		
-		for (Field f : cls.getDeclaredFields()) {
-			if (f.isAnnotationPresent(Identity.class)) {
+		for (Field f : ClassUtil.getDeclaredFields(cls)) {
+			if (ClassUtil.isAnnotationPresent(f, Identity.class)) {
 				identityMembersMap.put(cls, f);
 				return f;
 			}
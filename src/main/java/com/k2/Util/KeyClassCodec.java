@@ -0,0 +1,484 @@
+package com.k2.Util;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.KeyCodec.KeyType;
+import com.k2.Util.classes.ClassUtil;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The key class codec of a key class formats keys of the class as strings and writes them in their binary form, and parses and reads them again.
+ *
+ * The codec is compiled once for each key class. The instance fields of composite key classes are compiled into method handles reading and
+ * writing the field and the zero argument constructor of the class is held as a method handle. The format and parse functions and the binary
+ * size, write and read functions of each field are resolved from the type of the field when the codec is compiled, so formatting, parsing,
+ * writing and reading keys involves no reflection and no type checks.
+ *
+ * The string form of a composite key is the formatted values of its fields in declaration order separated by ':'. Strings and chars are URL
+ * encoded, booleans are formatted as 1 or 0, dates as their time in milliseconds and enums as their name. Other values are formatted by their
+ * toString() method and parsed through their String constructor. The binary form is described by KeyCodec.
+ *
+ * @author simon
+ *
+ * @param <K>	The key class of the codec
+ */
+public class KeyClassCodec<K> {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+	private static final MethodType FROM_STRING_TYPE = MethodType.methodType(Object.class, String.class);
+	private static final MethodType FROM_LONG_TYPE = MethodType.methodType(Object.class, long.class);
+
+	private static final ClassValue<KeyClassCodec<?>> codecs = new ClassValue<KeyClassCodec<?>>() {
+		@Override
+		protected KeyClassCodec<?> computeValue(Class<?> cls) { return new KeyClassCodec<>(cls); }
+	};
+
+	private static final ClassValue<ValueCodec> valueCodecs = new ClassValue<ValueCodec>() {
+		@Override
+		protected ValueCodec computeValue(Class<?> cls) { return valueCodec(cls); }
+	};
+
+	static {
+		ClassUtil.addEvictionListener(KeyClassCodec::evict);
+	}
+
+	private final Class<K> keyClass;
+	private final ValueCodec value;
+	private final MethodHandle constructor;
+	private final Field[] fields;
+	private final MethodHandle[] getters;
+	private final MethodHandle[] setters;
+	private final ValueCodec[] values;
+
+	private KeyClassCodec(Class<K> keyClass) {
+		this.keyClass = keyClass;
+		if (KeyCodec.keyType(keyClass) != KeyType.COMPOSITE) {
+			this.value = valueCodecs.get(keyClass);
+			this.constructor = null;
+			this.fields = new Field[0];
+		} else {
+			this.value = null;
+			this.constructor = constructor(keyClass);
+			this.fields = KeyCodec.keyFields(keyClass);
+		}
+		this.getters = new MethodHandle[fields.length];
+		this.setters = new MethodHandle[fields.length];
+		this.values = new ValueCodec[fields.length];
+		for (int i=0; i<fields.length; i++) {
+			Field f = fields[i];
+			try {
+				if (!f.isAccessible()) f.setAccessible(true);
+				getters[i] = lookup.unreflectGetter(f).asType(GETTER_TYPE);
+				setters[i] = lookup.unreflectSetter(f).asType(SETTER_TYPE);
+			} catch (IllegalAccessException e) {
+				throw new UtilityError("Unable to compile the accessors of key field {}.{}", e, keyClass.getName(), f.getName());
+			}
+			values[i] = valueCodecs.get(f.getType());
+		}
+		logger.trace("Compiled key codec for {} with {} fields", keyClass.getName(), fields.length);
+	}
+
+	/**
+	 * Keys of classes without a zero arg constructor can be formatted and written but not parsed or read
+	 */
+	private static MethodHandle constructor(Class<?> cls) {
+		try {
+			Constructor<?> c = cls.getDeclaredConstructor();
+			if (!c.isAccessible()) c.setAccessible(true);
+			return lookup.unreflectConstructor(c).asType(CONSTRUCTOR_TYPE);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (IllegalAccessException e) {
+			throw new UtilityError("Unable to compile the zero arg constructor of key class {}", e, cls.getName());
+		}
+	}
+
+	/**
+	 * Get the codec of the given key class. The codec is compiled on first use and cached against the class
+	 * @param keyClass	The key class
+	 * @return	The codec of the key class
+	 * @param <K>	The key class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K> KeyClassCodec<K> forClass(Class<K> keyClass) { return (KeyClassCodec<K>) codecs.get(keyClass); }
+
+	/**
+	 * Discard the cached codec of the given class
+	 * @param cls	The class whose codec is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		codecs.remove(cls);
+		valueCodecs.remove(cls);
+	}
+
+	/**
+	 * @return	The key class of this codec
+	 */
+	public Class<K> getKeyClass() { return keyClass; }
+
+	/**
+	 * @return	The number of fields of the key class, zero if the key class is not a composite key class
+	 */
+	public int size() { return fields.length; }
+
+	Field getField(int i) { return fields[i]; }
+
+	Object get(int i, Object key) {
+		Object val;
+		try {
+			val = (Object)getters[i].invokeExact(key);
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to read key field {}.{}", e, keyClass.getName(), fields[i].getName());
+		}
+		if (val == null)
+			throw new UtilityError("The value of the key field {}.{} is null", keyClass.getName(), fields[i].getName());
+		return val;
+	}
+
+	void set(int i, Object key, Object val) {
+		try {
+			setters[i].invokeExact(key, val);
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to set key field {}.{}", e, keyClass.getName(), fields[i].getName());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	K newKey() {
+		if (constructor == null) throw new UtilityError("Unable to create instance of key {} without a zero arg constructor", keyClass.getName());
+		try {
+			return (K)(Object)constructor.invokeExact();
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to create instance of key {}", e, keyClass.getName());
+		}
+	}
+
+	/**
+	 * Format the given key in its string form
+	 * @param key	The key to format
+	 * @return	The string form of the key
+	 */
+	public String format(K key) {
+		if (value != null) return value.format.apply(key);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<fields.length; i++) {
+			if (i > 0) sb.append(':');
+			sb.append(values[i].format.apply(get(i, key)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Parse a key from its string form
+	 * @param ser	The string form of the key
+	 * @return	The parsed key
+	 */
+	@SuppressWarnings("unchecked")
+	public K parse(String ser) {
+		if (value != null) return (K) parse(value, keyClass, ser);
+		int count = 1;
+		for (int i=0; i<ser.length(); i++) if (ser.charAt(i) == ':') count++;
+		if (count != fields.length)
+			throw new UtilityError("The number of serializd fields {} does not match the number of key fields {} in the class {}",
+					count,
+					fields.length,
+					keyClass.getName());
+		K key = newKey();
+		int start = 0;
+		for (int i=0; i<fields.length; i++) {
+			int end = ser.indexOf(':', start);
+			if (end < 0) end = ser.length();
+			set(i, key, parse(values[i], fields[i].getType(), ser.substring(start, end)));
+			start = end+1;
+		}
+		return key;
+	}
+
+	private static Object parse(ValueCodec value, Class<?> cls, String val) {
+		try {
+			return value.parse.apply(val);
+		} catch (RuntimeException e) {
+			throw new UtilityError("Unable to deserialize field encoded as {} into class {}", e, val, cls.getName());
+		}
+	}
+
+	/**
+	 * Calculate the number of bytes of the binary form of the given key
+	 * @param key	The key
+	 * @return	The number of bytes written by write()
+	 */
+	public int sizeOf(K key) {
+		if (value != null) return value.size.applyAsInt(key);
+		int size = 0;
+		for (int i=0; i<fields.length; i++) size += values[i].size.applyAsInt(get(i, key));
+		return size;
+	}
+
+	/**
+	 * Write the binary form of the given key into the given buffer at its current position
+	 * @param key	The key to write
+	 * @param buffer	The buffer to write to
+	 */
+	public void write(K key, ByteBuffer buffer) {
+		if (value != null) {
+			value.write.accept(key, buffer);
+			return;
+		}
+		for (int i=0; i<fields.length; i++) values[i].write.accept(get(i, key), buffer);
+	}
+
+	/**
+	 * Read a key in its binary form from the given buffer at its current position
+	 * @param buffer	The buffer to read from
+	 * @return	The key read
+	 */
+	@SuppressWarnings("unchecked")
+	public K read(ByteBuffer buffer) {
+		if (value != null) return (K) value.read.apply(buffer);
+		K key = newKey();
+		for (int i=0; i<fields.length; i++) set(i, key, values[i].read.apply(buffer));
+		return key;
+	}
+
+	@Override
+	public String toString() {
+		return "KeyClassCodec("+keyClass.getName()+")";
+	}
+
+	/**
+	 * Get the value codec of the given class
+	 */
+	static ValueCodec valueCodecFor(Class<?> cls) { return valueCodecs.get(cls); }
+
+	/**
+	 * The value codec of a class holds the functions formatting, parsing, sizing, writing and reading values of the class
+	 */
+	static class ValueCodec {
+		final Function<Object, String> format;
+		final Function<String, Object> parse;
+		final ToIntFunction<Object> size;
+		final BiConsumer<Object, ByteBuffer> write;
+		final Function<ByteBuffer, Object> read;
+		final LongFunction<Object> fromTime;
+
+		private ValueCodec(Function<Object, String> format, Function<String, Object> parse, ToIntFunction<Object> size,
+				BiConsumer<Object, ByteBuffer> write, Function<ByteBuffer, Object> read) {
+			this(format, parse, size, write, read, null);
+		}
+
+		private ValueCodec(Function<Object, String> format, Function<String, Object> parse, ToIntFunction<Object> size,
+				BiConsumer<Object, ByteBuffer> write, Function<ByteBuffer, Object> read, LongFunction<Object> fromTime) {
+			this.format = format;
+			this.parse = parse;
+			this.size = size;
+			this.write = write;
+			this.read = read;
+			this.fromTime = fromTime;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ValueCodec valueCodec(Class<?> cls) {
+		switch(KeyCodec.keyType(cls)) {
+		case BOOLEAN:
+			return new ValueCodec(
+					v -> ((Boolean)v) ? "1" : "0",
+					s -> s.equals("1"),
+					v -> 1,
+					(v, b) -> b.put((byte)(((Boolean)v) ? 1 : 0)),
+					b -> b.get() != 0);
+		case BYTE:
+			return new ValueCodec(
+					v -> v.toString(),
+					s -> Byte.valueOf(s),
+					v -> 1,
+					(v, b) -> b.put((Byte)v),
+					b -> b.get());
+		case CHAR:
+			return new ValueCodec(
+					v -> urlEncode(v.toString()),
+					s -> urlDecode(s).charAt(0),
+					v -> KeyCodec.sizeOfVarLong((Character)v),
+					(v, b) -> KeyCodec.writeVarLong((Character)v, b),
+					b -> (char)KeyCodec.readVarLong(b));
+		case SHORT:
+			return new ValueCodec(
+					v -> v.toString(),
+					s -> Short.valueOf(s),
+					v -> KeyCodec.sizeOfVarLong(KeyCodec.zigZag((Short)v)),
+					(v, b) -> KeyCodec.writeVarLong(KeyCodec.zigZag((Short)v), b),
+					b -> (short)KeyCodec.unZigZag(KeyCodec.readVarLong(b)));
+		case INT:
+			return new ValueCodec(
+					v -> v.toString(),
+					s -> Integer.valueOf(s),
+					v -> KeyCodec.sizeOfVarLong(KeyCodec.zigZag((Integer)v)),
+					(v, b) -> KeyCodec.writeVarLong(KeyCodec.zigZag((Integer)v), b),
+					b -> (int)KeyCodec.unZigZag(KeyCodec.readVarLong(b)));
+		case LONG:
+			return new ValueCodec(
+					v -> v.toString(),
+					s -> Long.valueOf(s),
+					v -> KeyCodec.sizeOfVarLong(KeyCodec.zigZag((Long)v)),
+					(v, b) -> KeyCodec.writeVarLong(KeyCodec.zigZag((Long)v), b),
+					b -> KeyCodec.unZigZag(KeyCodec.readVarLong(b)));
+		case FLOAT:
+			return new ValueCodec(
+					v -> v.toString(),
+					s -> Float.valueOf(s),
+					v -> 4,
+					(v, b) -> b.putFloat((Float)v),
+					b -> b.getFloat());
+		case DOUBLE:
+			return new ValueCodec(
+					v -> v.toString(),
+					s -> Double.valueOf(s),
+					v -> 8,
+					(v, b) -> b.putDouble((Double)v),
+					b -> b.getDouble());
+		case STRING:
+			return new ValueCodec(
+					v -> urlEncode((String)v),
+					s -> urlDecode(s),
+					v -> KeyCodec.sizeOfString((String)v),
+					(v, b) -> KeyCodec.writeString((String)v, b),
+					b -> KeyCodec.readString(b));
+		case DATE:
+			LongFunction<Object> fromTime = fromTime(cls);
+			return new ValueCodec(
+					v -> String.valueOf(((Date)v).getTime()),
+					s -> fromTime.apply(Long.parseLong(s)),
+					v -> 8,
+					(v, b) -> b.putLong(((Date)v).getTime()),
+					b -> fromTime.apply(b.getLong()),
+					fromTime);
+		case UUID:
+			return new ValueCodec(
+					v -> v.toString(),
+					s -> UUID.fromString(s),
+					v -> 16,
+					(v, b) -> {
+						b.putLong(((UUID)v).getMostSignificantBits());
+						b.putLong(((UUID)v).getLeastSignificantBits());
+					},
+					b -> new UUID(b.getLong(), b.getLong()));
+		case ENUM:
+			Class<Enum> enumClass = (Class<Enum>)cls;
+			return new ValueCodec(
+					v -> ((Enum<?>)v).name(),
+					s -> Enum.valueOf(enumClass, s),
+					v -> KeyCodec.sizeOfString(((Enum<?>)v).name()),
+					(v, b) -> KeyCodec.writeString(((Enum<?>)v).name(), b),
+					b -> Enum.valueOf(enumClass, KeyCodec.readString(b)));
+		case OTHER:
+			Function<String, Object> fromString = fromString(cls);
+			return new ValueCodec(
+					v -> v.toString(),
+					fromString,
+					v -> KeyCodec.sizeOfString(v.toString()),
+					(v, b) -> KeyCodec.writeString(v.toString(), b),
+					b -> fromString.apply(KeyCodec.readString(b)));
+		default:
+			// Composite keys embedded in other composite keys are written in place by the codec of their class
+			return new ValueCodec(
+					v -> v.toString(),
+					fromString(cls),
+					v -> forClass((Class<Object>)cls).sizeOf(v),
+					(v, b) -> forClass((Class<Object>)cls).write(v, b),
+					b -> forClass(cls).read(b));
+		}
+	}
+
+	/**
+	 * Compile a function creating instances of the given date class from a time in milliseconds
+	 */
+	private static LongFunction<Object> fromTime(Class<?> cls) {
+		if (cls == Date.class) return Date::new;
+		MethodHandle c;
+		try {
+			c = lookup.findConstructor(cls, MethodType.methodType(void.class, long.class)).asType(FROM_LONG_TYPE);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return time -> { throw new UtilityError("Unable to convert {} to an instance of {}", e, time, cls.getName()); };
+		}
+		return time -> {
+			try {
+				return (Object)c.invokeExact(time);
+			} catch (Throwable e) {
+				throw new UtilityError("Unable to convert {} to an instance of {}", e, time, cls.getName());
+			}
+		};
+	}
+
+	/**
+	 * Compile a function creating instances of the given class through its String constructor
+	 */
+	private static Function<String, Object> fromString(Class<?> cls) {
+		MethodHandle c;
+		try {
+			c = lookup.findConstructor(cls, MethodType.methodType(void.class, String.class)).asType(FROM_STRING_TYPE);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return s -> { throw new UtilityError("Unable to convert {} to an instance of {}", e, s, cls.getName()); };
+		}
+		return s -> {
+			try {
+				return (Object)c.invokeExact(s);
+			} catch (Throwable e) {
+				throw new UtilityError("Unable to convert {} to an instance of {}", e, s, cls.getName());
+			}
+		};
+	}
+
+	/**
+	 * URL encode the given string, returning the string itself if it contains no characters that are changed by URL encoding
+	 */
+	static String urlEncode(String s) {
+		for (int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_')) {
+				try {
+					return URLEncoder.encode(s, StandardCharsets.UTF_8.toString());
+				} catch (UnsupportedEncodingException e) {
+					throw new UtilityError("Unable to URL encode string {}", e, s);
+				}
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * URL decode the given string, returning the string itself if it contains no encoded characters
+	 */
+	static String urlDecode(String s) {
+		if (s.indexOf('%') < 0 && s.indexOf('+') < 0) return s;
+		try {
+			return URLDecoder.decode(s, StandardCharsets.UTF_8.toString());
+		} catch (UnsupportedEncodingException e) {
+			throw new UtilityError("Unable to URL decode string {}", e, s);
+		}
+	}
+
+}
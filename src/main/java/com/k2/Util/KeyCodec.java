@@ -0,0 +1,291 @@
+package com.k2.Util;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import com.k2.Util.classes.ClassUtil;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This utility class provides static methods to encode keys in a compact binary form and to decode them again.
+ *
+ * Integral values are written as zig-zag encoded variable length integers so that small values of either sign take a single byte, floating
+ * point values are written as their fixed width bits, strings as their variable length byte length followed by their UTF-8 bytes, dates as the
+ * fixed width eight bytes of their time in milliseconds and UUIDs as their sixteen bytes. Booleans and bytes take a single byte and enums are
+ * written as the string of their name. Other java types are written as the string of their toString() value and decoded through their String
+ * constructor as in the string form of the key.
+ *
+ * Composite keys are written as the values of their instance fields in declaration order with no delimiters, composite keys embedded in other
+ * composite keys are written in place. Keys are written to and read from byte buffers without creating intermediate strings through the compiled
+ * KeyClassCodec of their class.
+ *
+ * @author simon
+ *
+ */
+public class KeyCodec {
+
+	/**
+	 * The type of a key or key field value identifying how the value is encoded
+	 */
+	enum KeyType { BOOLEAN, BYTE, CHAR, SHORT, INT, LONG, FLOAT, DOUBLE, STRING, DATE, UUID, ENUM, OTHER, COMPOSITE }
+
+	private static final ClassValue<KeyType> keyTypes = new ClassValue<KeyType>() {
+		@Override
+		protected KeyType computeValue(Class<?> cls) {
+			if (cls == boolean.class || cls == Boolean.class) return KeyType.BOOLEAN;
+			if (cls == byte.class || cls == Byte.class) return KeyType.BYTE;
+			if (cls == char.class || cls == Character.class) return KeyType.CHAR;
+			if (cls == short.class || cls == Short.class) return KeyType.SHORT;
+			if (cls == int.class || cls == Integer.class) return KeyType.INT;
+			if (cls == long.class || cls == Long.class) return KeyType.LONG;
+			if (cls == float.class || cls == Float.class) return KeyType.FLOAT;
+			if (cls == double.class || cls == Double.class) return KeyType.DOUBLE;
+			if (cls == String.class) return KeyType.STRING;
+			if (Date.class.isAssignableFrom(cls)) return KeyType.DATE;
+			if (cls == UUID.class) return KeyType.UUID;
+			if (Enum.class.isAssignableFrom(cls)) return KeyType.ENUM;
+			if (cls.getName().startsWith("java.") || !cls.getName().contains(".")) return KeyType.OTHER;
+			return KeyType.COMPOSITE;
+		}
+	};
+
+	/**
+	 * The instance fields of each composite key class in declaration order
+	 */
+	private static final ClassValue<Field[]> keyFields = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> cls) {
+			List<Field> fields = new ArrayList<Field>();
+			for (Field f : ClassUtil.getDeclaredFields(cls)) if (!Modifier.isStatic(f.getModifiers())) fields.add(f);
+			return fields.toArray(new Field[fields.size()]);
+		}
+	};
+
+	static {
+		ClassUtil.addEvictionListener(KeyCodec::evict);
+	}
+
+	private KeyCodec() {}
+
+	/**
+	 * This static method discards the key type and key fields cached for the given class. It is called by ClassUtil.evict()
+	 * @param cls	The class whose cached key data is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		keyTypes.remove(cls);
+		keyFields.remove(cls);
+	}
+
+	static KeyType keyType(Class<?> cls) { return keyTypes.get(cls); }
+
+	static Field[] keyFields(Class<?> cls) { return keyFields.get(cls); }
+
+	/**
+	 * This static method encodes the given key into a new byte array
+	 * @param key	The key to encode
+	 * @return	The binary form of the key
+	 */
+	public static byte[] toBytes(Serializable key) {
+		ByteBuffer buffer = ByteBuffer.allocate(sizeOf(key));
+		encode(key, buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * This static method decodes a key of the given class from the given bytes
+	 * @param keyClass	The class of the key
+	 * @param bytes	The binary form of the key
+	 * @return	The decoded key
+	 * @param <K>	The type of the key
+	 */
+	public static <K extends Serializable> K fromBytes(Class<K> keyClass, byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		K key = decode(keyClass, buffer);
+		if (buffer.hasRemaining())
+			throw new UtilityError("{} bytes remain after decoding a key of class {}", buffer.remaining(), keyClass.getName());
+		return key;
+	}
+
+	/**
+	 * This static method calculates the number of bytes of the binary form of the given key
+	 * @param key	The key
+	 * @return	The number of bytes written when encoding the key
+	 */
+	@SuppressWarnings("unchecked")
+	public static int sizeOf(Serializable key) {
+		if (key == null) throw new UtilityError("Unable to encode a null key");
+		return KeyClassCodec.forClass((Class<Serializable>)key.getClass()).sizeOf(key);
+	}
+
+	/**
+	 * This static method writes the binary form of the given key into the given buffer at its current position
+	 * @param key	The key to encode
+	 * @param buffer	The buffer to write the key into
+	 */
+	@SuppressWarnings("unchecked")
+	public static void encode(Serializable key, ByteBuffer buffer) {
+		if (key == null) throw new UtilityError("Unable to encode a null key");
+		KeyClassCodec.forClass((Class<Serializable>)key.getClass()).write(key, buffer);
+	}
+
+	/**
+	 * This static method reads a key of the given class from the given buffer at its current position
+	 * @param keyClass	The class of the key
+	 * @param buffer	The buffer to read the key from
+	 * @return	The decoded key
+	 * @param <K>	The type of the key
+	 */
+	public static <K extends Serializable> K decode(Class<K> keyClass, ByteBuffer buffer) {
+		try {
+			return KeyClassCodec.forClass(keyClass).read(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new UtilityError("The buffer ended before a key of class {} was decoded", e, keyClass.getName());
+		}
+	}
+
+	/**
+	 * Map signed values to unsigned values so that values of small magnitude have short variable length encodings
+	 */
+	static long zigZag(long l) { return (l << 1) ^ (l >> 63); }
+
+	static long unZigZag(long l) { return (l >>> 1) ^ -(l & 1); }
+
+	/**
+	 * This static method calculates the number of bytes of the variable length encoding of the given unsigned value
+	 * @param l	The value
+	 * @return	The number of bytes of the variable length encoding
+	 */
+	public static int sizeOfVarLong(long l) {
+		int size = 1;
+		while ((l & ~0x7FL) != 0) {
+			l >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * This static method writes the given unsigned value to the buffer seven bits at a time, least significant first, with the high bit of each
+	 * byte set when further bytes follow
+	 * @param l	The value to write
+	 * @param buffer	The buffer to write to
+	 */
+	public static void writeVarLong(long l, ByteBuffer buffer) {
+		while ((l & ~0x7FL) != 0) {
+			buffer.put((byte)((l & 0x7F) | 0x80));
+			l >>>= 7;
+		}
+		buffer.put((byte)l);
+	}
+
+	/**
+	 * This static method reads a variable length unsigned value from the buffer
+	 * @param buffer	The buffer to read from
+	 * @return	The value read
+	 */
+	public static long readVarLong(ByteBuffer buffer) {
+		long l = 0;
+		for (int shift=0; shift<64; shift+=7) {
+			byte b = buffer.get();
+			l |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return l;
+		}
+		throw new UtilityError("Malformed variable length integer in key");
+	}
+
+	/**
+	 * The number of bytes of the UTF-8 encoding of the given string. Strings holding unpaired surrogates have no UTF-8 encoding and are rejected
+	 */
+	static int utf8Length(String s) {
+		int length = 0;
+		for (int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) length++;
+			else if (c < 0x800) length += 2;
+			else if (Character.isHighSurrogate(c) && i+1 < s.length() && Character.isLowSurrogate(s.charAt(i+1))) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) throw unpairedSurrogate(s, i);
+			else length += 3;
+		}
+		return length;
+	}
+
+	private static UtilityError unpairedSurrogate(String s, int i) {
+		return new UtilityError("Unable to encode the string '{}' in a key as it holds an unpaired surrogate at index {}", s, i);
+	}
+
+	static int sizeOfString(String s) {
+		int length = utf8Length(s);
+		return sizeOfVarLong(length)+length;
+	}
+
+	/**
+	 * This static method writes the given string as its variable length byte length followed by its UTF-8 bytes
+	 * @param s	The string to write
+	 * @param buffer	The buffer to write to
+	 */
+	public static void writeString(String s, ByteBuffer buffer) {
+		writeVarLong(utf8Length(s), buffer);
+		for (int i=0; i<s.length(); i++) i = writeUtf8(s, i, buffer);
+	}
+
+	/**
+	 * Write the UTF-8 bytes of the character of the given string at the given index, returning the index of the last character written which is
+	 * the following character when the character is the high surrogate of a surrogate pair
+	 */
+	static int writeUtf8(String s, int i, ByteBuffer buffer) {
+		char c = s.charAt(i);
+		if (c < 0x80) {
+			buffer.put((byte)c);
+		} else if (c < 0x800) {
+			buffer.put((byte)(0xC0 | (c >> 6)));
+			buffer.put((byte)(0x80 | (c & 0x3F)));
+		} else if (Character.isHighSurrogate(c) && i+1 < s.length() && Character.isLowSurrogate(s.charAt(i+1))) {
+			int cp = Character.toCodePoint(c, s.charAt(++i));
+			buffer.put((byte)(0xF0 | (cp >> 18)));
+			buffer.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+			buffer.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+			buffer.put((byte)(0x80 | (cp & 0x3F)));
+		} else if (Character.isSurrogate(c)) {
+			// An unpaired surrogate would be read back as the replacement character
+			throw unpairedSurrogate(s, i);
+		} else {
+			buffer.put((byte)(0xE0 | (c >> 12)));
+			buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+			buffer.put((byte)(0x80 | (c & 0x3F)));
+		}
+		return i;
+	}
+
+	/**
+	 * This static method reads a string written by writeString()
+	 * @param buffer	The buffer to read from
+	 * @return	The string read
+	 */
+	public static String readString(ByteBuffer buffer) {
+		long encoded = readVarLong(buffer);
+		if (encoded < 0 || encoded > buffer.remaining())
+			throw new UtilityError("The string length {} is negative or exceeds the {} bytes remaining in the key", encoded, buffer.remaining());
+		int length = (int)encoded;
+		String s;
+		if (buffer.hasArray()) {
+			s = new String(buffer.array(), buffer.arrayOffset()+buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position()+length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return s;
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.k2.Util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.KeyCodec.KeyType;
+import com.k2.Util.classes.ClassUtil;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This utility class interns composite keys so that equal keys are represented by a single canonical instance.
+ *
+ * Each composite key class that overrides equals() has its own pool of canonical keys. The pool holds its keys through weak references so that a
+ * canonical key is released once it is no longer used outside the pool, and entries of released keys are expunged from the pool as it is used.
+ * Each entry caches the hash code of its key so that the pool never rehashes a key. Since equal interned keys are the same instance, interned keys
+ * can be compared by identity.
+ *
+ * Interning is optional. Keys are always interned by intern() while canonicalize(), which is used by the key utilities to canonicalize the keys
+ * they create, only interns keys when interning is enabled.
+ *
+ * @author simon
+ *
+ */
+public class KeyInterner {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static volatile boolean enabled = false;
+
+	private static final ClassValue<Pool> pools = new ClassValue<Pool>() {
+		@Override
+		protected Pool computeValue(Class<?> cls) { return new Pool(cls); }
+	};
+
+	static {
+		ClassUtil.addEvictionListener(KeyInterner::evict);
+	}
+
+	private KeyInterner() {}
+
+	/**
+	 * This static method enables or disables the interning of the keys created by the key utilities
+	 * @param enable	True to intern the keys created by the key utilities
+	 */
+	public static void setEnabled(boolean enable) {
+		enabled = enable;
+		logger.debug("Key interning {}", enable ? "enabled" : "disabled");
+	}
+
+	/**
+	 * @return	True if the keys created by the key utilities are interned
+	 */
+	public static boolean isEnabled() { return enabled; }
+
+	/**
+	 * This static method discards the pool of canonical keys of the given class. It is called by ClassUtil.evict()
+	 * @param cls	The class whose pool of canonical keys is to be discarded
+	 */
+	public static void evict(Class<?> cls) { pools.remove(cls); }
+
+	/**
+	 * This static method gets the canonical instance of the given key if interning is enabled
+	 * @param key	The key to canonicalize
+	 * @return	The canonical instance of the key if interning is enabled, otherwise the given key
+	 * @param <K>	The type of the key
+	 */
+	public static <K> K canonicalize(K key) {
+		return (enabled) ? intern(key) : key;
+	}
+
+	/**
+	 * This static method gets the canonical instance of the given key. If there is no canonical key equal to the given key the given key becomes
+	 * the canonical key. Keys that are not composite keys and keys of classes that do not override equals() are not interned
+	 * @param key	The key to intern
+	 * @return	The canonical instance of the key
+	 * @param <K>	The type of the key
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K> K intern(K key) {
+		if (key == null) return null;
+		Pool pool = pools.get(key.getClass());
+		return (pool.interning) ? (K) pool.intern(key) : key;
+	}
+
+	/**
+	 * This static method gets the number of canonical keys of the given class held by the interner, including keys that have been released but
+	 * not yet expunged
+	 * @param cls	The key class
+	 * @return	The number of canonical keys of the class
+	 */
+	public static int size(Class<?> cls) {
+		Pool pool = pools.get(cls);
+		pool.expunge();
+		return pool.entries.size();
+	}
+
+	/**
+	 * The pool of canonical keys of a key class
+	 */
+	private static class Pool {
+		private final boolean interning;
+		private final Map<Entry, Entry> entries = new ConcurrentHashMap<Entry, Entry>();
+		private final ReferenceQueue<Object> released = new ReferenceQueue<Object>();
+
+		private Pool(Class<?> cls) {
+			boolean overridesEquals;
+			try {
+				overridesEquals = cls.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+			} catch (NoSuchMethodException e) {
+				throw new UtilityError("Unable to find the equals method of key class {}", e, cls.getName());
+			}
+			this.interning = overridesEquals && KeyCodec.keyType(cls) == KeyType.COMPOSITE;
+		}
+
+		private Object intern(Object key) {
+			expunge();
+			Entry entry = new Entry(key, released);
+			for (;;) {
+				Entry canonical = entries.putIfAbsent(entry, entry);
+				if (canonical == null) return key;
+				Object canonicalKey = canonical.get();
+				if (canonicalKey != null) return canonicalKey;
+				// The canonical key was released after it was matched so its entry is replaced
+				entries.remove(canonical, canonical);
+			}
+		}
+
+		private void expunge() {
+			for (Reference<?> ref = released.poll(); ref != null; ref = released.poll()) entries.remove(ref, ref);
+		}
+	}
+
+	/**
+	 * A weak reference to a key caching the hash code of the key. Entries are equal if they are the same entry or their keys are equal
+	 */
+	private static class Entry extends WeakReference<Object> {
+		private final int hash;
+
+		private Entry(Object key, ReferenceQueue<Object> queue) {
+			super(key, queue);
+			this.hash = key.hashCode();
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) return true;
+			if (!(obj instanceof Entry)) return false;
+			Entry other = (Entry)obj;
+			if (hash != other.hash) return false;
+			Object key = get();
+			Object otherKey = other.get();
+			return key != null && (key == otherKey || key.equals(otherKey));
+		}
+	}
+
+}
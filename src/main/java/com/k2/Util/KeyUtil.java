@@ -14,16 +14,14 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
@@ -59,7 +57,7 @@ public class KeyUtil {
 		Class<? extends Serializable> keyClass = key.getClass();
 		if (keyClass.getName().startsWith("java.")) return key;
 		for (Field f : ClassUtil.getDeclaredFields(keyClass)) {
-			if (f.isAnnotationPresent(RootId.class) && f.getType() instanceof Serializable) {
+			if (ClassUtil.isAnnotationPresent(f, RootId.class) && f.getType() instanceof Serializable) {
 				if (!f.isAccessible()) f.setAccessible(true);
 				try {
 					return (Serializable) f.get(key);
@@ -103,7 +101,20 @@ public class KeyUtil {
 		return sb.toString();
 	}
 	
-	private static Map<Class<?>, Class<Serializable>> keyClasses = new HashMap<Class<?>, Class<Serializable>>();
+	private static Map<Class<?>, Class<Serializable>> keyClasses = new ConcurrentHashMap<Class<?>, Class<Serializable>>();
+	
+	static {
+		ClassUtil.addEvictionListener(KeyUtil::evict);
+	}
+	
+	/**
+	 * This static method discards the key class and key constructor cached for the given class. It is called by ClassUtil.evict()
+	 * @param cls	The class whose cached key data is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		keyClasses.remove(cls);
+		keyConstructors.remove(cls);
+	}
 	
 	@SuppressWarnings("unchecked")
 	public static Class<Serializable> getKeyClass(Class<?> entityClass) {
@@ -118,14 +129,14 @@ public class KeyUtil {
 		}
 		
 		for (Field f : ClassUtil.getAllFields(entityClass)) {
-			if (f.isAnnotationPresent(Id.class) || f.isAnnotationPresent(EmbeddedId.class)) {
+			if (ClassUtil.isAnnotationPresent(f, Id.class) || ClassUtil.isAnnotationPresent(f, EmbeddedId.class)) {
 				keyClasses.put(entityClass, (Class<Serializable>) f.getType());
 				return (Class<Serializable>) f.getType();
 			}
 		}
 		
 		for (Method m : ClassUtil.getAllMethods(entityClass)) {
-			if (m.isAnnotationPresent(Id.class) || m.isAnnotationPresent(EmbeddedId.class)) {
+			if (ClassUtil.isAnnotationPresent(m, Id.class) || ClassUtil.isAnnotationPresent(m, EmbeddedId.class)) {
 				keyClasses.put(entityClass, (Class<Serializable>) m.getReturnType());
 				return (Class<Serializable>) m.getReturnType();
 			}
@@ -138,7 +149,7 @@ public class KeyUtil {
 		return constructKey(getKeyClass(entityClass), keyValues);
 	}
 	
-	private static Map<Class<Serializable>, Constructor<Serializable>> keyConstructors = new HashMap<Class<Serializable>, Constructor<Serializable>>();
+	private static Map<Class<Serializable>, Constructor<Serializable>> keyConstructors = new ConcurrentHashMap<Class<Serializable>, Constructor<Serializable>>();
 
 	public static Serializable constructKey(Class<Serializable> keyClass, Object ... keyValues) {
 		
@@ -206,7 +217,7 @@ public class KeyUtil {
 			}
 		}	
 		try {
-			return c.newInstance(keyValues);
+			return KeyInterner.canonicalize(c.newInstance(keyValues));
 		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
 			StringBuilder sb = new StringBuilder();
 			sb.append("(");
@@ -265,167 +276,109 @@ public class KeyUtil {
 		
 	}
 	
-	private static String serializeFieldValue(Object val) {
-		Class<?> cls = val.getClass();
-		if (cls.isPrimitive()) {
-			if (cls == boolean.class) {
-				return ((boolean)val)?"1":"0";
-			} else if (cls == byte.class) {
-				return Byte.toString((byte)val);
-			} else if (cls == char.class) {
-				try {
-					return URLEncoder.encode(String.valueOf((char)val), StandardCharsets.UTF_8.toString());
-				} catch (UnsupportedEncodingException e) {
-					throw new UtilityError("Unable to URL encode char {} ", e, val); 
-				}
-			} else if (cls == short.class) {
-				return Short.toString((short)val);
-			} else if (cls == int.class) {
-				return Integer.toString((int)val);
-			} else if (cls == long.class) {
-				return Long.toString((long)val);
-			} else if (cls == float.class) {
-				return Float.toString((float)val);
-			} else if (cls == double.class) {
-				return Double.toString((double)val);
-			}
-			throw new UtilityError("Unknown primitive {}", cls.getName());			
-		}
-		if (val instanceof String) {
-			String s = (String)val;
-			try {
-				return URLEncoder.encode(s, StandardCharsets.UTF_8.toString());
-			} catch (UnsupportedEncodingException e) {
-				throw new UtilityError("Unable to URL encode string {}", s);
-			}
-		} else if (val instanceof Date) {
-			Date d = (Date)val;
-			return String.valueOf(d.getTime());
-		} else if (val instanceof Boolean) {
-			Boolean b = (Boolean)val;
-			return (b)?"1":"0";
-		} else {
-			return val.toString();
-		}		
-	}
-	
-	private static Serializable deserializeFieldValue(Class<? extends Serializable> cls, String val) {
-		try {
-			if (cls.isPrimitive()) {
-				if (cls == boolean.class) {
-					return val.equals("1");
-				} else if (cls == byte.class) {
-					return Byte.valueOf(val).byteValue();
-				} else if (cls == char.class) {
-					String cString = URLDecoder.decode(val, StandardCharsets.UTF_8.toString());
-					return cString.toCharArray()[0];
-				} else if (cls == short.class) {
-					return Short.valueOf(val).shortValue();
-				} else if (cls == int.class) {
-					return Integer.valueOf(val).intValue();
-				} else if (cls == long.class) {
-					return Long.valueOf(val).longValue();
-				} else if (cls == float.class) {
-					return Float.valueOf(val).floatValue();
-				} else if (cls == double.class) {
-					return Double.valueOf(val).doubleValue();
-				}
-				throw new UtilityError("Unknown primitive {}", cls.getName());
-			} else if (String.class.isAssignableFrom(cls)) {
-				return URLDecoder.decode(val, StandardCharsets.UTF_8.toString());
-			} else if (Date.class.isAssignableFrom(cls)) {
-				Constructor<? extends Serializable> cFromLong = cls.getConstructor(Long.class);
-				if (cFromLong != null) {
-					return cFromLong.newInstance(Long.valueOf(val));
-				}
-				Constructor<? extends Serializable> cFromDate = cls.getConstructor(Date.class);
-				if (cFromDate != null) {
-					return cFromDate.newInstance(new Date(Long.valueOf(val)));
-				}
-				throw new UtilityError("Unable to convert {} to an instance of {}", val, cls.getName());
-			} else if (Boolean.class.isAssignableFrom(cls)) {
-				return val.equals("1");
-			} else {
-				Constructor<? extends Serializable> cFromString = cls.getConstructor(String.class);
-				return cFromString.newInstance(val);
-			}	
-		} catch (Exception e) {
-			throw new UtilityError("Unable to deserialize field encoded as {} into class {}", e, val, cls.getName());
-		}
-	}
-	
+	/**
+	 * This static method formats the given key in its string form through the compiled codec of its class
+	 * @param key	The key to serialize
+	 * @return	The string form of the key
+	 * @see KeyClassCodec
+	 */
+	@SuppressWarnings("unchecked")
 	public static String serialize(Serializable key) {
 		
 		if (key == null)
 			throw new UtilityError("Unable to serialise a null key");
 		
-		StringBuilder sb = new StringBuilder();
-		Field[] keyFields = ClassUtil.getDeclaredFields(key.getClass());
-		int i = 0;
-		try {
-			if (key.getClass().getName().startsWith("java.") || !key.getClass().getName().contains(".")) {
-				sb.append(serializeFieldValue(key));
-			} else {
-				for (i=0; i<keyFields.length; i++) {
-					Object val = keyFields[i].get(key);
-					if (val == null)
-						throw new UtilityError("The value of the key field {}.{} is null", key.getClass().getName(), keyFields[i].getName());
-					sb.append(serializeFieldValue(val));
-					if (i<keyFields.length -1) {
-						sb.append(":");
-					}
-					
-				}
-			}
-			
-			return sb.toString();
-		} catch (IllegalArgumentException | IllegalAccessException e) {
-			throw new UtilityError("Unable to read key field {}.{}", e, key.getClass().getName(), keyFields[i].getName());
-		}
-		
+		return KeyClassCodec.forClass((Class<Serializable>)key.getClass()).format(key);
 	}
 	
-	@SuppressWarnings("unchecked")
+	/**
+	 * This static method parses a key of the given class from its string form through the compiled codec of the class
+	 * @param keyClass	The class of the key
+	 * @param ser	The string form of the key
+	 * @return	The parsed key
+	 * @param <K>	The type of the key
+	 * @see KeyClassCodec
+	 */
 	public static <K extends Serializable> K deserialize(Class<K> keyClass, String ser) {
-		
-		if (keyClass.getName().startsWith("java.") || ! keyClass.getName().contains(".")) {
-			return (K) deserializeFieldValue(keyClass, ser);
-		} else {
-			String[] fieldSers = ser.split(":");
-			Field[] keyFields = ClassUtil.getDeclaredFields(keyClass);
-			if (fieldSers.length != keyFields.length)
-				throw new UtilityError("The number of serializd fields {} does not match the number of key fields {} in the class {}",
-						fieldSers.length,
-						keyFields.length,
-						keyClass.getName());
-			try {
-			K key = keyClass.newInstance();
-			for (int i=0; i<fieldSers.length; i++) {
-				Serializable keyFieldValue = deserializeFieldValue((Class<? extends Serializable>) keyFields[i].getType(), fieldSers[i]);
-				keyFields[i].set(key, keyFieldValue);
-			}
-			return key;
-			} catch (InstantiationException | IllegalAccessException e) {
-				throw new UtilityError("Unable to create instance of key {} for serialized string {}", e, keyClass.getName(), ser);
-			}
-		}
+		return KeyInterner.canonicalize(KeyClassCodec.forClass(keyClass).parse(ser));
 	}
 	
 	public static Serializable toKey(Class<?> entityClass, String ser) {
 		return deserialize(getKeyClass(entityClass), ser);
 	}
+	
+	/**
+	 * This static method encodes the given key in its compact binary form
+	 * @param key	The key to encode
+	 * @return	The binary form of the key
+	 * @see KeyCodec
+	 */
+	public static byte[] toBytes(Serializable key) {
+		return KeyCodec.toBytes(key);
+	}
+	
+	/**
+	 * This static method decodes a key of the given class from its compact binary form
+	 * @param keyClass	The class of the key
+	 * @param bytes	The binary form of the key
+	 * @return	The decoded key
+	 * @param <K>	The type of the key
+	 * @see KeyCodec
+	 */
+	public static <K extends Serializable> K fromBytes(Class<K> keyClass, byte[] bytes) {
+		return KeyInterner.canonicalize(KeyCodec.fromBytes(keyClass, bytes));
+	}
+	
+	public static Serializable toKey(Class<?> entityClass, byte[] bytes) {
+		return fromBytes(getKeyClass(entityClass), bytes);
+	}
+	
+	/**
+	 * This static method encodes the given key in its order preserving binary form. The ordered forms of keys of the same class sort in the order
+	 * of the keys when compared as unsigned bytes
+	 * @param key	The key to encode
+	 * @return	The ordered binary form of the key
+	 * @see OrderedKeyCodec
+	 */
+	public static byte[] toOrderedBytes(Serializable key) {
+		return OrderedKeyCodec.toBytes(key);
+	}
+	
+	/**
+	 * This static method decodes a key of the given class from its order preserving binary form
+	 * @param keyClass	The class of the key
+	 * @param bytes	The ordered binary form of the key
+	 * @return	The decoded key
+	 * @param <K>	The type of the key
+	 * @see OrderedKeyCodec
+	 */
+	public static <K extends Serializable> K fromOrderedBytes(Class<K> keyClass, byte[] bytes) {
+		return KeyInterner.canonicalize(OrderedKeyCodec.fromBytes(keyClass, bytes));
+	}
+	
+	/**
+	 * This static method gets the prefix shared by the ordered binary forms of the keys of all the instances of the given entity class within the
+	 * aggregate with the given root key
+	 * @param entityClass	The entity class
+	 * @param rootKey	The key of the aggregate root
+	 * @return	The prefix of the ordered binary forms of the keys of the entity class with the given root key
+	 * @see OrderedKeyCodec#prefixEnd(byte[])
+	 */
+	public static byte[] rootKeyPrefix(Class<?> entityClass, Serializable rootKey) {
+		return OrderedKeyCodec.rootPrefix(getKeyClass(entityClass), rootKey);
+	}
 	public static Field[] getKeyFields(Class<?> entityClass) {
 		List<Field> keyFields = new ArrayList<Field>();
 		for (Field f : ClassUtil.getAllFields(entityClass)) {
-			if (f.isAnnotationPresent(Id.class)) {
+			if (ClassUtil.isAnnotationPresent(f, Id.class)) {
 				keyFields.add(f);
 				return keyFields.toArray(new Field[keyFields.size()]);
 			}
-			if (f.isAnnotationPresent(EmbeddedId.class)) {
+			if (ClassUtil.isAnnotationPresent(f, EmbeddedId.class)) {
 				Class<?> keyClass = getKeyClass(entityClass);
 				for (Field kf : ClassUtil.getDeclaredFields(keyClass)) {
-					if (kf.isAnnotationPresent(Column.class)) {
-						Column c = kf.getAnnotation(Column.class);
+					if (ClassUtil.isAnnotationPresent(kf, Column.class)) {
+						Column c = ClassUtil.getAnnotation(kf, Column.class);
 						String columnName = (StringUtil.isSet(c.name()))?c.name():kf.getName();
 						keyFields.add(EntityUtil.getColumnByName(entityClass, columnName));
 					}
@@ -0,0 +1,482 @@
+package com.k2.Util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.k2.Util.classes.ClassUtil;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * An object path is a compiled '/' separated path of field aliases leading from a root object to the objects embedded in the object tree.
+ *
+ * The path is parsed once when it is compiled and compiled paths are cached by their path string. Each element of the path resolves its field
+ * against the runtime class of the objects it is applied to on first use and caches the resolved field, its compiled accessors and the element
+ * class of collection fields against the class so that following the path again for objects of the same classes involves no parsing and no
+ * member lookup.
+ *
+ * Collections on the path are traversed when getting or deleting objects, the last field of the path can be a single valued field or a collection
+ * of the embedded objects. The objects at the end of the path can also be iterated or streamed, in which case the path is followed lazily as the
+ * objects are consumed.
+ *
+ * @author simon
+ *
+ */
+public class ObjectPath {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	/**
+	 * The maximum number of compiled paths cached. Paths are compiled from arbitrary strings so the least recently used paths are dropped when the
+	 * cache is full, paths already compiled remain usable
+	 */
+	private static final int MAX_PATHS = 1024;
+
+	private static final Cache<String, ObjectPath> paths = CacheBuilder.newBuilder().maximumSize(MAX_PATHS).build();
+
+	static {
+		ClassUtil.addEvictionListener(ObjectPath::evict);
+	}
+
+	private final String path;
+	private final Step[] steps;
+
+	private ObjectPath(String path) {
+		this.path = path;
+		List<Step> parsed = new ArrayList<Step>();
+		int start = 0;
+		for (int i=0; i<=path.length(); i++) {
+			if (i == path.length() || path.charAt(i) == '/') {
+				if (i > start) parsed.add(new Step(path.substring(start, i)));
+				start = i+1;
+			}
+		}
+		if (parsed.isEmpty()) throw new UtilityError("The object path '{}' does not contain any field aliases", path);
+		this.steps = parsed.toArray(new Step[parsed.size()]);
+		logger.trace("Compiled object path {} with {} steps", path, steps.length);
+	}
+
+	/**
+	 * Compile the given path. Compiled paths are cached so compiling the same path again returns the same compiled path
+	 * @param path	A '/' separated list of field aliases
+	 * @return	The compiled path
+	 */
+	public static ObjectPath compile(String path) {
+		ObjectPath compiled = paths.getIfPresent(path);
+		if (compiled == null) {
+			compiled = new ObjectPath(path);
+			ObjectPath existing = paths.asMap().putIfAbsent(path, compiled);
+			if (existing != null) compiled = existing;
+		}
+		return compiled;
+	}
+
+	/**
+	 * Discard the fields resolved against the given class by the steps of all the cached compiled paths. It is called by ClassUtil.evict()
+	 * @param cls	The class whose resolved fields are to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		for (ObjectPath compiled : paths.asMap().values()) for (Step step : compiled.steps) step.fields.remove(cls);
+	}
+
+	/**
+	 * @return	The path string from which this path was compiled
+	 */
+	public String getPath() { return path; }
+
+	/**
+	 * @return	The number of field aliases in this path
+	 */
+	public int size() { return steps.length; }
+
+	/**
+	 * Get all the instances of the given class found at the end of this path from the given root object
+	 * @param obj	The root object
+	 * @param cls	The class of the objects to get
+	 * @return	The list of objects found at the end of the path
+	 * @param <T>	The class of the objects to get
+	 */
+	public <T> List<T> getObjects(Object obj, Class<T> cls) {
+		List<T> objects = new ArrayList<T>();
+		for (Iterator<T> i = iterator(obj, cls); i.hasNext(); ) objects.add(i.next());
+		return objects;
+	}
+
+	/**
+	 * Iterate the instances of the given class found at the end of this path from the given root object. The path is followed lazily as the
+	 * iterator is advanced so only the objects on the path to the next instance are visited
+	 * @param obj	The root object
+	 * @param cls	The class of the objects to iterate
+	 * @return	An iterator of the objects found at the end of the path
+	 * @param <T>	The class of the objects to iterate
+	 */
+	public <T> Iterator<T> iterator(Object obj, Class<T> cls) {
+		return new Cursor<T>(0, obj, cls);
+	}
+
+	/**
+	 * Stream the instances of the given class found at the end of this path from the given root object. The path is followed lazily so short
+	 * circuiting operations such as findFirst() or limit() stop following the path as soon as they are satisfied
+	 * @param obj	The root object
+	 * @param cls	The class of the objects to stream
+	 * @return	A sequential stream of the objects found at the end of the path
+	 * @param <T>	The class of the objects to stream
+	 */
+	public <T> Stream<T> stream(Object obj, Class<T> cls) {
+		return stream(obj, cls, false);
+	}
+
+	/**
+	 * Stream the instances of the given class found at the end of this path from the given root object, optionally in parallel
+	 * @param obj	The root object
+	 * @param cls	The class of the objects to stream
+	 * @param parallel	True if the stream is to be processed in parallel by splitting the elements of the first collection on the path
+	 * @return	A stream of the objects found at the end of the path
+	 * @param <T>	The class of the objects to stream
+	 */
+	public <T> Stream<T> stream(Object obj, Class<T> cls, boolean parallel) {
+		return StreamSupport.stream(spliterator(obj, cls), parallel);
+	}
+
+	/**
+	 * Create a spliterator of the instances of the given class found at the end of this path from the given root object. The single valued fields
+	 * leading to the first collection on the path are followed immediately and the spliterator splits the elements of that collection, each of
+	 * which is then followed lazily to the end of the path
+	 * @param obj	The root object
+	 * @param cls	The class of the objects to split
+	 * @return	A spliterator of the objects found at the end of the path
+	 * @param <T>	The class of the objects to split
+	 */
+	public <T> Spliterator<T> spliterator(Object obj, Class<T> cls) {
+		int i = 0;
+		while (obj != null && i < steps.length) {
+			ResolvedField field = steps[i].resolve(obj.getClass());
+			if (i == steps.length-1 && cls.isAssignableFrom(field.type)) break;
+			if (field.collection) {
+				if (i == steps.length-1 && !cls.isAssignableFrom(field.elementClass))
+					throw new UtilityError("The generic type of the final collection field '{}' cannot be cast to {}", field.name, cls.getCanonicalName());
+				Object collection = field.get(obj);
+				Spliterator<?> elements = (collection == null) ? Spliterators.emptySpliterator() : ((Collection<?>)collection).spliterator();
+				return new PathSpliterator<T>(i+1, elements, cls);
+			}
+			if (i == steps.length-1) break;
+			field.checkNotJava(obj);
+			obj = field.get(obj);
+			i++;
+		}
+		Spliterator<?> roots = (obj == null) ? Spliterators.emptySpliterator() : Collections.singleton(obj).spliterator();
+		return new PathSpliterator<T>(i, roots, cls);
+	}
+
+	/**
+	 * Put the given object at the end of this path from the given root object. If the last field of the path is a collection the object is added to
+	 * the collection otherwise the field is set to the object. The path can not traverse collections
+	 * @param obj	The root object
+	 * @param embeddedObj	The object to put at the end of the path
+	 * @param <T>	The class of the object being put
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void put(Object obj, T embeddedObj) {
+		for (int i=0; obj != null; i++) {
+			ResolvedField field = steps[i].resolve(obj.getClass());
+			if (i == steps.length-1) {
+				if (embeddedObj.getClass().isAssignableFrom(field.type)) {
+					field.set(obj, embeddedObj);
+				} else if (field.collection) {
+					if (embeddedObj.getClass().isAssignableFrom(field.elementClass)) {
+						((Collection<T>)field.get(obj)).add(embeddedObj);
+					} else {
+						throw new UtilityError("The generic type of the final collection field '{}' cannot be cast to {}", field.name, embeddedObj.getClass().getCanonicalName());
+					}
+				}
+				return;
+			}
+			if (field.collection)
+				throw new UtilityError("The non final field {}.{} provaides a collection. Unable to put objects in non final collections", obj.getClass().getName(), field.name);
+			field.checkNotJava(obj);
+			obj = field.get(obj);
+		}
+	}
+
+	/**
+	 * Remove the given object from the end of this path from the given root object. Collections on the path are traversed
+	 * @param obj	The root object
+	 * @param embeddedObj	The object to remove from the end of the path
+	 * @param <T>	The class of the object being removed
+	 */
+	public <T> void delete(Object obj, T embeddedObj) {
+		if (embeddedObj == null) return;
+		delete(0, obj, embeddedObj);
+	}
+
+	/**
+	 * Resolve the field of the given step against the given object and iterate the objects it leads to. For the last step of the path these are
+	 * the objects of the given class found at the end of the path
+	 */
+	private Iterator<?> expand(int i, Object obj, Class<?> cls) {
+		ResolvedField field = steps[i].resolve(obj.getClass());
+		if (i == steps.length-1) {
+			if (cls.isAssignableFrom(field.type)) return single(field.get(obj));
+			if (!field.collection)
+				throw new UtilityError("The type of the final field '{}' cannot be cast to {}", field.name, cls.getCanonicalName());
+			if (!cls.isAssignableFrom(field.elementClass))
+				throw new UtilityError("The generic type of the final collection field '{}' cannot be cast to {}", field.name, cls.getCanonicalName());
+			return elements(field.get(obj));
+		}
+		if (field.collection) return elements(field.get(obj));
+		field.checkNotJava(obj);
+		return single(field.get(obj));
+	}
+
+	private static Iterator<?> single(Object obj) {
+		return (obj == null) ? Collections.emptyIterator() : Collections.singleton(obj).iterator();
+	}
+
+	private static Iterator<?> elements(Object collection) {
+		return (collection == null) ? Collections.emptyIterator() : ((Collection<?>)collection).iterator();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void delete(int i, Object obj, T embeddedObj) {
+		if (obj == null) return;
+		ResolvedField field = steps[i].resolve(obj.getClass());
+		if (i == steps.length-1) {
+			if (embeddedObj.getClass().isAssignableFrom(field.type)) {
+				if (embeddedObj.equals(field.get(obj))) field.set(obj, null);
+			} else if (field.collection) {
+				if (!embeddedObj.getClass().isAssignableFrom(field.elementClass))
+					throw new UtilityError("The generic type of the final collection field '{}' cannot be cast to {}", field.name, embeddedObj.getClass().getCanonicalName());
+				((Collection<T>)field.get(obj)).remove(embeddedObj);
+			} else {
+				throw new UtilityError("The type of the final field '{}' cannot be cast to {}", field.name, embeddedObj.getClass().getCanonicalName());
+			}
+			return;
+		}
+		if (field.collection) {
+			for (Object element : (Collection<?>)field.get(obj)) delete(i+1, element, embeddedObj);
+			return;
+		}
+		field.checkNotJava(obj);
+		delete(i+1, field.get(obj), embeddedObj);
+	}
+
+	@Override
+	public String toString() {
+		return "ObjectPath("+path+")";
+	}
+
+	/**
+	 * A depth first cursor following the path from an object at the given level of the path. The cursor holds an iterator for each level of the
+	 * path below its start level and only advances the iterators as far as is necessary to find the next object at the end of the path
+	 *
+	 * @param <T>	The class of the objects found at the end of the path
+	 */
+	private class Cursor<T> implements Iterator<T> {
+		private final Class<T> cls;
+		private final int start;
+		private final Iterator<?>[] levels = new Iterator<?>[steps.length+1];
+		private int depth;
+		private T next;
+
+		private Cursor(int start, Object obj, Class<T> cls) {
+			this.cls = cls;
+			this.start = start;
+			this.depth = start;
+			levels[start] = single(obj);
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean advance() {
+			while (depth >= start) {
+				Iterator<?> level = levels[depth];
+				if (!level.hasNext()) {
+					levels[depth--] = null;
+					continue;
+				}
+				Object obj = level.next();
+				if (obj == null) continue;
+				if (depth == steps.length) {
+					next = (T) obj;
+					return true;
+				}
+				levels[depth+1] = expand(depth, obj, cls);
+				depth++;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null || advance();
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			T t = next;
+			next = null;
+			return t;
+		}
+	}
+
+	/**
+	 * A spliterator following the path from the objects of a spliterator of the objects at the given level of the path. Splitting the spliterator
+	 * splits the objects at that level
+	 *
+	 * @param <T>	The class of the objects found at the end of the path
+	 */
+	private class PathSpliterator<T> implements Spliterator<T> {
+		private final int start;
+		private final Spliterator<?> roots;
+		private final Class<T> cls;
+		private Cursor<T> cursor;
+		private Object root;
+
+		private PathSpliterator(int start, Spliterator<?> roots, Class<T> cls) {
+			this.start = start;
+			this.roots = roots;
+			this.cls = cls;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			while (cursor == null || !cursor.hasNext()) {
+				if (!roots.tryAdvance(obj -> root = obj)) return false;
+				cursor = new Cursor<T>(start, root, cls);
+				root = null;
+			}
+			action.accept(cursor.next());
+			return true;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			Spliterator<?> split = roots.trySplit();
+			return (split == null) ? null : new PathSpliterator<T>(start, split, cls);
+		}
+
+		@Override
+		public long estimateSize() {
+			return roots.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return (roots.characteristics() & ORDERED) | NONNULL;
+		}
+	}
+
+	/**
+	 * A step of the path resolving its alias against the classes of the objects it is applied to
+	 */
+	private static class Step {
+		private final String alias;
+		private final Map<Class<?>, ResolvedField> fields = new ConcurrentHashMap<Class<?>, ResolvedField>(4);
+		private Step(String alias) { this.alias = alias; }
+		private ResolvedField resolve(Class<?> cls) {
+			ResolvedField field = fields.get(cls);
+			if (field == null) {
+				field = new ResolvedField(cls, ClassUtil.getField(cls, alias));
+				fields.put(cls, field);
+			}
+			return field;
+		}
+	}
+
+	/**
+	 * A field of a step resolved against a class with its compiled accessors
+	 */
+	private static class ResolvedField {
+		private final String name;
+		private final Class<?> type;
+		private final boolean collection;
+		private final boolean java;
+		private final Class<?> elementClass;
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private ResolvedField(Class<?> cls, Field field) {
+			this.name = field.getName();
+			this.type = field.getType();
+			this.collection = Collection.class.isAssignableFrom(type);
+			this.java = type.getName().startsWith("java.");
+			this.elementClass = collection ? ClassUtil.getFieldElementClass(cls, field) : null;
+			if (!field.isAccessible()) field.setAccessible(true);
+			try {
+				this.getter = withReceiver(field, lookup.unreflectGetter(field), GETTER_TYPE);
+			} catch (IllegalAccessException e) {
+				throw new UtilityError("Unable to compile accessors for field {}.{}", e, cls.getName(), name);
+			}
+			this.setter = setter(field);
+		}
+
+		/**
+		 * Static final fields are constants that must not be set, and some JVMs allow them to be set through a method handle, so they are compiled
+		 * without a setter
+		 */
+		private static MethodHandle setter(Field field) {
+			if (Modifier.isStatic(field.getModifiers()) && Modifier.isFinal(field.getModifiers())) return null;
+			try {
+				return withReceiver(field, lookup.unreflectSetter(field), SETTER_TYPE);
+			} catch (IllegalAccessException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * The accessors of static fields take no receiver so the object the path is applied to is dropped to give them the type of the accessors
+		 * of instance fields
+		 */
+		private static MethodHandle withReceiver(Field field, MethodHandle accessor, MethodType type) {
+			if (!Modifier.isStatic(field.getModifiers())) return accessor.asType(type);
+			return MethodHandles.dropArguments(accessor.asType(type.dropParameterTypes(0, 1)), 0, Object.class);
+		}
+
+		Object get(Object obj) {
+			try {
+				return (Object)getter.invokeExact(obj);
+			} catch (Throwable e) {
+				throw new UtilityError("Unable to get field {} of {}", e, name, obj);
+			}
+		}
+
+		void set(Object obj, Object value) {
+			if (setter == null) throw new UtilityError("The field {} of {} can not be set", name, obj);
+			try {
+				setter.invokeExact(obj, value);
+			} catch (Throwable e) {
+				throw new UtilityError("Unable to set field {} of {}", e, name, obj);
+			}
+		}
+
+		void checkNotJava(Object obj) {
+			if (java) throw new UtilityError("The non final field {}.{} provides a java.* object that is not a collection", obj.getClass().getName(), name);
+		}
+	}
+
+}
@@ -0,0 +1,341 @@
+package com.k2.Util;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.UUID;
+
+import com.k2.Util.KeyCodec.KeyType;
+import com.k2.Util.classes.ClassUtil;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This utility class provides static methods to encode keys in an order preserving binary form and to decode them again.
+ *
+ * Comparing the ordered binary forms of two keys of the same class as unsigned bytes gives the same order as comparing the keys field by field in
+ * the natural order of their values. Integral values, dates and UUIDs are written as their fixed width big endian bytes with the sign bit
+ * inverted, floating point values as their bits with the sign bit inverted for positive values and all bits inverted for negative values, chars as
+ * their two unsigned bytes, booleans as a single byte and enums as the four bytes of their ordinal. Strings are written as their UTF-8 bytes,
+ * with each zero byte escaped as a zero byte followed by 0xFF, terminated by a zero byte followed by 0x01 so that a string sorts before every
+ * string it is a prefix of. Strings are therefore ordered by their unicode code points. Other java types have no order preserving form.
+ *
+ * Composite keys are written as the values of their instance fields with the field annotated with RootId first, followed by the other fields in
+ * declaration order. Since every value is written in a form that is not the prefix of any other value of its type, the ordered form of the root
+ * id of a key is a prefix of the ordered form of every key with that root id, so the keys of an aggregate root form a contiguous range in any
+ * store sorted by the ordered form. The range is given by rootPrefix() and prefixEnd().
+ *
+ * @author simon
+ *
+ */
+public class OrderedKeyCodec {
+
+	/**
+	 * A comparator comparing byte arrays as unsigned bytes, giving the order of the keys encoded in the byte arrays
+	 */
+	public static final Comparator<byte[]> UNSIGNED_BYTES = OrderedKeyCodec::compare;
+
+	/**
+	 * The indexes of the fields of the key class codec of each composite key class in the order in which they are encoded, with the root id field
+	 * first
+	 */
+	private static final ClassValue<int[]> fieldOrders = new ClassValue<int[]>() {
+		@Override
+		protected int[] computeValue(Class<?> cls) {
+			KeyClassCodec<?> codec = KeyClassCodec.forClass(cls);
+			int[] order = new int[codec.size()];
+			int next = 0;
+			for (int i=0; i<codec.size(); i++) if (ClassUtil.isAnnotationPresent(codec.getField(i), RootId.class)) order[next++] = i;
+			for (int i=0; i<codec.size(); i++) if (!ClassUtil.isAnnotationPresent(codec.getField(i), RootId.class)) order[next++] = i;
+			return order;
+		}
+	};
+
+	static {
+		ClassUtil.addEvictionListener(OrderedKeyCodec::evict);
+	}
+
+	private OrderedKeyCodec() {}
+
+	/**
+	 * This static method discards the field order cached for the given class. It is called by ClassUtil.evict()
+	 * @param cls	The class whose cached key data is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		fieldOrders.remove(cls);
+	}
+
+	/**
+	 * This static method encodes the given key into a new byte array in its ordered form
+	 * @param key	The key to encode
+	 * @return	The ordered binary form of the key
+	 */
+	public static byte[] toBytes(Serializable key) {
+		ByteBuffer buffer = ByteBuffer.allocate(sizeOf(key));
+		encode(key, buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * This static method decodes a key of the given class from the given bytes of its ordered form
+	 * @param keyClass	The class of the key
+	 * @param bytes	The ordered binary form of the key
+	 * @return	The decoded key
+	 * @param <K>	The type of the key
+	 */
+	public static <K extends Serializable> K fromBytes(Class<K> keyClass, byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		K key = decode(keyClass, buffer);
+		if (buffer.hasRemaining())
+			throw new UtilityError("{} bytes remain after decoding a key of class {}", buffer.remaining(), keyClass.getName());
+		return key;
+	}
+
+	/**
+	 * This static method calculates the number of bytes of the ordered binary form of the given key
+	 * @param key	The key
+	 * @return	The number of bytes written when encoding the key
+	 */
+	public static int sizeOf(Serializable key) {
+		if (key == null) throw new UtilityError("Unable to encode a null key");
+		return sizeOfValue(key);
+	}
+
+	/**
+	 * This static method writes the ordered binary form of the given key into the given buffer at its current position
+	 * @param key	The key to encode
+	 * @param buffer	The buffer to write the key into
+	 */
+	public static void encode(Serializable key, ByteBuffer buffer) {
+		if (key == null) throw new UtilityError("Unable to encode a null key");
+		writeValue(key, buffer);
+	}
+
+	/**
+	 * This static method reads a key of the given class in its ordered binary form from the given buffer at its current position
+	 * @param keyClass	The class of the key
+	 * @param buffer	The buffer to read the key from
+	 * @return	The decoded key
+	 * @param <K>	The type of the key
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K extends Serializable> K decode(Class<K> keyClass, ByteBuffer buffer) {
+		try {
+			return (K) readValue(keyClass, buffer);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new UtilityError("The buffer ended before a key of class {} was decoded", e, keyClass.getName());
+		}
+	}
+
+	/**
+	 * This static method gets the prefix shared by the ordered binary forms of all the keys of the given class with the given root id. Keys of
+	 * classes without a root id field are their own root so the prefix is the ordered form of the given root key
+	 * @param keyClass	The class of the keys
+	 * @param rootKey	The value of the root id of the keys
+	 * @return	The ordered binary form of the root id
+	 */
+	public static byte[] rootPrefix(Class<? extends Serializable> keyClass, Serializable rootKey) {
+		if (KeyCodec.keyType(keyClass) == KeyType.COMPOSITE) {
+			KeyClassCodec<?> codec = KeyClassCodec.forClass(keyClass);
+			int[] order = fieldOrders.get(keyClass);
+			Field root = (order.length == 0) ? null : codec.getField(order[0]);
+			if (root == null || !ClassUtil.isAnnotationPresent(root, RootId.class))
+				throw new UtilityError("The key class {} does not define a RootId field", keyClass.getName());
+			if (rootKey == null || KeyCodec.keyType(rootKey.getClass()) != KeyCodec.keyType(root.getType()))
+				throw new UtilityError("The root key {} is not a value of the RootId field {}.{}", rootKey, keyClass.getName(), root.getName());
+		}
+		return toBytes(rootKey);
+	}
+
+	/**
+	 * This static method gets the least byte array that is greater than every byte array starting with the given prefix. The range of byte
+	 * arrays starting with the prefix is from the prefix inclusive to the prefix end exclusive
+	 * @param prefix	The prefix
+	 * @return	The exclusive upper bound of the byte arrays starting with the prefix or null if there is no upper bound
+	 */
+	public static byte[] prefixEnd(byte[] prefix) {
+		for (int i=prefix.length-1; i>=0; i--) {
+			if (prefix[i] != (byte)0xFF) {
+				byte[] end = Arrays.copyOf(prefix, i+1);
+				end[i]++;
+				return end;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * This static method compares the given byte arrays as unsigned bytes
+	 * @param lhs	The first byte array
+	 * @param rhs	The second byte array
+	 * @return	A negative value, zero or a positive value as the first array sorts before, equal to or after the second array
+	 */
+	public static int compare(byte[] lhs, byte[] rhs) {
+		int length = Math.min(lhs.length, rhs.length);
+		for (int i=0; i<length; i++) {
+			int diff = (lhs[i] & 0xFF) - (rhs[i] & 0xFF);
+			if (diff != 0) return diff;
+		}
+		return lhs.length - rhs.length;
+	}
+
+	private static int sizeOfValue(Object val) {
+		switch(KeyCodec.keyType(val.getClass())) {
+		case BOOLEAN:
+		case BYTE:
+			return 1;
+		case CHAR:
+		case SHORT:
+			return 2;
+		case INT:
+		case FLOAT:
+		case ENUM:
+			return 4;
+		case LONG:
+		case DOUBLE:
+		case DATE:
+			return 8;
+		case UUID:
+			return 16;
+		case STRING:
+			String s = (String)val;
+			int zeros = 0;
+			for (int i=0; i<s.length(); i++) if (s.charAt(i) == 0) zeros++;
+			return KeyCodec.utf8Length(s)+zeros+2;
+		case COMPOSITE:
+			KeyClassCodec<?> codec = KeyClassCodec.forClass(val.getClass());
+			int size = 0;
+			for (int i : fieldOrders.get(val.getClass())) size += sizeOfValue(codec.get(i, val));
+			return size;
+		default:
+			throw new UtilityError("There is no order preserving encoding of {}", val.getClass().getName());
+		}
+	}
+
+	private static void writeValue(Object val, ByteBuffer buffer) {
+		switch(KeyCodec.keyType(val.getClass())) {
+		case BOOLEAN:
+			buffer.put((byte)(((Boolean)val) ? 1 : 0));
+			break;
+		case BYTE:
+			buffer.put((byte)((Byte)val ^ 0x80));
+			break;
+		case CHAR:
+			buffer.putChar((Character)val);
+			break;
+		case SHORT:
+			buffer.putShort((short)((Short)val ^ 0x8000));
+			break;
+		case INT:
+			buffer.putInt((Integer)val ^ Integer.MIN_VALUE);
+			break;
+		case LONG:
+			buffer.putLong((Long)val ^ Long.MIN_VALUE);
+			break;
+		case FLOAT:
+			int floatBits = Float.floatToIntBits((Float)val);
+			buffer.putInt(floatBits ^ ((floatBits >> 31) | Integer.MIN_VALUE));
+			break;
+		case DOUBLE:
+			long doubleBits = Double.doubleToLongBits((Double)val);
+			buffer.putLong(doubleBits ^ ((doubleBits >> 63) | Long.MIN_VALUE));
+			break;
+		case DATE:
+			buffer.putLong(((Date)val).getTime() ^ Long.MIN_VALUE);
+			break;
+		case UUID:
+			buffer.putLong(((UUID)val).getMostSignificantBits() ^ Long.MIN_VALUE);
+			buffer.putLong(((UUID)val).getLeastSignificantBits() ^ Long.MIN_VALUE);
+			break;
+		case ENUM:
+			buffer.putInt(((Enum<?>)val).ordinal());
+			break;
+		case STRING:
+			String s = (String)val;
+			for (int i=0; i<s.length(); i++) {
+				if (s.charAt(i) == 0) {
+					buffer.put((byte)0);
+					buffer.put((byte)0xFF);
+				} else {
+					i = KeyCodec.writeUtf8(s, i, buffer);
+				}
+			}
+			buffer.put((byte)0);
+			buffer.put((byte)1);
+			break;
+		case COMPOSITE:
+			KeyClassCodec<?> codec = KeyClassCodec.forClass(val.getClass());
+			for (int i : fieldOrders.get(val.getClass())) writeValue(codec.get(i, val), buffer);
+			break;
+		default:
+			throw new UtilityError("There is no order preserving encoding of {}", val.getClass().getName());
+		}
+	}
+
+	private static Object readValue(Class<?> cls, ByteBuffer buffer) {
+		switch(KeyCodec.keyType(cls)) {
+		case BOOLEAN:
+			return buffer.get() != 0;
+		case BYTE:
+			return (byte)(buffer.get() ^ 0x80);
+		case CHAR:
+			return buffer.getChar();
+		case SHORT:
+			return (short)(buffer.getShort() ^ 0x8000);
+		case INT:
+			return buffer.getInt() ^ Integer.MIN_VALUE;
+		case LONG:
+			return buffer.getLong() ^ Long.MIN_VALUE;
+		case FLOAT:
+			int floatBits = buffer.getInt();
+			return Float.intBitsToFloat(floatBits ^ ((~floatBits >> 31) | Integer.MIN_VALUE));
+		case DOUBLE:
+			long doubleBits = buffer.getLong();
+			return Double.longBitsToDouble(doubleBits ^ ((~doubleBits >> 63) | Long.MIN_VALUE));
+		case DATE:
+			return KeyClassCodec.valueCodecFor(cls).fromTime.apply(buffer.getLong() ^ Long.MIN_VALUE);
+		case UUID:
+			return new UUID(buffer.getLong() ^ Long.MIN_VALUE, buffer.getLong() ^ Long.MIN_VALUE);
+		case ENUM:
+			int ordinal = buffer.getInt();
+			Object[] constants = cls.getEnumConstants();
+			if (ordinal < 0 || ordinal >= constants.length)
+				throw new UtilityError("The ordinal {} is not an ordinal of the enum {}", ordinal, cls.getName());
+			return constants[ordinal];
+		case STRING:
+			return readString(buffer);
+		case COMPOSITE:
+			KeyClassCodec<?> codec = KeyClassCodec.forClass(cls);
+			Object key = codec.newKey();
+			for (int i : fieldOrders.get(cls)) codec.set(i, key, readValue(codec.getField(i).getType(), buffer));
+			return key;
+		default:
+			throw new UtilityError("There is no order preserving encoding of {}", cls.getName());
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		// The escaped length is found first so that the unescaped bytes can be copied into an array of the right size
+		int start = buffer.position();
+		int length = 0;
+		int i = start;
+		for (;; i++) {
+			if (buffer.get(i) == 0) {
+				if (buffer.get(++i) == 1) break;
+			}
+			length++;
+		}
+		byte[] bytes = new byte[length];
+		for (int j=0, k=start; j<length; j++, k++) {
+			bytes[j] = buffer.get(k);
+			if (bytes[j] == 0) k++;
+		}
+		buffer.position(i+1);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
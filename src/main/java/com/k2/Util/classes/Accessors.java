@@ -0,0 +1,372 @@
+package com.k2.Util.classes;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This static utility compiles fields and methods into functional accessors.
+ *
+ * Public instance methods of public classes that are visible to this library are linked directly through the LambdaMetafactory so that the
+ * resulting function calls the method as a direct call. All other members are accessed through method handles adapted to take and return objects.
+ *
+ * Members of type int, long, double and boolean can also be compiled into primitive functions which read and write the value without boxing it.
+ *
+ * @author simon
+ *
+ */
+class Accessors {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType INT_GETTER_TYPE = MethodType.methodType(int.class, Object.class);
+	private static final MethodType INT_SETTER_TYPE = MethodType.methodType(void.class, Object.class, int.class);
+	private static final MethodType LONG_GETTER_TYPE = MethodType.methodType(long.class, Object.class);
+	private static final MethodType LONG_SETTER_TYPE = MethodType.methodType(void.class, Object.class, long.class);
+	private static final MethodType DOUBLE_GETTER_TYPE = MethodType.methodType(double.class, Object.class);
+	private static final MethodType DOUBLE_SETTER_TYPE = MethodType.methodType(void.class, Object.class, double.class);
+	private static final MethodType BOOLEAN_GETTER_TYPE = MethodType.methodType(boolean.class, Object.class);
+	private static final MethodType BOOLEAN_SETTER_TYPE = MethodType.methodType(void.class, Object.class, boolean.class);
+
+	private Accessors() {}
+
+	/**
+	 * A consumer of an object and a boolean value, the boolean counterpart of ObjIntConsumer
+	 * @param <T>	The type of the object
+	 */
+	@FunctionalInterface
+	interface ObjBooleanConsumer<T> {
+		void accept(T t, boolean value);
+	}
+
+	/**
+	 * Compile a function returning the value returned by the given getter method or held in the given field
+	 * @param member	The getter method or field
+	 * @return	A function returning the value of the member of its argument
+	 */
+	static Function<Object,Object> getter(Member member) {
+		try {
+			Function<Object,Object> linked = link(member, Function.class, "apply", GETTER_TYPE);
+			return (linked != null) ? linked : new HandleGetter(handle(member, true).asType(GETTER_TYPE));
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile getter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a consumer calling the given setter method or setting the given field
+	 * @param member	The setter method or field
+	 * @return	A consumer setting the member of its first argument to its second argument
+	 */
+	static BiConsumer<Object,Object> setter(Member member) {
+		try {
+			BiConsumer<Object,Object> linked = link(member, BiConsumer.class, "accept", SETTER_TYPE);
+			return (linked != null) ? linked : new HandleSetter(handle(member, false).asType(SETTER_TYPE));
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile setter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a function returning the int value of the given getter method or field without boxing it
+	 * @param member	The getter method or field of type int
+	 * @return	A function returning the int value of the member of its argument
+	 */
+	static ToIntFunction<Object> intGetter(Member member) {
+		try {
+			ToIntFunction<Object> linked = link(member, ToIntFunction.class, "applyAsInt", INT_GETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, true).asType(INT_GETTER_TYPE);
+			return object -> {
+				try {
+					return (int) handle.invokeExact(object);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile int getter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a consumer setting the given int setter method or field without boxing the value
+	 * @param member	The setter method or field of type int
+	 * @return	A consumer setting the member of its first argument to its int argument
+	 */
+	static ObjIntConsumer<Object> intSetter(Member member) {
+		try {
+			ObjIntConsumer<Object> linked = link(member, ObjIntConsumer.class, "accept", INT_SETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, false).asType(INT_SETTER_TYPE);
+			return (object, value) -> {
+				try {
+					handle.invokeExact(object, value);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile int setter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a function returning the long value of the given getter method or field without boxing it
+	 * @param member	The getter method or field of type long
+	 * @return	A function returning the long value of the member of its argument
+	 */
+	static ToLongFunction<Object> longGetter(Member member) {
+		try {
+			ToLongFunction<Object> linked = link(member, ToLongFunction.class, "applyAsLong", LONG_GETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, true).asType(LONG_GETTER_TYPE);
+			return object -> {
+				try {
+					return (long) handle.invokeExact(object);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile long getter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a consumer setting the given long setter method or field without boxing the value
+	 * @param member	The setter method or field of type long
+	 * @return	A consumer setting the member of its first argument to its long argument
+	 */
+	static ObjLongConsumer<Object> longSetter(Member member) {
+		try {
+			ObjLongConsumer<Object> linked = link(member, ObjLongConsumer.class, "accept", LONG_SETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, false).asType(LONG_SETTER_TYPE);
+			return (object, value) -> {
+				try {
+					handle.invokeExact(object, value);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile long setter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a function returning the double value of the given getter method or field without boxing it
+	 * @param member	The getter method or field of type double
+	 * @return	A function returning the double value of the member of its argument
+	 */
+	static ToDoubleFunction<Object> doubleGetter(Member member) {
+		try {
+			ToDoubleFunction<Object> linked = link(member, ToDoubleFunction.class, "applyAsDouble", DOUBLE_GETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, true).asType(DOUBLE_GETTER_TYPE);
+			return object -> {
+				try {
+					return (double) handle.invokeExact(object);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile double getter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a consumer setting the given double setter method or field without boxing the value
+	 * @param member	The setter method or field of type double
+	 * @return	A consumer setting the member of its first argument to its double argument
+	 */
+	static ObjDoubleConsumer<Object> doubleSetter(Member member) {
+		try {
+			ObjDoubleConsumer<Object> linked = link(member, ObjDoubleConsumer.class, "accept", DOUBLE_SETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, false).asType(DOUBLE_SETTER_TYPE);
+			return (object, value) -> {
+				try {
+					handle.invokeExact(object, value);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile double setter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a predicate returning the boolean value of the given getter method or field without boxing it
+	 * @param member	The getter method or field of type boolean
+	 * @return	A predicate returning the boolean value of the member of its argument
+	 */
+	static Predicate<Object> booleanGetter(Member member) {
+		try {
+			Predicate<Object> linked = link(member, Predicate.class, "test", BOOLEAN_GETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, true).asType(BOOLEAN_GETTER_TYPE);
+			return object -> {
+				try {
+					return (boolean) handle.invokeExact(object);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile boolean getter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Compile a consumer setting the given boolean setter method or field without boxing the value
+	 * @param member	The setter method or field of type boolean
+	 * @return	A consumer setting the member of its first argument to its boolean argument
+	 */
+	static ObjBooleanConsumer<Object> booleanSetter(Member member) {
+		try {
+			ObjBooleanConsumer<Object> linked = link(member, ObjBooleanConsumer.class, "accept", BOOLEAN_SETTER_TYPE);
+			if (linked != null) return linked;
+			MethodHandle handle = handle(member, false).asType(BOOLEAN_SETTER_TYPE);
+			return (object, value) -> {
+				try {
+					handle.invokeExact(object, value);
+				} catch (Throwable e) {
+					throw rethrow(e);
+				}
+			};
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compile boolean setter for {}.{}", e, member.getDeclaringClass().getName(), member.getName());
+		}
+	}
+
+	/**
+	 * Link the given member directly to an instance of the given functional interface whose erased method has the given type
+	 * @return	The linked function or null if the member cannot be linked directly
+	 */
+	@SuppressWarnings("unchecked")
+	private static <F> F link(Member member, Class<?> functionType, String name, MethodType erasedType) throws Throwable {
+		if (!(member instanceof Method) || !canLink((Method)member)) return null;
+		Method method = (Method)member;
+		MethodType instantiatedType;
+		if (erasedType.parameterCount() == 1) {
+			Class<?> returnType = erasedType.returnType().isPrimitive() ? method.getReturnType() : box(method.getReturnType());
+			instantiatedType = MethodType.methodType(returnType, method.getDeclaringClass());
+		} else {
+			Class<?> valueType = erasedType.parameterType(1).isPrimitive() ? method.getParameterTypes()[0] : box(method.getParameterTypes()[0]);
+			instantiatedType = MethodType.methodType(void.class, method.getDeclaringClass(), valueType);
+		}
+		CallSite site = LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(functionType), erasedType, lookup.unreflect(method), instantiatedType);
+		return (F) site.getTarget().invoke();
+	}
+
+	/**
+	 * Get a method handle reading or writing the given member. Static members are adapted to ignore the object argument
+	 */
+	private static MethodHandle handle(Member member, boolean read) throws IllegalAccessException {
+		MethodHandle handle;
+		if (member instanceof Method) {
+			handle = lookup.unreflect((Method)member);
+		} else if (read) {
+			handle = lookup.unreflectGetter((Field)member);
+		} else {
+			handle = lookup.unreflectSetter((Field)member);
+		}
+		if (Modifier.isStatic(member.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+		return handle;
+	}
+
+	/**
+	 * Lambdas are spun as classes hosted by this class so they can only be linked to public instance methods of public classes whose types are
+	 * visible from the class loader of this library
+	 */
+	private static boolean canLink(Method method) {
+		if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) return false;
+		if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) return false;
+		if (!isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) return false;
+		for (Class<?> parameterType : method.getParameterTypes())
+			if (!isVisible(parameterType)) return false;
+		return true;
+	}
+
+	private static boolean isVisible(Class<?> cls) {
+		while (cls.isArray()) cls = cls.getComponentType();
+		if (cls.isPrimitive()) return true;
+		try {
+			return Class.forName(cls.getName(), false, Accessors.class.getClassLoader()) == cls;
+		} catch (ClassNotFoundException | LinkageError e) {
+			logger.trace("The class {} is not visible to the accessor compiler", cls.getName());
+			return false;
+		}
+	}
+
+	private static Class<?> box(Class<?> cls) {
+		return cls.isPrimitive() ? MethodType.methodType(cls).wrap().returnType() : cls;
+	}
+
+	private static Error rethrow(Throwable e) {
+		if (e instanceof RuntimeException) throw (RuntimeException)e;
+		if (e instanceof Error) return (Error)e;
+		return new UtilityError(e);
+	}
+
+	/**
+	 * A getter function invoking a method handle
+	 */
+	private static class HandleGetter implements Function<Object,Object> {
+		private final MethodHandle handle;
+		HandleGetter(MethodHandle handle) { this.handle = handle; }
+		@Override
+		public Object apply(Object object) {
+			try {
+				return handle.invokeExact(object);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+	}
+
+	/**
+	 * A setter consumer invoking a method handle
+	 */
+	private static class HandleSetter implements BiConsumer<Object,Object> {
+		private final MethodHandle handle;
+		HandleSetter(MethodHandle handle) { this.handle = handle; }
+		@Override
+		public void accept(Object object, Object value) {
+			try {
+				handle.invokeExact(object, value);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+	}
+
+}
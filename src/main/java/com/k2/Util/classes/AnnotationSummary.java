@@ -0,0 +1,335 @@
+package com.k2.Util.classes;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinColumns;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import com.k2.Util.RootId;
+
+/**
+ * The annotation summary records which of the registered annotation types are present on a class and on each of its declared fields and methods.
+ *
+ * The summary of a class is built in a single pass over the annotations of the class and its declared members. The registered annotations present
+ * on each member are recorded as a bitset with one bit for each registered annotation type and the annotation instances are cached alongside the
+ * bitset so that checking for and getting a registered annotation involves no reflection.
+ *
+ * Annotation types are registered on first use and the common persistence annotations are registered in advance. When an annotation type is
+ * registered after the summary of a class has been built the summary is rebuilt on its next use for that type. At most 64 annotation types are
+ * registered at any one time, any further annotation types are read directly from the annotated element until a registered annotation type is
+ * evicted. Evicting an annotation type through evict() frees its bit for the next annotation type to be registered so that reloaded annotation
+ * types do not use up the bits. Each registration is given a new id and a summary records the id of each registration it includes rather than
+ * the annotation type, so summaries neither pin evicted annotation types nor report the annotations of an earlier registration of the same bit.
+ *
+ * @author simon
+ *
+ */
+public class AnnotationSummary {
+
+	private static final int MAX_REGISTERED = 64;
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	/**
+	 * The bit of a registered annotation type and the id of its registration
+	 */
+	private static class Registration {
+		private final int index;
+		private final long id;
+		private final long bit;
+		private Registration(int index, long id) {
+			this.index = index;
+			this.id = id;
+			this.bit = 1L << index;
+		}
+	}
+
+	private static final Map<Class<? extends Annotation>, Registration> registered = new ConcurrentHashMap<Class<? extends Annotation>, Registration>();
+	/**
+	 * The id of the registration holding each bit or 0 if the bit is free. The array is replaced rather than modified when a registration changes
+	 */
+	private static volatile long[] registrationIds = new long[MAX_REGISTERED];
+	private static long nextId = 1L;
+
+	private static final ClassValue<AnnotationSummary> summaries = new ClassValue<AnnotationSummary>() {
+		@Override
+		protected AnnotationSummary computeValue(Class<?> cls) { return new AnnotationSummary(cls); }
+	};
+
+	static {
+		register(Id.class);
+		register(EmbeddedId.class);
+		register(IdClass.class);
+		register(Column.class);
+		register(ManyToOne.class);
+		register(OneToMany.class);
+		register(JoinColumn.class);
+		register(JoinColumns.class);
+		register(Entity.class);
+		register(Table.class);
+		register(RootId.class);
+	}
+
+	private final Class<?> cls;
+	private final long[] known;
+	private final long classBits;
+	private final Annotation[] classAnnotations;
+	private final Map<Member, Integer> memberIndex;
+	private final Member[] members;
+	private final long[] memberBits;
+	private final Annotation[][] memberAnnotations;
+
+	private AnnotationSummary(Class<?> cls) {
+		this.cls = cls;
+		this.known = registrationIds;
+		this.classBits = bits(cls);
+		this.classAnnotations = annotations(cls, classBits);
+
+		Field[] fields = ClassUtil.getDeclaredFields(cls);
+		Method[] methods = ClassUtil.getDeclaredMethods(cls);
+		int size = fields.length+methods.length;
+		this.members = new Member[size];
+		this.memberBits = new long[size];
+		this.memberAnnotations = new Annotation[size][];
+		this.memberIndex = new HashMap<Member, Integer>(size*2);
+		int i = 0;
+		for (Field f : fields) add(i++, f, f);
+		for (Method m : methods) add(i++, m, m);
+	}
+
+	private void add(int i, Member member, AnnotatedElement element) {
+		members[i] = member;
+		memberBits[i] = bits(element);
+		memberAnnotations[i] = annotations(element, memberBits[i]);
+		memberIndex.put(member, i);
+	}
+
+	private boolean includes(Registration registration) {
+		return known[registration.index] == registration.id;
+	}
+
+	private long bits(AnnotatedElement element) {
+		long bits = 0L;
+		for (Annotation annotation : element.getAnnotations()) {
+			Registration registration = registered.get(annotation.annotationType());
+			if (registration != null && includes(registration)) bits |= registration.bit;
+		}
+		return bits;
+	}
+
+	/**
+	 * The registered annotations of an element are held in the order of their bits
+	 */
+	private Annotation[] annotations(AnnotatedElement element, long bits) {
+		if (bits == 0L) return NO_ANNOTATIONS;
+		Annotation[] annotations = new Annotation[Long.bitCount(bits)];
+		for (Annotation annotation : element.getAnnotations()) {
+			Registration registration = registered.get(annotation.annotationType());
+			if (registration != null && (bits & registration.bit) != 0 && includes(registration))
+				annotations[Long.bitCount(bits & (registration.bit-1))] = annotation;
+		}
+		return annotations;
+	}
+
+	/**
+	 * Register the given annotation type so that its presence is recorded in annotation summaries
+	 * @param annotationType	The annotation type to register
+	 * @return	The bit of the annotation type in the annotation summaries or 0 if no more annotation types can be registered
+	 */
+	public static long register(Class<? extends Annotation> annotationType) {
+		Registration registration = registration(annotationType);
+		return (registration == null) ? 0L : registration.bit;
+	}
+
+	private static Registration registration(Class<? extends Annotation> annotationType) {
+		Registration registration = registered.get(annotationType);
+		if (registration == null) {
+			synchronized (registered) {
+				registration = registered.get(annotationType);
+				if (registration == null) {
+					long[] ids = registrationIds;
+					int index = 0;
+					while (index < ids.length && ids[index] != 0L) index++;
+					if (index == ids.length) return null;
+					registration = new Registration(index, nextId++);
+					ids = ids.clone();
+					ids[index] = registration.id;
+					registrationIds = ids;
+					registered.put(annotationType, registration);
+				}
+			}
+		}
+		return registration;
+	}
+
+	private static void unregister(Class<?> annotationType) {
+		synchronized (registered) {
+			Registration registration = registered.remove(annotationType);
+			if (registration == null) return;
+			long[] ids = registrationIds.clone();
+			ids[registration.index] = 0L;
+			registrationIds = ids;
+		}
+	}
+
+	/**
+	 * Get the annotation summary of the given class including the given registration
+	 * @param cls	The class whose annotation summary is required
+	 * @param registration	The registration that must be included in the summary
+	 * @return	The summary of the class or null if the annotation type was evicted while the summary was built
+	 */
+	private static AnnotationSummary forClass(Class<?> cls, Registration registration) {
+		AnnotationSummary summary = summaries.get(cls);
+		if (!summary.includes(registration)) {
+			summaries.remove(cls);
+			summary = summaries.get(cls);
+			if (!summary.includes(registration)) return null;
+		}
+		return summary;
+	}
+
+	/**
+	 * Get the annotation summary of the given class. The summary is built on first use and cached against the class
+	 * @param cls	The class whose annotation summary is required
+	 * @return	The summary of the class
+	 */
+	public static AnnotationSummary forClass(Class<?> cls) { return summaries.get(cls); }
+
+	/**
+	 * Discard the cached annotation summary of the given class and free the bit of the class if it is a registered annotation type
+	 * @param cls	The class whose annotation summary is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		summaries.remove(cls);
+		if (cls.isAnnotation()) unregister(cls);
+	}
+
+	/**
+	 * Check whether the given annotation is present on the given class
+	 * @param cls	The class to check
+	 * @param annotationType	The annotation type
+	 * @return	True if the annotation is present on the class
+	 */
+	public static boolean isAnnotationPresent(Class<?> cls, Class<? extends Annotation> annotationType) {
+		Registration registration = registration(annotationType);
+		AnnotationSummary summary = (registration == null) ? null : forClass(cls, registration);
+		if (summary == null) return cls.isAnnotationPresent(annotationType);
+		return (summary.classBits & registration.bit) != 0;
+	}
+
+	/**
+	 * Get the given annotation of the given class
+	 * @param cls	The class whose annotation is required
+	 * @param annotationType	The annotation type
+	 * @return	The annotation or null if the annotation is not present on the class
+	 * @param <A>	The annotation type
+	 */
+	public static <A extends Annotation> A getAnnotation(Class<?> cls, Class<A> annotationType) {
+		Registration registration = registration(annotationType);
+		AnnotationSummary summary = (registration == null) ? null : forClass(cls, registration);
+		if (summary == null) return cls.getAnnotation(annotationType);
+		return annotationType.cast(get(summary.classAnnotations, summary.classBits, registration.bit));
+	}
+
+	/**
+	 * Check whether the given annotation is present on the given field or method
+	 * @param member	The field or method to check
+	 * @param annotationType	The annotation type
+	 * @return	True if the annotation is present on the member
+	 */
+	public static boolean isAnnotationPresent(Member member, Class<? extends Annotation> annotationType) {
+		Registration registration = registration(annotationType);
+		AnnotationSummary summary = (registration == null) ? null : forClass(member.getDeclaringClass(), registration);
+		if (summary != null) {
+			Integer i = summary.memberIndex.get(member);
+			if (i != null) return (summary.memberBits[i] & registration.bit) != 0;
+		}
+		return ((AnnotatedElement)member).isAnnotationPresent(annotationType);
+	}
+
+	/**
+	 * Get the given annotation of the given field or method
+	 * @param member	The field or method whose annotation is required
+	 * @param annotationType	The annotation type
+	 * @return	The annotation or null if the annotation is not present on the member
+	 * @param <A>	The annotation type
+	 */
+	public static <A extends Annotation> A getAnnotation(Member member, Class<A> annotationType) {
+		Registration registration = registration(annotationType);
+		AnnotationSummary summary = (registration == null) ? null : forClass(member.getDeclaringClass(), registration);
+		if (summary != null) {
+			Integer i = summary.memberIndex.get(member);
+			if (i != null) return annotationType.cast(get(summary.memberAnnotations[i], summary.memberBits[i], registration.bit));
+		}
+		return ((AnnotatedElement)member).getAnnotation(annotationType);
+	}
+
+	/**
+	 * Get the declared fields of the given class carrying the given annotation
+	 * @param cls	The class whose fields are required
+	 * @param annotationType	The annotation type
+	 * @return	The annotated fields in the order in which they are declared
+	 */
+	public static Field[] getAnnotatedFields(Class<?> cls, Class<? extends Annotation> annotationType) {
+		List<Field> fields = new ArrayList<Field>();
+		for (Member member : getAnnotatedMembers(cls, annotationType)) if (member instanceof Field) fields.add((Field)member);
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	/**
+	 * Get the declared methods of the given class carrying the given annotation
+	 * @param cls	The class whose methods are required
+	 * @param annotationType	The annotation type
+	 * @return	The annotated methods in the order in which they are declared
+	 */
+	public static Method[] getAnnotatedMethods(Class<?> cls, Class<? extends Annotation> annotationType) {
+		List<Method> methods = new ArrayList<Method>();
+		for (Member member : getAnnotatedMembers(cls, annotationType)) if (member instanceof Method) methods.add((Method)member);
+		return methods.toArray(new Method[methods.size()]);
+	}
+
+	private static List<Member> getAnnotatedMembers(Class<?> cls, Class<? extends Annotation> annotationType) {
+		List<Member> annotated = new ArrayList<Member>();
+		Registration registration = registration(annotationType);
+		AnnotationSummary summary = (registration == null) ? null : forClass(cls, registration);
+		if (summary == null) {
+			for (Field f : ClassUtil.getDeclaredFields(cls)) if (f.isAnnotationPresent(annotationType)) annotated.add(f);
+			for (Method m : ClassUtil.getDeclaredMethods(cls)) if (m.isAnnotationPresent(annotationType)) annotated.add(m);
+			return annotated;
+		}
+		for (int i=0; i<summary.members.length; i++) if ((summary.memberBits[i] & registration.bit) != 0) annotated.add(summary.members[i]);
+		return annotated;
+	}
+
+	private static Annotation get(Annotation[] annotations, long bits, long bit) {
+		if ((bits & bit) == 0) return null;
+		return annotations[Long.bitCount(bits & (bit-1))];
+	}
+
+	/**
+	 * @return	The summarised class
+	 */
+	public Class<?> getSummarisedClass() { return cls; }
+
+	@Override
+	public String toString() {
+		return "AnnotationSummary("+cls.getName()+")";
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.k2.Util.classes;
+
+/**
+ * The BooleanSetter interface extends the Setter interface for fields and setter methods of type boolean so that their values can be set without
+ * boxing them. The generic set() method remains available and unboxes the value
+ * @author simon
+ *
+ * @param <E>	The class for which the setter is to be invoked
+ */
+public interface BooleanSetter<E> extends Setter<E,Boolean> {
+
+	/**
+	 * This method sets the boolean value of the underlying field or calls the underlying setter method with it
+	 * @param object		The object on which the value is to be set
+	 * @param value		The value to set
+	 */
+	public void setBoolean(E object, boolean value);
+
+	@Override
+	public default void set(E object, Boolean value) {
+		setBoolean(object, value);
+	}
+
+}
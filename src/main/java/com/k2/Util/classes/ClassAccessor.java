@@ -0,0 +1,340 @@
+package com.k2.Util.classes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The class accessor gets and sets all the properties of a class by index through a single object.
+ *
+ * The properties of a class are its instance fields and the properties identified by its getter and setter methods. Each property is read through
+ * its getter method if it has one or otherwise through its field, and written through its setter method if it has one or otherwise through its
+ * field if the field is not final. The properties are indexed in the order of the fields of the class followed by properties that only have
+ * methods.
+ *
+ * Where possible a sub class of the class accessor is compiled for the class by the InMemoryCompiler that reads and writes the public
+ * members of the class directly through a switch on the property index. Properties that cannot be accessed directly, and all properties of
+ * classes for which no accessor can be generated, are accessed through compiled getters and setters.
+ *
+ * @author simon
+ *
+ * @param <E>	The class whose properties are accessed
+ */
+public class ClassAccessor<E> {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final ClassValue<ClassAccessor<?>> accessors = new ClassValue<ClassAccessor<?>>() {
+		@Override
+		protected ClassAccessor<?> computeValue(Class<?> cls) { return create(cls); }
+	};
+
+	private final Class<E> accessedClass;
+	private final String[] aliases;
+	private final Class<?>[] types;
+	private final Map<String, Integer> indexes;
+	protected final Getter<E,Object>[] getters;
+	protected final Setter<E,Object>[] setters;
+
+	/**
+	 * Create a class accessor for the given properties
+	 * @param accessedClass	The class whose properties are accessed
+	 * @param aliases	The aliases of the properties
+	 * @param types	The types of the properties
+	 * @param getters	The getters of the properties, null for properties that cannot be read
+	 * @param setters	The setters of the properties, null for properties that cannot be written
+	 */
+	protected ClassAccessor(Class<E> accessedClass, String[] aliases, Class<?>[] types, Getter<E,Object>[] getters, Setter<E,Object>[] setters) {
+		this.accessedClass = accessedClass;
+		this.aliases = aliases;
+		this.types = types;
+		this.getters = getters;
+		this.setters = setters;
+		Map<String, Integer> indexes = new HashMap<String, Integer>(aliases.length*2);
+		for (int i=0; i<aliases.length; i++) indexes.put(aliases[i], i);
+		this.indexes = indexes;
+	}
+
+	/**
+	 * Get the class accessor for the given class. The accessor is created on first use and cached against the class
+	 * @param cls	The class whose properties are to be accessed
+	 * @return	The class accessor for the class
+	 * @param <E>	The class whose properties are accessed
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> ClassAccessor<E> forClass(Class<E> cls) {
+		return (ClassAccessor<E>) accessors.get(cls);
+	}
+
+	/**
+	 * Discard the cached class accessor of the given class
+	 * @param cls	The class whose class accessor is to be discarded
+	 */
+	public static void evict(Class<?> cls) { accessors.remove(cls); }
+
+	/**
+	 * @return	The class whose properties are accessed
+	 */
+	public Class<E> getAccessedClass() { return accessedClass; }
+
+	/**
+	 * @return	The number of properties of the class
+	 */
+	public int size() { return aliases.length; }
+
+	/**
+	 * @return	The aliases of the properties of the class in index order
+	 */
+	public List<String> getAliases() { return Collections.unmodifiableList(Arrays.asList(aliases)); }
+
+	/**
+	 * Get the alias of the property with the given index
+	 * @param index	The index of the property
+	 * @return	The alias of the property
+	 */
+	public String getAlias(int index) { return aliases[index]; }
+
+	/**
+	 * Get the index of the property with the given alias
+	 * @param alias	The alias of the property
+	 * @return	The index of the property or -1 if the class has no property with the given alias
+	 */
+	public int indexOf(String alias) {
+		Integer index = indexes.get(alias);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * Get the type of the property with the given index
+	 * @param index	The index of the property
+	 * @return	The type of the property
+	 */
+	public Class<?> getJavaType(int index) { return types[index]; }
+
+	/**
+	 * @param index	The index of the property
+	 * @return	True if the property with the given index can be read
+	 */
+	public boolean isReadable(int index) { return getters[index] != null; }
+
+	/**
+	 * @param index	The index of the property
+	 * @return	True if the property with the given index can be written
+	 */
+	public boolean isWritable(int index) { return setters[index] != null; }
+
+	/**
+	 * Get the value of the property with the given index from the given object
+	 * @param object	The object from which to get the value
+	 * @param index	The index of the property
+	 * @return	The value of the property
+	 */
+	public Object get(E object, int index) {
+		Getter<E,Object> getter = getters[index];
+		if (getter == null) throw new UtilityError("The property {}.{} cannot be read", accessedClass.getName(), aliases[index]);
+		return getter.get(object);
+	}
+
+	/**
+	 * Set the value of the property with the given index on the given object
+	 * @param object	The object on which to set the value
+	 * @param index	The index of the property
+	 * @param value	The value to set
+	 */
+	public void set(E object, int index, Object value) {
+		Setter<E,Object> setter = setters[index];
+		if (setter == null) throw new UtilityError("The property {}.{} cannot be written", accessedClass.getName(), aliases[index]);
+		setter.set(object, value);
+	}
+
+	/**
+	 * Get the value of the property with the given alias from the given object
+	 * @param object	The object from which to get the value
+	 * @param alias	The alias of the property
+	 * @return	The value of the property
+	 */
+	public Object get(E object, String alias) { return get(object, checkedIndexOf(alias)); }
+
+	/**
+	 * Set the value of the property with the given alias on the given object
+	 * @param object	The object on which to set the value
+	 * @param alias	The alias of the property
+	 * @param value	The value to set
+	 */
+	public void set(E object, String alias, Object value) { set(object, checkedIndexOf(alias), value); }
+
+	private int checkedIndexOf(String alias) {
+		int index = indexOf(alias);
+		if (index < 0) throw new UtilityError("The class {} has no property {}", accessedClass.getName(), alias);
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassAccessor("+accessedClass.getName()+")";
+	}
+
+	/**
+	 * The members through which a property is read and written
+	 */
+	private static class Property {
+		private final String alias;
+		private Member readMember;
+		private Member writeMember;
+		private Class<?> type;
+		Property(String alias) { this.alias = alias; }
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <E> ClassAccessor<E> create(Class<E> cls) {
+		List<Property> properties = getProperties(cls);
+		int size = properties.size();
+		String[] aliases = new String[size];
+		Class<?>[] types = new Class<?>[size];
+		Getter<E,Object>[] getters = new Getter[size];
+		Setter<E,Object>[] setters = new Setter[size];
+		for (int i=0; i<size; i++) {
+			Property p = properties.get(i);
+			aliases[i] = p.alias;
+			types[i] = p.type;
+			if (p.readMember != null) getters[i] = ClassUtil.createGetter(cls, (Class)p.type, p.readMember);
+			if (p.writeMember != null) setters[i] = ClassUtil.createSetter(cls, (Class)p.type, p.writeMember);
+		}
+
+		// Each generated accessor is isolated in its own class loader so that it is unloaded with the accessed class and its name only needs to be
+		// repeatable for its compiled byte code to be reused
+		String className = "GeneratedClassAccessor_"+cls.getName().replace('.', '_').replace('$', '_');
+		String source = generateSource(cls, className, properties);
+		if (source != null) {
+			try {
+				Class<? extends ClassAccessor> accessorClass = InMemoryCompiler.getDefault()
+						.compile(ClassAccessor.class.getClassLoader(), ClassAccessor.class.getPackage().getName()+"."+className, source)
+						.asSubclass(ClassAccessor.class);
+				return (ClassAccessor<E>) accessorClass
+						.getConstructor(Class.class, String[].class, Class[].class, Getter[].class, Setter[].class)
+						.newInstance(cls, aliases, types, getters, setters);
+			} catch (ReflectiveOperationException | RuntimeException | LinkageError | UtilityError e) {
+				logger.trace("Unable to generate a class accessor for {} - {}", cls.getName(), e.getMessage());
+			}
+		}
+		return new ClassAccessor<E>(cls, aliases, types, getters, setters);
+	}
+
+	private static List<Property> getProperties(Class<?> cls) {
+		List<Property> properties = new ArrayList<Property>();
+		for (PropertyIndex.Property indexed : PropertyIndex.forClass(cls).getProperties()) {
+			Field f = indexed.getField();
+			if (f != null && Modifier.isStatic(f.getModifiers())) f = null;
+			Method readMethod = indexed.getReadMethod();
+			if (f == null && readMethod == null && indexed.getWriteMethods().length == 0) continue;
+			Property p = new Property(indexed.getAlias());
+			p.type = (readMethod != null) ? readMethod.getReturnType() : (f != null) ? f.getType() : indexed.getWriteMethods()[0].getParameterTypes()[0];
+			p.readMember = (readMethod != null) ? readMethod : f;
+			for (Method m : indexed.getWriteMethods()) {
+				if (m.getParameterTypes()[0].isAssignableFrom(p.type)) {
+					p.writeMember = m;
+					break;
+				}
+			}
+			if (p.writeMember == null && f != null && !Modifier.isFinal(f.getModifiers())) p.writeMember = f;
+			properties.add(p);
+		}
+		return properties;
+	}
+
+	/**
+	 * Generate the source of a class accessor for the given class reading and writing public members directly
+	 * @return	The source of the class accessor or null if no members of the class can be accessed directly
+	 */
+	private static String generateSource(Class<?> cls, String className, List<Property> properties) {
+		if (!isAccessible(cls)) return null;
+		String typeName = cls.getCanonicalName();
+		StringBuilder gets = new StringBuilder();
+		StringBuilder sets = new StringBuilder();
+		for (int i=0; i<properties.size(); i++) {
+			Property p = properties.get(i);
+			if (isAccessible(p.readMember)) {
+				gets.append("\t\tcase ").append(i).append(": return o.").append(p.readMember.getName())
+					.append((p.readMember instanceof Method) ? "();\n" : ";\n");
+			}
+			if (isAccessible(p.writeMember)) {
+				String valueType = boxedName(p.type);
+				if (p.writeMember instanceof Method) {
+					sets.append("\t\tcase ").append(i).append(": o.").append(p.writeMember.getName())
+						.append("((").append(valueType).append(")v); return;\n");
+				} else {
+					sets.append("\t\tcase ").append(i).append(": o.").append(p.writeMember.getName())
+						.append(" = (").append(valueType).append(")v; return;\n");
+				}
+			}
+		}
+		if (gets.length() == 0 && sets.length() == 0) return null;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(ClassAccessor.class.getPackage().getName()).append(";\n\n");
+		// The compiled byte code is cached against the source so the source records the signature of every member it accesses
+		for (Property p : properties) {
+			if (isAccessible(p.readMember)) sb.append("// ").append(p.readMember).append('\n');
+			if (isAccessible(p.writeMember)) sb.append("// ").append(p.writeMember).append('\n');
+		}
+		sb.append("public class ").append(className).append(" extends ").append(ClassAccessor.class.getName()).append("<").append(typeName).append("> {\n\n");
+		sb.append("\tpublic ").append(className).append("(Class<").append(typeName).append("> c, String[] a, Class<?>[] t, ")
+			.append(Getter.class.getName()).append("<").append(typeName).append(",Object>[] g, ")
+			.append(Setter.class.getName()).append("<").append(typeName).append(",Object>[] s) { super(c, a, t, g, s); }\n\n");
+		sb.append("\t@Override\n\tpublic Object get(").append(typeName).append(" o, int i) {\n\t\tswitch (i) {\n").append(gets)
+			.append("\t\tdefault: return super.get(o, i);\n\t\t}\n\t}\n\n");
+		sb.append("\t@Override\n\tpublic void set(").append(typeName).append(" o, int i, Object v) {\n\t\tswitch (i) {\n").append(sets)
+			.append("\t\tdefault: super.set(o, i, v);\n\t\t}\n\t}\n\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private static String boxedName(Class<?> type) {
+		if (type.isPrimitive()) return java.lang.invoke.MethodType.methodType(type).wrap().returnType().getName();
+		return type.getCanonicalName();
+	}
+
+	private static boolean isAccessible(Member member) {
+		if (member == null || !Modifier.isPublic(member.getModifiers())) return false;
+		if (member instanceof Method) {
+			Method m = (Method) member;
+			if (!isAccessible(m.getReturnType())) return false;
+			for (Class<?> type : m.getParameterTypes()) if (!isAccessible(type)) return false;
+		} else {
+			if (!isAccessible(((Field)member).getType())) return false;
+		}
+		return isAccessible(member.getDeclaringClass());
+	}
+
+	/**
+	 * Generated accessors are compiled against the class path of this library and defined in its class loader so they can only refer to public
+	 * types visible to this library. Types of the unnamed package cannot be imported by an accessor in a named package
+	 */
+	private static boolean isAccessible(Class<?> cls) {
+		while (cls.isArray()) cls = cls.getComponentType();
+		if (cls.isPrimitive()) return true;
+		if (cls.getCanonicalName() == null) return false;
+		if (cls.getName().indexOf('.') < 0) return false;
+		for (Class<?> c = cls; c != null; c = c.getEnclosingClass())
+			if (!Modifier.isPublic(c.getModifiers())) return false;
+		try {
+			return Class.forName(cls.getName(), false, ClassAccessor.class.getClassLoader()) == cls;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+}
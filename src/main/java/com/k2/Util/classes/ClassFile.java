@@ -0,0 +1,249 @@
+package com.k2.Util.classes;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The ClassFile reads the class level details of a class file directly from its bytes without loading the class.
+ *
+ * Only the constant pool, the name of the class, its super class, its interfaces, its runtime visible class annotations and whether it is a local or
+ * anonymous class are read. Fields and methods are skipped.
+ *
+ * @author simon
+ *
+ */
+public class ClassFile {
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int ACC_INTERFACE = 0x0200;
+	private static final int ACC_ANNOTATION = 0x2000;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELD_REF = 9;
+	private static final int CONSTANT_METHOD_REF = 10;
+	private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+	private static final String ENCLOSING_METHOD = "EnclosingMethod";
+
+	private final int accessFlags;
+	private final String className;
+	private final String superClassName;
+	private final List<String> interfaceNames;
+	private final List<String> annotationNames;
+	private final boolean localOrAnonymous;
+
+	private ClassFile(int accessFlags, String className, String superClassName, List<String> interfaceNames, List<String> annotationNames, boolean localOrAnonymous) {
+		this.accessFlags = accessFlags;
+		this.className = className;
+		this.superClassName = superClassName;
+		this.interfaceNames = Collections.unmodifiableList(interfaceNames);
+		this.annotationNames = Collections.unmodifiableList(annotationNames);
+		this.localOrAnonymous = localOrAnonymous;
+	}
+
+	/**
+	 * @return	The binary name of the class
+	 */
+	public String getClassName() { return className; }
+
+	/**
+	 * @return	The binary name of the super class of the class or null if the class is java.lang.Object
+	 */
+	public String getSuperClassName() { return superClassName; }
+
+	/**
+	 * @return	The binary names of the interfaces directly implemented by the class
+	 */
+	public List<String> getInterfaceNames() { return interfaceNames; }
+
+	/**
+	 * @return	The binary names of the runtime visible annotations declared directly on the class
+	 */
+	public List<String> getAnnotationNames() { return annotationNames; }
+
+	/**
+	 * @return	True if the class file defines an interface, including annotation types
+	 */
+	public boolean isInterface() { return (accessFlags & ACC_INTERFACE) != 0; }
+
+	/**
+	 * @return	True if the class file defines an annotation type
+	 */
+	public boolean isAnnotation() { return (accessFlags & ACC_ANNOTATION) != 0; }
+
+	/**
+	 * @return	True if the class file defines a local or anonymous class. Only local and anonymous classes carry an EnclosingMethod attribute
+	 */
+	public boolean isLocalOrAnonymous() { return localOrAnonymous; }
+
+	/**
+	 * Read the class level details of the class file from the given input stream. The stream is not closed
+	 * @param is	The input stream of the bytes of the class file
+	 * @return	The class file details
+	 * @throws IOException	If the stream could not be read
+	 */
+	public static ClassFile read(InputStream is) throws IOException {
+		DataInputStream in = new DataInputStream((is instanceof BufferedInputStream) ? is : new BufferedInputStream(is));
+		if (in.readInt() != MAGIC) throw new UtilityError("The stream does not contain a class file");
+		in.readUnsignedShort(); // minor version
+		in.readUnsignedShort(); // major version
+
+		// Only UTF8 and Class constants are held, all other constants are skipped
+		int poolSize = in.readUnsignedShort();
+		String[] utf8s = new String[poolSize];
+		int[] classes = new int[poolSize];
+		for (int i=1; i<poolSize; i++) {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+			case CONSTANT_UTF8:
+				utf8s[i] = in.readUTF();
+				break;
+			case CONSTANT_CLASS:
+				classes[i] = in.readUnsignedShort();
+				break;
+			case CONSTANT_STRING:
+			case CONSTANT_METHOD_TYPE:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				skip(in, 2);
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				skip(in, 3);
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELD_REF:
+			case CONSTANT_METHOD_REF:
+			case CONSTANT_INTERFACE_METHOD_REF:
+			case CONSTANT_NAME_AND_TYPE:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				skip(in, 4);
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				skip(in, 8);
+				// Long and double constants occupy two entries of the constant pool
+				i++;
+				break;
+			default:
+				throw new UtilityError("Unrecognised constant pool tag {} at index {}", tag, i);
+			}
+		}
+
+		int accessFlags = in.readUnsignedShort();
+		String className = toClassName(utf8s[classes[in.readUnsignedShort()]]);
+		int superIndex = in.readUnsignedShort();
+		String superClassName = (superIndex == 0) ? null : toClassName(utf8s[classes[superIndex]]);
+		int interfaceCount = in.readUnsignedShort();
+		List<String> interfaceNames = new ArrayList<String>(interfaceCount);
+		for (int i=0; i<interfaceCount; i++) interfaceNames.add(toClassName(utf8s[classes[in.readUnsignedShort()]]));
+
+		skipMembers(in); // fields
+		skipMembers(in); // methods
+
+		List<String> annotationNames = new ArrayList<String>();
+		boolean localOrAnonymous = false;
+		int attributeCount = in.readUnsignedShort();
+		for (int i=0; i<attributeCount; i++) {
+			String attributeName = utf8s[in.readUnsignedShort()];
+			int length = in.readInt();
+			if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+				int annotationCount = in.readUnsignedShort();
+				for (int j=0; j<annotationCount; j++) annotationNames.add(readAnnotation(in, utf8s));
+			} else if (ENCLOSING_METHOD.equals(attributeName)) {
+				localOrAnonymous = true;
+				skip(in, length);
+			} else {
+				skip(in, length);
+			}
+		}
+		return new ClassFile(accessFlags, className, superClassName, interfaceNames, annotationNames, localOrAnonymous);
+	}
+
+	private static String toClassName(String internalName) {
+		return internalName.replace('/', '.');
+	}
+
+	private static void skip(DataInputStream in, long n) throws IOException {
+		while (n > 0) {
+			long skipped = in.skip(n);
+			if (skipped <= 0) {
+				in.readByte();
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+
+	private static void skipMembers(DataInputStream in) throws IOException {
+		int count = in.readUnsignedShort();
+		for (int i=0; i<count; i++) {
+			skip(in, 6); // access flags, name and descriptor
+			int attributeCount = in.readUnsignedShort();
+			for (int j=0; j<attributeCount; j++) {
+				skip(in, 2);
+				skip(in, in.readInt() & 0xFFFFFFFFL);
+			}
+		}
+	}
+
+	/**
+	 * Read an annotation returning the binary name of its type and skipping its element values
+	 */
+	private static String readAnnotation(DataInputStream in, String[] utf8s) throws IOException {
+		String descriptor = utf8s[in.readUnsignedShort()];
+		int pairCount = in.readUnsignedShort();
+		for (int i=0; i<pairCount; i++) {
+			skip(in, 2);
+			skipElementValue(in, utf8s);
+		}
+		// Annotation type descriptors have the form Lpackage/Name;
+		return toClassName(descriptor.substring(1, descriptor.length()-1));
+	}
+
+	private static void skipElementValue(DataInputStream in, String[] utf8s) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case 'e':
+			skip(in, 4);
+			break;
+		case '@':
+			readAnnotation(in, utf8s);
+			break;
+		case '[':
+			int count = in.readUnsignedShort();
+			for (int i=0; i<count; i++) skipElementValue(in, utf8s);
+			break;
+		default:
+			skip(in, 2);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ClassFile("+className+")";
+	}
+
+}
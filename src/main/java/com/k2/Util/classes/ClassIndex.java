@@ -0,0 +1,202 @@
+package com.k2.Util.classes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.classes.ClassUtil.AnnotationCheck;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The ClassIndex reads the class index written at compile time by the ClassIndexProcessor.
+ *
+ * The index lists the classes of each compiled package along with the annotations present on each class so that the classes of a package
+ * can be identified without scanning the class path.
+ *
+ * An index is only returned for a package if every class path root that provides the package has been indexed. If any root providing the package
+ * has not been indexed then the class path must be scanned to find all the classes of the package.
+ *
+ * The use of the index can be disabled by setting the system property 'k2.util.classIndex' to 'false'
+ *
+ * @author simon
+ *
+ */
+public class ClassIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * The location of the index resources on the class path
+	 */
+	public static final String INDEX_LOCATION = "META-INF/k2/classes/";
+	/**
+	 * The resource listing the indexed packages
+	 */
+	public static final String PACKAGES_RESOURCE = INDEX_LOCATION+"packages";
+	/**
+	 * The system property used to disable the use of the class index
+	 */
+	public static final String ENABLED_PROPERTY = "k2.util.classIndex";
+
+	private final ClassLoader classLoader;
+	private final String packageName;
+	private final Map<String, Set<String>> entries;
+
+	private ClassIndex(ClassLoader classLoader, String packageName, Map<String, Set<String>> entries) {
+		this.classLoader = classLoader;
+		this.packageName = packageName;
+		this.entries = entries;
+	}
+
+	/**
+	 * @return	True unless the use of the class index has been disabled through the system property 'k2.util.classIndex'
+	 */
+	public static boolean isEnabled() {
+		return ! "false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+	}
+
+	/**
+	 * Get the index of the given package and its sub packages from the given class loader
+	 * @param classLoader	The class loader from which to read the index
+	 * @param packageName	The name of the package for which the index is required
+	 * @return	The class index for the package or null if the class index is disabled or any of the class path roots that provide the package
+	 * 			have not been indexed
+	 */
+	public static ClassIndex forPackage(ClassLoader classLoader, String packageName) {
+		if (!isEnabled() || packageName == null || packageName.isEmpty()) return null;
+		String packagePath = packageName.replace('.', '/');
+		try {
+			Map<String, URL> indexedRoots = new HashMap<String, URL>();
+			Enumeration<URL> indexes = classLoader.getResources(PACKAGES_RESOURCE);
+			while (indexes.hasMoreElements()) {
+				URL url = indexes.nextElement();
+				indexedRoots.put(rootOf(url, PACKAGES_RESOURCE), url);
+			}
+			if (indexedRoots.isEmpty()) return null;
+
+			Set<String> packageRoots = new HashSet<String>();
+			Enumeration<URL> packageUrls = classLoader.getResources(packagePath);
+			while (packageUrls.hasMoreElements()) {
+				String root = rootOf(packageUrls.nextElement(), packagePath);
+				if (!indexedRoots.containsKey(root)) {
+					logger.trace("The class path root {} provides package {} but has not been indexed", root, packageName);
+					return null;
+				}
+				packageRoots.add(root);
+			}
+
+			Map<String, Set<String>> entries = new LinkedHashMap<String, Set<String>>();
+			for (String root : packageRoots) {
+				for (String indexedPackage : readLines(indexedRoots.get(root))) {
+					if (indexedPackage.equals(packageName) || indexedPackage.startsWith(packageName+".")) {
+						for (String line : readLines(new URL(root+INDEX_LOCATION+indexedPackage))) {
+							int pos = line.indexOf('=');
+							if (pos < 0) {
+								entries.put(line, Collections.<String>emptySet());
+							} else {
+								Set<String> annotationNames = new HashSet<String>();
+								Collections.addAll(annotationNames, line.substring(pos+1).split(","));
+								entries.put(line.substring(0, pos), annotationNames);
+							}
+						}
+					}
+				}
+			}
+			logger.trace("Read {} indexed classes for package {}", entries.size(), packageName);
+			return new ClassIndex(classLoader, packageName, entries);
+		} catch (IOException e) {
+			logger.warn("Unable to read the class index for package {} - {}", packageName, e.getMessage());
+			return null;
+		}
+	}
+
+	private static String rootOf(URL url, String resource) {
+		String s = url.toString();
+		if (s.endsWith("/")) s = s.substring(0, s.length()-1);
+		if (!s.endsWith(resource)) throw new UtilityError("The resource URL {} does not end with {}", s, resource);
+		return s.substring(0, s.length()-resource.length());
+	}
+
+	private static List<String> readLines(URL url) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try (InputStream is = url.openStream(); BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty()) lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * @return	The name of the indexed package
+	 */
+	public String getPackageName() { return packageName; }
+
+	/**
+	 * @return	The class loader from which the index was read
+	 */
+	public ClassLoader getClassLoader() { return classLoader; }
+
+	/**
+	 * @return	The names of all the indexed classes
+	 */
+	public Set<String> getClassNames() { return Collections.unmodifiableSet(entries.keySet()); }
+
+	/**
+	 * Get the names of the annotations present on the given indexed class
+	 * @param className	The binary name of the indexed class
+	 * @return	The names of the annotations present on the class, including meta annotations and inherited annotations.
+	 * 			Null if the class is not in the index
+	 */
+	public Set<String> getAnnotationNames(String className) {
+		Set<String> annotationNames = entries.get(className);
+		return (annotationNames == null) ? null : Collections.unmodifiableSet(annotationNames);
+	}
+
+	/**
+	 * Get the names of the indexed classes that match the given annotations
+	 * @param annotationCheck	Identifies whether all or any of the given annotations must be present
+	 * @param annotationClasses	The annotations to check. If no annotations are given all indexed classes match
+	 * @return	The names of the matching classes
+	 */
+	@SafeVarargs
+	public final List<String> getClassNames(AnnotationCheck annotationCheck, Class<? extends Annotation> ... annotationClasses) {
+		List<String> classNames = new ArrayList<String>();
+		for (Map.Entry<String, Set<String>> entry : entries.entrySet()) {
+			if (matches(entry.getValue(), annotationCheck, annotationClasses))
+				classNames.add(entry.getKey());
+		}
+		return classNames;
+	}
+
+	@SafeVarargs
+	static boolean matches(Set<String> annotationNames, AnnotationCheck annotationCheck, Class<? extends Annotation> ... annotationClasses) {
+		if (annotationClasses.length == 0) return true;
+		for (Class<? extends Annotation> annotationClass : annotationClasses) {
+			boolean present = annotationNames.contains(annotationClass.getName());
+			if (present && annotationCheck == AnnotationCheck.ANY) return true;
+			if (!present && annotationCheck == AnnotationCheck.ALL) return false;
+		}
+		return (annotationCheck == AnnotationCheck.ALL);
+	}
+
+}
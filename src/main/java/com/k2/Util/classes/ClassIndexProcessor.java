@@ -0,0 +1,207 @@
+package com.k2.Util.classes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.annotation.Inherited;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * This annotation processor writes the class index read by ClassIndex.
+ *
+ * For every package compiled the processor writes the resource META-INF/k2/classes/{package name} listing the binary name of each
+ * class in the package followed by the names of the annotations present on the class, including meta annotations and annotations
+ * inherited from super classes. The names of all the indexed packages are listed in the resource META-INF/k2/classes/packages.
+ *
+ * Only top level and member types are indexed. Local and anonymous classes are not visible to annotation processors so they are not indexed, and
+ * the ClassScanner skips them so that scans and the index list the same classes.
+ *
+ * Existing index entries in the class output are merged with the classes compiled in the current compilation so that incremental
+ * builds do not drop classes that were not recompiled.
+ *
+ * The processor is registered as a service of this library so it runs automatically when the library is on the compile class path.
+ *
+ * @author simon
+ *
+ */
+@SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends AbstractProcessor {
+
+	/**
+	 * The indexed classes and their annotation names by package name
+	 */
+	private final Map<String, Map<String, Set<String>>> index = new TreeMap<String, Map<String, Set<String>>>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			if (!index.isEmpty()) writeIndex();
+			return false;
+		}
+		for (Element element : roundEnv.getRootElements()) {
+			if (isType(element)) indexType((TypeElement)element);
+		}
+		return false;
+	}
+
+	private static boolean isType(Element element) {
+		ElementKind kind = element.getKind();
+		return (kind == ElementKind.CLASS || kind == ElementKind.INTERFACE || kind == ElementKind.ENUM || kind == ElementKind.ANNOTATION_TYPE);
+	}
+
+	/**
+	 * Add the given type and all its member types to the index
+	 * @param type	The type to index
+	 */
+	private void indexType(TypeElement type) {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		// Classes of the unnamed package cannot be found by package name so are not indexed
+		if (packageName.isEmpty()) return;
+		Map<String, Set<String>> classes = index.get(packageName);
+		if (classes == null) {
+			classes = new TreeMap<String, Set<String>>();
+			index.put(packageName, classes);
+		}
+
+		Set<String> annotationNames = new TreeSet<String>();
+		addAnnotations(type, annotationNames, new HashSet<String>());
+		TypeElement superType = superType(type);
+		while (superType != null) {
+			for (AnnotationMirror am : superType.getAnnotationMirrors()) {
+				TypeElement annotationType = (TypeElement) am.getAnnotationType().asElement();
+				if (annotationType.getAnnotation(Inherited.class) != null)
+					addAnnotation(annotationType, annotationNames, new HashSet<String>());
+			}
+			superType = superType(superType);
+		}
+		classes.put(processingEnv.getElementUtils().getBinaryName(type).toString(), annotationNames);
+
+		for (Element enclosed : type.getEnclosedElements()) {
+			if (isType(enclosed)) indexType((TypeElement)enclosed);
+		}
+	}
+
+	private TypeElement superType(TypeElement type) {
+		TypeMirror superClass = type.getSuperclass();
+		if (superClass.getKind() != TypeKind.DECLARED) return null;
+		TypeElement superType = (TypeElement) ((DeclaredType)superClass).asElement();
+		if (superType.getQualifiedName().contentEquals(Object.class.getName())) return null;
+		return superType;
+	}
+
+	private void addAnnotations(Element element, Set<String> annotationNames, Set<String> visited) {
+		for (AnnotationMirror am : element.getAnnotationMirrors()) {
+			addAnnotation((TypeElement) am.getAnnotationType().asElement(), annotationNames, visited);
+		}
+	}
+
+	private void addAnnotation(TypeElement annotationType, Set<String> annotationNames, Set<String> visited) {
+		String name = processingEnv.getElementUtils().getBinaryName(annotationType).toString();
+		if (!visited.add(name)) return;
+		annotationNames.add(name);
+		// Meta annotations of the standard annotation package are not interesting to anyone scanning for classes
+		if (!name.startsWith("java.lang.annotation."))
+			addAnnotations(annotationType, annotationNames, visited);
+	}
+
+	/**
+	 * Write the package resources and the packages resource merging them with any existing resources in the class output
+	 */
+	private void writeIndex() {
+		Set<String> packageNames = new TreeSet<String>(index.keySet());
+		packageNames.addAll(readResource(ClassIndex.PACKAGES_RESOURCE));
+
+		for (Map.Entry<String, Map<String, Set<String>>> entry : index.entrySet()) {
+			Map<String, Set<String>> classes = entry.getValue();
+			for (String line : readResource(ClassIndex.INDEX_LOCATION+entry.getKey())) {
+				int pos = line.indexOf('=');
+				String className = (pos < 0) ? line : line.substring(0, pos);
+				if (!classes.containsKey(className) && stillExists(className)) {
+					Set<String> annotationNames = new TreeSet<String>();
+					if (pos >= 0 && pos < line.length()-1)
+						for (String annotationName : line.substring(pos+1).split(","))
+							annotationNames.add(annotationName);
+					classes.put(className, annotationNames);
+				}
+			}
+			StringBuilder sb = new StringBuilder();
+			for (Map.Entry<String, Set<String>> cls : classes.entrySet()) {
+				sb.append(cls.getKey());
+				if (!cls.getValue().isEmpty()) {
+					sb.append('=');
+					boolean first = true;
+					for (String annotationName : cls.getValue()) {
+						if (!first) sb.append(',');
+						sb.append(annotationName);
+						first = false;
+					}
+				}
+				sb.append('\n');
+			}
+			writeResource(ClassIndex.INDEX_LOCATION+entry.getKey(), sb.toString());
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (String packageName : packageNames) sb.append(packageName).append('\n');
+		writeResource(ClassIndex.PACKAGES_RESOURCE, sb.toString());
+	}
+
+	private boolean stillExists(String binaryName) {
+		return processingEnv.getElementUtils().getTypeElement(binaryName.replace('$', '.')) != null;
+	}
+
+	private Set<String> readResource(String name) {
+		Set<String> lines = new TreeSet<String>();
+		try {
+			FileObject fo = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", name);
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(fo.openInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (!line.isEmpty()) lines.add(line);
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			// No existing index resource
+		}
+		return lines;
+	}
+
+	private void writeResource(String name, String content) {
+		try {
+			FileObject fo = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", name);
+			try (Writer writer = fo.openWriter()) {
+				writer.write(content);
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.WARNING, "Unable to write class index resource "+name+" - "+e.getMessage());
+		}
+	}
+
+}
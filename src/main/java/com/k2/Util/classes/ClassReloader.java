@@ -1,75 +1,270 @@
 package com.k2.Util.classes;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.net.URI;
-
-import javax.tools.FileObject;
-import javax.tools.ForwardingJavaFileManager;
-import javax.tools.JavaFileManager;
-import javax.tools.JavaFileObject;
-import javax.tools.SimpleJavaFileObject;
-import javax.tools.ToolProvider;
-import javax.tools.JavaFileManager.Location;
-import javax.tools.JavaFileObject.Kind;
-
-import com.k2.Util.ObjectUtil;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The ClassReloader allows classes to be replaced with new implementations without restarting the JVM.
+ *
+ * Each batch of classes given to the reloader is defined in a new generation. A generation is a class loader whose parent is the parent of the
+ * reloader and which defines the classes of its batch itself rather than delegating them to its parent, so a generation can replace classes of the
+ * class path as well as classes of earlier generations. The classes of a batch can refer to each other and to the classes of the parent but not to
+ * the classes of other generations. Generations are numbered from 1 in the order in which they are created.
+ *
+ * The reloader is itself a class loader that loads each class from the latest live generation defining the class and all other classes from its
+ * parent, so it can be used to find the current implementation of any class.
+ *
+ * When a generation is retired the cached data of all its classes is evicted through ClassUtil.evict() so that the reflection and entity caches of
+ * this library no longer refer to them and the generation can be unloaded once the application releases its own references to its classes.
+ *
+ * @author simon
+ *
+ */
 public class ClassReloader extends ClassLoader {
 
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	static {
+		registerAsParallelCapable();
+	}
+
+	private final InMemoryCompiler compiler;
+	private final List<Generation> generations = new ArrayList<Generation>();
+	private int generationCount = 0;
+
+	/**
+	 * Get a class reloader defining its generations as children of the given class loader and compiling sources through the default in memory
+	 * compiler
+	 * @param parent	The parent class loader
+	 * @return	A new class reloader
+	 */
 	public static ClassReloader forParentClassLoader(ClassLoader parent) {
-		return new ClassReloader(parent);
-	}
-	
-    private ClassReloader(ClassLoader parent) {
-        super(parent);
-    }
-/*
-	@SuppressWarnings("unchecked")
-	public Class<?> loadClass(String packageName, String className, String source) {
-
-            
-		String fullClassName = packageName.replace('.', '/')+"/"+className;
-		
-		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		
-		SimpleJavaFileObject simpleJavaFileObject = new SimpleJavaFileObject(URI.create(fullClassName + ".java"), Kind.SOURCE) {
-
-			@Override
-			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
-				return source;
+		return new ClassReloader(parent, InMemoryCompiler.getDefault());
+	}
+
+	/**
+	 * Get a class reloader defining its generations as children of the given class loader and compiling sources through the given compiler
+	 * @param parent	The parent class loader
+	 * @param compiler	The compiler used to compile the sources of reloaded classes
+	 * @return	A new class reloader
+	 */
+	public static ClassReloader forParentClassLoader(ClassLoader parent, InMemoryCompiler compiler) {
+		return new ClassReloader(parent, compiler);
+	}
+
+	private ClassReloader(ClassLoader parent, InMemoryCompiler compiler) {
+		super(parent);
+		this.compiler = compiler;
+	}
+
+	/**
+	 * Compile the given sources in one compilation and define the compiled classes in a new generation. The generation previously defining each of
+	 * the classes is not retired
+	 * @param sources	The sources of the classes keyed by the fully qualified name of the class defined by each source
+	 * @return	The new generation
+	 */
+	public Generation define(Map<String, String> sources) {
+		return defineByteCode(compiler.getByteCode(sources));
+	}
+
+	/**
+	 * Define the given compiled classes in a new generation
+	 * @param byteCode	The byte code of the classes keyed by the binary name of each class
+	 * @return	The new generation
+	 */
+	public Generation defineByteCode(Map<String, byte[]> byteCode) {
+		synchronized (generations) {
+			Generation generation = new Generation(this, ++generationCount, new LinkedHashMap<String, byte[]>(byteCode));
+			generations.add(generation);
+			logger.trace("Defined generation {} of {} classes", generation.getNumber(), byteCode.size());
+			return generation;
+		}
+	}
+
+	/**
+	 * Compile the given sources in one compilation into a new generation and retire the live generations defining any of the reloaded classes
+	 * @param sources	The sources of the classes keyed by the fully qualified name of the class defined by each source
+	 * @return	The new generation
+	 */
+	public Generation reload(Map<String, String> sources) {
+		Generation generation = define(sources);
+		for (Generation previous : getGenerations()) {
+			if (previous == generation) continue;
+			if (!Collections.disjoint(previous.getClassNames(), generation.getClassNames())) retire(previous);
+		}
+		return generation;
+	}
+
+	/**
+	 * Compile the given source into a new generation retiring the live generation defining the class and load the reloaded class
+	 * @param className	The fully qualified name of the class defined by the source
+	 * @param source	The source of the class
+	 * @return	The reloaded class
+	 */
+	public Class<?> reload(String className, String source) {
+		return reload(Collections.singletonMap(className, source)).getClass(className);
+	}
+
+	/**
+	 * Retire the given generation. The generation is removed from the reloader and the cached data of all the classes loaded by the generation is
+	 * evicted
+	 * @param generation	The generation to retire
+	 */
+	public void retire(Generation generation) {
+		if (generation.reloader != this) throw new UtilityError("Generation {} does not belong to this class reloader", generation.getNumber());
+		synchronized (generations) {
+			if (!generations.remove(generation)) return;
+		}
+		generation.retired = true;
+		int evicted = 0;
+		for (String className : generation.byteCode.keySet()) {
+			Class<?> cls = generation.findLoaded(className);
+			if (cls != null) {
+				ClassUtil.evict(cls);
+				evicted++;
+			}
+		}
+		logger.trace("Retired generation {} evicting {} loaded classes", generation.getNumber(), evicted);
+	}
+
+	/**
+	 * Retire all the live generations of this reloader
+	 */
+	public void retireAll() {
+		for (Generation generation : getGenerations()) retire(generation);
+	}
+
+	/**
+	 * @return	The live generations of this reloader in the order in which they were defined
+	 */
+	public List<Generation> getGenerations() {
+		synchronized (generations) {
+			return new ArrayList<Generation>(generations);
+		}
+	}
+
+	/**
+	 * @return	The latest live generation or null if the reloader has no live generations
+	 */
+	public Generation getCurrentGeneration() {
+		synchronized (generations) {
+			return generations.isEmpty() ? null : generations.get(generations.size()-1);
+		}
+	}
+
+	/**
+	 * @return	The number of generations defined by this reloader including retired generations
+	 */
+	public int getGenerationCount() {
+		synchronized (generations) {
+			return generationCount;
+		}
+	}
+
+	/**
+	 * Get the latest live generation defining the given class
+	 * @param className	The binary name of the class
+	 * @return	The latest live generation defining the class or null if the class is not defined by a live generation
+	 */
+	public Generation getGeneration(String className) {
+		synchronized (generations) {
+			for (int i=generations.size()-1; i>=0; i--) {
+				if (generations.get(i).byteCode.containsKey(className)) return generations.get(i);
+			}
+			return null;
+		}
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		Generation generation = getGeneration(name);
+		if (generation != null) return generation.loadClass(name, resolve);
+		return super.loadClass(name, resolve);
+	}
+
+	/**
+	 * A generation of reloaded classes. Each generation is a class loader defining the classes of one batch
+	 */
+	public static class Generation extends ClassLoader {
+
+		static {
+			registerAsParallelCapable();
+		}
+
+		private final ClassReloader reloader;
+		private final int number;
+		private final Map<String, byte[]> byteCode;
+		private volatile boolean retired = false;
+
+		private Generation(ClassReloader reloader, int number, Map<String, byte[]> byteCode) {
+			super(reloader.getParent());
+			this.reloader = reloader;
+			this.number = number;
+			this.byteCode = byteCode;
+		}
+
+		/**
+		 * @return	The number of this generation
+		 */
+		public int getNumber() { return number; }
+
+		/**
+		 * @return	True if this generation has been retired
+		 */
+		public boolean isRetired() { return retired; }
+
+		/**
+		 * @return	The binary names of the classes defined by this generation
+		 */
+		public Set<String> getClassNames() { return Collections.unmodifiableSet(byteCode.keySet()); }
+
+		/**
+		 * Get the class with the given name from this generation
+		 * @param className	The binary name of the class
+		 * @return	The class defined by this generation
+		 */
+		public Class<?> getClass(String className) {
+			if (!byteCode.containsKey(className)) throw new UtilityError("The class {} is not defined in generation {}", className, number);
+			try {
+				return loadClass(className);
+			} catch (ClassNotFoundException | LinkageError e) {
+				throw new UtilityError("Unable to load class {} from generation {}", e, className, number);
 			}
-			
-			@Override
-			public OutputStream openOutputStream() throws IOException{
-				return byteArrayOutputStream;
+		}
+
+		private Class<?> findLoaded(String className) {
+			return findLoadedClass(className);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!byteCode.containsKey(name)) return super.loadClass(name, resolve);
+			// The classes of this generation are defined here rather than by the parent so that they replace classes of the parent
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> cls = findLoadedClass(name);
+				if (cls == null) {
+					byte[] bytes = byteCode.get(name);
+					cls = defineClass(name, bytes, 0, bytes.length);
+				}
+				if (resolve) resolveClass(cls);
+				return cls;
 			}
-		};
-		
-		@SuppressWarnings({ "rawtypes" })
-		JavaFileManager javaFileManager = new ForwardingJavaFileManager(
-				ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, null, null)) {
-						@Override
-						public JavaFileObject getJavaFileForOutput(
-								Location location,String className,
-								JavaFileObject.Kind kind,
-								FileObject sibling)  {
-							return simpleJavaFileObject;
-						}
-		};
-		
-		ToolProvider.getSystemJavaCompiler().getTask(null, javaFileManager, null, null, null, ObjectUtil.singletonList(simpleJavaFileObject)).call();
-		
-		byte[] classData = byteArrayOutputStream.toByteArray();
-
-		
-//        byte[] classData = source.getBytes();
-
-        return defineClass(packageName+"."+className,
-                classData, 0, classData.length);
-
-
-    }
-*/
-}
\ No newline at end of file
+		}
+
+		@Override
+		public String toString() {
+			return "ClassReloader.Generation("+number+(retired ? ", retired)" : ")");
+		}
+	}
+
+}
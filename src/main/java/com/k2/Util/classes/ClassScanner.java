@@ -0,0 +1,610 @@
+package com.k2.Util.classes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.lang.invoke.MethodHandles;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.classes.ClassUtil.AnnotationCheck;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The ClassScanner finds the classes of a package and its sub packages on the class path.
+ *
+ * Class files are read directly from directories and jars using ClassFile so that no class is loaded or initialised by a scan. Each class file is
+ * read once and the full set of annotations present on the class, including meta annotations and annotations inherited from super classes, is
+ * resolved in the same pass. All the requested annotations are then checked against that set so the cost of a scan does not grow with the number
+ * of annotations being checked. Classes may also be filtered on the types to which they must be assignable.
+ *
+ * Local and anonymous classes are not returned by a scan, matching the classes listed by the compile time ClassIndex which cannot see them.
+ *
+ * The class path roots providing the package are found as resources of the class loader. Jars built without directory entries are not found as
+ * resources so the jars on the class path of the class loader are also listed for entries of the package.
+ *
+ * Each class path root providing the package is scanned as a separate task on a fork join pool, with the directories of directory roots being
+ * forked further, so that independent roots and jars are scanned in parallel.
+ *
+ * If a ScanCache is configured the results of each root are read from the cache while the fingerprints of the root and of the class path from
+ * which its inherited annotations and super types are resolved are unchanged.
+ *
+ * @author simon
+ *
+ */
+public class ClassScanner {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String CLASS_SUFFIX = ".class";
+
+	private final String packageName;
+	private ClassLoader classLoader;
+	private AnnotationCheck annotationCheck = AnnotationCheck.ANY;
+	private Class<? extends Annotation>[] annotationClasses = emptyAnnotations();
+	private Set<String> superTypeNames = Collections.emptySet();
+	private boolean parallel = true;
+	private ScanCache scanCache = ScanCache.getDefault();
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Annotation>[] emptyAnnotations() { return (Class<? extends Annotation>[]) new Class<?>[0]; }
+
+	private ClassScanner(String packageName) {
+		this.packageName = packageName;
+		this.classLoader = ClassUtil.getDefaultClassLoader();
+	}
+
+	/**
+	 * Create a scanner for the given package and its sub packages
+	 * @param packageName	The name of the package to scan
+	 * @return	A class scanner for the given package
+	 */
+	public static ClassScanner forPackage(String packageName) { return new ClassScanner(packageName); }
+
+	/**
+	 * Set the class loader whose class path is scanned. By default this is the ClassUtil default class loader
+	 * @param classLoader	The class loader to scan
+	 * @return	This scanner
+	 */
+	public ClassScanner withClassLoader(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		return this;
+	}
+
+	/**
+	 * Set the annotations that matching classes must carry
+	 * @param annotationCheck	Identifies whether all or any of the given annotations must be present on a matching class
+	 * @param annotationClasses	The annotations to check. If no annotations are given all classes match
+	 * @return	This scanner
+	 */
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public final ClassScanner withAnnotations(AnnotationCheck annotationCheck, Class<? extends Annotation> ... annotationClasses) {
+		this.annotationCheck = annotationCheck;
+		this.annotationClasses = annotationClasses;
+		return this;
+	}
+
+	/**
+	 * Set the types to which matching classes must be assignable. A class matches if it is, extends or implements all the given types
+	 * @param superTypes	The super classes and interfaces of the matching classes
+	 * @return	This scanner
+	 */
+	public ClassScanner withSuperTypes(Class<?> ... superTypes) {
+		Set<String> names = new HashSet<String>();
+		for (Class<?> superType : superTypes) names.add(superType.getName());
+		this.superTypeNames = names;
+		return this;
+	}
+
+	/**
+	 * Set whether the class path roots are scanned in parallel on the common fork join pool. By default scans are parallel
+	 * @param parallel	True if the scan should run in parallel
+	 * @return	This scanner
+	 */
+	public ClassScanner parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+
+	/**
+	 * Set the cache in which the scan results of each class path root are stored. By default this is the scan cache configured through the
+	 * system property 'k2.util.scanCache'
+	 * @param scanCache	The scan cache to use or null if the scan results should not be cached
+	 * @return	This scanner
+	 */
+	public ClassScanner withScanCache(ScanCache scanCache) {
+		this.scanCache = scanCache;
+		return this;
+	}
+
+	/**
+	 * @return	The name of the scanned package
+	 */
+	public String getPackageName() { return packageName; }
+
+	/**
+	 * @return	The class loader whose class path is scanned
+	 */
+	public ClassLoader getClassLoader() { return classLoader; }
+
+	/**
+	 * Scan the class path for the classes that match the filters of this scanner
+	 * @return	The names of the matching classes
+	 */
+	public List<String> scan() {
+		AnnotationResolver resolver = new AnnotationResolver(classLoader);
+		List<String> classNames = new ArrayList<String>();
+		for (Map.Entry<String, Set<String>> entry : scanEntries(resolver, null).entrySet()) {
+			if (matches(resolver, entry.getKey(), entry.getValue()))
+				classNames.add(entry.getKey());
+		}
+		logger.trace("Found {} matching classes in package {}", classNames.size(), packageName);
+		return classNames;
+	}
+
+	/**
+	 * Scan the class path passing each matching class to the given call back as soon as it is found.
+	 *
+	 * When the scan is parallel the call back is called concurrently from the threads of the common fork join pool. Each class is passed to the call
+	 * back once even if it is present in more than one class path root. None of the matching classes are loaded by the scan.
+	 *
+	 * @param callback	The call back to receive the matching classes
+	 */
+	public void scan(Consumer<ScannedClass> callback) {
+		scanEntries(new AnnotationResolver(classLoader), callback);
+	}
+
+	/**
+	 * Scan the class path for all the classes of the package ignoring the filters of this scanner
+	 * @return	The names of all the classes in the package with the names of the annotations present on each class
+	 */
+	public Map<String, Set<String>> scanEntries() {
+		return scanEntries(new AnnotationResolver(classLoader), null);
+	}
+
+	private Map<String, Set<String>> scanEntries(AnnotationResolver resolver, Consumer<ScannedClass> callback) {
+		Set<File> classPath = getClassPath();
+		List<URL> roots = getRoots(classPath);
+		// The annotations and super types resolved for a root may be read from any entry of the class path
+		String classPathFingerprint = (scanCache == null) ? null : scanCache.fingerprint(classPath);
+		Set<String> found = (callback == null) ? null : Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		List<RootScan> scans = new ArrayList<RootScan>(roots.size());
+		for (URL root : roots) scans.add(new RootScan(root, classPathFingerprint, resolver, callback, found));
+
+		if (parallel && scans.size() > 0) {
+			ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() { invokeAll(scans); }
+			});
+		} else {
+			for (RootScan scan : scans) scan.invoke();
+		}
+
+		// Earlier roots take precedence as they would when loading the class
+		Map<String, Set<String>> entries = new LinkedHashMap<String, Set<String>>();
+		for (RootScan scan : scans) {
+			for (Map.Entry<String, Set<String>> entry : scan.entries.entrySet())
+				if (!entries.containsKey(entry.getKey())) entries.put(entry.getKey(), entry.getValue());
+		}
+		return entries;
+	}
+
+	private boolean matches(AnnotationResolver resolver, String className, Set<String> annotationNames) {
+		if (!ClassIndex.matches(annotationNames, annotationCheck, annotationClasses)) return false;
+		if (superTypeNames.isEmpty()) return true;
+		return resolver.getSuperTypes(className).containsAll(superTypeNames);
+	}
+
+	private List<URL> getRoots(Set<File> classPath) {
+		String packagePath = packageName.replace('.', '/');
+		List<URL> roots;
+		try {
+			roots = Collections.list(classLoader.getResources(packagePath));
+		} catch (IOException e) {
+			throw new UtilityError("Unable to identify the class path roots for package {}", e, packageName);
+		}
+		addJarRoots(roots, classPath, packagePath+"/");
+		return roots;
+	}
+
+	/**
+	 * Jars built without directory entries do not return the package path as a resource so the jars of the class path that were not found as
+	 * resources are listed for entries of the package and added as roots if any are found
+	 */
+	private void addJarRoots(List<URL> roots, Set<File> classPath, String prefix) {
+		Set<File> found = new HashSet<File>();
+		for (URL root : roots) {
+			File jar = toJarFile(root);
+			if (jar != null) found.add(jar);
+		}
+		for (File jar : classPath) {
+			if (!jar.isFile() || found.contains(jar) || !hasEntries(jar, prefix)) continue;
+			try {
+				roots.add(new URL("jar:"+jar.toURI().toURL()+"!/"));
+			} catch (MalformedURLException e) {
+				throw new UtilityError("Unable to identify the class path root of jar {}", e, jar.getAbsolutePath());
+			}
+		}
+	}
+
+	private static File toJarFile(URL root) {
+		if (!"jar".equals(root.getProtocol())) return null;
+		try {
+			URLConnection connection = root.openConnection();
+			if (!(connection instanceof JarURLConnection)) return null;
+			URL jarUrl = ((JarURLConnection)connection).getJarFileURL();
+			return "file".equals(jarUrl.getProtocol()) ? new File(jarUrl.toURI()).getAbsoluteFile() : null;
+		} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+			logger.trace("Unable to identify the jar of class path root {} - {}", root, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return	The jar files and directories on the class path of the scanned class loader and its parents
+	 */
+	private Set<File> getClassPath() {
+		Set<File> classPath = new LinkedHashSet<File>();
+		boolean system = false;
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			if (loader == ClassLoader.getSystemClassLoader()) system = true;
+			if (!(loader instanceof URLClassLoader)) continue;
+			for (URL url : ((URLClassLoader)loader).getURLs()) {
+				if (!"file".equals(url.getProtocol())) continue;
+				try {
+					addClassPathEntry(classPath, new File(url.toURI()));
+				} catch (URISyntaxException | IllegalArgumentException e) {
+					logger.trace("Unable to identify the file of class path entry {} - {}", url, e.getMessage());
+				}
+			}
+		}
+		// The system class loader is not a URLClassLoader on later JVMs
+		if (system) {
+			for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator))
+				if (!path.isEmpty()) addClassPathEntry(classPath, new File(path));
+		}
+		return classPath;
+	}
+
+	private static void addClassPathEntry(Set<File> classPath, File file) {
+		if (file.exists()) classPath.add(file.getAbsoluteFile());
+	}
+
+	private static boolean hasEntries(File jar, String prefix) {
+		try (JarFile jarFile = new JarFile(jar)) {
+			Enumeration<JarEntry> jarEntries = jarFile.entries();
+			while (jarEntries.hasMoreElements()) {
+				String name = jarEntries.nextElement().getName();
+				if (name.startsWith(prefix) && isClassFile(name)) return true;
+			}
+			return false;
+		} catch (IOException e) {
+			logger.trace("Unable to list the entries of jar {} - {}", jar.getAbsolutePath(), e.getMessage());
+			return false;
+		}
+	}
+
+	private static String toClassName(String path) {
+		return path.substring(0, path.length()-CLASS_SUFFIX.length()).replace('/', '.');
+	}
+
+	private static boolean isClassFile(String name) {
+		return name.endsWith(CLASS_SUFFIX) && !name.endsWith("package-info.class") && !name.endsWith("module-info.class");
+	}
+
+	/**
+	 * A class found by a scan. The class is only loaded when it is requested
+	 */
+	public static class ScannedClass {
+
+		private final String className;
+		private final Set<String> annotationNames;
+		private final ClassLoader classLoader;
+
+		ScannedClass(String className, Set<String> annotationNames, ClassLoader classLoader) {
+			this.className = className;
+			this.annotationNames = Collections.unmodifiableSet(annotationNames);
+			this.classLoader = classLoader;
+		}
+
+		/**
+		 * @return	The binary name of the class
+		 */
+		public String getClassName() { return className; }
+
+		/**
+		 * @return	The names of the annotations present on the class, including meta annotations and inherited annotations
+		 */
+		public Set<String> getAnnotationNames() { return annotationNames; }
+
+		/**
+		 * Load the class from the scanned class loader without initialising it
+		 * @return	The class
+		 */
+		public Class<?> load() {
+			try {
+				return Class.forName(className, false, classLoader);
+			} catch (ClassNotFoundException | LinkageError e) {
+				throw new UtilityError("Unable to load class from name, {}", e, className);
+			}
+		}
+
+		@Override
+		public String toString() { return className; }
+	}
+
+	/**
+	 * The task scanning a single class path root
+	 */
+	private class RootScan extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final URL root;
+		private final String classPathFingerprint;
+		private final AnnotationResolver resolver;
+		private final Consumer<ScannedClass> callback;
+		private final Set<String> found;
+		private final Map<String, Set<String>> entries = new ConcurrentSkipListMap<String, Set<String>>();
+
+		RootScan(URL root, String classPathFingerprint, AnnotationResolver resolver, Consumer<ScannedClass> callback, Set<String> found) {
+			this.root = root;
+			this.classPathFingerprint = classPathFingerprint;
+			this.resolver = resolver;
+			this.callback = callback;
+			this.found = found;
+		}
+
+		@Override
+		protected void compute() {
+			String fingerprint = (classPathFingerprint == null) ? null : scanCache.fingerprint(root);
+			if (fingerprint != null) fingerprint = fingerprint+"/"+classPathFingerprint;
+			if (fingerprint != null) {
+				Map<String, Set<String>> cached = scanCache.read(root, packageName, fingerprint);
+				if (cached != null) {
+					for (Map.Entry<String, Set<String>> entry : cached.entrySet()) add(entry.getKey(), entry.getValue());
+					return;
+				}
+			}
+			logger.trace("Scanning class path root {} for package {}", root, packageName);
+			try {
+				if ("file".equals(root.getProtocol())) {
+					new DirectoryScan(new File(root.toURI()), packageName).compute();
+				} else if ("jar".equals(root.getProtocol())) {
+					scanJar();
+				} else {
+					logger.warn("Unable to scan class path root {} for package {}. The protocol {} is not supported", root, packageName, root.getProtocol());
+					return;
+				}
+			} catch (IOException | URISyntaxException e) {
+				throw new UtilityError("Unable to scan the class path root {} for package {}", e, root, packageName);
+			}
+			if (fingerprint != null) scanCache.write(root, packageName, fingerprint, entries);
+		}
+
+		private void scanJar() throws IOException {
+			URLConnection connection = root.openConnection();
+			if (!(connection instanceof JarURLConnection))
+				throw new UtilityError("The class path root {} is not a jar", root);
+			connection.setUseCaches(false);
+			String prefix = packageName.replace('.', '/')+"/";
+			try (JarFile jar = ((JarURLConnection)connection).getJarFile()) {
+				Enumeration<JarEntry> jarEntries = jar.entries();
+				while (jarEntries.hasMoreElements()) {
+					JarEntry jarEntry = jarEntries.nextElement();
+					String name = jarEntry.getName();
+					if (name.startsWith(prefix) && isClassFile(name)) {
+						try (InputStream is = jar.getInputStream(jarEntry)) {
+							add(toClassName(name), ClassFile.read(is));
+						}
+					}
+				}
+			}
+		}
+
+		private void add(String className, ClassFile classFile) {
+			if (classFile.isLocalOrAnonymous()) return;
+			if (!superTypeNames.isEmpty()) resolver.register(classFile);
+			add(className, resolver.resolve(classFile));
+		}
+
+		private void add(String className, Set<String> annotationNames) {
+			entries.put(className, annotationNames);
+			if (callback != null && matches(resolver, className, annotationNames) && found.add(className))
+				callback.accept(new ScannedClass(className, annotationNames, classLoader));
+		}
+
+		/**
+		 * The task scanning a single directory of a directory class path root
+		 */
+		private class DirectoryScan extends RecursiveAction {
+			private static final long serialVersionUID = 1L;
+
+			private final File dir;
+			private final String dirPackageName;
+
+			DirectoryScan(File dir, String dirPackageName) {
+				this.dir = dir;
+				this.dirPackageName = dirPackageName;
+			}
+
+			@Override
+			protected void compute() {
+				File[] files = dir.listFiles();
+				if (files == null) return;
+				List<DirectoryScan> subScans = new ArrayList<DirectoryScan>();
+				for (File file : files) {
+					if (file.isDirectory()) {
+						subScans.add(new DirectoryScan(file, dirPackageName+"."+file.getName()));
+					} else if (isClassFile(file.getName())) {
+						try (InputStream is = new FileInputStream(file)) {
+							add(dirPackageName+"."+toClassName(file.getName()), ClassFile.read(is));
+						} catch (IOException e) {
+							throw new UtilityError("Unable to read class file {}", e, file.getAbsolutePath());
+						}
+					}
+				}
+				if (ForkJoinTask.inForkJoinPool()) {
+					invokeAll(subScans);
+				} else {
+					for (DirectoryScan subScan : subScans) subScan.compute();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The annotation resolver memoises the class files of annotation types and super types along with the meta annotations of annotation types, the
+	 * inherited annotations of super classes and the super types of classes for the duration of a scan. Class files outside the scanned package are
+	 * read through the class loader as resources so that they are not loaded.
+	 */
+	private static class AnnotationResolver {
+
+		private final ClassLoader classLoader;
+		private final Map<String, ClassFile> classFiles = new ConcurrentHashMap<String, ClassFile>();
+		private final Map<String, Set<String>> metaAnnotations = new ConcurrentHashMap<String, Set<String>>();
+		private final Map<String, Set<String>> inheritedAnnotations = new ConcurrentHashMap<String, Set<String>>();
+		private final Map<String, Set<String>> superTypes = new ConcurrentHashMap<String, Set<String>>();
+
+		AnnotationResolver(ClassLoader classLoader) {
+			this.classLoader = classLoader;
+		}
+
+		/**
+		 * Register a class file read by the scan so that it is not read again when resolving super types
+		 * @param classFile	The class file read by the scan
+		 */
+		void register(ClassFile classFile) {
+			classFiles.put(classFile.getClassName(), classFile);
+		}
+
+		private ClassFile getClassFile(String className) {
+			ClassFile classFile = classFiles.get(className);
+			if (classFile == null) {
+				try (InputStream is = classLoader.getResourceAsStream(className.replace('.', '/')+CLASS_SUFFIX)) {
+					if (is == null) {
+						logger.trace("Unable to find the class file of {}", className);
+						return null;
+					}
+					classFile = ClassFile.read(is);
+				} catch (IOException e) {
+					logger.trace("Unable to read the class file of {} - {}", className, e.getMessage());
+					return null;
+				}
+				classFiles.put(className, classFile);
+			}
+			return classFile;
+		}
+
+		/**
+		 * Resolve the names of all the annotations present on the class of the given class file
+		 * @param classFile	The class file
+		 * @return	The names of the direct, meta and inherited annotations of the class
+		 */
+		Set<String> resolve(ClassFile classFile) {
+			Set<String> annotationNames = new HashSet<String>();
+			for (String annotationType : classFile.getAnnotationNames()) {
+				annotationNames.add(annotationType);
+				annotationNames.addAll(getMetaAnnotations(annotationType));
+			}
+			if (!classFile.isInterface())
+				annotationNames.addAll(getInheritedAnnotations(classFile.getSuperClassName()));
+			return annotationNames;
+		}
+
+		private Set<String> getMetaAnnotations(String annotationType) {
+			Set<String> metas = metaAnnotations.get(annotationType);
+			if (metas == null) {
+				metas = new HashSet<String>();
+				addMetaAnnotations(annotationType, metas, new HashSet<String>());
+				metaAnnotations.put(annotationType, metas);
+			}
+			return metas;
+		}
+
+		private void addMetaAnnotations(String annotationType, Set<String> metas, Set<String> visited) {
+			// Meta annotations of the standard annotation package are not interesting to anyone scanning for classes
+			if (!visited.add(annotationType) || annotationType.startsWith("java.lang.annotation.")) return;
+			ClassFile classFile = getClassFile(annotationType);
+			if (classFile == null) return;
+			for (String meta : classFile.getAnnotationNames()) {
+				if (!meta.equals(annotationType)) metas.add(meta);
+				addMetaAnnotations(meta, metas, visited);
+			}
+		}
+
+		private boolean isInheritable(String annotationType) {
+			ClassFile classFile = getClassFile(annotationType);
+			return classFile != null && classFile.getAnnotationNames().contains(Inherited.class.getName());
+		}
+
+		private Set<String> getInheritedAnnotations(String className) {
+			if (className == null || className.startsWith("java.")) return Collections.emptySet();
+			Set<String> inherited = inheritedAnnotations.get(className);
+			if (inherited == null) {
+				inherited = new HashSet<String>();
+				ClassFile classFile = getClassFile(className);
+				if (classFile != null) {
+					for (String annotationType : classFile.getAnnotationNames()) {
+						if (isInheritable(annotationType)) {
+							inherited.add(annotationType);
+							inherited.addAll(getMetaAnnotations(annotationType));
+						}
+					}
+					inherited.addAll(getInheritedAnnotations(classFile.getSuperClassName()));
+				}
+				inheritedAnnotations.put(className, inherited);
+			}
+			return inherited;
+		}
+
+		/**
+		 * Get the names of all the types to which the given class is assignable
+		 * @param className	The binary name of the class
+		 * @return	The names of the class, its super classes and all the interfaces it implements
+		 */
+		Set<String> getSuperTypes(String className) {
+			Set<String> names = superTypes.get(className);
+			if (names == null) {
+				names = new HashSet<String>();
+				names.add(className);
+				ClassFile classFile = getClassFile(className);
+				if (classFile != null) {
+					if (classFile.getSuperClassName() != null) names.addAll(getSuperTypes(classFile.getSuperClassName()));
+					for (String interfaceName : classFile.getInterfaceNames()) names.addAll(getSuperTypes(interfaceName));
+				}
+				superTypes.put(className, names);
+			}
+			return names;
+		}
+	}
+
+}
@@ -1,53 +1,32 @@
 package com.k2.Util.classes;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.net.URI;
-import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Date;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Pattern;
-
-import javax.persistence.IdClass;
-import javax.persistence.ManyToOne;
-import javax.tools.FileObject;
-import javax.tools.ForwardingJavaFileManager;
-import javax.tools.JavaFileManager;
-import javax.tools.JavaFileObject;
-import javax.tools.SimpleJavaFileObject;
-import javax.tools.ToolProvider;
-import javax.tools.JavaFileObject.Kind;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
-import org.springframework.core.type.filter.AnnotationTypeFilter;
-import org.springframework.core.type.filter.RegexPatternTypeFilter;
 
-import com.k2.Util.ObjectUtil;
 import com.k2.Util.StringUtil;
 import com.k2.Util.exceptions.UtilityError;
-import com.k2.Util.tuple.Pair;
 
 /**
  * The ClassUtil provides static methods for dealing with and finding classes
@@ -112,6 +91,9 @@ public class ClassUtil {
 	 * If strict is not true then no error will be thrown if a class file exists in the package directories that cannot be loaded from the class loader.
 	 * Instead a warning is logged using the UtilityLogger
 	 * 
+	 * The classes are found without loading any class so only the matching classes are loaded and initialised. Local and anonymous classes are not
+	 * returned. Use a ClassScanner to find classes without initialising them
+	 * 
      * @param packageName	The name of the package to scan
      * @param strict		True if a UtilityError should be thrown if the class for a class file cannot be loaded from the class loader
      * @param annotationCheck	Identifies whether all or any of the defined annotations must be present in the list of classes in the package
@@ -121,126 +103,17 @@ public class ClassUtil {
      */
     @SafeVarargs
 	public static Class<?>[] getClasses(String packageName, boolean strict, AnnotationCheck annotationCheck, Class<? extends Annotation> ... annotationClasses) {
-  
-    	
-//        ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
-        K2ComponentScanner provider = new K2ComponentScanner();
-        // Filter to include only classes that have a particular annotation.
-        
-        if (annotationCheck == AnnotationCheck.ANY) {
-        	if (annotationClasses.length > 0) {
-        		for (Class<? extends Annotation> annotation : annotationClasses) {
-        			provider.addIncludeFilter(new AnnotationTypeFilter(annotation));
-        		}
-        	}
-        	else {
-        		provider.addIncludeFilter(new RegexPatternTypeFilter(Pattern.compile(".*")));
-        	}
-	        // Find classes in the given package (or subpackages)
-	        Set<BeanDefinition> beans = provider.findCandidateComponents(packageName);
-	        
-	        Class<?>[] matchedClasses = new Class<?>[beans.size()];
-	        int i = 0;
-	        for (BeanDefinition bd : beans) {
-	        	try {
-					matchedClasses[i++] = Class.forName(bd.getBeanClassName());
-				} catch (ClassNotFoundException e) {
-					throw new UtilityError("Unable to load class from name, {}", e, bd.getBeanClassName());
-				}
-	        }
-        
-	        return matchedClasses;
-        } else {
-        	if (annotationClasses.length > 0) {
-        		logger.trace("get Classes from package {} which match ALL annotations", packageName);
-        		Set<String> matchedClassNames = null;
-        		for (Class<? extends Annotation> annotation : annotationClasses) {
-//            		provider = new ClassPathScanningCandidateComponentProvider(false);
-            		provider = new K2ComponentScanner();
-        			logger.trace("Finding classes annotated with {}", annotation.getName());
-        			provider.addIncludeFilter(new AnnotationTypeFilter(annotation));
-        	        // Find classes in the given package (or subpackages)
-        	        Set<BeanDefinition> beans = provider.findCandidateComponents(packageName);
-        	        
-        	        Set<String> workingClassNames = new HashSet<String>(beans.size());
-        	        if (matchedClassNames == null) {
-        	        	logger.trace("First set");
-	        	        for (BeanDefinition bd : beans) {
-	        	        	logger.trace("Found class {}", bd.getBeanClassName());
-	        	        	workingClassNames.add(bd.getBeanClassName());
-	        	        }
-	        	        matchedClassNames = workingClassNames;
-        	        } else {
-        	        	logger.trace("Subsequent set");
-	        	        for (BeanDefinition bd : beans) {
-	        	        	logger.trace("Found class {}", bd.getBeanClassName());
-	        	        	workingClassNames.add(bd.getBeanClassName());
-	        	        }
-	        	        matchedClassNames.retainAll(workingClassNames);
-         	        }
-                
-        		}
-	        	logger.trace("Final matches");
-    	        Class<?>[] matchedClasses = new Class<?>[matchedClassNames.size()];
-    	        int i = 0;
-    	        for (String className : matchedClassNames) {
-    	        	logger.trace("Found class {}", className);
-    	        	try {
-    					matchedClasses[i++] = Class.forName(className);
-    				} catch (ClassNotFoundException e) {
-    					throw new UtilityError("Unable to load class from name, {}", e, className);
-    				}
-    	        }
-    	        return matchedClasses;
-        	}
-        	else {
-        		provider.addIncludeFilter(new RegexPatternTypeFilter(Pattern.compile(".*")));
-    	        // Find classes in the given package (or subpackages)
-    	        Set<BeanDefinition> beans = provider.findCandidateComponents(packageName);
-    	        
-    	        Class<?>[] matchedClasses = new Class<?>[beans.size()];
-    	        int i = 0;
-    	        for (BeanDefinition bd : beans) {
-    	        	try {
-    					matchedClasses[i++] = Class.forName(bd.getBeanClassName());
-    				} catch (ClassNotFoundException e) {
-    					throw new UtilityError("Unable to load class from name, {}", e, bd.getBeanClassName());
-    				}
-    	        }
-            
-    	        return matchedClasses;
-        	}
-        }
-        
-        
-/*        
-    		// Get the context class loader from the current thread
-        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        if (classLoader == null) throw new UtilityError("Unable to identify the context loader from the current thread");
 
-        // Identify all the directories that provide classes in the given package name
-        String path = packageNameToPath(packageName);
-        Enumeration<URL> resources;
-		try {
-			resources = classLoader.getResources(path);
-		} catch (IOException e) {
-			throw new UtilityError(e);
-		}
-        List<File> dirs = new ArrayList<File>();
-        while (resources.hasMoreElements()) {
+    	// Use the compile time class index if every class path root providing the package has been indexed
+    	ClassIndex classIndex = ClassIndex.forPackage(getDefaultClassLoader(), packageName);
+    	if (classIndex != null) {
+    		logger.trace("Getting classes for package {} from the class index", packageName);
+    		return loadClasses(classIndex.getClassLoader(), classIndex.getClassNames(annotationCheck, annotationClasses), strict);
+    	}
 
-            URL resource = resources.nextElement();
-         	dirs.add(new File(resource.getFile()));
-        }
-        
-        // For each directory in the identified directories for the given package name
-        // Identify classes with the given annotations
-        ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
-        for (File directory : dirs) {
-            classes.addAll(findClasses(directory, packageName, strict, annotationCheck, annotationClasses));
-        }
-        return classes.toArray(new Class[classes.size()]);
-*/
+    	// Scan the class path checking all the annotations in a single pass
+    	ClassScanner scanner = ClassScanner.forPackage(packageName).withAnnotations(annotationCheck, annotationClasses);
+    	return loadClasses(scanner.getClassLoader(), scanner.scan(), strict);
     }
     /**
      * This method returns all the classes defined in a package if they are annotated with the defined annotations
@@ -280,100 +153,40 @@ public class ClassUtil {
 		return getClasses(packageName, false, annotationCheck, annotationClasses);
 	}
 
-    /**
-     * This method returns all classes in a particular directory if they are annotated with the defined annotations
-     * 
-     * If strict is true and a class file is present in the directories on the class path that match this package but cannot be identified by the 
-	 * context class loader a UtilityError is thrown
-	 * 
-	 * If strict is not true then no error will be thrown if a class file exists in the package directories that cannot be loaded from the class loader.
-	 * Instead a warning is logged using the UtilityLogger
-	 * 
-	 * This method is called recursively for sub directories of the given directory
-	 * 
-     * @param directory	The directory to read for class files
-     * @param packageName	The name of the package to scan
-     * @param strict		True if a UtilityError should be thrown if the class for a class file cannot be loaded from the class loader
-     * @param annotationCheck	Identifies whether all or any of the defined annotations must be present in the list of classes in the package
-     * @param annotationClasses	The list of annotations to check
-     * @return	An array of classes defined in the package.
-     * @see UtilityError
-     */
-    @SafeVarargs
-	private static List<Class<?>> findClasses(File directory, String packageName, boolean strict, AnnotationCheck annotationCheck, Class<? extends Annotation> ... annotationClasses) {
-    		// If the given directory does not exist return an empty list of classes
-        List<Class<?>> classes = new ArrayList<Class<?>>();
-        if (!directory.exists()) {
-        		logger.warn("The directory '{}' does not exist while scanning package '{}'", directory.getAbsolutePath(), packageName);
-            return classes;
-        }
-        
-        // For each file in the directory
-        File[] files = directory.listFiles();
-        for (File file : files) {
-        		// If the file is a directory recursively call findClasses having extended the packageName with the name of the file
-            if (file.isDirectory()) {
-            		if (file.getName().contains(".")) throw new UtilityError("Package direcory names '{}' must not contain a period '.'", file.getName());
-             	classes.addAll(findClasses(file, packageName + "." + file.getName(), strict, annotationCheck, annotationClasses));
-            }
-            // If the file is a class file
-            else if (file.getName().endsWith(".class")) {
-            		// Get the class defined by the file
-	            	String findClassForName = packageName + '.' + file.getName().substring(0, file.getName().length() - 6);
-	            	Class<?> cls;
-	            	// If the class doesn't exist throw an unchecked error as this is unlikely to happen and shouldn't have to be coded for defensively.
-				try {
-					cls = Class.forName(findClassForName);
-				} catch (ClassNotFoundException e) {
-					if (strict) {
-						throw new UtilityError("No class defined with name '"+findClassForName+"' while scanning package '"+packageName+"'", e);
-					} else {
-						logger.warn("No class defined with name '{}' while scanning package '{}'", findClassForName, packageName);
-						cls = null;
-					}
-				}
-				// If the class was found
-	            	if (cls != null) {
-	            		// If checking for annotations
-	            		if (annotationClasses.length > 0) {
-		            		boolean add;
-		            		switch(annotationCheck) {
-		            			// If all annotations must be present
-							case ALL:
-								// Add the class to the list of classes if all annotations are present
-								add = true;
-								for(Class<? extends Annotation> annotationClass : annotationClasses) {
-					            		if (!cls.isAnnotationPresent(annotationClass)) {
-					            			add = false;
-					            			break;
-					            		}
-								}
-								if (add) classes.add(cls);
-								break;
-							// If any of the annotations must be present
-							case ANY:
-								// Add the class to the list of classes if any of the annotations are present
-								add = false;
-								for(Class<? extends Annotation> annotationClass : annotationClasses) {
-					            		if (cls.isAnnotationPresent(annotationClass)) {
-					            			add = true;
-					            			break;
-					            		}
-								}
-								if (add) classes.add(cls);
-								break;
-			            	}
-		            	} 
-	            		// If not checking for annotations
-	            		else {
-	            			// Add the class to the list of classes
-		            		classes.add(cls);
-		            	}
-	            	}
-            }
-        }
-        return classes;
-    }
+	/**
+	 * This method returns the class loader used to find classes on the class path. This is the context class loader of the current thread
+	 * if it is set otherwise the class loader that loaded this utility
+	 * @return	The class loader used to find classes
+	 */
+	public static ClassLoader getDefaultClassLoader() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return (classLoader == null) ? ClassUtil.class.getClassLoader() : classLoader;
+	}
+
+	/**
+	 * This method loads and initialises the named classes from the given class loader
+	 *
+	 * If strict is true a UtilityError is thrown if any of the named classes cannot be loaded otherwise a warning is logged and the class is skipped
+	 *
+	 * @param classLoader	The class loader from which to load the classes
+	 * @param classNames	The names of the classes to load
+	 * @param strict		True if a UtilityError should be thrown if a class cannot be loaded
+	 * @return	An array of the loaded classes
+	 */
+	private static Class<?>[] loadClasses(ClassLoader classLoader, Collection<String> classNames, boolean strict) {
+		List<Class<?>> classes = new ArrayList<Class<?>>(classNames.size());
+		for (String className : classNames) {
+			try {
+				classes.add(Class.forName(className, true, classLoader));
+			} catch (ClassNotFoundException | LinkageError e) {
+				if (strict)
+					throw new UtilityError("Unable to load class from name, {}", e, className);
+				logger.warn("Unable to load class from name, {}", className);
+			}
+		}
+		return classes.toArray(new Class<?>[classes.size()]);
+	}
+
     /**
      * This method converts a package name into a relative path
      * @param packageName	The package name to convert into a relative path
@@ -401,17 +214,11 @@ public class ClassUtil {
      * This static method lists the super types of the given class in order starting with the given class
      * @param cls	The class for which the list of supertypes is required
      * @return	A List of the classes that are the super types of the given class
+     * @see TypeHierarchy
      */
     public static List<Class<?>> getSupertypes(Class<?> cls) {
     		if (cls == null) return null;
-    		List<Class<?>> h = new ArrayList<Class<?>>();
-    		h.add(cls);
-    		Class<?> sCls = cls.getSuperclass();
-    		while(sCls != null) {
-    			h.add(sCls);
-    			sCls = sCls.getSuperclass();
-    		}
-    		return h;
+    		return new ArrayList<Class<?>>(TypeHierarchy.forClass(cls).getSuperclassList());
     }
        
     /**
@@ -425,51 +232,46 @@ public class ClassUtil {
 	public static <T> Class<T> findMatchingSupertype(Class<? extends T> cls1, Class<? extends T> cls2) {
     		
     		if (cls1 == cls2) return (Class<T>)cls1;
-    		List<Class<?>> cls1Hierarchy = getSupertypes(cls1);
-    		List<Class<?>> cls2Hierarchy = getSupertypes(cls2);
-    		Class<?> cls = ObjectUtil.findFirstMatch(cls1Hierarchy, cls2Hierarchy);
-    		return (Class<T>)cls;
+    		return (Class<T>)TypeHierarchy.forClass(cls1).getCommonSuperclass(cls2);
     }
     /**
-     * This is a cache of all of the methods for each class that has been queried 
+     * This is a cache of the declared methods excluding synthetic methods of each class that has been queried.
+     * 
+     * The cached methods are held against the class itself so that they are released with the class when its class loader is unloaded
      */
-	private static Map<Class<?>, Method[]> methodsCache; 
-	/**
-	 * This method gets the methods cache initializing it if it hasn't yet been instantiated
-	 * @return	The methods cache
-	 */
-	private static Map<Class<?>, Method[]> getMethodsCache() {
-		if (methodsCache == null) methodsCache = new HashMap<Class<?>, Method[]>();
-		return methodsCache;
-	}
+	private static final ClassValue<Method[]> methodsCache = new ClassValue<Method[]>() {
+		@Override
+		protected Method[] computeValue(Class<?> cls) {
+			Method[] methods = cls.getDeclaredMethods();
+			List<Method> out = new ArrayList<Method>(methods.length);
+			for (Method m : methods) if (!m.isSynthetic()) {
+				if (!m.isAccessible()) m.setAccessible(true);
+				out.add(m);
+			}
+			return out.toArray(new Method[out.size()]);
+		}
+	};
 	/**
 	 * This static method returns an array of the methods callable from the given class
+	 * 
+	 * The methods include those of the super classes and of all the interfaces implemented by the class, with the most specific method of each
+	 * signature. The methods of an interface are included for a class that does not override them, such as default methods and the abstract
+	 * methods of an abstract class. The methods of java.lang.Object are not included
+	 * 
 	 * @param cls	The class for which the callable methods are required
 	 * @return	An array of the callable methods for the given class
+	 * @see MethodTable
 	 */
 	public static Method[] getAllMethods(Class<?> cls) {
-		List<MethodSignature> signatures = new ArrayList<MethodSignature>();
-		if (cls.isInterface()) {
-			for (Class<?> iFace : cls.getInterfaces()) {
-				for (Method m : getAllMethods(iFace)) {
-					MethodSignature ms = MethodSignature.forMethod(m);
-					if (!signatures.contains(ms)) signatures.add(ms);
-				}
-			}
-		}
-		for (Class<?> c : getSupertypes(cls)) {
-			if(!c.equals(Object.class)) {
-				for (Method m : getDeclaredMethods(c)) {
-					MethodSignature ms = MethodSignature.forMethod(m);
-					if (!signatures.contains(ms)) signatures.add(ms);
-				}
-			}
-		}
-		Method[] methods = new Method[signatures.size()];
-		for (int i=0; i<signatures.size(); i++) {
-			methods[i] = signatures.get(i).getMethod();
-		}
-		return methods;
+		return allMethods(cls).clone();
+	}
+	/**
+	 * This static method returns the shared array of the methods callable from the given class for the utilities that only read it
+	 * @param cls	The class for which the callable methods are required
+	 * @return	The shared array of the callable methods for the given class which must not be modified
+	 */
+	static Method[] allMethods(Class<?> cls) {
+		return MethodTable.forClass(cls).getMethods();
 	}
 	/**
 	 * Thist statica method returns the methods defined on the given class
@@ -478,67 +280,111 @@ public class ClassUtil {
 	 */
 	public static Method[] getDeclaredMethods(Class<?> cls) {
 		if (cls ==null) return null;
-		Method[] methods = getMethodsCache().get(cls);
-		if (methods == null) {
-			methods = cls.getDeclaredMethods();
-			List<Method> out = new ArrayList<Method>(methods.length);
-			for (Method m : methods) if (!m.isSynthetic()) {
-				if (!m.isAccessible()) m.setAccessible(true);
-				out.add(m);
-			}
-			methods = out.toArray(new Method[out.size()]);
-			getMethodsCache().put(cls, methods);
-		}
-		return methods;
+		return methodsCache.get(cls);
 	}
 	
 	public static Method[] getAnnotatedMethods(Class<?> cls, Class<? extends Annotation> annotation) {
 		if (cls ==null) return null;
-		Method[] methods = getDeclaredMethods(cls);
-		Set<Method> out = new HashSet<Method>(methods.length);
-		for (Method m : methods) 
-			if (m.isAnnotationPresent(annotation))
-				out.add(m);
-		
-		return out.toArray(new Method[out.size()]);
+		return AnnotationSummary.getAnnotatedMethods(cls, annotation);
 	}
 
 	public static Method[] getAllAnnotatedMethods(Class<?> cls, Class<? extends Annotation> annotation) {
 		if (cls ==null) return null;
-		Method[] methods = getAllMethods(cls);
+		Method[] methods = allMethods(cls);
 		Set<Method> out = new HashSet<Method>(methods.length);
 		for (Method m : methods) 
-			if (m.isAnnotationPresent(annotation))
+			if (AnnotationSummary.isAnnotationPresent(m, annotation))
 				out.add(m);
 		
 		return out.toArray(new Method[out.size()]);
 	}
 
     /**
-     * The static cache of fields by class
+     * The static cache of declared fields by class
      * 
      * Note this cache excludes synthetic fields
      */
-	private static Map<Class<?>, Field[]> fieldsCache; 
+	private static final ClassValue<Field[]> fieldsCache = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> cls) {
+			Field[] fields = cls.getDeclaredFields();
+			List<Field> out = new ArrayList<Field>(fields.length);
+			for (Field f : fields) if (!f.isSynthetic()&&!f.getName().equals("serialVersionUID")) {
+				if (!f.isAccessible()) f.setAccessible(true);
+				out.add(f);
+			}
+			return out.toArray(new Field[out.size()]);
+		}
+	};
 	/**
-	 * This method returns the static cache of fields by class after initialising it if it has not already been initialised
-	 * @return	The static cache of fields by class
+	 * The static cache of all the fields available through each class
 	 */
-	private static Map<Class<?>, Field[]> getFieldsCache() {
-		if (fieldsCache == null) fieldsCache = new HashMap<Class<?>, Field[]>();
-		return fieldsCache;
-	}
+	private static final ClassValue<Field[]> allFieldsCache = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> cls) {
+			List<Field> fields = new ArrayList<Field>();
+			for (Class<?> c : TypeHierarchy.forClass(cls).getSuperclasses()) {
+				fields.addAll(Arrays.asList(getDeclaredFields(c)));
+			}
+			return fields.toArray(new Field[fields.size()]);
+		}
+	};
 	/**
 	 * This static method gets all the fields available through the given class
 	 * @param cls	The class for which the available fields is required
-	 * @return	An array of the available fields.
+	 * @return	An array of the available fields
 	 */
 	public static Field[] getAllFields(Class<?> cls) {
-		List<Field> fields = new ArrayList<Field>();
-		for (Class<?> c : getSupertypes(cls)) {
-			fields.addAll(Arrays.asList(getDeclaredFields(c)));
-		}
-		return fields.toArray(new Field[fields.size()]);
+		return allFields(cls).clone();
+	}
+	/**
+	 * This static method returns the shared array of the fields available through the given class for the utilities that only read it
+	 * @param cls	The class for which the available fields are required
+	 * @return	The shared array of the available fields which must not be modified
+	 */
+	static Field[] allFields(Class<?> cls) {
+		return allFieldsCache.get(cls);
+	}
+
+	/**
+	 * The listeners notified when the cached data of a class is evicted
+	 */
+	private static final List<Consumer<Class<?>>> evictionListeners = new CopyOnWriteArrayList<Consumer<Class<?>>>();
+
+	/**
+	 * This static method adds a listener that is called with each class whose cached data is evicted. Utilities holding their own caches of 
+	 * class data register a listener so that all the cached data of a class is evicted through evict()
+	 * @param listener	The listener to call with each evicted class
+	 */
+	public static void addEvictionListener(Consumer<Class<?>> listener) {
+		evictionListeners.add(listener);
+	}
+
+	/**
+	 * This static method evicts all the cached data of the given class. The reflection data cached by this utility, the type hierarchy, method
+	 * table, property index, type resolver, annotation summary, class accessor, copy plan, clone plan and equivalence of the class are discarded
+	 * and every registered eviction listener is called with the class. Data evicted for a class is rebuilt on its next use
+	 * @param cls	The class whose cached data is to be evicted
+	 */
+	public static void evict(Class<?> cls) {
+		logger.trace("Evicting the cached data of class {}", cls.getName());
+		methodsCache.remove(cls);
+		fieldsCache.remove(cls);
+		allFieldsCache.remove(cls);
+		getters.remove(cls);
+		setters.remove(cls);
+		typedGetters.remove(cls);
+		typedSetters.remove(cls);
+		TypeHierarchy.evict(cls);
+		MethodTable.evict(cls);
+		PropertyIndex.evict(cls);
+		TypeResolver.evict(cls);
+		AnnotationSummary.evict(cls);
+		ClassAccessor.evict(cls);
+		CopyPlan.evict(cls);
+		DeepCloner.evict(cls);
+		Equivalence.evict(cls);
+		for (Consumer<Class<?>> listener : evictionListeners) listener.accept(cls);
 	}
 
 	/**
@@ -550,36 +396,19 @@ public class ClassUtil {
 	 */
 	public static Field[] getDeclaredFields(Class<?> cls) {
 		if (cls ==null) return null;
-		Field[] fields = getFieldsCache().get(cls);
-		if (fields == null) {
-			fields = cls.getDeclaredFields();
-			List<Field> out = new ArrayList<Field>(fields.length);
-			for (Field f : fields) if (!f.isSynthetic()&&!f.getName().equals("serialVersionUID")) {
-				if (!f.isAccessible()) f.setAccessible(true);
-				out.add(f);
-			}
-			fields = out.toArray(new Field[out.size()]);
-			getFieldsCache().put(cls, fields);
-		}
-		return fields;
+		return fieldsCache.get(cls);
 	}
 	public static Field[] getAnnotatedFields(Class<?> cls, Class<? extends Annotation> annotation) {
 		if (cls ==null) return null;
-		Field[] fields = getDeclaredFields(cls);
-		Set<Field> out = new HashSet<Field>(fields.length);
-		for (Field f : fields) 
-			if (f.isAnnotationPresent(annotation))
-				out.add(f);
-		
-		return out.toArray(new Field[out.size()]);
+		return AnnotationSummary.getAnnotatedFields(cls, annotation);
 	}
 
 	public static Field[] getAllAnnotatedFields(Class<?> cls, Class<? extends Annotation> annotation) {
 		if (cls ==null) return null;
-		Field[] fields = getAllFields(cls);
+		Field[] fields = allFields(cls);
 		Set<Field> out = new HashSet<Field>(fields.length);
 		for (Field f : fields) 
-			if (f.isAnnotationPresent(annotation))
+			if (AnnotationSummary.isAnnotationPresent(f, annotation))
 				out.add(f);
 		
 		return out.toArray(new Field[out.size()]);
@@ -597,7 +426,7 @@ public class ClassUtil {
 	}
 
 	public static Field getField(Class<?> cls, String alias, boolean strict) {
-		for (Field f : getAllFields(cls)) {
+		for (Field f : allFields(cls)) {
 			if (f.getName().equals(alias)) return f;
 		}
 		if(strict)
@@ -606,7 +435,7 @@ public class ClassUtil {
 	}
 
 	public static Field getField(Class<?> cls, Class<?> type) {
-		for (Field f : getAllFields(cls)) {
+		for (Field f : allFields(cls)) {
 			if (f.getType().isAssignableFrom(type)) return f;
 		}
 		return null;
@@ -614,11 +443,11 @@ public class ClassUtil {
 
 	public static Field[] getFields(Class<?> cls, Class<?> type) {
 		List<Field> list = new ArrayList<Field>();
-		for (Field f : getAllFields(cls)) {
+		for (Field f : allFields(cls)) {
 			if (type.isAssignableFrom(f.getType())) {
 				list.add(f);
 			} else if (Collection.class.isAssignableFrom(f.getType())) {
-				if (type.isAssignableFrom(ClassUtil.getFieldGenericTypeClass(f, 0))) {
+				if (type.isAssignableFrom(getFieldElementClass(cls, f))) {
 					list.add(f);
 				}
 			}
@@ -634,112 +463,110 @@ public class ClassUtil {
 	 */
 	@SuppressWarnings("rawtypes")
 	public static Class getFieldGenericTypeClass(Field fld, int pos) {
-		if (pos < 0) { 
-			logger.warn("Unable to identify generic type for field {}.{} for a negative positional value: {}", 
+		return getFieldGenericTypeClass(fld.getDeclaringClass(), fld, pos);
+	}
+
+	/**
+	 * This method extracts the generic type of a field that is defined with generic type arguements as seen from the given class. Type variables 
+	 * bound by the class hierarchy of the given class are resolved to their bound type
+	 * @param cls	The class through which the field is accessed
+	 * @param fld	The field from which to extract the generic type argument
+	 * @param pos	The 0 based position of the generic type argument to extract
+	 * @return		The class of the generic type of the given field at the given position
+	 * @see TypeResolver
+	 */
+	@SuppressWarnings("rawtypes")
+	public static Class getFieldGenericTypeClass(Class<?> cls, Field fld, int pos) {
+		Class<?>[] typeArguments = TypeResolver.forClass(cls).getFieldTypeArguments(fld);
+		if (pos < 0 || (typeArguments.length > 0 && pos >= typeArguments.length)) {
+			logger.warn("Unable to identify generic type for field {}.{} positional value: {}", 
 				fld.getDeclaringClass().getCanonicalName(), 
 				fld.getName(),
 				pos);
 			return null;
 		}
-		Type fType = fld.getGenericType();
-		if (fType instanceof ParameterizedType) {
-			ParameterizedType pType = (ParameterizedType)fType;
-			Type[] fGenericTypes = pType.getActualTypeArguments();
-			if (pos >= fGenericTypes.length) {
-				logger.warn("Unable to identify generic type for field {}.{} positional value: {}", 
-					fld.getDeclaringClass().getCanonicalName(), 
-					fld.getName(),
-					pos);
-				return null;
-			}
-			Type gType = fGenericTypes[pos];
-			if (gType instanceof Class) {
-				return (Class)gType;
-			}
-			logger.warn("Field {}.{} has an unidentifiable type {} at position {}",
-					fld.getDeclaringClass().getCanonicalName(), 
-					fld.getName(),
-					gType.getTypeName(),
-					pos);
-		}
-		return null;
+		return (pos < typeArguments.length) ? typeArguments[pos] : null;
 	}
 
+	/**
+	 * This method gets the class of the elements of the given collection or array field as seen from the given class. The element class is 
+	 * resolved once for each field
+	 * @param cls	The class through which the field is accessed
+	 * @param fld	The collection or array field
+	 * @return	The class of the elements of the field or null if the field is neither a collection nor an array
+	 * @see TypeResolver
+	 */
+	public static Class<?> getFieldElementClass(Class<?> cls, Field fld) {
+		return TypeResolver.forClass(cls).getFieldElementClass(fld);
+	}
+
+	@SuppressWarnings("rawtypes")
 	public static Class getMethodGenericTypeClass(Method method, int pos) {
-		if (pos < 0) { 
-			logger.warn("Unable to identify generic type for method {}.{} for a negative positional value: {}", 
+		Class<?>[] typeArguments = TypeResolver.forClass(method.getDeclaringClass()).getMethodTypeArguments(method);
+		if (pos < 0 || (typeArguments.length > 0 && pos >= typeArguments.length)) { 
+			logger.warn("Unable to identify generic type for method {}.{} positional value: {}", 
 					method.getDeclaringClass().getCanonicalName(), 
 					method.getName(),
 					pos);
 			return null;
 		}
-		Type mType = method.getGenericReturnType();
-		if (mType instanceof ParameterizedType) {
-			ParameterizedType pType = (ParameterizedType)mType;
-			Type[] mGenericTypes = pType.getActualTypeArguments();
-			if (pos >= mGenericTypes.length) {
-				logger.warn("Unable to identify generic type for method {}.{} positional value: {}", 
-						method.getDeclaringClass().getCanonicalName(), 
-						method.getName(),
-						pos);
-				return null;
-			}
-			Type gType = mGenericTypes[pos];
-			if (gType instanceof Class) {
-				return (Class)gType;
-			}
-			logger.warn("method {}.{} has an unidentifiable type {} at position {}",
-					method.getDeclaringClass().getCanonicalName(), 
-					method.getName(),
-					gType.getTypeName(),
-					pos);
-		}
-		return null;
+		return (pos < typeArguments.length) ? typeArguments[pos] : null;
 	}
 
+	@SuppressWarnings("rawtypes")
 	public static Class getClassGenericTypeClass(Class cls, int pos) {
-		if (pos < 0) { 
-			logger.warn("Unable to identify generic type for class {} for a negative positional value: {}", 
+		Class<?>[] typeArguments = TypeResolver.forClass(cls).getSuperclassTypeArguments();
+		if (pos < 0 || (typeArguments.length > 0 && pos >= typeArguments.length)) { 
+			logger.warn("Unable to identify generic type for class {} positional value: {}", 
 					cls.getCanonicalName(), 
 					pos);
 			return null;
 		}
-		Type cType = cls.getGenericSuperclass();
-		if (cType instanceof ParameterizedType) {
-			ParameterizedType pType = (ParameterizedType)cType;
-			Type[] mGenericTypes = pType.getActualTypeArguments();
-			if (pos >= mGenericTypes.length) {
-				logger.warn("Unable to identify generic type for class {} positional value: {}", 
-						cls.getCanonicalName(), 
-						pos);
-				return null;
-			}
-			Type gType = mGenericTypes[pos];
-			if (gType instanceof Class) {
-				return (Class)gType;
-			}
-			logger.warn("Class {} has an unidentifiable type {} at position {}",
-					cls.getCanonicalName(), 
-					gType.getTypeName(),
-					pos);
-		}
-		return null;
+		return (pos < typeArguments.length) ? typeArguments[pos] : null;
 	}
 
 	/**
 	 * A cache of the Getters indexed by class and alias. Where alias is the field name or the sections of the method name 
 	 * following an initial 'get' String with the first letter of the remaining string in lower case
+	 * 
+	 * The getters of each class are held against the class itself so that they are released with the class when its class loader is unloaded
 	 */
-	private static Map<Pair<Class<?>, String>, Getter<?,?>> getters = new HashMap<Pair<Class<?>, String>, Getter<?,?>>();
+	private static final ClassValue<Map<String, Getter<?,?>>> getters = new ClassValue<Map<String, Getter<?,?>>>() {
+		@Override
+		protected Map<String, Getter<?,?>> computeValue(Class<?> cls) { return new ConcurrentHashMap<String, Getter<?,?>>(); }
+	};
 	/**
 	 * A cache of the Setters indexed by class and alias. Where alias is the field name or the sections of the method name 
 	 * following an initial 'set' String with the first letter of the remaining string in lower case
+	 * 
+	 * The setters of each class are held against the class itself so that they are released with the class when its class loader is unloaded
+	 */
+	private static final ClassValue<Map<String, Setter<?,?>>> setters = new ClassValue<Map<String, Setter<?,?>>>() {
+		@Override
+		protected Map<String, Setter<?,?>> computeValue(Class<?> cls) { return new ConcurrentHashMap<String, Setter<?,?>>(); }
+	};
+	/**
+	 * A cache of the Getters indexed by class, alias and value class holding the getters of the value classes that are not provided by the getter
+	 * cached against the alias, such as the getters of overloaded members. The absence of a suitable getter is cached as an empty optional
+	 */
+	private static final ClassValue<Map<String, Map<Class<?>, Optional<Getter<?,?>>>>> typedGetters = new ClassValue<Map<String, Map<Class<?>, Optional<Getter<?,?>>>>>() {
+		@Override
+		protected Map<String, Map<Class<?>, Optional<Getter<?,?>>>> computeValue(Class<?> cls) { return new ConcurrentHashMap<String, Map<Class<?>, Optional<Getter<?,?>>>>(); }
+	};
+	/**
+	 * A cache of the Setters indexed by class, alias and value class holding the setters of the value classes that are not set by the setter
+	 * cached against the alias, such as the setters of overloaded methods. The absence of a suitable setter is cached as an empty optional
 	 */
-	private static Map<Pair<Class<?>, String>, Setter<?,?>> setters = new HashMap<Pair<Class<?>, String>, Setter<?,?>>();
+	private static final ClassValue<Map<String, Map<Class<?>, Optional<Setter<?,?>>>>> typedSetters = new ClassValue<Map<String, Map<Class<?>, Optional<Setter<?,?>>>>>() {
+		@Override
+		protected Map<String, Map<Class<?>, Optional<Setter<?,?>>>> computeValue(Class<?> cls) { return new ConcurrentHashMap<String, Map<Class<?>, Optional<Setter<?,?>>>>(); }
+	};
 	/**
 	 * This static method returns an instance of Getter for the given object class, value class and alias
-	 * If a suitable MethodGetter can be idenified then the MethodGetter is returned otherwise a FieldGetter is returned
+	 * If a suitable getter method can be idenified then a getter for the method is returned otherwise a getter for the field is returned
 	 * if a suitable field can be identified. If no suitable method or field can be identified a null is returned
+	 * The returned getter is a CompiledGetter unless the member cannot be compiled in which case a reflective getter is returned
+	 * Compiled getters of int, long, double and boolean members implement IntGetter, LongGetter, DoubleGetter or BooleanGetter respectively
 	 * @param objectClass	The class of the object for which a getter is required
 	 * @param valueClass		The class of the value to be returned by the resultant getter
 	 * @param alias			The alias of the field or method whose value is to be returned by the getter
@@ -750,37 +577,73 @@ public class ClassUtil {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <E,V> Getter<E,V> getGetter(Class<E> objectClass, Class<V> valueClass, String alias) {
-		Pair<Class<?>, String> pair = new Pair<Class<?>, String>(objectClass, alias);
-		Getter<E,V> g = (Getter<E, V>) getters.get(pair);
+		Map<String, Getter<?,?>> classGetters = getters.get(objectClass);
+		Getter<E,V> g = (Getter<E, V>) classGetters.get(alias);
+		if (g != null && isReadable(g.getJavaType(), valueClass)) return g;
+		if (g != null) {
+			logger.trace("The cached getter {} does not provide the required type {}", g, valueClass.getName());
+			return getTypedGetter(objectClass, valueClass, alias);
+		}
+		logger.trace("Getter not yet defined");
+		g = createGetter(objectClass, valueClass, alias);
+		if (g != null) {
+			logger.trace("Caching {} getter {}.{}", g.getType(), g.getThroughClass(), g.getAlias());
+			classGetters.putIfAbsent(alias, g);
+		}
+		return g;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <E,V> Getter<E,V> getTypedGetter(Class<E> objectClass, Class<V> valueClass, String alias) {
+		Map<Class<?>, Optional<Getter<?,?>>> aliasGetters = typedGetters.get(objectClass)
+				.computeIfAbsent(alias, a -> new ConcurrentHashMap<Class<?>, Optional<Getter<?,?>>>());
+		Optional<Getter<?,?>> g = aliasGetters.get(valueClass);
 		if (g == null) {
-			logger.trace("Getter not yet defined");
-			Member m = getGetterMember(objectClass, valueClass, alias);
-			if (m != null) {
-				if (m instanceof Method) {
-					g = new MethodGetter<E,V>(objectClass, valueClass, (Method)m);					
-				} else if (m instanceof Field){
-					g = new FieldGetter<E,V>(objectClass, valueClass, (Field)m);
-				}
-			}
-			
-			if (g != null) {
-				logger.trace("Caching {} getter {}.{}", g.getType(), g.getThroughClass(), g.getAlias());
-				getters.put(pair, g);
-		
-			}
-		} else {
-			if (!valueClass.isAssignableFrom(g.getJavaType())) {
-				logger.trace("The cached getter {} does not provide the required type {}", g, valueClass.getName());
-				g = null;
+			g = Optional.<Getter<?,?>>ofNullable(createGetter(objectClass, valueClass, alias));
+			Optional<Getter<?,?>> cached = aliasGetters.putIfAbsent(valueClass, g);
+			if (cached != null) g = cached;
+		}
+		return (Getter<E,V>) g.orElse(null);
+	}
+	
+	private static <E,V> Getter<E,V> createGetter(Class<E> objectClass, Class<V> valueClass, String alias) {
+		Member m = getGetterMember(objectClass, valueClass, alias);
+		return (m == null) ? null : createGetter(objectClass, valueClass, m);
+	}
+	
+	/**
+	 * This static method creates a getter for the given member. A compiled getter is created if the member can be compiled otherwise
+	 * a reflective getter is returned
+	 * @param objectClass	The class of the object for which a getter is required
+	 * @param valueClass		The class of the value to be returned by the resultant getter
+	 * @param m				The field or getter method
+	 * @return	A getter for the given member
+	 * @param <E> The class of the object through which the getter will be invoked
+	 * @param <V> The class of the values returned by calls to get()
+	 */
+	public static <E,V> Getter<E,V> createGetter(Class<E> objectClass, Class<V> valueClass, Member m) {
+		try {
+			if (m instanceof Method) {
+				return CompiledGetter.forMethod(objectClass, valueClass, (Method)m);
+			} else if (m instanceof Field) {
+				return CompiledGetter.forField(objectClass, valueClass, (Field)m);
 			}
+		} catch (UtilityError e) {
+			logger.trace("Unable to compile a getter for {} - {}", m, e.getMessage());
 		}
-		logger.trace("Returning getter {}", g);
-		return g;
+		if (m instanceof Method) {
+			return new MethodGetter<E,V>(objectClass, valueClass, (Method)m);					
+		} else if (m instanceof Field){
+			return new FieldGetter<E,V>(objectClass, valueClass, (Field)m);
+		}
+		return null;
 	}
 	/**
 	 * This static method returns an instance of Getter for the given object class, value class and alias
-	 * If a suitable MethodGetter can be idenified then the MethodGetter is returned otherwise a FieldGetter is returned
+	 * If a suitable setter method can be idenified then a setter for the method is returned otherwise a setter for the field is returned
 	 * if a suitable field can be identified. If no suitable method or field can be identified a null is returned
+	 * The returned setter is a CompiledSetter unless the member cannot be compiled in which case a reflective setter is returned
+	 * Compiled setters of int, long, double and boolean members implement IntSetter, LongSetter, DoubleSetter or BooleanSetter respectively
 	 * @param objectClass	The class of the object for which a getter is required
 	 * @param valueClass		The class of the value to be returned by the resultant getter
 	 * @param alias			The alias of the field or method whose value is to be returned by the getter
@@ -791,45 +654,173 @@ public class ClassUtil {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <E,V> Setter<E,V> getSetter(Class<E> objectClass, Class<V> valueClass, String alias) {
-		Pair<Class<?>, String> pair = new Pair<Class<?>, String>(objectClass, alias);
-		Setter<E,V> s = (Setter<E, V>) setters.get(pair);
-		if (s == null) {
-			logger.trace("Setter not yet defined");
-			Member m = getSetterMember(objectClass, valueClass, alias);
-			if (m != null) {
-				if (m instanceof Method) {
-					s = new MethodSetter<E,V>(objectClass, valueClass, (Method)m);					
-				} else if (m instanceof Field){
-					s = new FieldSetter<E,V>(objectClass, valueClass, (Field)m);
-				}
-			}
-			
-			if (s != null) {
-				logger.trace("Caching {} setter {}.{}", s.getType(), s.getThroughClass(), s.getAlias());
-				setters.put(pair, s);
-		
-			}
-		} else {
-			if (!valueClass.isAssignableFrom(s.getJavaType())) {
-				logger.trace("The cached setter {} does not set the required type {}", s, valueClass.getName());
-				s = null;
-			}
+		Map<String, Setter<?,?>> classSetters = setters.get(objectClass);
+		Setter<E,V> s = (Setter<E, V>) classSetters.get(alias);
+		if (s != null && isWritable(s.getJavaType(), valueClass)) return s;
+		if (s != null) {
+			logger.trace("The cached setter {} does not set the required type {}", s, valueClass.getName());
+			return getTypedSetter(objectClass, valueClass, alias);
+		}
+		logger.trace("Setter not yet defined");
+		s = createSetter(objectClass, valueClass, alias);
+		if (s != null) {
+			logger.trace("Caching {} setter {}.{}", s.getType(), s.getThroughClass(), s.getAlias());
+			classSetters.putIfAbsent(alias, s);
 		}
-		logger.trace("Returning getter {}", s);
 		return s;
 	}
-	public static <E,V> Setter<E,V> getSetter(Class<E> objectClass, Class<V> valueClass) {
-		Member m = getSetterMember(objectClass, valueClass);
-		if (m != null) {
+	
+	@SuppressWarnings("unchecked")
+	private static <E,V> Setter<E,V> getTypedSetter(Class<E> objectClass, Class<V> valueClass, String alias) {
+		Map<Class<?>, Optional<Setter<?,?>>> aliasSetters = typedSetters.get(objectClass)
+				.computeIfAbsent(alias, a -> new ConcurrentHashMap<Class<?>, Optional<Setter<?,?>>>());
+		Optional<Setter<?,?>> s = aliasSetters.get(valueClass);
+		if (s == null) {
+			s = Optional.<Setter<?,?>>ofNullable(createSetter(objectClass, valueClass, alias));
+			Optional<Setter<?,?>> cached = aliasSetters.putIfAbsent(valueClass, s);
+			if (cached != null) s = cached;
+		}
+		return (Setter<E,V>) s.orElse(null);
+	}
+	
+	private static <E,V> Setter<E,V> createSetter(Class<E> objectClass, Class<V> valueClass, String alias) {
+		Member m = getSetterMember(objectClass, valueClass, alias);
+		return (m == null) ? null : createSetter(objectClass, valueClass, m);
+	}
+	
+	/**
+	 * This static method creates a setter for the given member. A compiled setter is created if the member can be compiled otherwise
+	 * a reflective setter is returned
+	 * @param objectClass	The class of the object for which a setter is required
+	 * @param valueClass		The class of the value to be set by the resultant setter
+	 * @param m				The field or setter method
+	 * @return	A setter for the given member
+	 * @param <E> The class of the object through which the setter will be invoked
+	 * @param <V> The class of the values passed to calls to set()
+	 */
+	public static <E,V> Setter<E,V> createSetter(Class<E> objectClass, Class<V> valueClass, Member m) {
+		try {
 			if (m instanceof Method) {
-				return new MethodSetter<E,V>(objectClass, valueClass, (Method)m);					
-			} else if (m instanceof Field){
-				return new FieldSetter<E,V>(objectClass, valueClass, (Field)m);
+				return CompiledSetter.forMethod(objectClass, valueClass, (Method)m);
+			} else if (m instanceof Field) {
+				return CompiledSetter.forField(objectClass, valueClass, (Field)m);
 			}
+		} catch (UtilityError e) {
+			logger.trace("Unable to compile a setter for {} - {}", m, e.getMessage());
+		}
+		if (m instanceof Method) {
+			return new MethodSetter<E,V>(objectClass, valueClass, (Method)m);					
+		} else if (m instanceof Field){
+			return new FieldSetter<E,V>(objectClass, valueClass, (Field)m);
 		}
-		
 		return null;
 	}
+	/**
+	 * This static method returns the getter for the int property with the given alias of the given object class. The returned getter gets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a getter is required
+	 * @param alias			The alias of the field or method whose value is to be returned by the getter
+	 * @return				The int getter or null if the object class has no int property with the given alias
+	 * @param <E> The class of the object through which the getter will be invoked
+	 */
+	public static <E> IntGetter<E> getIntGetter(Class<E> objectClass, String alias) {
+		return primitive(IntGetter.class, getGetter(objectClass, int.class, alias));
+	}
+	
+	/**
+	 * This static method returns the setter for the int property with the given alias of the given object class. The returned setter sets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a setter is required
+	 * @param alias			The alias of the field or method whose value is to be set by the setter
+	 * @return				The int setter or null if the object class has no int property with the given alias
+	 * @param <E> The class of the object through which the setter will be invoked
+	 */
+	public static <E> IntSetter<E> getIntSetter(Class<E> objectClass, String alias) {
+		return primitive(IntSetter.class, getSetter(objectClass, int.class, alias));
+	}
+	
+	/**
+	 * This static method returns the getter for the long property with the given alias of the given object class. The returned getter gets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a getter is required
+	 * @param alias			The alias of the field or method whose value is to be returned by the getter
+	 * @return				The long getter or null if the object class has no long property with the given alias
+	 * @param <E> The class of the object through which the getter will be invoked
+	 */
+	public static <E> LongGetter<E> getLongGetter(Class<E> objectClass, String alias) {
+		return primitive(LongGetter.class, getGetter(objectClass, long.class, alias));
+	}
+	
+	/**
+	 * This static method returns the setter for the long property with the given alias of the given object class. The returned setter sets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a setter is required
+	 * @param alias			The alias of the field or method whose value is to be set by the setter
+	 * @return				The long setter or null if the object class has no long property with the given alias
+	 * @param <E> The class of the object through which the setter will be invoked
+	 */
+	public static <E> LongSetter<E> getLongSetter(Class<E> objectClass, String alias) {
+		return primitive(LongSetter.class, getSetter(objectClass, long.class, alias));
+	}
+	
+	/**
+	 * This static method returns the getter for the double property with the given alias of the given object class. The returned getter gets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a getter is required
+	 * @param alias			The alias of the field or method whose value is to be returned by the getter
+	 * @return				The double getter or null if the object class has no double property with the given alias
+	 * @param <E> The class of the object through which the getter will be invoked
+	 */
+	public static <E> DoubleGetter<E> getDoubleGetter(Class<E> objectClass, String alias) {
+		return primitive(DoubleGetter.class, getGetter(objectClass, double.class, alias));
+	}
+	
+	/**
+	 * This static method returns the setter for the double property with the given alias of the given object class. The returned setter sets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a setter is required
+	 * @param alias			The alias of the field or method whose value is to be set by the setter
+	 * @return				The double setter or null if the object class has no double property with the given alias
+	 * @param <E> The class of the object through which the setter will be invoked
+	 */
+	public static <E> DoubleSetter<E> getDoubleSetter(Class<E> objectClass, String alias) {
+		return primitive(DoubleSetter.class, getSetter(objectClass, double.class, alias));
+	}
+	
+	/**
+	 * This static method returns the getter for the boolean property with the given alias of the given object class. The returned getter gets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a getter is required
+	 * @param alias			The alias of the field or method whose value is to be returned by the getter
+	 * @return				The boolean getter or null if the object class has no boolean property with the given alias
+	 * @param <E> The class of the object through which the getter will be invoked
+	 */
+	public static <E> BooleanGetter<E> getBooleanGetter(Class<E> objectClass, String alias) {
+		return primitive(BooleanGetter.class, getGetter(objectClass, boolean.class, alias));
+	}
+	
+	/**
+	 * This static method returns the setter for the boolean property with the given alias of the given object class. The returned setter sets
+	 * the value of the property without boxing it
+	 * @param objectClass	The class of the object for which a setter is required
+	 * @param alias			The alias of the field or method whose value is to be set by the setter
+	 * @return				The boolean setter or null if the object class has no boolean property with the given alias
+	 * @param <E> The class of the object through which the setter will be invoked
+	 */
+	public static <E> BooleanSetter<E> getBooleanSetter(Class<E> objectClass, String alias) {
+		return primitive(BooleanSetter.class, getSetter(objectClass, boolean.class, alias));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <A> A primitive(Class<?> accessorType, Object accessor) {
+		if (accessor == null || accessorType.isInstance(accessor)) return (A) accessor;
+		throw new UtilityError("The accessor {} is not a {}", accessor, accessorType.getSimpleName());
+	}
+	
+	public static <E,V> Setter<E,V> getSetter(Class<E> objectClass, Class<V> valueClass) {
+		Member m = getSetterMember(objectClass, valueClass);
+		return (m == null) ? null : createSetter(objectClass, valueClass, m);
+	}
 	/**
 	 * This static method checks to see whether a getter is available for the given value class and alias on the given object class
 	 * @param objectClass	The class of the object for which a getter is required
@@ -840,32 +831,29 @@ public class ClassUtil {
 	 * @param <V> The class of the object returned by calls to get()
 	 */
 	public static <V> boolean canGet(Class<?> objectClass, Class<?> valueClass, String alias) {
-		return (getGetter(objectClass, valueClass, alias) != null);
+		return (getGetterMember(objectClass, valueClass, alias) != null);
 	}
 	
+	/**
+	 * This static method gets the member through which the property with the given alias can be read as the given type from the property index 
+	 * of the given class. A 'get' or boolean 'is' method is returned in preference to a field
+	 * @param cls	The class through which the property is read
+	 * @param type	The type required from the member
+	 * @param alias	The alias of the property
+	 * @return	The getter method or field or null if the class has no such property that can be read as the given type
+	 * @see PropertyIndex
+	 */
 	public static Member getGetterMember(Class<?> cls, Class<?> type, String alias) {
-		for (Method m : getAllMethods(cls)) {
-			if (type.isAssignableFrom(m.getReturnType()) 
-					&& m.getName().equals("get"+StringUtil.initialUpperCase(alias))
-					&& m.getParameterCount() == 0) {
-				return m;
-			}
-		}
-		for (Field f : getAllFields(cls)) {
-			if (type.isAssignableFrom(f.getType()) && f.getName().equals(alias)) {
-				return f;
-			}
-		}
-		return null;
+		return PropertyIndex.forClass(cls).getReadMember(alias, type);
 	}
 
 	public static Member getSetterMember(Class<?> cls, Class<?> type) {
-		for (Method m : getAllMethods(cls)) {
-			if (m.getParameterCount() == 1 && m.getParameters()[0].getType().isAssignableFrom(type)) {
+		for (Method m : allMethods(cls)) {
+			if (m.getParameterCount() == 1 && m.getParameterTypes()[0].isAssignableFrom(type)) {
 				return m;
 			}
 		}
-		for (Field f : getAllFields(cls)) {
+		for (Field f : allFields(cls)) {
 			if (type.isAssignableFrom(f.getType())) {
 				return f;
 			}
@@ -873,20 +861,43 @@ public class ClassUtil {
 		return null;
 	}
 	
+	/**
+	 * This static method gets the member through which the property with the given alias can be written with the given type from the property
+	 * index of the given class. A 'set' method is returned in preference to a field
+	 * @param cls	The class through which the property is written
+	 * @param type	The type of the values to write
+	 * @param alias	The alias of the property
+	 * @return	The setter method or field or null if the class has no such property that can be written with the given type
+	 * @see PropertyIndex
+	 */
 	public static Member getSetterMember(Class<?> cls, Class<?> type, String alias) {
-		for (Method m : getAllMethods(cls)) {
-			if (m.getName().equals("set"+StringUtil.initialUpperCase(alias))
-					&& m.getParameterCount() == 1
-					&& m.getParameters()[0].getType().isAssignableFrom(type)) {
-				return m;
-			}
-		}
-		for (Field f : getAllFields(cls)) {
-			if (type.isAssignableFrom(f.getType()) && f.getName().equals(alias)) {
-				return f;
-			}
-		}
-		return null;
+		return PropertyIndex.forClass(cls).getWriteMember(alias, type);
+	}
+	
+	/**
+	 * This static method checks whether values of the given type can be written to a field or setter method parameter of the given type. Primitive
+	 * types are checked as their wrapper classes so that, for example, Integer values can be written to an int member and int values to an Object member
+	 * @param memberType	The type of the field or setter method parameter
+	 * @param valueType	The type of the values to write
+	 * @return	True if values of the value type can be written to the member
+	 */
+	public static boolean isWritable(Class<?> memberType, Class<?> valueType) {
+		return box(memberType).isAssignableFrom(box(valueType));
+	}
+	
+	/**
+	 * This static method checks whether the values of a field or getter method of the given type can be read as the given type. Primitive types
+	 * are checked as their wrapper classes so that, for example, a boolean member can be read as a Boolean or an Object
+	 * @param memberType	The type of the field or getter method
+	 * @param valueType	The type required from the member
+	 * @return	True if the values of the member can be read as the value type
+	 */
+	public static boolean isReadable(Class<?> memberType, Class<?> valueType) {
+		return box(valueType).isAssignableFrom(box(memberType));
+	}
+	
+	private static Class<?> box(Class<?> cls) {
+		return cls.isPrimitive() ? MethodType.methodType(cls).wrap().returnType() : cls;
 	}
 	
 	public static Method getMethod(Class<?> cls, String name, Class<?> ... parameterTypes) {
@@ -897,6 +908,17 @@ public class ClassUtil {
 		}
 	}
 
+	/**
+	 * This static method finds the method with the given name and parameter types callable through the given class using the method table of the class
+	 * @param cls	The class through which the method is called
+	 * @param name	The name of the method
+	 * @param parameterTypes	The exact parameter types of the method
+	 * @return	The method or null if no method with the given signature is callable through the given class
+	 */
+	public static Method findMethod(Class<?> cls, String name, Class<?> ... parameterTypes) {
+		return MethodTable.forClass(cls).findMethod(name, parameterTypes);
+	}
+
 	public static Method getMethod(Class<?> cls, MethodSignature methodSignature) {
 		try {
 			return cls.getDeclaredMethod(methodSignature.getName(), methodSignature.getParameterTypes());
@@ -906,57 +928,31 @@ public class ClassUtil {
 	}
 
 
-	@SuppressWarnings({ "unchecked", "restriction" })
+	/**
+	 * This static method compiles the given source into a class extending the given class using the default in memory compiler. The byte code of
+	 * the source is cached so compiling the same source again does not invoke the java compiler.
+	 * 
+	 * If the compiled class is in the package of the extended class it is defined by the class loader of the extended class in the same runtime
+	 * package, so that it can override and access its package private members, and compiling the same source again returns the same class.
+	 * Otherwise the compiled class is isolated in a new class loader whose parent is the class loader of the extended class. Use
+	 * InMemoryCompiler.compile() to isolate a class of the same package
+	 * 
+	 * @param extendsClass	The class extended by the compiled class
+	 * @param packageName	The package of the compiled class
+	 * @param className		The simple name of the compiled class
+	 * @param source			The source of the class
+	 * @return	The compiled class
+	 * @param <T> The type of the class extended by the compiled class
+	 * @see InMemoryCompiler
+	 */
 	public static <T> Class<? extends T> createClassFromString(Class<T> extendsClass, String packageName, String className, String source) {
-
-		System.out.println(source);
-		
-		String fullClassName = packageName.replace('.', '/')+"/"+className;
-		
-		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		
-		SimpleJavaFileObject simpleJavaFileObject = new SimpleJavaFileObject(URI.create(fullClassName + ".java"), Kind.SOURCE) {
-
-			@Override
-			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
-				return source;
-			}
-			
-			@Override
-			public OutputStream openOutputStream() throws IOException{
-				return byteArrayOutputStream;
-			}
-		};
-		
-		@SuppressWarnings({ "rawtypes" })
-		JavaFileManager javaFileManager = new ForwardingJavaFileManager(
-				ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, null, null)) {
-						@Override
-						public JavaFileObject getJavaFileForOutput(
-								Location location,String className,
-								JavaFileObject.Kind kind,
-								FileObject sibling)  {
-							return simpleJavaFileObject;
-						}
-		};
-		
-		ToolProvider.getSystemJavaCompiler().getTask(null, javaFileManager, null, null, null, ObjectUtil.singletonList(simpleJavaFileObject)).call();
-		
-		byte[] bytes = byteArrayOutputStream.toByteArray();
-		
-		try {
-			Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
-			
-			f.setAccessible(true);
-			
-			sun.misc.Unsafe unsafe = (sun.misc.Unsafe) f.get(null);
-						
-			return (Class<? extends T>) unsafe.defineClass(fullClassName, bytes, 0, bytes.length, extendsClass.getClassLoader(), extendsClass.getProtectionDomain());
-			
-		} catch (NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException e) {
-			throw new UtilityError("Unable to generate class {}.{} from source \n{}\n", e, packageName, className, source);
-		}
-
+		String fullClassName = (packageName == null || packageName.isEmpty()) ? className : packageName+"."+className;
+		Class<?> cls = ClassUtil.getPackageNameFromCanonicalName(extendsClass.getName()).equals(packageName == null ? "" : packageName)
+				? InMemoryCompiler.getDefault().define(extendsClass, fullClassName, source)
+				: InMemoryCompiler.getDefault().compile(extendsClass.getClassLoader(), fullClassName, source);
+		if (!extendsClass.isAssignableFrom(cls))
+			throw new UtilityError("The class {} generated from source does not extend {}", fullClassName, extendsClass.getName());
+		return cls.asSubclass(extendsClass);
 	}
 	
 	public static String getAliasFromMethod(Method method) {
@@ -968,6 +964,8 @@ public class ClassUtil {
 		if (name == null || "".equals(name)) return "";
 		if (name.startsWith("get")||name.startsWith("set"))
 			return StringUtil.initialLowerCase(name.substring(3));
+		else if (name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2)))
+			return StringUtil.initialLowerCase(name.substring(2));
 		else
 			return StringUtil.initialLowerCase(name);
 	}
@@ -1015,17 +1013,13 @@ public class ClassUtil {
 			return StringUtil.splitCamelCase(m.getName());
 	}
 	public static boolean isAnnotationPresent(Member member, Class<? extends Annotation> annotation) {
-		if (member instanceof Field)
-			return ((Field)member).isAnnotationPresent(annotation);
-		else if (member instanceof Method)
-			return ((Method)member).isAnnotationPresent(annotation);
+		if (member instanceof Field || member instanceof Method)
+			return AnnotationSummary.isAnnotationPresent(member, annotation);
 		throw new UtilityError("Unsupprted member type {}", member.getClass().getName());
 	}
 	public static <A extends Annotation> A getAnnotation(Member member, Class<A> annotation) {
-		if (member instanceof Field)
-			return ((Field)member).getAnnotation(annotation);
-		else if (member instanceof Method)
-			return ((Method)member).getAnnotation(annotation);
+		if (member instanceof Field || member instanceof Method)
+			return AnnotationSummary.getAnnotation(member, annotation);
 		throw new UtilityError("Unsupprted member type {}", member.getClass().getName());
 	}
 	public static String alias(Member member) {
@@ -1043,13 +1037,13 @@ public class ClassUtil {
 		throw new UtilityError("Unsupprted member type {}", member.getClass().getName());
 	}
 	public static <T,A extends Annotation> A getAnnotation(Class<T> cls, Class<A> annotationClass) {
-		A ann = cls.getAnnotation(annotationClass);
+		A ann = AnnotationSummary.getAnnotation(cls, annotationClass);
 		if (ann == null && cls.getSuperclass() != Object.class)
 			return getAnnotation(cls.getSuperclass(), annotationClass);
 		return ann;
 	}
 	public static <T,A extends Annotation> boolean isAnnotationPresent(Class<T> cls, Class<A> annotationClass) {
-		boolean b = cls.isAnnotationPresent(annotationClass);
+		boolean b = AnnotationSummary.isAnnotationPresent(cls, annotationClass);
 		if (( ! b) && cls.getSuperclass() != Object.class)
 			return isAnnotationPresent(cls.getSuperclass(), annotationClass);
 		return b;
@@ -0,0 +1,253 @@
+package com.k2.Util.classes;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.Predicate;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This class implements the Getter interface for a field or getter method through an accessor compiled from the field or method.
+ * 
+ * Getter methods of public classes are called through a function linked directly to the method so that the call to get() runs at the speed 
+ * of a direct call. Other methods and fields are read through method handles. Neither involves reflection once the getter has been created.
+ * 
+ * @author simon
+ *
+ * @param <E>	The type of the class on which the getter will be executed
+ * @param <T>	The type of the variable returned by the call to get
+ */
+public class CompiledGetter<E,T> implements Getter<E,T> {
+
+	private final Member member;
+	private final Class<E> objectClass;
+	private final Class<T> javaType;
+	private final Function<Object,Object> function;
+	
+	private CompiledGetter(Member member, Class<E> objectClass, Class<T> javaType, Function<Object,Object> function) {
+		this.member = member;
+		this.objectClass = objectClass;
+		this.javaType = javaType;
+		this.function = function;
+	}
+	
+	/**
+	 * Create a compiled getter for the given getter method
+	 * @param objectClass	The class of the object on which the getter will operate
+	 * @param returnType		The type of value returned by the call to get
+	 * @param method			The underlying method that returns the value
+	 * @return	The compiled getter
+	 * @param <E>	The type of the class on which the getter will be executed
+	 * @param <T>	The type of the variable returned by the call to get
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E,T> CompiledGetter<E,T> forMethod(Class<E> objectClass, Class<T> returnType, Method method) {
+		if (!ClassUtil.isReadable(method.getReturnType(), returnType)) 
+			throw new UtilityError("Class mismatch for method. Method {}.{} doesn't supply a {}", method.getDeclaringClass().getName(), method.getName(), returnType.getName());
+		if (!method.getDeclaringClass().isAssignableFrom(objectClass)) 
+			throw new UtilityError("Class mismatch for method. Method {}.{} isn't a method in {}", method.getDeclaringClass().getName(), method.getName(), objectClass.getName());
+		if (!method.isAccessible()) method.setAccessible(true);
+		return create(method, objectClass, (Class<T>)method.getReturnType());
+	}
+	
+	/**
+	 * Create a compiled getter for the given field
+	 * @param objectClass	The class through which the getter will be invoked
+	 * @param fieldClass		The class of the objects identified by the field
+	 * @param field			The field from which the getter will draw its value
+	 * @return	The compiled getter
+	 * @param <E>	The type of the class on which the getter will be executed
+	 * @param <T>	The type of the variable returned by the call to get
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E,T> CompiledGetter<E,T> forField(Class<E> objectClass, Class<T> fieldClass, Field field) {
+		if (!ClassUtil.isReadable(field.getType(), fieldClass)) 
+			throw new UtilityError("Class mismatch for field. Field {}.{} doesn't supply a {}", field.getDeclaringClass().getName(), field.getName(), fieldClass.getName());
+		if (!field.getDeclaringClass().isAssignableFrom(objectClass)) 
+			throw new UtilityError("Class mismatch for field. Field {}.{} isn't a field in {}", field.getDeclaringClass().getName(), field.getName(), objectClass.getName());
+		if (!field.isAccessible()) field.setAccessible(true);
+		return create(field, objectClass, (Class<T>)field.getType());
+	}
+
+	/**
+	 * Create the compiled getter for the given member. Members of type int, long, double and boolean have getters implementing the primitive
+	 * getter interfaces
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E,T> CompiledGetter<E,T> create(Member member, Class<E> objectClass, Class<T> javaType) {
+		if (javaType == int.class) return (CompiledGetter<E,T>) new OfInt<E>(member, objectClass, Accessors.intGetter(member));
+		if (javaType == long.class) return (CompiledGetter<E,T>) new OfLong<E>(member, objectClass, Accessors.longGetter(member));
+		if (javaType == double.class) return (CompiledGetter<E,T>) new OfDouble<E>(member, objectClass, Accessors.doubleGetter(member));
+		if (javaType == boolean.class) return (CompiledGetter<E,T>) new OfBoolean<E>(member, objectClass, Accessors.booleanGetter(member));
+		return new CompiledGetter<E,T>(member, objectClass, javaType, Accessors.getter(member));
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + member.hashCode();
+		result = prime * result + objectClass.getName().hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CompiledGetter<?,?> other = (CompiledGetter<?,?>) obj;
+		return member.equals(other.member) && objectClass.getName().equals(other.objectClass.getName());
+	}
+
+	@Override
+	public String toString() {
+		return getType()+":"+getThroughClass().getName()+"."+getAlias();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T get(E object) {
+		try {
+			return (T) function.apply(object);
+		} catch (RuntimeException e) {
+			throw failure(e);
+		}
+	}
+
+	UtilityError failure(RuntimeException e) {
+		return new UtilityError("Unable to get value from {} {}.{}", e, getType(), member.getDeclaringClass().getName(), member.getName());
+	}
+
+	@Override
+	public Class<T> getJavaType() {
+		return javaType;
+	}
+
+	@Override
+	public String getAlias() {
+		if (member instanceof Field) return member.getName();
+		return ClassUtil.getAliasFromMethodName(member.getName());
+	}
+
+	@Override
+	public Type getType() {
+		return (member instanceof Field) ? Type.FIELD : Type.METHOD;
+	}
+
+	@Override
+	public Class<E> getThroughClass() {
+		return objectClass;
+	}
+
+	@Override
+	public Class<?> getDeclaringClass() {
+		return member.getDeclaringClass();
+	}
+
+
+	/**
+	 * The compiled getter of a field or getter method of type int which gets its value without boxing it
+	 * @param <E>	The type of the class on which the getter will be executed
+	 */
+	public static class OfInt<E> extends CompiledGetter<E,Integer> implements IntGetter<E> {
+		private final ToIntFunction<Object> intFunction;
+		private OfInt(Member member, Class<E> objectClass, ToIntFunction<Object> function) {
+			super(member, objectClass, int.class, object -> function.applyAsInt(object));
+			this.intFunction = function;
+		}
+		@Override
+		public int getInt(E object) {
+			try {
+				return intFunction.applyAsInt(object);
+			} catch (RuntimeException e) {
+				throw failure(e);
+			}
+		}
+		@Override
+		public Integer get(E object) {
+			return getInt(object);
+		}
+	}
+
+	/**
+	 * The compiled getter of a field or getter method of type long which gets its value without boxing it
+	 * @param <E>	The type of the class on which the getter will be executed
+	 */
+	public static class OfLong<E> extends CompiledGetter<E,Long> implements LongGetter<E> {
+		private final ToLongFunction<Object> longFunction;
+		private OfLong(Member member, Class<E> objectClass, ToLongFunction<Object> function) {
+			super(member, objectClass, long.class, object -> function.applyAsLong(object));
+			this.longFunction = function;
+		}
+		@Override
+		public long getLong(E object) {
+			try {
+				return longFunction.applyAsLong(object);
+			} catch (RuntimeException e) {
+				throw failure(e);
+			}
+		}
+		@Override
+		public Long get(E object) {
+			return getLong(object);
+		}
+	}
+
+	/**
+	 * The compiled getter of a field or getter method of type double which gets its value without boxing it
+	 * @param <E>	The type of the class on which the getter will be executed
+	 */
+	public static class OfDouble<E> extends CompiledGetter<E,Double> implements DoubleGetter<E> {
+		private final ToDoubleFunction<Object> doubleFunction;
+		private OfDouble(Member member, Class<E> objectClass, ToDoubleFunction<Object> function) {
+			super(member, objectClass, double.class, object -> function.applyAsDouble(object));
+			this.doubleFunction = function;
+		}
+		@Override
+		public double getDouble(E object) {
+			try {
+				return doubleFunction.applyAsDouble(object);
+			} catch (RuntimeException e) {
+				throw failure(e);
+			}
+		}
+		@Override
+		public Double get(E object) {
+			return getDouble(object);
+		}
+	}
+
+	/**
+	 * The compiled getter of a field or getter method of type boolean which gets its value without boxing it
+	 * @param <E>	The type of the class on which the getter will be executed
+	 */
+	public static class OfBoolean<E> extends CompiledGetter<E,Boolean> implements BooleanGetter<E> {
+		private final Predicate<Object> booleanFunction;
+		private OfBoolean(Member member, Class<E> objectClass, Predicate<Object> function) {
+			super(member, objectClass, boolean.class, object -> function.test(object));
+			this.booleanFunction = function;
+		}
+		@Override
+		public boolean getBoolean(E object) {
+			try {
+				return booleanFunction.test(object);
+			} catch (RuntimeException e) {
+				throw failure(e);
+			}
+		}
+		@Override
+		public Boolean get(E object) {
+			return getBoolean(object);
+		}
+	}
+
+}
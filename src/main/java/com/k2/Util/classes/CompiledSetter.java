@@ -0,0 +1,253 @@
+package com.k2.Util.classes;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ObjDoubleConsumer;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This class implements the Setter interface for a field or setter method through an accessor compiled from the field or method.
+ * 
+ * Setter methods of public classes are called through a consumer linked directly to the method so that the call to set() runs at the speed 
+ * of a direct call. Other methods and fields are written through method handles. Neither involves reflection once the setter has been created.
+ * 
+ * @author simon
+ *
+ * @param <E>	The type of the class on which the setter will be executed
+ * @param <T>	The type of the value passed to the call to set
+ */
+public class CompiledSetter<E,T> implements Setter<E,T> {
+
+	private final Member member;
+	private final Class<E> objectClass;
+	private final Class<T> javaType;
+	private final BiConsumer<Object,Object> consumer;
+	
+	private CompiledSetter(Member member, Class<E> objectClass, Class<T> javaType, BiConsumer<Object,Object> consumer) {
+		this.member = member;
+		this.objectClass = objectClass;
+		this.javaType = javaType;
+		this.consumer = consumer;
+	}
+	
+	/**
+	 * Create a compiled setter for the given setter method
+	 * @param objectClass	The class of the object on which the setter will operate
+	 * @param javaType		The type of value passed to the call to set
+	 * @param method			The underlying method that sets the value
+	 * @return	The compiled setter
+	 * @param <E>	The type of the class on which the setter will be executed
+	 * @param <T>	The type of the value passed to the call to set
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E,T> CompiledSetter<E,T> forMethod(Class<E> objectClass, Class<T> javaType, Method method) {
+		if (method.getParameterCount() != 1)
+			throw new UtilityError("Parameter mismatch for method. Method {}.{}(...) recieved otehr than a single argument", method.getDeclaringClass().getName(), method.getName());
+		if ( ! ClassUtil.isWritable(method.getParameterTypes()[0], javaType))
+			throw new UtilityError("Parameter type mismatch for method. Method {}.{}(...) doesn't require a {}", method.getDeclaringClass().getName(), method.getName(), javaType.getName());
+		if (!method.getDeclaringClass().isAssignableFrom(objectClass)) 
+			throw new UtilityError("Class mismatch for method. Method {}.{}(...) isn't a method in {}", method.getDeclaringClass().getName(), method.getName(), objectClass.getName());
+		if (!method.isAccessible()) method.setAccessible(true);
+		return create(method, objectClass, (Class<T>)method.getParameterTypes()[0]);
+	}
+	
+	/**
+	 * Create a compiled setter for the given field
+	 * @param objectClass	The class through which the setter will be invoked
+	 * @param fieldClass		The class of the values set in the field
+	 * @param field			The field to set
+	 * @return	The compiled setter
+	 * @param <E>	The type of the class on which the setter will be executed
+	 * @param <T>	The type of the value passed to the call to set
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E,T> CompiledSetter<E,T> forField(Class<E> objectClass, Class<T> fieldClass, Field field) {
+		if (!ClassUtil.isWritable(field.getType(), fieldClass)) 
+			throw new UtilityError("Class mismatch for field. Field {}.{} doesn't accept a {}", field.getDeclaringClass().getName(), field.getName(), fieldClass.getName());
+		if (!field.getDeclaringClass().isAssignableFrom(objectClass)) 
+			throw new UtilityError("Class mismatch for field. Field {}.{} isn't a field in {}", field.getDeclaringClass().getName(), field.getName(), objectClass.getName());
+		if (!field.isAccessible()) field.setAccessible(true);
+		return create(field, objectClass, (Class<T>)field.getType());
+	}
+
+	/**
+	 * Create the compiled setter for the given member. Members of type int, long, double and boolean have setters implementing the primitive
+	 * setter interfaces
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E,T> CompiledSetter<E,T> create(Member member, Class<E> objectClass, Class<T> javaType) {
+		if (javaType == int.class) return (CompiledSetter<E,T>) new OfInt<E>(member, objectClass, Accessors.intSetter(member));
+		if (javaType == long.class) return (CompiledSetter<E,T>) new OfLong<E>(member, objectClass, Accessors.longSetter(member));
+		if (javaType == double.class) return (CompiledSetter<E,T>) new OfDouble<E>(member, objectClass, Accessors.doubleSetter(member));
+		if (javaType == boolean.class) return (CompiledSetter<E,T>) new OfBoolean<E>(member, objectClass, Accessors.booleanSetter(member));
+		return new CompiledSetter<E,T>(member, objectClass, javaType, Accessors.setter(member));
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + member.hashCode();
+		result = prime * result + objectClass.getName().hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CompiledSetter<?,?> other = (CompiledSetter<?,?>) obj;
+		return member.equals(other.member) && objectClass.getName().equals(other.objectClass.getName());
+	}
+
+	@Override
+	public String toString() {
+		return getType()+":"+getThroughClass().getName()+"."+getAlias();
+	}
+
+	@Override
+	public void set(E object, T value) {
+		try {
+			consumer.accept(object, value);
+		} catch (RuntimeException e) {
+			throw failure(e, value);
+		}
+	}
+
+	UtilityError failure(RuntimeException e, Object value) {
+		return new UtilityError("Unable to set value through {} {}.{}({})", e, getType(), member.getDeclaringClass().getName(), member.getName(), value);
+	}
+
+	@Override
+	public Class<T> getJavaType() {
+		return javaType;
+	}
+
+	@Override
+	public String getAlias() {
+		if (member instanceof Field) return member.getName();
+		return ClassUtil.getAliasFromMethodName(member.getName());
+	}
+
+	@Override
+	public Type getType() {
+		return (member instanceof Field) ? Type.FIELD : Type.METHOD;
+	}
+
+	@Override
+	public Class<E> getThroughClass() {
+		return objectClass;
+	}
+
+	@Override
+	public Class<?> getDeclaringClass() {
+		return member.getDeclaringClass();
+	}
+
+
+	/**
+	 * The compiled setter of a field or setter method of type int which sets its value without boxing it
+	 * @param <E>	The type of the class on which the setter will be executed
+	 */
+	public static class OfInt<E> extends CompiledSetter<E,Integer> implements IntSetter<E> {
+		private final ObjIntConsumer<Object> intConsumer;
+		private OfInt(Member member, Class<E> objectClass, ObjIntConsumer<Object> consumer) {
+			super(member, objectClass, int.class, (object, value) -> consumer.accept(object, (Integer)value));
+			this.intConsumer = consumer;
+		}
+		@Override
+		public void setInt(E object, int value) {
+			try {
+				intConsumer.accept(object, value);
+			} catch (RuntimeException e) {
+				throw failure(e, value);
+			}
+		}
+		@Override
+		public void set(E object, Integer value) {
+			setInt(object, value);
+		}
+	}
+
+	/**
+	 * The compiled setter of a field or setter method of type long which sets its value without boxing it
+	 * @param <E>	The type of the class on which the setter will be executed
+	 */
+	public static class OfLong<E> extends CompiledSetter<E,Long> implements LongSetter<E> {
+		private final ObjLongConsumer<Object> longConsumer;
+		private OfLong(Member member, Class<E> objectClass, ObjLongConsumer<Object> consumer) {
+			super(member, objectClass, long.class, (object, value) -> consumer.accept(object, (Long)value));
+			this.longConsumer = consumer;
+		}
+		@Override
+		public void setLong(E object, long value) {
+			try {
+				longConsumer.accept(object, value);
+			} catch (RuntimeException e) {
+				throw failure(e, value);
+			}
+		}
+		@Override
+		public void set(E object, Long value) {
+			setLong(object, value);
+		}
+	}
+
+	/**
+	 * The compiled setter of a field or setter method of type double which sets its value without boxing it
+	 * @param <E>	The type of the class on which the setter will be executed
+	 */
+	public static class OfDouble<E> extends CompiledSetter<E,Double> implements DoubleSetter<E> {
+		private final ObjDoubleConsumer<Object> doubleConsumer;
+		private OfDouble(Member member, Class<E> objectClass, ObjDoubleConsumer<Object> consumer) {
+			super(member, objectClass, double.class, (object, value) -> consumer.accept(object, (Double)value));
+			this.doubleConsumer = consumer;
+		}
+		@Override
+		public void setDouble(E object, double value) {
+			try {
+				doubleConsumer.accept(object, value);
+			} catch (RuntimeException e) {
+				throw failure(e, value);
+			}
+		}
+		@Override
+		public void set(E object, Double value) {
+			setDouble(object, value);
+		}
+	}
+
+	/**
+	 * The compiled setter of a field or setter method of type boolean which sets its value without boxing it
+	 * @param <E>	The type of the class on which the setter will be executed
+	 */
+	public static class OfBoolean<E> extends CompiledSetter<E,Boolean> implements BooleanSetter<E> {
+		private final Accessors.ObjBooleanConsumer<Object> booleanConsumer;
+		private OfBoolean(Member member, Class<E> objectClass, Accessors.ObjBooleanConsumer<Object> consumer) {
+			super(member, objectClass, boolean.class, (object, value) -> consumer.accept(object, (Boolean)value));
+			this.booleanConsumer = consumer;
+		}
+		@Override
+		public void setBoolean(E object, boolean value) {
+			try {
+				booleanConsumer.accept(object, value);
+			} catch (RuntimeException e) {
+				throw failure(e, value);
+			}
+		}
+		@Override
+		public void set(E object, Boolean value) {
+			setBoolean(object, value);
+		}
+	}
+
+}
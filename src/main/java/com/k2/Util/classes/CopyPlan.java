@@ -0,0 +1,164 @@
+package com.k2.Util.classes;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The copy plan of a class copies the values of all the instance fields available through the class from one instance of the class to another.
+ *
+ * The plan is compiled once for each class. Each instance field, including private and final fields, is compiled into a method handle that
+ * reads the field of the source object and writes the value into the same field of the target object without boxing primitive values, and the
+ * zero argument constructor of the class is held as a method handle, so copying and cloning an object involves no reflection and no allocation
+ * other than the clone itself. Static fields are not copied.
+ *
+ * @author simon
+ *
+ * @param <T>	The class copied by the plan
+ */
+public class CopyPlan<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private static final MethodType COPY_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+	private static final ClassValue<CopyPlan<?>> plans = new ClassValue<CopyPlan<?>>() {
+		@Override
+		protected CopyPlan<?> computeValue(Class<?> cls) { return new CopyPlan<>(cls); }
+	};
+
+	private final Class<T> cls;
+	private final Field[] fields;
+	private final MethodHandle[] copiers;
+	private final MethodHandle constructor;
+
+	private CopyPlan(Class<T> cls) {
+		this.cls = cls;
+		List<Field> copied = new ArrayList<Field>();
+		List<MethodHandle> handles = new ArrayList<MethodHandle>();
+		for (Field f : ClassUtil.allFields(cls)) {
+			if (Modifier.isStatic(f.getModifiers())) continue;
+			copied.add(f);
+			handles.add(copier(f));
+		}
+		this.fields = copied.toArray(new Field[copied.size()]);
+		this.copiers = handles.toArray(new MethodHandle[handles.size()]);
+		this.constructor = constructor(cls);
+		logger.trace("Compiled copy plan for {} copying {} fields", cls.getName(), fields.length);
+	}
+
+	/**
+	 * Compile a method handle taking the target and source objects that sets the given field of the target to the value of the field of the source
+	 */
+	private static MethodHandle copier(Field f) {
+		try {
+			if (!f.isAccessible()) f.setAccessible(true);
+			MethodHandle getter = lookup.unreflectGetter(f);
+			MethodHandle setter = lookup.unreflectSetter(f);
+			return MethodHandles.filterArguments(setter, 1, getter).asType(COPY_TYPE);
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new UtilityError("Unable to compile the copy of field {}.{}", e, f.getDeclaringClass().getName(), f.getName());
+		}
+	}
+
+	private static MethodHandle constructor(Class<?> cls) {
+		if (cls.isInterface() || Modifier.isAbstract(cls.getModifiers()) || cls.isArray() || cls.isPrimitive()) return null;
+		try {
+			Constructor<?> c = cls.getDeclaredConstructor();
+			if (!c.isAccessible()) c.setAccessible(true);
+			return lookup.unreflectConstructor(c).asType(CONSTRUCTOR_TYPE);
+		} catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+			// A constructor that cannot be made accessible, as in a package not opened by its module, leaves the class unable to be instantiated
+			return null;
+		}
+	}
+
+	/**
+	 * Get the copy plan of the given class. The plan is compiled on first use and cached against the class
+	 * @param cls	The class whose copy plan is required
+	 * @return	The copy plan of the class
+	 * @param <T>	The class copied by the plan
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CopyPlan<T> forClass(Class<T> cls) { return (CopyPlan<T>) plans.get(cls); }
+
+	/**
+	 * Discard the cached copy plan of the given class
+	 * @param cls	The class whose copy plan is to be discarded
+	 */
+	public static void evict(Class<?> cls) { plans.remove(cls); }
+
+	/**
+	 * @return	The class copied by this plan
+	 */
+	public Class<T> getCopiedClass() { return cls; }
+
+	/**
+	 * @return	The number of fields copied by this plan
+	 */
+	public int size() { return fields.length; }
+
+	/**
+	 * @return	True if the class of this plan can be instantiated through its zero argument constructor
+	 */
+	public boolean canInstantiate() { return constructor != null; }
+
+	/**
+	 * Copy the values of all the instance fields of the given source object to the given target object
+	 * @param fromObj	The source object
+	 * @param toObj		The object whose fields are set to the values of the fields of the source object
+	 */
+	public void copy(T fromObj, T toObj) {
+		int i = 0;
+		try {
+			for (; i<copiers.length; i++) copiers[i].invokeExact((Object)toObj, (Object)fromObj);
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to copy field {}.{} from {} to {}", e, cls.getName(), fields[i].getName(), fromObj, toObj);
+		}
+	}
+
+	/**
+	 * @return	A new instance of the class of this plan created through its zero argument constructor
+	 */
+	@SuppressWarnings("unchecked")
+	public T newInstance() {
+		if (constructor == null)
+			throw new UtilityError("It is only possible to clone objects that have a zero arg constructor. No zero arg constructor for {}", cls.getName());
+		try {
+			return (T) constructor.invokeExact();
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to instantiate {} - {}", e, cls.getName(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Create a shallow clone of the given object. The clone is created through the zero argument constructor of the class and has the values of
+	 * all the instance fields of the given object
+	 * @param toClone	The object to clone
+	 * @return	The clone
+	 */
+	public T clone(T toClone) {
+		T clone = newInstance();
+		copy(toClone, clone);
+		return clone;
+	}
+
+	@Override
+	public String toString() {
+		return "CopyPlan("+cls.getName()+")";
+	}
+
+}
@@ -0,0 +1,382 @@
+package com.k2.Util.classes;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This static utility creates deep clones of object graphs.
+ *
+ * Every object reachable from the cloned object is cloned once. The clones already created are tracked in an identity map so that cycles and
+ * shared references in the original graph are reproduced in the cloned graph. Instances of immutable types are shared between the original and
+ * the clone rather than copied. Strings, boxed primitives, enums, BigDecimal, BigInteger, UUID, classes and the java.time value types are
+ * immutable and further value types can be registered through registerImmutable().
+ *
+ * Objects are cloned through the compiled copy plan of their class, after which each reference field that can hold a mutable value is replaced by
+ * the clone of its value. The fields to clone are identified once per class and cached in a clone plan. Collections and maps are created pre-sized
+ * as instances of the same class where the class has a zero arg constructor and as array lists, linked hash sets or linked hash maps otherwise.
+ * The java collection classes are only created through their public constructors, enum sets and enum maps are copied through their own copy
+ * methods and the clones of unmodifiable collections and maps are themselves unmodifiable. A clone that is not an instance of the type of the
+ * field holding it is an error. Arrays are copied in bulk and only the elements of arrays of mutable types are cloned individually.
+ *
+ * @author simon
+ *
+ */
+public class DeepCloner {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+	private static final String UNMODIFIABLE_PREFIX = "java.util.Collections$Unmodifiable";
+
+	private static final Set<Class<?>> immutableTypes = new CopyOnWriteArraySet<Class<?>>();
+	private static volatile int immutableVersion = 0;
+
+	/**
+	 * Whether a class is immutable and the version of the immutable type registrations against which the class was checked
+	 */
+	private static class Immutability {
+		private final int version;
+		private final boolean immutable;
+		private Immutability(int version, boolean immutable) {
+			this.version = version;
+			this.immutable = immutable;
+		}
+	}
+
+	private static final ClassValue<Immutability> immutable = new ClassValue<Immutability>() {
+		@Override
+		protected Immutability computeValue(Class<?> cls) {
+			int version = immutableVersion;
+			boolean b = cls.isPrimitive() || Enum.class.isAssignableFrom(cls);
+			for (Class<?> immutableType : immutableTypes) if (!b && immutableType.isAssignableFrom(cls)) b = true;
+			return new Immutability(version, b);
+		}
+	};
+
+	private static final ClassValue<ClonePlan> plans = new ClassValue<ClonePlan>() {
+		@Override
+		protected ClonePlan computeValue(Class<?> cls) { return new ClonePlan(cls); }
+	};
+
+	/**
+	 * The zero arg constructors of collection and map classes. Only the public constructors of public java classes are used since the java
+	 * classes are not opened to reflection
+	 */
+	private static final ClassValue<MethodHandle> constructors = new ClassValue<MethodHandle>() {
+		@Override
+		protected MethodHandle computeValue(Class<?> cls) {
+			if (Modifier.isAbstract(cls.getModifiers())) return null;
+			try {
+				if (cls.getName().startsWith("java.")) {
+					if (!Modifier.isPublic(cls.getModifiers())) return null;
+					return MethodHandles.publicLookup().findConstructor(cls, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+				}
+				Constructor<?> constructor = cls.getDeclaredConstructor();
+				if (!constructor.isAccessible()) constructor.setAccessible(true);
+				return lookup.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+				return null;
+			}
+		}
+	};
+
+	static {
+		registerImmutable(
+				String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+				BigDecimal.class, BigInteger.class, UUID.class, Class.class,
+				java.time.Instant.class, java.time.LocalDate.class, java.time.LocalTime.class, java.time.LocalDateTime.class,
+				java.time.OffsetTime.class, java.time.OffsetDateTime.class, java.time.ZonedDateTime.class, java.time.ZoneId.class,
+				java.time.Duration.class, java.time.Period.class, java.time.Year.class, java.time.YearMonth.class, java.time.MonthDay.class);
+	}
+
+	private DeepCloner() {}
+
+	/**
+	 * Register the given classes as immutable value types. Instances of the given classes and their sub classes are shared by deep clones rather
+	 * than copied
+	 * @param classes	The immutable classes
+	 */
+	public static synchronized void registerImmutable(Class<?> ... classes) {
+		for (Class<?> cls : classes) immutableTypes.add(cls);
+		immutableVersion++;
+	}
+
+	/**
+	 * Check whether instances of the given class are immutable and so shared by deep clones
+	 * @param cls	The class to check
+	 * @return	True if the given class is a primitive, an enum or a registered immutable type
+	 */
+	public static boolean isImmutable(Class<?> cls) {
+		Immutability i = immutable.get(cls);
+		if (i.version != immutableVersion) {
+			// Immutable types were registered since the class was checked
+			immutable.remove(cls);
+			i = immutable.get(cls);
+		}
+		return i.immutable;
+	}
+
+	/**
+	 * Discard the cached clone plan and immutability of the given class
+	 * @param cls	The class whose clone plan is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		plans.remove(cls);
+		constructors.remove(cls);
+		immutable.remove(cls);
+	}
+
+	/**
+	 * Create a deep clone of the given object
+	 * @param obj	The object to clone
+	 * @return	A clone of the given object in which every mutable object reachable from the given object is itself cloned
+	 * @param <T>	The type of the cloned object
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T clone(T obj) {
+		return (T) clone(obj, new IdentityHashMap<Object, Object>());
+	}
+
+	private static Object clone(Object obj, Map<Object, Object> clones) {
+		if (obj == null) return null;
+		Class<?> cls = obj.getClass();
+		if (isImmutable(cls)) return obj;
+		Object clone = clones.get(obj);
+		if (clone != null) return clone;
+
+		if (cls.isArray()) return cloneArray(obj, cls, clones);
+		if (obj instanceof Date) {
+			clone = ((Date)obj).clone();
+			clones.put(obj, clone);
+			return clone;
+		}
+		if (obj instanceof Collection) return cloneCollection((Collection<?>)obj, clones);
+		if (obj instanceof Map) return cloneMap((Map<?,?>)obj, clones);
+		return plans.get(cls).cloneObject(obj, clones);
+	}
+
+	private static Object cloneArray(Object array, Class<?> cls, Map<Object, Object> clones) {
+		int length = Array.getLength(array);
+		Object clone = Array.newInstance(cls.getComponentType(), length);
+		System.arraycopy(array, 0, clone, 0, length);
+		clones.put(array, clone);
+		if (!isImmutable(cls.getComponentType())) {
+			Object[] elements = (Object[])clone;
+			for (int i=0; i<length; i++) elements[i] = clone(elements[i], clones);
+		}
+		return clone;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object cloneCollection(Collection<?> collection, Map<Object, Object> clones) {
+		if (collection instanceof EnumSet) {
+			// The elements of enum sets are immutable so the copy is a clone
+			Object clone = EnumSet.copyOf((EnumSet)collection);
+			clones.put(collection, clone);
+			return clone;
+		}
+		Collection<Object> clone = newCollection(collection);
+		Collection<Object> result = unmodifiable(collection, clone);
+		clones.put(collection, result);
+		for (Object element : collection) clone.add(clone(element, clones));
+		return result;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object cloneMap(Map<?,?> map, Map<Object, Object> clones) {
+		if (map instanceof EnumMap) {
+			// The keys of enum maps are immutable so only the values are cloned
+			EnumMap<?, Object> clone = new EnumMap((EnumMap)map);
+			clones.put(map, clone);
+			for (Map.Entry<?, Object> entry : clone.entrySet()) entry.setValue(clone(entry.getValue(), clones));
+			return clone;
+		}
+		Map<Object, Object> clone = newMap(map);
+		Map<Object, Object> result = unmodifiable(map, clone);
+		clones.put(map, result);
+		for (Map.Entry<?,?> entry : map.entrySet()) clone.put(clone(entry.getKey(), clones), clone(entry.getValue(), clones));
+		return result;
+	}
+
+	/**
+	 * Wrap the clone of an unmodifiable collection so that it is also unmodifiable
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Collection<Object> unmodifiable(Collection<?> collection, Collection<Object> clone) {
+		if (!collection.getClass().getName().startsWith(UNMODIFIABLE_PREFIX)) return clone;
+		if (collection instanceof List) return Collections.unmodifiableList((List<Object>)clone);
+		if (collection instanceof NavigableSet && clone instanceof NavigableSet) return Collections.unmodifiableNavigableSet((NavigableSet)clone);
+		if (collection instanceof SortedSet && clone instanceof SortedSet) return Collections.unmodifiableSortedSet((SortedSet)clone);
+		if (collection instanceof Set) return Collections.unmodifiableSet((Set<Object>)clone);
+		return Collections.unmodifiableCollection(clone);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Map<Object, Object> unmodifiable(Map<?,?> map, Map<Object, Object> clone) {
+		if (!map.getClass().getName().startsWith(UNMODIFIABLE_PREFIX)) return clone;
+		if (map instanceof NavigableMap && clone instanceof NavigableMap) return Collections.unmodifiableNavigableMap((NavigableMap)clone);
+		if (map instanceof SortedMap && clone instanceof SortedMap) return Collections.unmodifiableSortedMap((SortedMap)clone);
+		return Collections.unmodifiableMap(clone);
+	}
+
+	/**
+	 * Create a new instance of the given collection or map class through its zero arg constructor, or null if the class can not be instantiated
+	 */
+	private static Object newInstance(Class<?> cls) {
+		MethodHandle constructor = constructors.get(cls);
+		if (constructor == null) return null;
+		try {
+			return (Object)constructor.invokeExact();
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to create instance of {}", e, cls.getName());
+		}
+	}
+
+	/**
+	 * Create an empty collection of the class of the given collection sized to hold the elements of the given collection
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Collection<Object> newCollection(Collection<?> collection) {
+		Class<?> cls = collection.getClass();
+		int size = collection.size();
+		if (cls == ArrayList.class) return new ArrayList<Object>(size);
+		if (cls == HashSet.class) return new HashSet<Object>(capacity(size));
+		if (cls == LinkedHashSet.class) return new LinkedHashSet<Object>(capacity(size));
+		if (cls == ArrayDeque.class) return new ArrayDeque<Object>(size);
+		if (cls == LinkedList.class) return new LinkedList<Object>();
+		if (cls == TreeSet.class) return new TreeSet<Object>(((SortedSet)collection).comparator());
+		Object instance = (collection instanceof SortedSet) ? null : newInstance(cls);
+		if (instance != null) return (Collection<Object>) instance;
+		if (collection instanceof SortedSet) return new TreeSet<Object>(((SortedSet)collection).comparator());
+		if (collection instanceof Set) return new LinkedHashSet<Object>(capacity(size));
+		return new ArrayList<Object>(size);
+	}
+
+	/**
+	 * Create an empty map of the class of the given map sized to hold the entries of the given map
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Map<Object, Object> newMap(Map<?,?> map) {
+		Class<?> cls = map.getClass();
+		int size = map.size();
+		if (cls == HashMap.class) return new HashMap<Object, Object>(capacity(size));
+		if (cls == LinkedHashMap.class) return new LinkedHashMap<Object, Object>(capacity(size));
+		if (cls == TreeMap.class) return new TreeMap<Object, Object>(((SortedMap)map).comparator());
+		if (cls == IdentityHashMap.class) return new IdentityHashMap<Object, Object>(size);
+		if (cls == ConcurrentHashMap.class) return new ConcurrentHashMap<Object, Object>(capacity(size));
+		Object instance = (map instanceof SortedMap) ? null : newInstance(cls);
+		if (instance != null) return (Map<Object, Object>) instance;
+		if (map instanceof SortedMap) return new TreeMap<Object, Object>(((SortedMap)map).comparator());
+		return new LinkedHashMap<Object, Object>(capacity(size));
+	}
+
+	/**
+	 * The initial capacity of a hash based collection holding the given number of elements without resizing at the default load factor
+	 */
+	private static int capacity(int size) {
+		return (size < 3) ? size+1 : (int)(size/0.75f)+1;
+	}
+
+	/**
+	 * The clone plan of a class holds compiled accessors for the instance fields of the class that can hold mutable values
+	 */
+	private static class ClonePlan {
+
+		private final Class<?> cls;
+		private final CopyPlan<Object> copyPlan;
+		private final Field[] fields;
+		private final MethodHandle[] getters;
+		private final MethodHandle[] setters;
+
+		@SuppressWarnings("unchecked")
+		private ClonePlan(Class<?> cls) {
+			this.cls = cls;
+			this.copyPlan = (CopyPlan<Object>) CopyPlan.forClass(cls);
+			List<Field> cloned = new ArrayList<Field>();
+			for (Field f : ClassUtil.allFields(cls)) {
+				if (Modifier.isStatic(f.getModifiers()) || isImmutable(f.getType())) continue;
+				cloned.add(f);
+			}
+			this.fields = cloned.toArray(new Field[cloned.size()]);
+			this.getters = new MethodHandle[fields.length];
+			this.setters = new MethodHandle[fields.length];
+			for (int i=0; i<fields.length; i++) {
+				Field f = fields[i];
+				try {
+					if (!f.isAccessible()) f.setAccessible(true);
+					getters[i] = lookup.unreflectGetter(f).asType(GETTER_TYPE);
+					setters[i] = lookup.unreflectSetter(f).asType(SETTER_TYPE);
+				} catch (IllegalAccessException | RuntimeException e) {
+					throw new UtilityError("Unable to compile the clone of field {}.{}", e, cls.getName(), f.getName());
+				}
+			}
+			logger.trace("Compiled clone plan for {} cloning {} of {} fields", cls.getName(), fields.length, copyPlan.size());
+		}
+
+		private Object cloneObject(Object obj, Map<Object, Object> clones) {
+			if (!copyPlan.canInstantiate())
+				throw new UtilityError("It is only possible to deep clone objects that have a zero arg constructor. No zero arg constructor for {}", cls.getName());
+			Object clone = copyPlan.newInstance();
+			clones.put(obj, clone);
+			copyPlan.copy(obj, clone);
+			int i = 0;
+			try {
+				for (; i<fields.length; i++) {
+					Object value = getters[i].invokeExact(obj);
+					if (value == null) continue;
+					Object cloned = DeepCloner.clone(value, clones);
+					if (!fields[i].getType().isInstance(cloned))
+						throw new UtilityError("Unable to clone field {}.{}, the {} can only be cloned as a {}", cls.getName(), fields[i].getName(), value.getClass().getName(), cloned.getClass().getName());
+					setters[i].invokeExact(clone, cloned);
+				}
+			} catch (UtilityError e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new UtilityError("Unable to clone field {}.{} of {}", e, cls.getName(), fields[i].getName(), obj);
+			}
+			return clone;
+		}
+	}
+
+}
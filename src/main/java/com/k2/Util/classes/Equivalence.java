@@ -0,0 +1,540 @@
+package com.k2.Util.classes;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The equivalence of a class compares instances of the class field by field.
+ *
+ * Two objects are equivalent if they are the same object, or if they are both null, or if they are equal values, or if they are collections,
+ * maps or arrays of the same size with equivalent elements, or if they are instances of the same class whose instance fields are all equivalent.
+ * Strings, boxed primitives, enums, dates and the other immutable types of the DeepCloner are compared as values through equals(). Lists, other
+ * collections and arrays are compared element by element in iteration order, sets by matching each element of the left hand set to an
+ * equivalent element of the right hand set whatever their iteration order, and maps entry by entry through the keys of the left hand map.
+ *
+ * The equivalence of each class is compiled once. Each instance field is read through a method handle and primitive fields are compared without
+ * boxing. Primitive double and float fields are equivalent if their values are == or both NaN, so 0.0 is equivalent to -0.0 and NaN to NaN just
+ * as the snapshots of the ObjectDiff compare their bits. The fields are compared in order of their cost so that primitive fields are compared
+ * first and nested objects last, and the comparison stops at the first field that is not equivalent. Objects nested within themselves are
+ * compared once, a pair of objects already being compared is taken to be equivalent so that cyclic object graphs can be compared.
+ *
+ * The equivalence hash of an object is consistent with its equivalence, equivalent objects have the same equivalence hash so objects can be
+ * bucketed by their hash before being compared. The hash covers the objects nested to a depth of MAX_HASH_DEPTH, where nested objects are given
+ * the same fixed hash, so that equivalent cyclic object graphs whose cycles have different lengths have the same hash.
+ *
+ * @author simon
+ *
+ * @param <T>	The class compared by the equivalence
+ */
+public class Equivalence<T> implements BiPredicate<T, T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	/**
+	 * The depth of nested objects covered by the equivalence hash of an object
+	 */
+	public static final int MAX_HASH_DEPTH = 8;
+
+	private static final ClassValue<Equivalence<?>> equivalences = new ClassValue<Equivalence<?>>() {
+		@Override
+		protected Equivalence<?> computeValue(Class<?> cls) { return new Equivalence<>(cls); }
+	};
+
+	private final Class<T> cls;
+	private final FieldEquivalence[] fields;
+
+	private Equivalence(Class<T> cls) {
+		this.cls = cls;
+		List<FieldEquivalence> compiled = new ArrayList<FieldEquivalence>();
+		for (Field f : ClassUtil.allFields(cls)) {
+			if (Modifier.isStatic(f.getModifiers())) continue;
+			compiled.add(compile(f));
+		}
+		// Compare the cheapest fields first, the sort is stable so fields of the same cost are compared in the order in which they are declared
+		compiled.sort(Comparator.comparingInt(fe -> fe.cost));
+		this.fields = compiled.toArray(new FieldEquivalence[compiled.size()]);
+		logger.trace("Compiled equivalence for {} comparing {} fields", cls.getName(), fields.length);
+	}
+
+	/**
+	 * Get the equivalence of the given class. The equivalence is compiled on first use and cached against the class
+	 * @param cls	The class whose equivalence is required
+	 * @return	The equivalence of the class
+	 * @param <T>	The class compared by the equivalence
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Equivalence<T> forClass(Class<T> cls) { return (Equivalence<T>) equivalences.get(cls); }
+
+	/**
+	 * Discard the cached equivalence of the given class
+	 * @param cls	The class whose equivalence is to be discarded
+	 */
+	public static void evict(Class<?> cls) { equivalences.remove(cls); }
+
+	/**
+	 * Check whether the given objects are equivalent
+	 * @param lhs	The left hand object
+	 * @param rhs	The right hand object
+	 * @return	True if the given objects are equivalent
+	 */
+	public static boolean equivalent(Object lhs, Object rhs) {
+		return equivalent(lhs, rhs, new Context());
+	}
+
+	/**
+	 * Get the equivalence hash of the given object
+	 * @param obj	The object whose equivalence hash is required
+	 * @return	The hash of the object, equivalent objects have the same equivalence hash
+	 */
+	public static int hashOf(Object obj) {
+		return hash(obj, MAX_HASH_DEPTH);
+	}
+
+	/**
+	 * @return	The class compared by this equivalence
+	 */
+	public Class<T> getComparedClass() { return cls; }
+
+	/**
+	 * Check whether the given instances of the class of this equivalence are equivalent
+	 * @param lhs	The left hand object
+	 * @param rhs	The right hand object
+	 * @return	True if the given objects are equivalent
+	 */
+	@Override
+	public boolean test(T lhs, T rhs) {
+		if (lhs == rhs) return true;
+		if (lhs == null || rhs == null) return false;
+		return compare(lhs, rhs, new Context());
+	}
+
+	/**
+	 * Get the equivalence hash of the given instance of the class of this equivalence
+	 * @param obj	The object whose equivalence hash is required
+	 * @return	The hash of the object, equivalent objects have the same equivalence hash
+	 */
+	public int hash(T obj) {
+		if (obj == null) return 0;
+		return hashFields(obj, MAX_HASH_DEPTH);
+	}
+
+	/*
+	 * The compiled fields of the equivalence are shared with the ObjectDiff in the order in which they are compared
+	 */
+	int size() { return fields.length; }
+
+	Field getField(int i) { return fields[i].field; }
+
+	boolean isPrimitiveField(int i) { return fields[i].cost == PRIMITIVE; }
+
+	boolean isValueField(int i) { return fields[i].cost <= STRING; }
+
+	long getBits(int i, Object obj) {
+		try {
+			return fields[i].bits(obj);
+		} catch (UtilityError e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to read field {}.{}", e, cls.getName(), fields[i].field.getName());
+		}
+	}
+
+	Object getValue(int i, Object obj) {
+		try {
+			return (Object)fields[i].getter.invokeExact(obj);
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to read field {}.{}", e, cls.getName(), fields[i].field.getName());
+		}
+	}
+
+	boolean equivalent(int i, Object lhs, Object rhs) {
+		try {
+			return fields[i].equivalent(lhs, rhs, new Context());
+		} catch (UtilityError e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compare field {}.{}", e, cls.getName(), fields[i].field.getName());
+		}
+	}
+
+	private boolean compare(Object lhs, Object rhs, Context context) {
+		if (!context.enter(lhs, rhs)) return true;
+		int i = 0;
+		try {
+			for (; i<fields.length; i++) {
+				if (!fields[i].equivalent(lhs, rhs, context)) {
+					if (logger.isDebugEnabled()) logger.debug("Field value equivalence check failure: {}.{}", cls.getSimpleName(), fields[i].field.getName());
+					return false;
+				}
+			}
+			return true;
+		} catch (UtilityError e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to compare field {}.{}", e, cls.getName(), fields[i].field.getName());
+		} finally {
+			context.exit(lhs, rhs);
+		}
+	}
+
+	private int hashFields(Object obj, int depth) {
+		int i = 0;
+		try {
+			int hash = 1;
+			for (; i<fields.length; i++) hash = 31*hash + fields[i].hash(obj, depth);
+			return hash;
+		} catch (UtilityError e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new UtilityError("Unable to hash field {}.{}", e, cls.getName(), fields[i].field.getName());
+		}
+	}
+
+	private static boolean isValue(Class<?> cls) {
+		return DeepCloner.isImmutable(cls) || Date.class.isAssignableFrom(cls);
+	}
+
+	private static boolean equivalent(Object lhs, Object rhs, Context context) {
+		if (lhs == rhs) return true;
+		if (lhs == null || rhs == null) return false;
+		Class<?> cls = lhs.getClass();
+		if (isValue(cls)) return lhs.equals(rhs);
+		if (lhs instanceof Collection) {
+			if (!(rhs instanceof Collection) || (lhs instanceof Set) != (rhs instanceof Set)) return false;
+			if (lhs instanceof Set) return equivalentSets((Set<?>)lhs, (Set<?>)rhs, context);
+			return equivalent((Collection<?>)lhs, (Collection<?>)rhs, context);
+		}
+		if (lhs instanceof Map) return (rhs instanceof Map) && equivalent((Map<?,?>)lhs, (Map<?,?>)rhs, context);
+		if (!cls.equals(rhs.getClass())) {
+			if (logger.isDebugEnabled()) logger.debug("Class mismatch: lhs.getClass()[{}].equals(rhs.getClass()[{}])", cls.getName(), rhs.getClass().getName());
+			return false;
+		}
+		if (cls.isArray()) return equivalentArrays(lhs, rhs, context);
+		return forClass(cls).compare(lhs, rhs, context);
+	}
+
+	private static boolean equivalent(Collection<?> lhs, Collection<?> rhs, Context context) {
+		if (lhs.size() != rhs.size()) {
+			if (logger.isDebugEnabled()) logger.debug("Size mismatch: lhs.size()[{}] != rhs.size()[{}]", lhs.size(), rhs.size());
+			return false;
+		}
+		Iterator<?> r = rhs.iterator();
+		for (Object l : lhs) if (!r.hasNext() || !equivalent(l, r.next(), context)) return false;
+		return true;
+	}
+
+	/**
+	 * Sets are matched through the equivalence hash of their elements so that each element of the left hand set is only compared to the elements
+	 * of the right hand set with the same hash. Each right hand element is matched at most once
+	 */
+	private static boolean equivalentSets(Set<?> lhs, Set<?> rhs, Context context) {
+		if (lhs.size() != rhs.size()) {
+			if (logger.isDebugEnabled()) logger.debug("Size mismatch: lhs.size()[{}] != rhs.size()[{}]", lhs.size(), rhs.size());
+			return false;
+		}
+		Map<Integer, List<Object>> buckets = new HashMap<Integer, List<Object>>(rhs.size()*2);
+		for (Object element : rhs) buckets.computeIfAbsent(hashOf(element), h -> new ArrayList<Object>(1)).add(element);
+		for (Object element : lhs) {
+			List<Object> bucket = buckets.get(hashOf(element));
+			if (bucket == null) return false;
+			boolean matched = false;
+			for (Iterator<Object> candidates = bucket.iterator(); candidates.hasNext();) {
+				if (equivalent(element, candidates.next(), context)) {
+					candidates.remove();
+					matched = true;
+					break;
+				}
+			}
+			if (!matched) return false;
+		}
+		return true;
+	}
+
+	private static boolean equivalent(Map<?,?> lhs, Map<?,?> rhs, Context context) {
+		if (lhs.size() != rhs.size()) return false;
+		for (Map.Entry<?,?> entry : lhs.entrySet()) {
+			Object value = rhs.get(entry.getKey());
+			if (value == null && !rhs.containsKey(entry.getKey())) return false;
+			if (!equivalent(entry.getValue(), value, context)) return false;
+		}
+		return true;
+	}
+
+	private static boolean equivalentArrays(Object lhs, Object rhs, Context context) {
+		Class<?> component = lhs.getClass().getComponentType();
+		if (component.isPrimitive()) {
+			if (component == int.class) return Arrays.equals((int[])lhs, (int[])rhs);
+			if (component == long.class) return Arrays.equals((long[])lhs, (long[])rhs);
+			if (component == double.class) return Arrays.equals((double[])lhs, (double[])rhs);
+			if (component == boolean.class) return Arrays.equals((boolean[])lhs, (boolean[])rhs);
+			if (component == char.class) return Arrays.equals((char[])lhs, (char[])rhs);
+			if (component == byte.class) return Arrays.equals((byte[])lhs, (byte[])rhs);
+			if (component == short.class) return Arrays.equals((short[])lhs, (short[])rhs);
+			return Arrays.equals((float[])lhs, (float[])rhs);
+		}
+		Object[] l = (Object[])lhs;
+		Object[] r = (Object[])rhs;
+		if (l.length != r.length) {
+			if (logger.isDebugEnabled()) logger.debug("Array length mismatch: lhs.length[{}] != rhs.length[{}]", l.length, r.length);
+			return false;
+		}
+		for (int i=0; i<l.length; i++) if (!equivalent(l[i], r[i], context)) return false;
+		return true;
+	}
+
+	/**
+	 * Hash the given object and the objects nested within it to the given depth. Objects nested beyond the depth all have the same hash so the hash
+	 * of an object graph depends only on the tree of values reachable within the depth, which is the same for equivalent graphs whatever the
+	 * lengths of their cycles
+	 */
+	private static int hash(Object obj, int depth) {
+		if (obj == null) return 0;
+		Class<?> cls = obj.getClass();
+		if (isValue(cls)) return obj.hashCode();
+		if (depth == 0) return 1;
+		if (obj instanceof Set) {
+			int hash = 0;
+			for (Object element : (Set<?>)obj) hash += hash(element, depth-1);
+			return hash;
+		}
+		if (obj instanceof Collection) {
+			int hash = 1;
+			for (Object element : (Collection<?>)obj) hash = 31*hash + hash(element, depth-1);
+			return hash;
+		}
+		if (obj instanceof Map) {
+			// Map entries are compared through the keys of the left hand map so the hash of a map does not depend on the order of its entries
+			int hash = 0;
+			for (Map.Entry<?,?> entry : ((Map<?,?>)obj).entrySet()) hash += (entry.getKey() == null ? 0 : entry.getKey().hashCode()) ^ hash(entry.getValue(), depth-1);
+			return hash;
+		}
+		if (cls.isArray()) {
+			if (cls.getComponentType().isPrimitive()) return primitiveArrayHash(obj, cls.getComponentType());
+			int hash = 1;
+			for (Object element : (Object[])obj) hash = 31*hash + hash(element, depth-1);
+			return hash;
+		}
+		return forClass(cls).hashFields(obj, depth-1);
+	}
+
+	private static int primitiveArrayHash(Object array, Class<?> component) {
+		if (component == int.class) return Arrays.hashCode((int[])array);
+		if (component == long.class) return Arrays.hashCode((long[])array);
+		if (component == double.class) return Arrays.hashCode((double[])array);
+		if (component == boolean.class) return Arrays.hashCode((boolean[])array);
+		if (component == char.class) return Arrays.hashCode((char[])array);
+		if (component == byte.class) return Arrays.hashCode((byte[])array);
+		if (component == short.class) return Arrays.hashCode((short[])array);
+		return Arrays.hashCode((float[])array);
+	}
+
+	@Override
+	public String toString() {
+		return "Equivalence("+cls.getName()+")";
+	}
+
+	/**
+	 * The objects being compared by one top level comparison. The pairs being compared are only tracked once a nested object
+	 * is compared. A left hand object may be compared to several right hand objects at once when the object graphs have cycles of different
+	 * lengths so the right hand objects are tracked in an identity set for each left hand object
+	 */
+	private static class Context {
+		private Map<Object, Set<Object>> inProgress;
+
+		/**
+		 * @return	False if the given left hand object is already being compared to the given right hand object
+		 */
+		private boolean enter(Object lhs, Object rhs) {
+			if (inProgress == null) inProgress = new IdentityHashMap<Object, Set<Object>>();
+			Set<Object> rhsInProgress = inProgress.get(lhs);
+			if (rhsInProgress == null) {
+				rhsInProgress = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>(4));
+				inProgress.put(lhs, rhsInProgress);
+			}
+			return rhsInProgress.add(rhs);
+		}
+
+		private void exit(Object lhs, Object rhs) {
+			Set<Object> rhsInProgress = inProgress.get(lhs);
+			rhsInProgress.remove(rhs);
+			if (rhsInProgress.isEmpty()) inProgress.remove(lhs);
+		}
+	}
+
+	private static final int PRIMITIVE = 0;
+	private static final int VALUE = 1;
+	private static final int STRING = 2;
+	private static final int AGGREGATE = 3;
+	private static final int OBJECT = 4;
+
+	private static FieldEquivalence compile(Field f) {
+		Class<?> type = f.getType();
+		try {
+			if (!f.isAccessible()) f.setAccessible(true);
+			MethodHandle getter = lookup.unreflectGetter(f);
+			MethodHandle objectGetter = getter.asType(MethodType.methodType(Object.class, Object.class));
+			if (type == int.class) return new IntEquivalence(f, getter.asType(MethodType.methodType(int.class, Object.class)), objectGetter);
+			if (type == long.class) return new LongEquivalence(f, getter.asType(MethodType.methodType(long.class, Object.class)), objectGetter);
+			if (type == boolean.class) return new BooleanEquivalence(f, getter.asType(MethodType.methodType(boolean.class, Object.class)), objectGetter);
+			if (type == double.class) return new DoubleEquivalence(f, getter.asType(MethodType.methodType(double.class, Object.class)), objectGetter);
+			if (type == float.class) return new FloatEquivalence(f, getter.asType(MethodType.methodType(float.class, Object.class)), objectGetter);
+			if (type.isPrimitive()) {
+				// char, short and byte fields are widened to int without boxing
+				return new IntEquivalence(f, getter.asType(MethodType.methodType(int.class, Object.class)), objectGetter);
+			}
+			if (type == String.class) return new ValueEquivalence(f, objectGetter, STRING);
+			if (isValue(type) && (Modifier.isFinal(type.getModifiers()) || type.isEnum())) return new ValueEquivalence(f, objectGetter, VALUE);
+			if (type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) return new ObjectEquivalence(f, objectGetter, AGGREGATE);
+			return new ObjectEquivalence(f, objectGetter, OBJECT);
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new UtilityError("Unable to compile the equivalence of field {}.{}", e, f.getDeclaringClass().getName(), f.getName());
+		}
+	}
+
+	/**
+	 * The compiled comparison and hash of one field
+	 */
+	private static abstract class FieldEquivalence {
+		final Field field;
+		final MethodHandle getter;
+		final int cost;
+		FieldEquivalence(Field field, MethodHandle getter, int cost) {
+			this.field = field;
+			this.getter = getter;
+			this.cost = cost;
+		}
+		abstract boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable;
+		abstract int hash(Object obj, int depth) throws Throwable;
+		/**
+		 * @return	The value of a primitive field encoded in a long so that equivalent values have the same encoding
+		 */
+		long bits(Object obj) throws Throwable { throw new UtilityError("The field {}.{} is not primitive", field.getDeclaringClass().getName(), field.getName()); }
+	}
+
+	private static class IntEquivalence extends FieldEquivalence {
+		private final MethodHandle primitive;
+		IntEquivalence(Field field, MethodHandle primitive, MethodHandle getter) { super(field, getter, PRIMITIVE); this.primitive = primitive; }
+		@Override
+		boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable { return (int)primitive.invokeExact(lhs) == (int)primitive.invokeExact(rhs); }
+		@Override
+		int hash(Object obj, int depth) throws Throwable { return (int)primitive.invokeExact(obj); }
+		@Override
+		long bits(Object obj) throws Throwable { return (int)primitive.invokeExact(obj); }
+	}
+
+	private static class LongEquivalence extends FieldEquivalence {
+		private final MethodHandle primitive;
+		LongEquivalence(Field field, MethodHandle primitive, MethodHandle getter) { super(field, getter, PRIMITIVE); this.primitive = primitive; }
+		@Override
+		boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable { return (long)primitive.invokeExact(lhs) == (long)primitive.invokeExact(rhs); }
+		@Override
+		int hash(Object obj, int depth) throws Throwable { return Long.hashCode((long)primitive.invokeExact(obj)); }
+		@Override
+		long bits(Object obj) throws Throwable { return (long)primitive.invokeExact(obj); }
+	}
+
+	private static class BooleanEquivalence extends FieldEquivalence {
+		private final MethodHandle primitive;
+		BooleanEquivalence(Field field, MethodHandle primitive, MethodHandle getter) { super(field, getter, PRIMITIVE); this.primitive = primitive; }
+		@Override
+		boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable { return (boolean)primitive.invokeExact(lhs) == (boolean)primitive.invokeExact(rhs); }
+		@Override
+		int hash(Object obj, int depth) throws Throwable { return Boolean.hashCode((boolean)primitive.invokeExact(obj)); }
+		@Override
+		long bits(Object obj) throws Throwable { return (boolean)primitive.invokeExact(obj) ? 1L : 0L; }
+	}
+
+	private static class DoubleEquivalence extends FieldEquivalence {
+		private final MethodHandle primitive;
+		DoubleEquivalence(Field field, MethodHandle primitive, MethodHandle getter) { super(field, getter, PRIMITIVE); this.primitive = primitive; }
+		@Override
+		boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable {
+			double l = (double)primitive.invokeExact(lhs);
+			double r = (double)primitive.invokeExact(rhs);
+			return l == r || (Double.isNaN(l) && Double.isNaN(r));
+		}
+		@Override
+		int hash(Object obj, int depth) throws Throwable {
+			double value = (double)primitive.invokeExact(obj);
+			// 0.0 and -0.0 are equivalent so must have the same hash
+			return (value == 0.0) ? 0 : Double.hashCode(value);
+		}
+		@Override
+		long bits(Object obj) throws Throwable {
+			double value = (double)primitive.invokeExact(obj);
+			return (value == 0.0) ? 0L : Double.doubleToLongBits(value);
+		}
+	}
+
+	private static class FloatEquivalence extends FieldEquivalence {
+		private final MethodHandle primitive;
+		FloatEquivalence(Field field, MethodHandle primitive, MethodHandle getter) { super(field, getter, PRIMITIVE); this.primitive = primitive; }
+		@Override
+		boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable {
+			float l = (float)primitive.invokeExact(lhs);
+			float r = (float)primitive.invokeExact(rhs);
+			return l == r || (Float.isNaN(l) && Float.isNaN(r));
+		}
+		@Override
+		int hash(Object obj, int depth) throws Throwable {
+			float value = (float)primitive.invokeExact(obj);
+			return (value == 0.0f) ? 0 : Float.hashCode(value);
+		}
+		@Override
+		long bits(Object obj) throws Throwable {
+			float value = (float)primitive.invokeExact(obj);
+			return (value == 0.0f) ? 0L : Float.floatToIntBits(value);
+		}
+	}
+
+	private static class ValueEquivalence extends FieldEquivalence {
+		ValueEquivalence(Field field, MethodHandle getter, int cost) { super(field, getter, cost); }
+		@Override
+		boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable {
+			Object l = (Object)getter.invokeExact(lhs);
+			Object r = (Object)getter.invokeExact(rhs);
+			return (l == null) ? r == null : l.equals(r);
+		}
+		@Override
+		int hash(Object obj, int depth) throws Throwable {
+			Object value = (Object)getter.invokeExact(obj);
+			return (value == null) ? 0 : value.hashCode();
+		}
+	}
+
+	private static class ObjectEquivalence extends FieldEquivalence {
+		ObjectEquivalence(Field field, MethodHandle getter, int cost) { super(field, getter, cost); }
+		@Override
+		boolean equivalent(Object lhs, Object rhs, Context context) throws Throwable {
+			return Equivalence.equivalent((Object)getter.invokeExact(lhs), (Object)getter.invokeExact(rhs), context);
+		}
+		@Override
+		int hash(Object obj, int depth) throws Throwable {
+			return Equivalence.hash((Object)getter.invokeExact(obj), depth);
+		}
+	}
+
+}
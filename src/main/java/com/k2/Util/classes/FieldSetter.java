@@ -23,7 +23,7 @@ public class FieldSetter<E,T> implements Setter<E,T> {
 	 * @param field			The field from which the getter will draw its value
 	 */
 	public FieldSetter(Class<E> objectClass, Class<T> fieldClass, Field field) {
-		if (!field.getType().isAssignableFrom(fieldClass)) 
+		if (!ClassUtil.isWritable(field.getType(), fieldClass)) 
 			throw new UtilityError("Class mismatch for field. Field {}.{} doesn't supply a {}", field.getDeclaringClass().getName(), field.getName(), fieldClass.getName());
 		if (!field.getDeclaringClass().isAssignableFrom(objectClass)) 
 			throw new UtilityError("Class mismatch for field. Field {}.{} isn't a field in {}", field.getDeclaringClass().getName(), field.getName(), objectClass.getName());
@@ -0,0 +1,506 @@
+package com.k2.Util.classes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * The InMemoryCompiler compiles java source held in strings into classes without writing the source or the compiled classes to disk.
+ *
+ * The standard file manager of the system java compiler is created once for each compiler and reused by every compilation so that the class path
+ * is only opened and indexed once. Any number of sources can be compiled in a single javac task and the sources of one compilation can refer to
+ * each other. The compiled byte code of each source is cached against the SHA-256 hash of the class name and source so a source is only
+ * compiled again once its byte code has been dropped from the memory cache, which holds the byte code of at most 'maxCached' sources and
+ * drops the least recently used first. If a cache directory is given the byte code is also stored on disk so that it can be reused by later JVMs. As the byte code is
+ * cached against the source alone the source must identify everything that determines its byte code.
+ *
+ * The sources are compiled against the class path of the running JVM given by the system property 'java.class.path', not against the class
+ * loader given by the caller, so a source can only refer to types on that class path and to the other sources of its compilation. The
+ * classes compiled by compile() are isolated in a new class loader for each compilation whose parent is the class loader given by the caller, so the
+ * types the source refers to are resolved through the parent when the classes are loaded and the generated classes are unloaded along with
+ * their class loader. As they are defined by a different class loader they are in a different runtime package to the classes of the parent
+ * and cannot access or override their package private members. The classes compiled by define() are defined by the class loader of a host
+ * class in its runtime package so that they can, and are not unloaded before the class loader of the host.
+ *
+ * The default compiler caches byte code on disk if the system property 'k2.util.compilerCache' is set to the directory in which to store it.
+ *
+ * @author simon
+ *
+ */
+public class InMemoryCompiler {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * The system property holding the directory in which the default compiler caches byte code
+	 */
+	public static final String DIRECTORY_PROPERTY = "k2.util.compilerCache";
+
+	private static final String CACHE_SUFFIX = ".classes";
+	private static final int CACHE_MAGIC = 0x4B32433C;
+	private static final List<String> COMPILER_OPTIONS = Arrays.asList("-proc:none");
+
+	/**
+	 * The default number of sources whose byte code is held in memory by a compiler
+	 */
+	public static final int DEFAULT_MAX_CACHED = 512;
+
+	private static class DefaultCompilerHolder {
+		private static final InMemoryCompiler DEFAULT = createDefault();
+		private static InMemoryCompiler createDefault() {
+			String dir = System.getProperty(DIRECTORY_PROPERTY);
+			return (dir == null || dir.trim().isEmpty()) ? create() : create().withCacheDirectory(new File(dir.trim()));
+		}
+	}
+
+	/**
+	 * The classes defined in the runtime package of each host class keyed by the cache key of the source of each class
+	 */
+	private static final ClassValue<Map<String, Class<?>>> definedClasses = new ClassValue<Map<String, Class<?>>>() {
+		@Override
+		protected Map<String, Class<?>> computeValue(Class<?> cls) { return new HashMap<String, Class<?>>(); }
+	};
+
+	private final Map<String, Map<String, byte[]>> cache = Collections.synchronizedMap(new LinkedHashMap<String, Map<String, byte[]>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Map<String, byte[]>> eldest) {
+			return size() > maxCached;
+		}
+	});
+	private volatile int maxCached = DEFAULT_MAX_CACHED;
+	private File cacheDirectory = null;
+	private StandardJavaFileManager standardFileManager = null;
+
+	private InMemoryCompiler() {}
+
+	/**
+	 * @return	A new compiler with its own byte code cache
+	 */
+	public static InMemoryCompiler create() {
+		return new InMemoryCompiler();
+	}
+
+	/**
+	 * @return	The compiler shared by this library configured through the system property 'k2.util.compilerCache'
+	 */
+	public static InMemoryCompiler getDefault() {
+		return DefaultCompilerHolder.DEFAULT;
+	}
+
+	/**
+	 * Cache the compiled byte code in the given directory as well as in memory. The directory is created if it does not exist
+	 * @param cacheDirectory	The directory in which to store compiled byte code or null to only cache byte code in memory
+	 * @return	This compiler
+	 */
+	public InMemoryCompiler withCacheDirectory(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+		return this;
+	}
+
+	/**
+	 * @return	The directory in which compiled byte code is stored or null if byte code is only cached in memory
+	 */
+	public File getCacheDirectory() { return cacheDirectory; }
+
+	/**
+	 * Limit the number of sources whose byte code is held in memory. The least recently used byte code is dropped first
+	 * @param maxCached	The maximum number of sources whose byte code is held in memory
+	 * @return	This compiler
+	 */
+	public InMemoryCompiler withMaxCached(int maxCached) {
+		if (maxCached < 0) throw new UtilityError("The maximum number of cached sources must not be negative, not {}", maxCached);
+		this.maxCached = maxCached;
+		synchronized(cache) {
+			Iterator<String> keys = cache.keySet().iterator();
+			while (cache.size() > maxCached && keys.hasNext()) {
+				keys.next();
+				keys.remove();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return	The maximum number of sources whose byte code is held in memory
+	 */
+	public int getMaxCached() { return maxCached; }
+
+	/**
+	 * Discard the byte code cached in memory and in the cache directory
+	 */
+	public void clear() {
+		cache.clear();
+		if (cacheDirectory == null) return;
+		File[] files = cacheDirectory.listFiles();
+		if (files == null) return;
+		for (File file : files) {
+			if (file.getName().endsWith(CACHE_SUFFIX) && !file.delete())
+				logger.warn("Unable to delete compiler cache file {}", file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Compile the given source against the class path of the running JVM and load the compiled class through a new class loader
+	 * @param parent	The parent class loader of the class loader of the compiled class
+	 * @param className	The fully qualified name of the class defined by the source
+	 * @param source	The source of the class
+	 * @return	The compiled class
+	 */
+	public Class<?> compile(ClassLoader parent, String className, String source) {
+		return compile(parent, Collections.singletonMap(className, source)).get(className);
+	}
+
+	/**
+	 * Compile the given sources in a single compilation against the class path of the running JVM and load the compiled classes through a new
+	 * class loader
+	 * @param parent	The parent class loader of the class loader of the compiled classes
+	 * @param sources	The sources of the classes keyed by the fully qualified name of the class defined by each source
+	 * @return	The compiled classes keyed by their fully qualified names in the order of the given sources
+	 */
+	public Map<String, Class<?>> compile(ClassLoader parent, Map<String, String> sources) {
+		GeneratedClassLoader loader = new GeneratedClassLoader(parent, getByteCode(sources));
+		Map<String, Class<?>> classes = new LinkedHashMap<String, Class<?>>(sources.size()*2);
+		for (String className : sources.keySet()) {
+			try {
+				classes.put(className, loader.loadClass(className));
+			} catch (ClassNotFoundException | LinkageError e) {
+				throw new UtilityError("Unable to load compiled class {}", e, className);
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * Compile the given source against the class path of the running JVM and define the compiled class in the runtime package of the given host
+	 * class through the class loader of the host. The compiled class can access and override the package private members of its package but is
+	 * not unloaded before the class loader of the host. Defining the same source again returns the class already defined for the host.
+	 * @param host	A class of the package of the compiled class
+	 * @param className	The fully qualified name of the class defined by the source
+	 * @param source	The source of the class
+	 * @return	The compiled class
+	 */
+	public Class<?> define(Class<?> host, String className, String source) {
+		if (!ClassUtil.getPackageNameFromCanonicalName(className).equals(ClassUtil.getPackageNameFromCanonicalName(host.getName())))
+			throw new UtilityError("Unable to define class {} in the package of {}. The class must be in the same package", className, host.getName());
+		Map<String, Class<?>> defined = definedClasses.get(host);
+		String key = key(className, source);
+		synchronized (defined) {
+			Class<?> cls = defined.get(key);
+			if (cls != null) return cls;
+			Map<String, byte[]> byteCode = getByteCode(Collections.singletonMap(className, source));
+			// The class of the source is defined before its nested classes which may extend it
+			cls = PackageDefiner.define(host, className, byteCode.get(className));
+			for (Map.Entry<String, byte[]> entry : byteCode.entrySet())
+				if (!entry.getKey().equals(className)) PackageDefiner.define(host, entry.getKey(), entry.getValue());
+			defined.put(key, cls);
+			return cls;
+		}
+	}
+
+	/**
+	 * Get the byte code of the given sources compiling those sources whose byte code is not cached
+	 * @param sources	The sources of the classes keyed by the fully qualified name of the class defined by each source
+	 * @return	The byte code of every class compiled from the sources, including nested classes, keyed by the binary name of each class
+	 */
+	public Map<String, byte[]> getByteCode(Map<String, String> sources) {
+		Map<String, byte[]> byteCode = new LinkedHashMap<String, byte[]>();
+		Map<String, String> keys = new LinkedHashMap<String, String>(sources.size()*2);
+		boolean cached = true;
+		for (Map.Entry<String, String> entry : sources.entrySet()) {
+			String key = key(entry.getKey(), entry.getValue());
+			keys.put(entry.getKey(), key);
+			Map<String, byte[]> classes = cached ? getCached(key) : null;
+			if (classes == null) {
+				cached = false;
+			} else {
+				byteCode.putAll(classes);
+			}
+		}
+		if (cached) return byteCode;
+
+		// All the sources are compiled together when any is missing from the cache so that they can refer to each other
+		Map<String, Map<String, byte[]>> compiled = compileSources(sources);
+		byteCode.clear();
+		for (Map.Entry<String, Map<String, byte[]>> entry : compiled.entrySet()) {
+			String key = keys.get(entry.getKey());
+			if (key != null) {
+				cache.put(key, entry.getValue());
+				if (cacheDirectory != null) write(key, entry.getValue());
+			}
+			byteCode.putAll(entry.getValue());
+		}
+		return byteCode;
+	}
+
+	private static String key(String className, String source) {
+		return Hashing.sha256().newHasher()
+				.putString(System.getProperty("java.specification.version"), StandardCharsets.UTF_8)
+				.putChar('|')
+				.putString(className, StandardCharsets.UTF_8)
+				.putChar('|')
+				.putString(source, StandardCharsets.UTF_8)
+				.hash().toString();
+	}
+
+	private Map<String, byte[]> getCached(String key) {
+		Map<String, byte[]> classes = cache.get(key);
+		if (classes == null && cacheDirectory != null) {
+			classes = read(key);
+			if (classes != null) cache.put(key, classes);
+		}
+		return classes;
+	}
+
+	/**
+	 * Compile the given sources in a single javac task through the shared file manager which resolves the types referred to by the sources on the
+	 * class path of the running JVM
+	 * @return	The byte code of the classes compiled from each source keyed by the class name of the source
+	 */
+	private synchronized Map<String, Map<String, byte[]>> compileSources(Map<String, String> sources) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) throw new UtilityError("No java compiler is available to compile {}. A JDK is required to compile classes", sources.keySet());
+		if (standardFileManager == null) standardFileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+
+		Map<String, Map<String, byte[]>> compiled = new LinkedHashMap<String, Map<String, byte[]>>(sources.size()*2);
+		List<SourceFile> sourceFiles = new ArrayList<SourceFile>(sources.size());
+		for (Map.Entry<String, String> entry : sources.entrySet()) {
+			sourceFiles.add(new SourceFile(entry.getKey(), entry.getValue()));
+			compiled.put(entry.getKey(), new LinkedHashMap<String, byte[]>());
+		}
+		JavaFileManager fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standardFileManager) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location, String className, Kind kind, FileObject sibling) {
+				// Each class file is held against the source from which it was compiled
+				String sourceName = (sibling instanceof SourceFile) ? ((SourceFile)sibling).className : className;
+				Map<String, byte[]> classes = compiled.get(sourceName);
+				if (classes == null) {
+					classes = new LinkedHashMap<String, byte[]>();
+					compiled.put(sourceName, classes);
+				}
+				return new CompiledFile(className, classes);
+			}
+		};
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		long start = System.currentTimeMillis();
+		// Annotation processors on the class path would write their resources into the working directory so they are not run
+		boolean success = compiler.getTask(null, fileManager, diagnostics, COMPILER_OPTIONS, null, sourceFiles).call();
+		if (!success) {
+			StringBuilder sb = new StringBuilder();
+			for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				if (diagnostic.getKind() != Diagnostic.Kind.ERROR) continue;
+				if (diagnostic.getSource() instanceof SourceFile) sb.append(((SourceFile)diagnostic.getSource()).className).append(':').append(diagnostic.getLineNumber()).append(' ');
+				sb.append(diagnostic.getMessage(null)).append('\n');
+			}
+			throw new UtilityError("Unable to compile {}\n{}", sources.keySet(), sb);
+		}
+		logger.trace("Compiled {} sources in {}ms", sources.size(), System.currentTimeMillis()-start);
+		return compiled;
+	}
+
+	private File cacheFile(String key) {
+		return new File(cacheDirectory, key+CACHE_SUFFIX);
+	}
+
+	private Map<String, byte[]> read(String key) {
+		File file = cacheFile(key);
+		if (!file.isFile()) return null;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() != CACHE_MAGIC) return null;
+			int count = in.readInt();
+			Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>(count*2);
+			for (int i=0; i<count; i++) {
+				String className = in.readUTF();
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				classes.put(className, bytes);
+			}
+			logger.trace("Read {} cached classes from {}", count, file.getAbsolutePath());
+			return classes;
+		} catch (IOException e) {
+			logger.warn("Unable to read compiler cache file {} - {}", file.getAbsolutePath(), e.getMessage());
+			return null;
+		}
+	}
+
+	private void write(String key, Map<String, byte[]> classes) {
+		File file = cacheFile(key);
+		File tmp = null;
+		try {
+			if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs() && !cacheDirectory.isDirectory()) {
+				logger.warn("Unable to create compiler cache directory {}", cacheDirectory.getAbsolutePath());
+				return;
+			}
+			// Write to a temporary file first so that concurrent JVMs never read partially written byte code
+			tmp = File.createTempFile(file.getName(), ".tmp", cacheDirectory);
+			try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+				out.writeInt(CACHE_MAGIC);
+				out.writeInt(classes.size());
+				for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeInt(entry.getValue().length);
+					out.write(entry.getValue());
+				}
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			logger.warn("Unable to write compiler cache file {} - {}", file.getAbsolutePath(), e.getMessage());
+			if (tmp != null) tmp.delete();
+		}
+	}
+
+	/**
+	 * A source file held in memory
+	 */
+	private static class SourceFile extends SimpleJavaFileObject {
+		private final String className;
+		private final String source;
+		SourceFile(String className, String source) {
+			super(URI.create("string:///"+className.replace('.', '/')+Kind.SOURCE.extension), Kind.SOURCE);
+			this.className = className;
+			this.source = source;
+		}
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) { return source; }
+	}
+
+	/**
+	 * A class file written to memory
+	 */
+	private static class CompiledFile extends SimpleJavaFileObject {
+		private final String className;
+		private final Map<String, byte[]> classes;
+		CompiledFile(String className, Map<String, byte[]> classes) {
+			super(URI.create("bytes:///"+className.replace('.', '/')+Kind.CLASS.extension), Kind.CLASS);
+			this.className = className;
+			this.classes = classes;
+		}
+		@Override
+		public OutputStream openOutputStream() {
+			return new ByteArrayOutputStream() {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					classes.put(className, toByteArray());
+				}
+			};
+		}
+	}
+
+	/**
+	 * Defines classes in the runtime package of a host class through Lookup.defineClass where it is available and otherwise through the
+	 * protected ClassLoader.defineClass of the class loader of the host
+	 */
+	private static class PackageDefiner {
+		private static final Method PRIVATE_LOOKUP_IN = findMethod(MethodHandles.class, "privateLookupIn", Class.class, MethodHandles.Lookup.class);
+		private static final Method LOOKUP_DEFINE_CLASS = findMethod(MethodHandles.Lookup.class, "defineClass", byte[].class);
+		private static final Method CLASS_LOADER_DEFINE_CLASS = (LOOKUP_DEFINE_CLASS != null) ? null :
+				accessible(findDeclaredMethod(ClassLoader.class, "defineClass", String.class, byte[].class, int.class, int.class, ProtectionDomain.class));
+
+		private static Method findMethod(Class<?> cls, String name, Class<?> ... parameterTypes) {
+			try {
+				return cls.getMethod(name, parameterTypes);
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+
+		private static Method findDeclaredMethod(Class<?> cls, String name, Class<?> ... parameterTypes) {
+			try {
+				return cls.getDeclaredMethod(name, parameterTypes);
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+
+		private static Method accessible(Method method) {
+			if (method == null) return null;
+			try {
+				method.setAccessible(true);
+				return method;
+			} catch (RuntimeException e) {
+				logger.warn("Unable to define classes in the runtime package of other classes - {}", e.getMessage());
+				return null;
+			}
+		}
+
+		static Class<?> define(Class<?> host, String className, byte[] bytes) {
+			if (host.getClassLoader() == null)
+				throw new UtilityError("Unable to define class {} in the package of {}. The class has no class loader", className, host.getName());
+			try {
+				if (LOOKUP_DEFINE_CLASS != null)
+					return (Class<?>) LOOKUP_DEFINE_CLASS.invoke(PRIVATE_LOOKUP_IN.invoke(null, host, MethodHandles.lookup()), (Object)bytes);
+				if (CLASS_LOADER_DEFINE_CLASS != null)
+					return (Class<?>) CLASS_LOADER_DEFINE_CLASS.invoke(host.getClassLoader(), className, bytes, 0, bytes.length, host.getProtectionDomain());
+			} catch (InvocationTargetException e) {
+				throw new UtilityError("Unable to define class {} in the package of {}", e.getCause(), className, host.getName());
+			} catch (IllegalAccessException e) {
+				throw new UtilityError("Unable to define class {} in the package of {}", e, className, host.getName());
+			}
+			throw new UtilityError("Unable to define class {} in the package of {}. Classes cannot be defined in the packages of other classes", className, host.getName());
+		}
+	}
+
+	/**
+	 * The class loader defining the classes of one compilation
+	 */
+	private static class GeneratedClassLoader extends ClassLoader {
+		private final Map<String, byte[]> byteCode;
+		GeneratedClassLoader(ClassLoader parent, Map<String, byte[]> byteCode) {
+			super(parent);
+			this.byteCode = byteCode;
+		}
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytes = byteCode.get(name);
+			if (bytes == null) throw new ClassNotFoundException(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+}
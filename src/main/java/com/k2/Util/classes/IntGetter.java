@@ -0,0 +1,24 @@
+package com.k2.Util.classes;
+
+/**
+ * The IntGetter interface extends the Getter interface for fields and getter methods of type int so that their values can be got without
+ * boxing them. The generic get() method remains available and returns the boxed value
+ * @author simon
+ *
+ * @param <E>	The class for which the getter is to be invoked
+ */
+public interface IntGetter<E> extends Getter<E,Integer> {
+
+	/**
+	 * This method gets the int value from the underlying field or getter method
+	 * @param object		The object from which the value is to be got
+	 * @return			The value of the underlying field or returned by the underlying getter method
+	 */
+	public int getInt(E object);
+
+	@Override
+	public default Integer get(E object) {
+		return getInt(object);
+	}
+
+}
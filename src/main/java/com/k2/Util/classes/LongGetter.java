@@ -0,0 +1,24 @@
+package com.k2.Util.classes;
+
+/**
+ * The LongGetter interface extends the Getter interface for fields and getter methods of type long so that their values can be got without
+ * boxing them. The generic get() method remains available and returns the boxed value
+ * @author simon
+ *
+ * @param <E>	The class for which the getter is to be invoked
+ */
+public interface LongGetter<E> extends Getter<E,Long> {
+
+	/**
+	 * This method gets the long value from the underlying field or getter method
+	 * @param object		The object from which the value is to be got
+	 * @return			The value of the underlying field or returned by the underlying getter method
+	 */
+	public long getLong(E object);
+
+	@Override
+	public default Long get(E object) {
+		return getLong(object);
+	}
+
+}
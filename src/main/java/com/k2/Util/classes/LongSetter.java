@@ -0,0 +1,24 @@
+package com.k2.Util.classes;
+
+/**
+ * The LongSetter interface extends the Setter interface for fields and setter methods of type long so that their values can be set without
+ * boxing them. The generic set() method remains available and unboxes the value
+ * @author simon
+ *
+ * @param <E>	The class for which the setter is to be invoked
+ */
+public interface LongSetter<E> extends Setter<E,Long> {
+
+	/**
+	 * This method sets the long value of the underlying field or calls the underlying setter method with it
+	 * @param object		The object on which the value is to be set
+	 * @param value		The value to set
+	 */
+	public void setLong(E object, long value);
+
+	@Override
+	public default void set(E object, Long value) {
+		setLong(object, value);
+	}
+
+}
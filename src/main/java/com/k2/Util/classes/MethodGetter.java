@@ -3,7 +3,6 @@ package com.k2.Util.classes;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
-import com.k2.Util.StringUtil;
 import com.k2.Util.classes.Getter.Type;
 import com.k2.Util.exceptions.UtilityError;
 
@@ -26,7 +25,7 @@ public class MethodGetter<E,T> implements Getter<E,T> {
 	 * @param method			The underlying method that returns the value
 	 */
 	public MethodGetter(Class<E> objectClass, Class<T> returnType, Method method) {
-		if (!returnType.isAssignableFrom(method.getReturnType())) 
+		if (!ClassUtil.isReadable(method.getReturnType(), returnType)) 
 			throw new UtilityError("Class mismatch for field. Field {}.{} doesn't supply a {}", method.getDeclaringClass().getName(), method.getName(), returnType.getName());
 		if (!method.getDeclaringClass().isAssignableFrom(objectClass)) 
 			throw new UtilityError("Class mismatch for method. Method {}.{} isn't a method in {}", method.getDeclaringClass().getName(), method.getName(), objectClass.getName());
@@ -95,7 +94,7 @@ public class MethodGetter<E,T> implements Getter<E,T> {
 
 	@Override
 	public String getAlias() {
-		return StringUtil.initialLowerCase(method.getName().substring(3));
+		return ClassUtil.getAliasFromMethodName(method.getName());
 	}
 
 	@Override
@@ -3,7 +3,6 @@ package com.k2.Util.classes;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
-import com.k2.Util.StringUtil;
 import com.k2.Util.classes.Getter.Type;
 import com.k2.Util.exceptions.UtilityError;
 
@@ -29,7 +28,7 @@ public class MethodSetter<E,T> implements Setter<E,T> {
 		
 		if (method.getParameterCount() != 1)
 			throw new UtilityError("Parameter mismatch for method. Method {}.{}(...) recieved otehr than a single argument", method.getDeclaringClass().getName(), method.getName());
-		if ( ! method.getParameterTypes()[0].isAssignableFrom(javaType))
+		if ( ! ClassUtil.isWritable(method.getParameterTypes()[0], javaType))
 			throw new UtilityError("Parameter type mismatch for method. Method {}.{}(...) doesn't require a {}", method.getDeclaringClass().getName(), method.getName(), javaType.getName());
 		if (!method.getDeclaringClass().isAssignableFrom(objectClass)) 
 			throw new UtilityError("Class mismatch for method. Method {}.{}(...) isn't a method in {}", method.getDeclaringClass().getName(), method.getName(), objectClass.getName());
@@ -92,12 +91,12 @@ public class MethodSetter<E,T> implements Setter<E,T> {
 	@SuppressWarnings("unchecked")
 	@Override
 	public Class<T> getJavaType() {
-		return (Class<T>) method.getReturnType();
+		return (Class<T>) method.getParameterTypes()[0];
 	}
 
 	@Override
 	public String getAlias() {
-		return StringUtil.initialLowerCase(method.getName().substring(3));
+		return ClassUtil.getAliasFromMethodName(method.getName());
 	}
 
 	@Override
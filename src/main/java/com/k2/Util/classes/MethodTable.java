@@ -0,0 +1,217 @@
+package com.k2.Util.classes;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The method table holds the resolved methods callable through a class.
+ *
+ * The table is built once for each class and holds the most specific method for each method signature of the class, its super classes and all the
+ * interfaces it implements, including inherited default methods. Methods overridden by the class or a super class are excluded, including methods
+ * overridden through a bridge method when a generic method is overridden with a more specific parameter type. Synthetic methods, including bridge
+ * methods, are not included in the table. The methods of java.lang.Object are not included unless the class is java.lang.Object.
+ *
+ * Methods are indexed by signature, by name and by name and number of parameters so that all lookups are constant time.
+ *
+ * @author simon
+ *
+ */
+public class MethodTable {
+
+	private static final Method[] NO_METHODS = new Method[0];
+
+	private static final ClassValue<MethodTable> tables = new ClassValue<MethodTable>() {
+		@Override
+		protected MethodTable computeValue(Class<?> cls) { return new MethodTable(cls); }
+	};
+
+	private final Class<?> cls;
+	private final Method[] methods;
+	private final Map<MethodSignature, Method> bySignature;
+	private final Map<String, Method[]> byName;
+	private final Map<String, Method[][]> byNameAndArity;
+
+	private MethodTable(Class<?> cls) {
+		this.cls = cls;
+
+		Map<MethodSignature, Method> resolved = new LinkedHashMap<MethodSignature, Method>();
+		Set<MethodSignature> overridden = new HashSet<MethodSignature>();
+		TypeHierarchy hierarchy = TypeHierarchy.forClass(cls);
+		for (Class<?> c : hierarchy.getSuperclasses()) {
+			if (c.equals(Object.class) && !cls.equals(Object.class)) continue;
+			addMethods(c, resolved, overridden, false);
+		}
+		for (Class<?> iFace : hierarchy.getInterfaces()) addMethods(iFace, resolved, overridden, true);
+
+		this.methods = resolved.values().toArray(new Method[resolved.size()]);
+		this.bySignature = resolved;
+
+		Map<String, List<Method>> names = new HashMap<String, List<Method>>();
+		for (Method m : methods) {
+			List<Method> list = names.get(m.getName());
+			if (list == null) {
+				list = new ArrayList<Method>(1);
+				names.put(m.getName(), list);
+			}
+			list.add(m);
+		}
+		this.byName = new HashMap<String, Method[]>(names.size()*2);
+		this.byNameAndArity = new HashMap<String, Method[][]>(names.size()*2);
+		for (Map.Entry<String, List<Method>> entry : names.entrySet()) {
+			List<Method> list = entry.getValue();
+			byName.put(entry.getKey(), list.toArray(new Method[list.size()]));
+			// The methods of each name are indexed by their number of parameters
+			int maxArity = 0;
+			for (Method m : list) maxArity = Math.max(maxArity, m.getParameterCount());
+			Method[][] arities = new Method[maxArity+1][];
+			for (int arity=0; arity<=maxArity; arity++) {
+				List<Method> matching = new ArrayList<Method>(1);
+				for (Method m : list) if (m.getParameterCount() == arity) matching.add(m);
+				arities[arity] = matching.isEmpty() ? NO_METHODS : matching.toArray(new Method[matching.size()]);
+			}
+			byNameAndArity.put(entry.getKey(), arities);
+		}
+	}
+
+	/**
+	 * Get the method table of the given class. The table is built on first use and cached against the class
+	 * @param cls	The class for which the method table is required
+	 * @return	The method table of the class
+	 */
+	public static MethodTable forClass(Class<?> cls) { return tables.get(cls); }
+
+	/**
+	 * Discard the cached method table of the given class
+	 * @param cls	The class whose method table is to be discarded
+	 */
+	public static void evict(Class<?> cls) { tables.remove(cls); }
+
+	private static void addMethods(Class<?> c, Map<MethodSignature, Method> resolved, Set<MethodSignature> overridden, boolean inherited) {
+		for (Method m : ClassUtil.getDeclaredMethods(c)) {
+			// Static and private methods of interfaces are not inherited by the classes implementing them
+			if (inherited && (Modifier.isStatic(m.getModifiers()) || Modifier.isPrivate(m.getModifiers()))) continue;
+			MethodSignature ms = MethodSignature.forMethod(m);
+			if (!overridden.contains(ms) && !resolved.containsKey(ms)) resolved.put(ms, m);
+		}
+		// Bridge methods identify the methods of super types overridden with more specific parameter types. Visibility bridges generated when a
+		// public class extends a package private class do not override a method so only bridges to a method declared by the class are considered
+		Method[] declared = c.getDeclaredMethods();
+		for (Method m : declared) {
+			if (m.isBridge() && bridgesDeclaredMethod(c, m, declared)) overridden.add(MethodSignature.forMethod(m));
+		}
+	}
+
+	/**
+	 * A bridge overrides a generic method of a super type if the class declares the target of the bridge. The target has the name of the bridge
+	 * and parameter types assignable to the erased parameter types of the bridge, differing only where the overridden method declares a generic
+	 * parameter type. This distinguishes the target from an overload of a method exposed through a visibility bridge
+	 */
+	private static boolean bridgesDeclaredMethod(Class<?> c, Method bridge, Method[] declared) {
+		Method overridden = findSuperMethod(c, bridge);
+		if (overridden == null) return false;
+		Class<?>[] bridgeTypes = bridge.getParameterTypes();
+		Type[] genericTypes = overridden.getGenericParameterTypes();
+		for (Method m : declared) {
+			if (m.isBridge() || m.isSynthetic() || !m.getName().equals(bridge.getName()) || m.getParameterCount() != bridge.getParameterCount()) continue;
+			if (isBridgeTarget(bridgeTypes, genericTypes, m.getParameterTypes())) return true;
+		}
+		return false;
+	}
+
+	private static boolean isBridgeTarget(Class<?>[] bridgeTypes, Type[] genericTypes, Class<?>[] targetTypes) {
+		boolean narrowed = false;
+		for (int i=0; i<bridgeTypes.length; i++) {
+			if (bridgeTypes[i].equals(targetTypes[i])) continue;
+			if (!bridgeTypes[i].isAssignableFrom(targetTypes[i]) || genericTypes[i] instanceof Class) return false;
+			narrowed = true;
+		}
+		return narrowed;
+	}
+
+	/**
+	 * @return	The non bridge method of a super type of the given class with the erased signature of the given bridge or null if there is none
+	 */
+	private static Method findSuperMethod(Class<?> c, Method bridge) {
+		TypeHierarchy hierarchy = TypeHierarchy.forClass(c);
+		for (Class<?> superclass : hierarchy.getSuperclasses()) {
+			if (superclass.equals(c)) continue;
+			Method m = findDeclaredMethod(superclass, bridge);
+			if (m != null) return m;
+		}
+		for (Class<?> iFace : hierarchy.getInterfaces()) {
+			Method m = findDeclaredMethod(iFace, bridge);
+			if (m != null) return m;
+		}
+		return null;
+	}
+
+	private static Method findDeclaredMethod(Class<?> c, Method bridge) {
+		for (Method m : ClassUtil.getDeclaredMethods(c)) {
+			if (m.getName().equals(bridge.getName()) && Arrays.equals(m.getParameterTypes(), bridge.getParameterTypes())) return m;
+		}
+		return null;
+	}
+
+	/**
+	 * @return	The class of this method table
+	 */
+	public Class<?> getTableClass() { return cls; }
+
+	/**
+	 * @return	All the methods callable through the class. The array is shared and must not be modified
+	 */
+	public Method[] getMethods() { return methods; }
+
+	/**
+	 * Get the methods with the given name
+	 * @param name	The name of the methods
+	 * @return	The methods with the given name. The array is shared and must not be modified
+	 */
+	public Method[] getMethods(String name) {
+		Method[] found = byName.get(name);
+		return (found == null) ? NO_METHODS : found;
+	}
+
+	/**
+	 * Get the methods with the given name and number of parameters
+	 * @param name	The name of the methods
+	 * @param arity	The number of parameters of the methods
+	 * @return	The methods with the given name and number of parameters. The array is shared and must not be modified
+	 */
+	public Method[] getMethods(String name, int arity) {
+		Method[][] found = byNameAndArity.get(name);
+		return (found == null || arity < 0 || arity >= found.length) ? NO_METHODS : found[arity];
+	}
+
+	/**
+	 * Find the method with the given signature
+	 * @param methodSignature	The signature of the method
+	 * @return	The method with the given signature or null if the class has no such method
+	 */
+	public Method findMethod(MethodSignature methodSignature) { return bySignature.get(methodSignature); }
+
+	/**
+	 * Find the method with the given name and parameter types
+	 * @param name	The name of the method
+	 * @param parameterTypes	The exact parameter types of the method
+	 * @return	The method with the given name and parameter types or null if the class has no such method
+	 */
+	public Method findMethod(String name, Class<?> ... parameterTypes) {
+		return bySignature.get(MethodSignature.forSignature(name, parameterTypes));
+	}
+
+	@Override
+	public String toString() {
+		return "MethodTable("+cls.getName()+")";
+	}
+
+}
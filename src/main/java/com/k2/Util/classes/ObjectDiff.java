@@ -0,0 +1,536 @@
+package com.k2.Util.classes;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.persistence.Embeddable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.k2.Util.exceptions.UtilityError;
+
+/**
+ * This static utility lists the field level changes between two versions of an object graph.
+ *
+ * The objects are compared through the compiled fields of the Equivalence of their class. Each primitive or value field that differs is listed as
+ * a change of the field and nested objects are compared field by field. The fields of a list, other collection or object array are compared
+ * element by element, extra elements in the after version are listed as added and missing elements as removed. Sets are compared by matching
+ * equivalent elements, elements of the before set without an equivalent in the after set are listed as removed and elements of the after set
+ * without an equivalent in the before set are listed as added. Maps are compared by key.
+ *
+ * The path of each change is the '/' separated list of field names leading to the changed value from the compared object. Elements of lists and
+ * arrays are identified by their index in square brackets, values of maps by their key in square brackets and elements of sets by empty square
+ * brackets.
+ *
+ * A snapshot of an object records the values of its fields so that the object can later be checked for changes without keeping a copy of the
+ * object graph. The primitive fields are recorded in a flat array so that they can be checked without boxing and immutable values are recorded by
+ * reference. References to other objects are recorded by identity so that a snapshot of an entity does not copy or walk the entities it refers to,
+ * and the elements of collections, maps and arrays are recorded by identity in the order in which they are held. Only embedded values, instances
+ * of classes annotated as Embeddable and the mutable java types such as dates, are recorded as deep clones and compared field by field.
+ *
+ * @author simon
+ *
+ */
+public class ObjectDiff {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * The type of a change
+	 */
+	public enum ChangeType {
+		/**
+		 * The value was changed
+		 */
+		CHANGED,
+		/**
+		 * The value was added to a collection or map
+		 */
+		ADDED,
+		/**
+		 * The value was removed from a collection or map
+		 */
+		REMOVED
+	}
+
+	/**
+	 * A change of one value within an object graph
+	 */
+	public static class Change {
+		private final String path;
+		private final ChangeType type;
+		private final Object before;
+		private final Object after;
+
+		private Change(String path, ChangeType type, Object before, Object after) {
+			this.path = path;
+			this.type = type;
+			this.before = before;
+			this.after = after;
+		}
+
+		/**
+		 * @return	The path of the changed value from the compared object
+		 */
+		public String getPath() { return path; }
+
+		/**
+		 * @return	The type of the change
+		 */
+		public ChangeType getType() { return type; }
+
+		/**
+		 * @return	The value before the change or null if the value was added
+		 */
+		public Object getBefore() { return before; }
+
+		/**
+		 * @return	The value after the change or null if the value was removed
+		 */
+		public Object getAfter() { return after; }
+
+		@Override
+		public String toString() {
+			return type+" "+path+": "+before+" -> "+after;
+		}
+	}
+
+	private ObjectDiff() {}
+
+	/**
+	 * List the changes between the given versions of an object
+	 * @param before	The object before the changes
+	 * @param after		The object after the changes
+	 * @return	The changes made to the before object to give the after object
+	 */
+	public static List<Change> diff(Object before, Object after) {
+		List<Change> changes = new ArrayList<Change>();
+		diff("", before, after, changes, new IdentityHashMap<Object, Set<Object>>());
+		logger.trace("Found {} changes", changes.size());
+		return changes;
+	}
+
+	/**
+	 * Take a snapshot of the fields of the given object
+	 * @param obj	The object to snapshot
+	 * @return	The snapshot of the object
+	 * @param <T>	The type of the object
+	 */
+	public static <T> Snapshot<T> snapshot(T obj) {
+		return new Snapshot<T>(obj);
+	}
+
+	private static String path(String path) {
+		return path.isEmpty() ? "/" : path;
+	}
+
+	private static void diff(String path, Object before, Object after, List<Change> changes, Map<Object, Set<Object>> visited) {
+		if (before == after) return;
+		if (before == null || after == null) {
+			changes.add(new Change(path(path), ChangeType.CHANGED, before, after));
+			return;
+		}
+		Class<?> cls = before.getClass();
+		if (before instanceof Collection && after instanceof Collection && (before instanceof Set) == (after instanceof Set)) {
+			if (before instanceof Set) diffSets(path, (Set<?>)before, (Set<?>)after, changes);
+			else diffSequences(path, (Collection<?>)before, (Collection<?>)after, changes, visited);
+			return;
+		}
+		if (before instanceof Map && after instanceof Map) {
+			diffMaps(path, (Map<?,?>)before, (Map<?,?>)after, changes, visited);
+			return;
+		}
+		if (!cls.equals(after.getClass()) || DeepCloner.isImmutable(cls) || cls.getName().startsWith("java.") ||
+				(cls.isArray() && cls.getComponentType().isPrimitive())) {
+			if (!Equivalence.equivalent(before, after)) changes.add(new Change(path(path), ChangeType.CHANGED, before, after));
+			return;
+		}
+		if (cls.isArray()) {
+			diffSequences(path, Arrays.asList((Object[])before), Arrays.asList((Object[])after), changes, visited);
+			return;
+		}
+		// Each pair of objects is compared once so that cyclic graphs terminate
+		if (!visit(before, after, visited)) return;
+		Equivalence<?> equivalence = Equivalence.forClass(cls);
+		for (int i=0; i<equivalence.size(); i++) {
+			String fieldPath = path+"/"+equivalence.getField(i).getName();
+			if (equivalence.isValueField(i)) {
+				if (!equivalence.equivalent(i, before, after))
+					changes.add(new Change(fieldPath, ChangeType.CHANGED, equivalence.getValue(i, before), equivalence.getValue(i, after)));
+			} else {
+				diff(fieldPath, equivalence.getValue(i, before), equivalence.getValue(i, after), changes, visited);
+			}
+		}
+	}
+
+	/**
+	 * An object may be compared to several other objects when the object graphs have cycles of different lengths so the objects compared to each
+	 * before object are tracked in an identity set
+	 * @return	False if the given pair of objects has already been compared
+	 */
+	private static boolean visit(Object before, Object after, Map<Object, Set<Object>> visited) {
+		Set<Object> compared = visited.get(before);
+		if (compared == null) {
+			compared = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>(4));
+			visited.put(before, compared);
+		}
+		return compared.add(after);
+	}
+
+	private static void diffSequences(String path, Collection<?> before, Collection<?> after, List<Change> changes, Map<Object, Set<Object>> visited) {
+		Iterator<?> b = before.iterator();
+		Iterator<?> a = after.iterator();
+		int i = 0;
+		for (; b.hasNext() && a.hasNext(); i++) diff(path+"["+i+"]", b.next(), a.next(), changes, visited);
+		for (; b.hasNext(); i++) changes.add(new Change(path+"["+i+"]", ChangeType.REMOVED, b.next(), null));
+		for (; a.hasNext(); i++) changes.add(new Change(path+"["+i+"]", ChangeType.ADDED, null, a.next()));
+	}
+
+	private static void diffSets(String path, Set<?> before, Set<?> after, List<Change> changes) {
+		// The elements of the after set are bucketed by their equivalence hash so that each element of the before set is only compared to the
+		// elements of the after set that could be equivalent
+		Map<Integer, List<Object>> buckets = new HashMap<Integer, List<Object>>();
+		for (Object element : after) {
+			int hash = Equivalence.hashOf(element);
+			List<Object> bucket = buckets.get(hash);
+			if (bucket == null) buckets.put(hash, bucket = new LinkedList<Object>());
+			bucket.add(element);
+		}
+		for (Object element : before) {
+			List<Object> bucket = buckets.get(Equivalence.hashOf(element));
+			boolean matched = false;
+			if (bucket != null) {
+				for (Iterator<Object> candidates = bucket.iterator(); !matched && candidates.hasNext(); ) {
+					if (Equivalence.equivalent(element, candidates.next())) {
+						candidates.remove();
+						matched = true;
+					}
+				}
+			}
+			if (!matched) changes.add(new Change(path+"[]", ChangeType.REMOVED, element, null));
+		}
+		for (Object element : after) {
+			List<Object> bucket = buckets.get(Equivalence.hashOf(element));
+			if (bucket != null && bucket.remove(element)) changes.add(new Change(path+"[]", ChangeType.ADDED, null, element));
+		}
+	}
+
+	private static void diffMaps(String path, Map<?,?> before, Map<?,?> after, List<Change> changes, Map<Object, Set<Object>> visited) {
+		for (Map.Entry<?,?> entry : before.entrySet()) {
+			String entryPath = path+"["+entry.getKey()+"]";
+			if (after.containsKey(entry.getKey())) diff(entryPath, entry.getValue(), after.get(entry.getKey()), changes, visited);
+			else changes.add(new Change(entryPath, ChangeType.REMOVED, entry.getValue(), null));
+		}
+		for (Map.Entry<?,?> entry : after.entrySet()) {
+			if (!before.containsKey(entry.getKey())) changes.add(new Change(path+"["+entry.getKey()+"]", ChangeType.ADDED, null, entry.getValue()));
+		}
+	}
+
+	/**
+	 * A snapshot of the fields of an object
+	 *
+	 * @param <T>	The type of the object
+	 */
+	public static class Snapshot<T> {
+
+		private final Class<?> cls;
+		private final Equivalence<?> equivalence;
+		private final int primitiveCount;
+		private final long[] primitives;
+		private final Object[] values;
+
+		private Snapshot(T obj) {
+			this.cls = obj.getClass();
+			this.equivalence = Equivalence.forClass(cls);
+			// The primitive fields are the cheapest to compare so they are the first fields of the equivalence
+			int count = 0;
+			while (count < equivalence.size() && equivalence.isPrimitiveField(count)) count++;
+			this.primitiveCount = count;
+			this.primitives = new long[primitiveCount];
+			this.values = new Object[equivalence.size()-primitiveCount];
+			for (int i=0; i<primitiveCount; i++) primitives[i] = equivalence.getBits(i, obj);
+			for (int i=primitiveCount; i<equivalence.size(); i++) {
+				Object value = equivalence.getValue(i, obj);
+				values[i-primitiveCount] = equivalence.isValueField(i) ? value : capture(value, true);
+			}
+		}
+
+		/**
+		 * @return	The class of the object of this snapshot
+		 */
+		public Class<?> getSnapshotClass() { return cls; }
+
+		private boolean isDirty(int i, Object obj) {
+			if (i < primitiveCount) return primitives[i] != equivalence.getBits(i, obj);
+			Object value = equivalence.getValue(i, obj);
+			if (equivalence.isValueField(i)) return !Objects.equals(values[i-primitiveCount], value);
+			Object recorded = values[i-primitiveCount];
+			if (recorded instanceof Contents) return ((Contents)recorded).isDirty(value);
+			return !unchanged(recorded, value);
+		}
+
+		private void check(T obj) {
+			if (obj == null || !cls.equals(obj.getClass()))
+				throw new UtilityError("The snapshot of a {} can not be compared to {}", cls.getName(), obj);
+		}
+
+		/**
+		 * Check whether the given object has changed since this snapshot was taken
+		 * @param obj	The object of this snapshot
+		 * @return	True if any field of the object differs from the value recorded in this snapshot
+		 */
+		public boolean isDirty(T obj) {
+			check(obj);
+			for (int i=0; i<equivalence.size(); i++) if (isDirty(i, obj)) return true;
+			return false;
+		}
+
+		/**
+		 * List the fields of the given object that have changed since this snapshot was taken
+		 * @param obj	The object of this snapshot
+		 * @return	The names of the fields of the object that differ from the values recorded in this snapshot
+		 */
+		public List<String> getDirtyFields(T obj) {
+			check(obj);
+			List<String> dirty = new ArrayList<String>();
+			for (int i=0; i<equivalence.size(); i++) if (isDirty(i, obj)) dirty.add(equivalence.getField(i).getName());
+			return dirty;
+		}
+
+		/**
+		 * List the changes made to the given object since this snapshot was taken
+		 * @param obj	The object of this snapshot
+		 * @return	The changes made to the object
+		 */
+		public List<Change> diff(T obj) {
+			check(obj);
+			List<Change> changes = new ArrayList<Change>();
+			Map<Object, Set<Object>> visited = new IdentityHashMap<Object, Set<Object>>();
+			for (int i=0; i<equivalence.size(); i++) {
+				if (!isDirty(i, obj)) continue;
+				String path = "/"+equivalence.getField(i).getName();
+				Object value = equivalence.getValue(i, obj);
+				if (i < primitiveCount) {
+					changes.add(new Change(path, ChangeType.CHANGED, decode(equivalence.getField(i).getType(), primitives[i]), value));
+				} else if (equivalence.isValueField(i)) {
+					changes.add(new Change(path, ChangeType.CHANGED, values[i-primitiveCount], value));
+				} else {
+					diffRecorded(path, values[i-primitiveCount], value, changes, visited);
+				}
+			}
+			return changes;
+		}
+
+		/**
+		 * Record the given value of a reference field or element. Collections, maps and arrays held by fields are recorded as their contents,
+		 * embedded values as deep clones and other objects by identity
+		 */
+		private static Object capture(Object value, boolean field) {
+			if (value == null || DeepCloner.isImmutable(value.getClass())) return value;
+			if (field && (value instanceof Collection || value instanceof Map || value instanceof Object[])) return new Contents(value);
+			if (isEmbedded(value.getClass())) return new Embedded(DeepCloner.clone(value));
+			return value;
+		}
+
+		private static boolean isEmbedded(Class<?> type) {
+			if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type) || Object[].class.isAssignableFrom(type)) return false;
+			return type.isArray() || type.getName().startsWith("java.") || AnnotationSummary.isAnnotationPresent(type, Embeddable.class);
+		}
+
+		/**
+		 * Check whether the given current value of a reference field or element is unchanged from the recorded value
+		 */
+		private static boolean unchanged(Object recorded, Object value) {
+			if (recorded == value) return true;
+			if (recorded == null || value == null) return false;
+			if (recorded instanceof Embedded) return Equivalence.equivalent(((Embedded)recorded).clone, value);
+			return DeepCloner.isImmutable(recorded.getClass()) && recorded.equals(value);
+		}
+
+		/**
+		 * Check whether the given element is recorded by value, as an immutable value or an embedded value, rather than by identity
+		 */
+		private static boolean isValue(Object element) {
+			return element == null || DeepCloner.isImmutable(element.getClass()) || isEmbedded(element.getClass());
+		}
+
+		private static Object before(Object recorded) {
+			return (recorded instanceof Embedded) ? ((Embedded)recorded).clone : recorded;
+		}
+
+		private static void diffRecorded(String path, Object recorded, Object value, List<Change> changes, Map<Object, Set<Object>> visited) {
+			if (recorded instanceof Contents) ((Contents)recorded).diff(path, value, changes, visited);
+			else if (recorded instanceof Embedded) ObjectDiff.diff(path, ((Embedded)recorded).clone, value, changes, visited);
+			else changes.add(new Change(path, ChangeType.CHANGED, recorded, value));
+		}
+
+		private static void diffElement(String path, Object recorded, Object value, List<Change> changes, Map<Object, Set<Object>> visited) {
+			if (!unchanged(recorded, value)) diffRecorded(path, recorded, value, changes, visited);
+		}
+
+		/**
+		 * The deep clone of an embedded value recorded by a snapshot
+		 */
+		private static class Embedded {
+			private final Object clone;
+			private Embedded(Object clone) { this.clone = clone; }
+		}
+
+		/**
+		 * The contents of a collection, map or array recorded by a snapshot. The elements of collections and arrays and the keys and values of
+		 * maps are recorded in iteration order, each element and value by identity unless it is an embedded value
+		 */
+		private static class Contents {
+			private final Object aggregate;
+			private final Object[] elements;
+
+			private Contents(Object aggregate) {
+				this.aggregate = aggregate;
+				if (aggregate instanceof Map) {
+					Map<?,?> map = (Map<?,?>)aggregate;
+					this.elements = new Object[2*map.size()];
+					int i = 0;
+					for (Map.Entry<?,?> entry : map.entrySet()) {
+						elements[i++] = entry.getKey();
+						elements[i++] = capture(entry.getValue(), false);
+					}
+				} else {
+					this.elements = (aggregate instanceof Collection) ? ((Collection<?>)aggregate).toArray() : ((Object[])aggregate).clone();
+					for (int i=0; i<elements.length; i++) elements[i] = capture(elements[i], false);
+				}
+			}
+
+			private boolean isDirty(Object value) {
+				if (value != aggregate) return true;
+				if (aggregate instanceof Map) {
+					Map<?,?> map = (Map<?,?>)aggregate;
+					if (map.size() != elements.length/2) return true;
+					for (int i=0; i<elements.length; i+=2) {
+						if (!map.containsKey(elements[i]) || !unchanged(elements[i+1], map.get(elements[i]))) return true;
+					}
+					return false;
+				}
+				if (aggregate instanceof Set) {
+					Set<?> set = (Set<?>)aggregate;
+					if (set.size() != elements.length) return true;
+					List<Object> removed = new ArrayList<Object>();
+					List<Object> added = new ArrayList<Object>();
+					match(set, removed, added);
+					return !removed.isEmpty() || !added.isEmpty();
+				}
+				int i = 0;
+				for (Object element : (aggregate instanceof Collection) ? (Collection<?>)aggregate : Arrays.asList((Object[])aggregate)) {
+					if (i >= elements.length || !unchanged(elements[i++], element)) return true;
+				}
+				return i != elements.length;
+			}
+
+			/**
+			 * Match the recorded elements of a set to its current elements in the same way as unchanged(), elements recorded by identity to the
+			 * same element, embedded values to an equivalent element and immutable values to an equal element. The set itself is not used to find
+			 * the recorded elements since embedded values are recorded as clones, which are only equal to the current element if the embedded class
+			 * implements equals()
+			 * @param set	The current set
+			 * @param removed	The list to which the recorded elements without a match in the current set are added
+			 * @param added	The list to which the current elements without a match in the recorded elements are added
+			 */
+			private void match(Set<?> set, List<Object> removed, List<Object> added) {
+				Set<Object> current = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>(2*set.size()));
+				current.addAll(set);
+				List<Object> unmatched = new ArrayList<Object>();
+				for (Object element : elements) if (element instanceof Embedded || !current.remove(element)) unmatched.add(element);
+				if (!unmatched.isEmpty() && !current.isEmpty()) {
+					// The remaining values are bucketed by their equivalence hash so that each is only compared to the values that could match
+					Map<Integer, List<Object>> buckets = new HashMap<Integer, List<Object>>();
+					for (Object element : current) {
+						if (!isValue(element)) continue;
+						int hash = Equivalence.hashOf(element);
+						List<Object> bucket = buckets.get(hash);
+						if (bucket == null) buckets.put(hash, bucket = new LinkedList<Object>());
+						bucket.add(element);
+					}
+					for (Iterator<Object> recorded = unmatched.iterator(); recorded.hasNext(); ) {
+						Object element = recorded.next();
+						if (!(element instanceof Embedded) && !isValue(element)) continue;
+						List<Object> bucket = buckets.get(Equivalence.hashOf(before(element)));
+						if (bucket == null) continue;
+						for (Iterator<Object> candidates = bucket.iterator(); candidates.hasNext(); ) {
+							Object candidate = candidates.next();
+							if (unchanged(element, candidate)) {
+								candidates.remove();
+								current.remove(candidate);
+								recorded.remove();
+								break;
+							}
+						}
+					}
+				}
+				for (Object element : unmatched) removed.add(before(element));
+				for (Object element : set) if (current.contains(element)) added.add(element);
+			}
+
+			private void diff(String path, Object value, List<Change> changes, Map<Object, Set<Object>> visited) {
+				if (value != aggregate) {
+					changes.add(new Change(path, ChangeType.CHANGED, aggregate, value));
+					return;
+				}
+				if (aggregate instanceof Map) {
+					Map<?,?> map = (Map<?,?>)aggregate;
+					Map<Object, Object> recorded = new HashMap<Object, Object>(elements.length);
+					for (int i=0; i<elements.length; i+=2) {
+						recorded.put(elements[i], elements[i+1]);
+						String entryPath = path+"["+elements[i]+"]";
+						if (map.containsKey(elements[i])) diffElement(entryPath, elements[i+1], map.get(elements[i]), changes, visited);
+						else changes.add(new Change(entryPath, ChangeType.REMOVED, before(elements[i+1]), null));
+					}
+					for (Map.Entry<?,?> entry : map.entrySet()) {
+						if (!recorded.containsKey(entry.getKey())) changes.add(new Change(path+"["+entry.getKey()+"]", ChangeType.ADDED, null, entry.getValue()));
+					}
+				} else if (aggregate instanceof Set) {
+					List<Object> removed = new ArrayList<Object>();
+					List<Object> added = new ArrayList<Object>();
+					match((Set<?>)aggregate, removed, added);
+					for (Object element : removed) changes.add(new Change(path+"[]", ChangeType.REMOVED, element, null));
+					for (Object element : added) changes.add(new Change(path+"[]", ChangeType.ADDED, null, element));
+				} else {
+					int i = 0;
+					for (Object element : (aggregate instanceof Collection) ? (Collection<?>)aggregate : Arrays.asList((Object[])aggregate)) {
+						if (i < elements.length) diffElement(path+"["+i+"]", elements[i], element, changes, visited);
+						else changes.add(new Change(path+"["+i+"]", ChangeType.ADDED, null, element));
+						i++;
+					}
+					for (; i<elements.length; i++) changes.add(new Change(path+"["+i+"]", ChangeType.REMOVED, before(elements[i]), null));
+				}
+			}
+		}
+
+		private static Object decode(Class<?> type, long bits) {
+			if (type == int.class) return (int)bits;
+			if (type == long.class) return bits;
+			if (type == boolean.class) return bits != 0L;
+			if (type == double.class) return Double.longBitsToDouble(bits);
+			if (type == float.class) return Float.intBitsToFloat((int)bits);
+			if (type == char.class) return (char)bits;
+			if (type == short.class) return (short)bits;
+			return (byte)bits;
+		}
+
+		@Override
+		public String toString() {
+			return "ObjectDiff.Snapshot("+cls.getName()+")";
+		}
+	}
+
+}
@@ -0,0 +1,242 @@
+package com.k2.Util.classes;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.k2.Util.StringUtil;
+
+/**
+ * The property index maps the aliases of the properties of a class to the members through which each property is read and written.
+ *
+ * The index is built once for each class from its method table and fields. A property is read through a no argument 'get' method or a no argument
+ * 'is' method returning a boolean and written through a single argument 'set' method. The field with the same name as the alias is also held
+ * against each property. As with the names of accessor methods, the alias of a property is matched to its methods with its initial letter in
+ * upper case. The properties are ordered by the fields of the class followed by the properties that only have methods.
+ *
+ * @author simon
+ *
+ */
+public class PropertyIndex {
+
+	private static final ClassValue<PropertyIndex> indexes = new ClassValue<PropertyIndex>() {
+		@Override
+		protected PropertyIndex computeValue(Class<?> cls) { return new PropertyIndex(cls); }
+	};
+
+	private static final Method[] NO_METHODS = new Method[0];
+
+	private final Class<?> cls;
+	private final Map<String, Property> properties;
+	private final Map<String, Property> accessorProperties;
+
+	private PropertyIndex(Class<?> cls) {
+		this.cls = cls;
+		// The accessor methods are grouped by the name that follows their prefix, e.g. 'URL' for getURL()
+		Map<String, Property> accessorProperties = new LinkedHashMap<String, Property>();
+		Map<String, List<Method>> writeMethods = new LinkedHashMap<String, List<Method>>();
+		for (Method m : ClassUtil.allMethods(cls)) {
+			if (Modifier.isStatic(m.getModifiers())) continue;
+			String name = m.getName();
+			if (m.getParameterCount() == 0 && isAccessor(name, "get") && m.getReturnType() != void.class) {
+				getAccessorProperty(accessorProperties, name.substring(3)).getMethod = m;
+			} else if (m.getParameterCount() == 0 && isAccessor(name, "is") && m.getReturnType() == boolean.class) {
+				getAccessorProperty(accessorProperties, name.substring(2)).isMethod = m;
+			} else if (m.getParameterCount() == 1 && isAccessor(name, "set")) {
+				String accessorName = name.substring(3);
+				getAccessorProperty(accessorProperties, accessorName);
+				List<Method> methods = writeMethods.get(accessorName);
+				if (methods == null) {
+					methods = new ArrayList<Method>(1);
+					writeMethods.put(accessorName, methods);
+				}
+				methods.add(m);
+			}
+		}
+		for (Map.Entry<String, List<Method>> entry : writeMethods.entrySet())
+			accessorProperties.get(entry.getKey()).writeMethods = entry.getValue().toArray(new Method[entry.getValue().size()]);
+
+		// Each field is a property read and written through the accessors named by the field name with its initial letter in upper case
+		Map<String, Property> properties = new LinkedHashMap<String, Property>();
+		for (Field f : ClassUtil.allFields(cls)) {
+			// Fields of sub classes hide the fields of super classes with the same name
+			if (!properties.containsKey(f.getName()))
+				properties.put(f.getName(), new Property(f.getName(), f, accessorProperties.get(StringUtil.initialUpperCase(f.getName()))));
+		}
+		// Accessors without a field are held against the alias derived from their name, e.g. 'uRL' for getURL()
+		for (Property p : accessorProperties.values())
+			if (!properties.containsKey(p.alias)) properties.put(p.alias, p);
+		this.properties = properties;
+		this.accessorProperties = accessorProperties;
+	}
+
+	/**
+	 * A method is an accessor if its name is the prefix followed by the alias with its initial letter in upper case
+	 */
+	private static boolean isAccessor(String name, String prefix) {
+		return name.length() > prefix.length() && name.startsWith(prefix) && !Character.isLowerCase(name.charAt(prefix.length()));
+	}
+
+	private static Property getAccessorProperty(Map<String, Property> accessorProperties, String accessorName) {
+		Property p = accessorProperties.get(accessorName);
+		if (p == null) {
+			p = new Property(StringUtil.initialLowerCase(accessorName), null, null);
+			accessorProperties.put(accessorName, p);
+		}
+		return p;
+	}
+
+	/**
+	 * Get the property index of the given class. The index is built on first use and cached against the class
+	 * @param cls	The class for which the property index is required
+	 * @return	The property index of the class
+	 */
+	public static PropertyIndex forClass(Class<?> cls) { return indexes.get(cls); }
+
+	/**
+	 * Discard the cached property index of the given class
+	 * @param cls	The class whose property index is to be discarded
+	 */
+	public static void evict(Class<?> cls) { indexes.remove(cls); }
+
+	/**
+	 * @return	The indexed class
+	 */
+	public Class<?> getIndexedClass() { return cls; }
+
+	/**
+	 * @return	All the properties of the class
+	 */
+	public Collection<Property> getProperties() { return Collections.unmodifiableCollection(properties.values()); }
+
+	/**
+	 * Get the property with the given alias. If no property is held against the alias the property read and written by the accessors named by the
+	 * alias with its initial letter in upper case is returned, so both 'URL' and 'uRL' find the property of getURL()
+	 * @param alias	The alias of the property
+	 * @return	The property or null if the class has no property with the given alias
+	 */
+	public Property getProperty(String alias) {
+		Property p = properties.get(alias);
+		return (p != null) ? p : accessorProperties.get(StringUtil.initialUpperCase(alias));
+	}
+
+	/**
+	 * Get the member through which the property with the given alias can be read as the given type
+	 * @param alias	The alias of the property
+	 * @param type	The type required from the member
+	 * @return	The getter method or field of the property or null if the property cannot be read as the given type
+	 */
+	public Member getReadMember(String alias, Class<?> type) {
+		Property p = getProperty(alias);
+		return (p == null) ? null : p.getReadMember(type);
+	}
+
+	/**
+	 * Get the member through which the property with the given alias can be written with the given type
+	 * @param alias	The alias of the property
+	 * @param type	The type of the values to write
+	 * @return	The setter method or field of the property or null if the property cannot be written with the given type
+	 */
+	public Member getWriteMember(String alias, Class<?> type) {
+		Property p = getProperty(alias);
+		return (p == null) ? null : p.getWriteMember(type);
+	}
+
+	@Override
+	public String toString() {
+		return "PropertyIndex("+cls.getName()+")";
+	}
+
+	/**
+	 * The members of a single property
+	 */
+	public static class Property {
+
+		private final String alias;
+		private final Field field;
+		private Method getMethod;
+		private Method isMethod;
+		private Method[] writeMethods = NO_METHODS;
+
+		private Property(String alias, Field field, Property accessors) {
+			this.alias = alias;
+			this.field = field;
+			if (accessors != null) {
+				this.getMethod = accessors.getMethod;
+				this.isMethod = accessors.isMethod;
+				this.writeMethods = accessors.writeMethods;
+			}
+		}
+
+		/**
+		 * @return	The alias of the property
+		 */
+		public String getAlias() { return alias; }
+
+		/**
+		 * @return	The field with the name of the alias or null if there is no such field
+		 */
+		public Field getField() { return field; }
+
+		/**
+		 * @return	The 'get' method of the property or if there is no 'get' method the 'is' method of the property or null if the property has
+		 * 			neither
+		 */
+		public Method getReadMethod() { return (getMethod != null) ? getMethod : isMethod; }
+
+		/**
+		 * @return	The 'set' methods of the property. The array is shared and must not be modified
+		 */
+		public Method[] getWriteMethods() { return writeMethods; }
+
+		/**
+		 * @return	The type of the property taken from its read method, its field or its first write method. Null if the property has none
+		 */
+		public Class<?> getJavaType() {
+			Method readMethod = getReadMethod();
+			if (readMethod != null) return readMethod.getReturnType();
+			if (field != null) return field.getType();
+			if (writeMethods.length > 0) return writeMethods[0].getParameterTypes()[0];
+			return null;
+		}
+
+		/**
+		 * Get the member through which this property can be read as the given type. The read method is preferred to the field
+		 * @param type	The type required from the member
+		 * @return	The read method or field or null if the property cannot be read as the given type
+		 * @see ClassUtil#isReadable(Class, Class)
+		 */
+		public Member getReadMember(Class<?> type) {
+			if (getMethod != null && ClassUtil.isReadable(getMethod.getReturnType(), type)) return getMethod;
+			if (isMethod != null && ClassUtil.isReadable(boolean.class, type)) return isMethod;
+			if (field != null && ClassUtil.isReadable(field.getType(), type)) return field;
+			return null;
+		}
+
+		/**
+		 * Get the member through which this property can be written with the given type. The write methods are preferred to the field
+		 * @param type	The type of the values to write
+		 * @return	The write method or field or null if the property cannot be written with the given type
+		 * @see ClassUtil#isWritable(Class, Class)
+		 */
+		public Member getWriteMember(Class<?> type) {
+			for (Method m : writeMethods)
+				if (ClassUtil.isWritable(m.getParameterTypes()[0], type)) return m;
+			if (field != null && ClassUtil.isWritable(field.getType(), type)) return field;
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return "Property("+alias+")";
+		}
+	}
+
+}
@@ -0,0 +1,274 @@
+package com.k2.Util.classes;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.invoke.MethodHandles;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.k2.Util.FileUtil;
+
+/**
+ * The ScanCache stores the results of class path scans on disk so that they can be reused by later JVMs while the class path is unchanged.
+ *
+ * The results of scanning a package are stored separately for each class path root providing the package along with a fingerprint of the root
+ * and a fingerprint of the whole class path. The fingerprint of a jar is built from the path, size and last modified time of the jar file. The
+ * fingerprint of a directory is built from the relative path, size and last modified time of every class file in the directory. If content
+ * hashing is enabled the MD5 hash of each file is included in the fingerprint. The annotations inherited by the classes of a root and their super
+ * types may be read from any entry of the class path so a cached result is only used if neither its root nor any other entry of the class path
+ * has changed. Class files read through class loaders that do not expose their class path are not covered by the fingerprint.
+ *
+ * The cache is opt in. The default cache is enabled by setting the system property 'k2.util.scanCache' to the directory in which the results are
+ * stored and content hashing of the default cache is enabled by setting the system property 'k2.util.scanCache.hash' to 'true'
+ *
+ * @author simon
+ *
+ */
+public class ScanCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * The system property holding the directory of the default scan cache
+	 */
+	public static final String DIRECTORY_PROPERTY = "k2.util.scanCache";
+	/**
+	 * The system property used to enable content hashing in the default scan cache
+	 */
+	public static final String HASH_PROPERTY = "k2.util.scanCache.hash";
+
+	private static final String CACHE_SUFFIX = ".scan";
+
+	private final File directory;
+	private boolean contentHash = false;
+
+	private ScanCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Get a scan cache storing its results in the given directory. The directory is created when the first result is written to the cache if it
+	 * does not already exist
+	 * @param directory	The directory in which to store the scan results
+	 * @return	The scan cache for the directory
+	 */
+	public static ScanCache forDirectory(File directory) {
+		return new ScanCache(directory);
+	}
+
+	/**
+	 * @return	The scan cache configured through the system property 'k2.util.scanCache' or null if no scan cache is configured
+	 */
+	public static ScanCache getDefault() {
+		String dir = System.getProperty(DIRECTORY_PROPERTY);
+		if (dir == null || dir.trim().isEmpty()) return null;
+		return forDirectory(new File(dir.trim())).withContentHash(Boolean.getBoolean(HASH_PROPERTY));
+	}
+
+	/**
+	 * Set whether the MD5 hash of each file is included in the fingerprint of a root. Content hashing detects changes that do not alter the size
+	 * or last modified time of a file at the cost of reading every file of the root
+	 * @param contentHash	True if the content of each file should be hashed
+	 * @return	This scan cache
+	 */
+	public ScanCache withContentHash(boolean contentHash) {
+		this.contentHash = contentHash;
+		return this;
+	}
+
+	/**
+	 * @return	The directory in which the scan results are stored
+	 */
+	public File getDirectory() { return directory; }
+
+	/**
+	 * @return	True if the content of each file is included in the fingerprint of a root
+	 */
+	public boolean isContentHash() { return contentHash; }
+
+	/**
+	 * Remove all the scan results stored in the cache
+	 */
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files == null) return;
+		for (File file : files) {
+			if (file.getName().endsWith(CACHE_SUFFIX) && !file.delete())
+				logger.warn("Unable to delete scan cache file {}", file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Get the fingerprint of the given class path root
+	 * @param root	The URL of the package in the class path root
+	 * @return	The fingerprint of the root or null if the root cannot be fingerprinted and so cannot be cached
+	 */
+	String fingerprint(URL root) {
+		try {
+			if ("file".equals(root.getProtocol())) {
+				File dir = new File(root.toURI());
+				if (!dir.isDirectory()) return null;
+				Hasher hasher = Hashing.murmur3_128().newHasher();
+				fingerprintDirectory(dir, "", hasher);
+				return hasher.hash().toString();
+			} else if ("jar".equals(root.getProtocol())) {
+				URLConnection connection = root.openConnection();
+				if (!(connection instanceof JarURLConnection)) return null;
+				URL jarUrl = ((JarURLConnection)connection).getJarFileURL();
+				if (!"file".equals(jarUrl.getProtocol())) return null;
+				File jar = new File(jarUrl.toURI());
+				if (!jar.isFile()) return null;
+				Hasher hasher = Hashing.murmur3_128().newHasher();
+				fingerprintFile(jar, jar.getAbsolutePath(), hasher);
+				return hasher.hash().toString();
+			}
+		} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+			logger.trace("Unable to fingerprint class path root {} - {}", root, e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Get the fingerprint of the given class path
+	 * @param classPath	The jar files and directories of the class path
+	 * @return	The fingerprint of all the class files in the jars and directories of the class path
+	 */
+	String fingerprint(Collection<File> classPath) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (File entry : classPath) {
+			if (entry.isDirectory()) {
+				hasher.putString(entry.getAbsolutePath(), StandardCharsets.UTF_8);
+				fingerprintDirectory(entry, "", hasher);
+			} else if (entry.isFile()) {
+				fingerprintFile(entry, entry.getAbsolutePath(), hasher);
+			}
+		}
+		return hasher.hash().toString();
+	}
+
+	private void fingerprintDirectory(File dir, String path, Hasher hasher) {
+		File[] files = dir.listFiles();
+		if (files == null) return;
+		// Sort the files so that the fingerprint does not depend on the order in which the file system lists them
+		Arrays.sort(files);
+		for (File file : files) {
+			if (file.isDirectory()) {
+				fingerprintDirectory(file, path+file.getName()+"/", hasher);
+			} else if (file.getName().endsWith(".class")) {
+				fingerprintFile(file, path+file.getName(), hasher);
+			}
+		}
+	}
+
+	private void fingerprintFile(File file, String path, Hasher hasher) {
+		hasher.putString(path, StandardCharsets.UTF_8).putLong(file.length()).putLong(file.lastModified());
+		if (contentHash) hasher.putString(FileUtil.hash(file), StandardCharsets.UTF_8);
+	}
+
+	private File cacheFile(URL root, String packageName) {
+		String key = Hashing.murmur3_128().hashString(root.toString()+"|"+packageName, StandardCharsets.UTF_8).toString();
+		return new File(directory, key+CACHE_SUFFIX);
+	}
+
+	/**
+	 * Read the cached scan results of the given root
+	 * @param root	The URL of the package in the class path root
+	 * @param packageName	The name of the scanned package
+	 * @param fingerprint	The current fingerprint of the root
+	 * @return	The cached class names and annotation names of the root or null if no results are cached for the current fingerprint of the root
+	 */
+	Map<String, Set<String>> read(URL root, String packageName, String fingerprint) {
+		File file = cacheFile(root, packageName);
+		if (!file.isFile()) return null;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			if (!root.toString().equals(reader.readLine()) || !packageName.equals(reader.readLine())) return null;
+			if (!fingerprint.equals(reader.readLine())) {
+				logger.trace("The class path root {} has changed since package {} was cached", root, packageName);
+				return null;
+			}
+			Map<String, Set<String>> entries = new LinkedHashMap<String, Set<String>>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) continue;
+				int pos = line.indexOf('=');
+				if (pos < 0) {
+					entries.put(line, Collections.<String>emptySet());
+				} else {
+					Set<String> annotationNames = new HashSet<String>();
+					Collections.addAll(annotationNames, line.substring(pos+1).split(","));
+					entries.put(line.substring(0, pos), annotationNames);
+				}
+			}
+			logger.trace("Read {} cached classes of package {} for class path root {}", entries.size(), packageName, root);
+			return entries;
+		} catch (IOException e) {
+			logger.warn("Unable to read scan cache file {} - {}", file.getAbsolutePath(), e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Write the scan results of the given root to the cache replacing any previously cached results of the root
+	 * @param root	The URL of the package in the class path root
+	 * @param packageName	The name of the scanned package
+	 * @param fingerprint	The fingerprint of the root when it was scanned
+	 * @param entries	The class names and annotation names found in the root
+	 */
+	void write(URL root, String packageName, String fingerprint, Map<String, Set<String>> entries) {
+		File file = cacheFile(root, packageName);
+		File tmp = null;
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+				logger.warn("Unable to create scan cache directory {}", directory.getAbsolutePath());
+				return;
+			}
+			// Write to a temporary file first so that concurrent JVMs never read a partially written result
+			tmp = File.createTempFile(file.getName(), ".tmp", directory);
+			try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+				writer.write(root.toString()+"\n"+packageName+"\n"+fingerprint+"\n");
+				for (Map.Entry<String, Set<String>> entry : entries.entrySet()) {
+					writer.write(entry.getKey());
+					if (!entry.getValue().isEmpty()) {
+						writer.write('=');
+						writer.write(String.join(",", entry.getValue()));
+					}
+					writer.write('\n');
+				}
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			logger.trace("Cached {} classes of package {} for class path root {}", entries.size(), packageName, root);
+		} catch (IOException e) {
+			logger.warn("Unable to write scan cache file {} - {}", file.getAbsolutePath(), e.getMessage());
+			if (tmp != null) tmp.delete();
+		}
+	}
+
+}
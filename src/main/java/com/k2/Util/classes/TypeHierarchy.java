@@ -0,0 +1,188 @@
+package com.k2.Util.classes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * The type hierarchy holds the super types of a class.
+ *
+ * The super classes of a class are linearized starting with the class itself and ending with java.lang.Object, and all the interfaces
+ * implemented by the class and its super classes are linearized such that sub interfaces are listed before the interfaces they extend. Since the
+ * super classes of every class end with java.lang.Object a class is a sub class of another class exactly when its super class at the depth of the
+ * other class is the other class, so checking a super class is a single array read. As with Class.getSuperclass() interfaces and primitives have
+ * no super classes, their linearization holds only the type itself so java.lang.Object is not one of their super classes, although interfaces
+ * are assignable to java.lang.Object.
+ *
+ * Each hierarchy caches whether its class is assignable to the types it is checked against and the nearest super class it shares with the
+ * classes it is compared to in maps held by the hierarchy, so that the classes checked against are not burdened with entries for every hierarchy.
+ * The maps hold the classes checked against weakly, so a hierarchy does not keep the classes of an unloaded class loader reachable and the entries
+ * for those classes are dropped once they have been collected. The hierarchy of each class is built on first use and cached against the class.
+ *
+ * @author simon
+ *
+ */
+public class TypeHierarchy {
+
+	private static final ClassValue<TypeHierarchy> hierarchies = new ClassValue<TypeHierarchy>() {
+		@Override
+		protected TypeHierarchy computeValue(Class<?> cls) { return new TypeHierarchy(cls); }
+	};
+
+	private final Class<?> cls;
+	private final Class<?>[] superclasses;
+	private final Class<?>[] interfaces;
+	private final List<Class<?>> superclassList;
+	private final List<Class<?>> interfaceList;
+	private final Set<Class<?>> supertypes;
+
+	/**
+	 * The common super class recorded for classes sharing no super class with the class, since concurrent maps do not hold null values
+	 */
+	private static final Class<?> NO_SUPERCLASS = void.class;
+
+	/**
+	 * The common super class of two classes is a super class of the class of this hierarchy so only the keys need be weak
+	 */
+	private final Map<Class<?>, Boolean> assignable = new MapMaker().weakKeys().makeMap();
+	private final Map<Class<?>, Class<?>> commonSuperclasses = new MapMaker().weakKeys().makeMap();
+
+	private TypeHierarchy(Class<?> cls) {
+		this.cls = cls;
+
+		List<Class<?>> sClasses = new ArrayList<Class<?>>();
+		for (Class<?> c = cls; c != null; c = c.getSuperclass()) sClasses.add(c);
+		this.superclasses = sClasses.toArray(new Class<?>[sClasses.size()]);
+
+		Set<Class<?>> iFaces = new LinkedHashSet<Class<?>>();
+		List<Class<?>> pending = new ArrayList<Class<?>>();
+		for (Class<?> c : superclasses) Collections.addAll(pending, c.getInterfaces());
+		for (int i=0; i<pending.size(); i++) {
+			Class<?> iFace = pending.get(i);
+			if (iFaces.add(iFace)) Collections.addAll(pending, iFace.getInterfaces());
+		}
+		this.interfaces = iFaces.toArray(new Class<?>[iFaces.size()]);
+
+		this.superclassList = Collections.unmodifiableList(Arrays.asList(superclasses));
+		this.interfaceList = Collections.unmodifiableList(Arrays.asList(interfaces));
+
+		this.supertypes = new HashSet<Class<?>>(2*(superclasses.length+interfaces.length+1));
+		Collections.addAll(supertypes, superclasses);
+		Collections.addAll(supertypes, interfaces);
+		if (!cls.isPrimitive()) supertypes.add(Object.class);
+	}
+
+	/**
+	 * Get the type hierarchy of the given class
+	 * @param cls	The class whose type hierarchy is required
+	 * @return	The type hierarchy of the class
+	 */
+	public static TypeHierarchy forClass(Class<?> cls) { return hierarchies.get(cls); }
+
+	/**
+	 * Discard the cached type hierarchy of the given class
+	 * @param cls	The class whose type hierarchy is to be discarded
+	 */
+	public static void evict(Class<?> cls) { hierarchies.remove(cls); }
+
+	/**
+	 * Check whether a value of the given class can be assigned to the given type
+	 * @param type	The type to assign to
+	 * @param cls	The class of the value
+	 * @return	True if the type is the class or one of its super types
+	 */
+	public static boolean isAssignable(Class<?> type, Class<?> cls) {
+		return forClass(cls).isAssignableTo(type);
+	}
+
+	/**
+	 * @return	The class of this type hierarchy
+	 */
+	public Class<?> getHierarchyClass() { return cls; }
+
+	/**
+	 * @return	The number of super classes of the class, zero for java.lang.Object, interfaces and primitives
+	 */
+	public int getDepth() { return superclasses.length-1; }
+
+	/**
+	 * @return	The class followed by its super classes in order ending with java.lang.Object, or only the type itself for interfaces and primitives.
+	 * The array is shared and must not be modified
+	 */
+	public Class<?>[] getSuperclasses() { return superclasses; }
+
+	/**
+	 * @return	An unmodifiable list of the class followed by its super classes in order ending with java.lang.Object, or only the type itself for
+	 * interfaces and primitives
+	 */
+	public List<Class<?>> getSuperclassList() { return superclassList; }
+
+	/**
+	 * @return	All the interfaces implemented by the class with sub interfaces listed before the interfaces they extend. The array is shared and must
+	 * not be modified
+	 */
+	public Class<?>[] getInterfaces() { return interfaces; }
+
+	/**
+	 * @return	An unmodifiable list of all the interfaces implemented by the class
+	 */
+	public List<Class<?>> getInterfaceList() { return interfaceList; }
+
+	/**
+	 * Check whether the given class is the class of this hierarchy or one of its super classes
+	 * @param c	The class to check
+	 * @return	True if the given class is in the super class linearization of the class, which for an interface holds only the interface
+	 */
+	public boolean hasSuperclass(Class<?> c) {
+		int i = superclasses.length-forClass(c).superclasses.length;
+		return i >= 0 && superclasses[i] == c;
+	}
+
+	/**
+	 * Check whether a value of the class of this hierarchy can be assigned to the given type
+	 * @param type	The type to assign to
+	 * @return	True if the given type is the class or one of its super types
+	 */
+	public boolean isAssignableTo(Class<?> type) {
+		Boolean b = assignable.get(type);
+		if (b == null) {
+			b = (cls.isArray() || cls.isPrimitive()) ? type.isAssignableFrom(cls) : supertypes.contains(type);
+			assignable.put(type, b);
+		}
+		return b;
+	}
+
+	/**
+	 * Get the nearest super class of the class of this hierarchy that is also a super class of the given class
+	 * @param other	The class to compare
+	 * @return	The nearest shared super class or null if the classes share no super class
+	 */
+	public Class<?> getCommonSuperclass(Class<?> other) {
+		Class<?> common = commonSuperclasses.get(other);
+		if (common == null) {
+			common = NO_SUPERCLASS;
+			TypeHierarchy hierarchy = forClass(other);
+			for (Class<?> c : superclasses) {
+				if (hierarchy.hasSuperclass(c)) {
+					common = c;
+					break;
+				}
+			}
+			commonSuperclasses.put(other, common);
+		}
+		return (common == NO_SUPERCLASS) ? null : common;
+	}
+
+	@Override
+	public String toString() {
+		return "TypeHierarchy("+cls.getName()+")";
+	}
+
+}
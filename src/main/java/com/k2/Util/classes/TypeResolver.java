@@ -0,0 +1,246 @@
+package com.k2.Util.classes;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The type resolver resolves the generic types of the members of a class to classes as seen from the class.
+ *
+ * The resolver of a class binds every type variable of its super classes and interfaces to the type argument given for the variable in the
+ * class hierarchy, so a type variable declared by a super class resolves to the type argument given by the class or one of its other super
+ * classes. Type variables that are not bound by the hierarchy resolve to their first bound. Wildcards resolve to their upper bound, parameterized
+ * types to their raw class and generic arrays to the array class of their resolved component type.
+ *
+ * The resolved type arguments of each field and method are cached by the resolver so that each member is only resolved once. The resolver of
+ * each class is built on first use and cached against the class.
+ *
+ * @author simon
+ *
+ */
+public class TypeResolver {
+
+	private static final Class<?>[] NO_CLASSES = new Class<?>[0];
+
+	private static final ClassValue<TypeResolver> resolvers = new ClassValue<TypeResolver>() {
+		@Override
+		protected TypeResolver computeValue(Class<?> cls) { return new TypeResolver(cls); }
+	};
+
+	private final Class<?> cls;
+	private final Map<TypeVariable<?>, Type> bindings = new HashMap<TypeVariable<?>, Type>();
+	private final Map<Object, Class<?>[]> typeArguments = new ConcurrentHashMap<Object, Class<?>[]>();
+	private final Map<Field, Class<?>[]> elementClasses = new ConcurrentHashMap<Field, Class<?>[]>();
+
+	private TypeResolver(Class<?> cls) {
+		this.cls = cls;
+		bind(cls, new HashSet<Class<?>>());
+	}
+
+	private void bind(Type type, Set<Class<?>> visited) {
+		Class<?> raw;
+		if (type instanceof ParameterizedType) {
+			ParameterizedType pType = (ParameterizedType)type;
+			raw = (Class<?>)pType.getRawType();
+			TypeVariable<?>[] variables = raw.getTypeParameters();
+			Type[] arguments = pType.getActualTypeArguments();
+			for (int i=0; i<variables.length && i<arguments.length; i++) bindings.put(variables[i], arguments[i]);
+		} else if (type instanceof Class) {
+			raw = (Class<?>)type;
+		} else {
+			return;
+		}
+		if (!visited.add(raw)) return;
+		if (raw.getGenericSuperclass() != null) bind(raw.getGenericSuperclass(), visited);
+		for (Type iFace : raw.getGenericInterfaces()) bind(iFace, visited);
+	}
+
+	/**
+	 * Get the type resolver of the given class
+	 * @param cls	The class from which generic types are to be resolved
+	 * @return	The type resolver of the class
+	 */
+	public static TypeResolver forClass(Class<?> cls) { return resolvers.get(cls); }
+
+	/**
+	 * Discard the cached type resolver of the given class
+	 * @param cls	The class whose type resolver is to be discarded
+	 */
+	public static void evict(Class<?> cls) { resolvers.remove(cls); }
+
+	/**
+	 * @return	The class from which this resolver resolves generic types
+	 */
+	public Class<?> getResolvedClass() { return cls; }
+
+	/**
+	 * Resolve the given type variable through the class hierarchy
+	 * @param variable	The type variable to resolve
+	 * @return	The type bound to the variable by the class hierarchy or the variable itself if it is not bound by the hierarchy
+	 */
+	public Type resolveVariable(TypeVariable<?> variable) {
+		Type type = variable;
+		// Each binding maps a variable to a type of a sub class so the chain of bindings is never longer than the hierarchy
+		for (int i=0; type instanceof TypeVariable && bindings.containsKey(type) && i<=bindings.size(); i++) type = bindings.get(type);
+		return type;
+	}
+
+	/**
+	 * Resolve the given type to a class
+	 * @param type	The type to resolve
+	 * @return	The class of the type as seen from the class of this resolver
+	 */
+	public Class<?> resolveClass(Type type) {
+		if (type instanceof Class) return (Class<?>)type;
+		if (type instanceof ParameterizedType) return (Class<?>)((ParameterizedType)type).getRawType();
+		if (type instanceof GenericArrayType) {
+			return Array.newInstance(resolveClass(((GenericArrayType)type).getGenericComponentType()), 0).getClass();
+		}
+		if (type instanceof WildcardType) {
+			Type[] upperBounds = ((WildcardType)type).getUpperBounds();
+			return (upperBounds.length == 0) ? Object.class : resolveClass(upperBounds[0]);
+		}
+		if (type instanceof TypeVariable) {
+			Type resolved = resolveVariable((TypeVariable<?>)type);
+			if (resolved instanceof TypeVariable) {
+				Type[] bounds = ((TypeVariable<?>)resolved).getBounds();
+				return (bounds.length == 0) ? Object.class : resolveClass(bounds[0]);
+			}
+			return resolveClass(resolved);
+		}
+		return Object.class;
+	}
+
+	/**
+	 * Resolve the type arguments of the given type
+	 * @param type	The type whose type arguments are required
+	 * @return	The resolved classes of the type arguments of the type or an empty array if the type is not parameterized
+	 */
+	public Class<?>[] resolveTypeArguments(Type type) {
+		if (type instanceof TypeVariable) type = resolveVariable((TypeVariable<?>)type);
+		if (type instanceof WildcardType) {
+			Type[] upperBounds = ((WildcardType)type).getUpperBounds();
+			if (upperBounds.length > 0) return resolveTypeArguments(upperBounds[0]);
+		}
+		if (!(type instanceof ParameterizedType)) return NO_CLASSES;
+		Type[] arguments = ((ParameterizedType)type).getActualTypeArguments();
+		Class<?>[] classes = new Class<?>[arguments.length];
+		for (int i=0; i<arguments.length; i++) classes[i] = resolveClass(arguments[i]);
+		return classes;
+	}
+
+	/**
+	 * Resolve the type arguments of the given super type of the given type
+	 * @param type	The type implementing or extending the super type
+	 * @param superType	The generic super type whose type arguments are required
+	 * @return	The resolved classes of the type arguments of the super type as implemented by the type
+	 */
+	public Class<?>[] resolveTypeArguments(Type type, Class<?> superType) {
+		if (type instanceof TypeVariable) type = resolveVariable((TypeVariable<?>)type);
+		Class<?> raw = resolveClass(type);
+		if (raw.equals(superType)) return resolveTypeArguments(type);
+		if (!superType.isAssignableFrom(raw)) return NO_CLASSES;
+
+		TypeVariable<?>[] variables = superType.getTypeParameters();
+		TypeResolver rawResolver = forClass(raw);
+		TypeVariable<?>[] rawVariables = raw.getTypeParameters();
+		Type[] rawArguments = (type instanceof ParameterizedType) ? ((ParameterizedType)type).getActualTypeArguments() : null;
+		Class<?>[] classes = new Class<?>[variables.length];
+		for (int i=0; i<variables.length; i++) {
+			Type bound = rawResolver.resolveVariable(variables[i]);
+			// Variables of the raw class are bound by the type arguments of the given type as seen from this class
+			int pos = indexOf(rawVariables, bound);
+			if (pos >= 0 && rawArguments != null && pos < rawArguments.length) {
+				classes[i] = resolveClass(rawArguments[pos]);
+			} else {
+				classes[i] = (pos >= 0) ? resolveClass(bound) : rawResolver.resolveClass(bound);
+			}
+		}
+		return classes;
+	}
+
+	private static int indexOf(TypeVariable<?>[] variables, Type type) {
+		for (int i=0; i<variables.length; i++) if (variables[i].equals(type)) return i;
+		return -1;
+	}
+
+	/**
+	 * Get the resolved type arguments of the declared type of the given field
+	 * @param field	The field available through the class of this resolver
+	 * @return	The resolved classes of the type arguments of the field or an empty array if the field type is not parameterized. The array is shared
+	 * 			and must not be modified
+	 */
+	public Class<?>[] getFieldTypeArguments(Field field) {
+		Class<?>[] classes = typeArguments.get(field);
+		if (classes == null) {
+			classes = resolveTypeArguments(field.getGenericType());
+			typeArguments.put(field, classes);
+		}
+		return classes;
+	}
+
+	/**
+	 * Get the resolved type arguments of the return type of the given method
+	 * @param method	The method available through the class of this resolver
+	 * @return	The resolved classes of the type arguments of the return type of the method or an empty array if the return type is not parameterized.
+	 * 			The array is shared and must not be modified
+	 */
+	public Class<?>[] getMethodTypeArguments(Method method) {
+		Class<?>[] classes = typeArguments.get(method);
+		if (classes == null) {
+			classes = resolveTypeArguments(method.getGenericReturnType());
+			typeArguments.put(method, classes);
+		}
+		return classes;
+	}
+
+	/**
+	 * @return	The resolved type arguments of the super class of the class of this resolver. The array is shared and must not be modified
+	 */
+	public Class<?>[] getSuperclassTypeArguments() {
+		Class<?>[] classes = typeArguments.get(cls);
+		if (classes == null) {
+			classes = (cls.getGenericSuperclass() == null) ? NO_CLASSES : resolveTypeArguments(cls.getGenericSuperclass());
+			typeArguments.put(cls, classes);
+		}
+		return classes;
+	}
+
+	/**
+	 * Get the class of the elements of the given collection or array field
+	 * @param field	The field available through the class of this resolver
+	 * @return	The resolved class of the elements of the field or null if the field is neither a collection nor an array
+	 */
+	public Class<?> getFieldElementClass(Field field) {
+		Class<?>[] element = elementClasses.get(field);
+		if (element == null) {
+			element = new Class<?>[1];
+			Class<?> fieldClass = resolveClass(field.getGenericType());
+			if (fieldClass.isArray()) {
+				element[0] = fieldClass.getComponentType();
+			} else if (Collection.class.isAssignableFrom(fieldClass)) {
+				Class<?>[] classes = resolveTypeArguments(field.getGenericType(), Collection.class);
+				element[0] = (classes.length == 1) ? classes[0] : Object.class;
+			}
+			elementClasses.put(field, element);
+		}
+		return element[0];
+	}
+
+	@Override
+	public String toString() {
+		return "TypeResolver("+cls.getName()+")";
+	}
+
+}
@@ -21,11 +21,11 @@ public class DomainEntityMap<T> {
 			return;
 		}
 		for (Field f : ClassUtil.getAllFields(cls)) {
-			if (f.isAnnotationPresent(RootEntity.class)) {
+			if (ClassUtil.isAnnotationPresent(f, RootEntity.class)) {
 				this.rootEntityField = f;
 				this.rootEntityType = rootEntityField.getType();
 			}
-			if (f.isAnnotationPresent(ParentEntity.class)) {
+			if (ClassUtil.isAnnotationPresent(f, ParentEntity.class)) {
 				this.parentEntityField = f;
 				this.parentEntityType = parentEntityField.getType();
 			}
@@ -14,6 +14,7 @@ import javax.persistence.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.k2.Util.classes.AnnotationSummary;
 import com.k2.Util.classes.ClassUtil;
 import com.k2.Util.exceptions.UtilityError;
 
@@ -32,13 +33,13 @@ public class EntityCache<E> {
 		logger.trace("Caching class {}", entityClass.getName());
 		this.entityClass = entityClass;
 		
-		Entity e = entityClass.getAnnotation(Entity.class);
+		Entity e = AnnotationSummary.getAnnotation(entityClass, Entity.class);
 		if (e == null)
 			throw new UtilityError("The class {} is not annotated with the Entity annotation", entityClass.getName());
 		this.entityName = (e.name() == null || e.name().equals(""))?entityClass.getSimpleName():e.name();
 		logger.trace("Caching entity name {} for class {}", this.entityName, entityClass.getName());
 		
-		Table t = entityClass.getAnnotation(Table.class);
+		Table t = AnnotationSummary.getAnnotation(entityClass, Table.class);
 		if ( t == null) {
 			this.tableName = this.entityName;
 		} else {
@@ -49,8 +50,8 @@ public class EntityCache<E> {
 	
 	public void populateFields() {	
 		for(Field f : ClassUtil.getAllFields(entityClass)) {
-			if (f.isAnnotationPresent(Column.class)) {
-				Column c = f.getAnnotation(Column.class);
+			if (ClassUtil.isAnnotationPresent(f, Column.class)) {
+				Column c = ClassUtil.getAnnotation(f, Column.class);
 				logger.trace("Found column name '{}' for class {}", c.name(), entityClass.getName());
 				EntityField<E,?> ef = new EntityField(entityClass, f.getType(), f);
 				columnsByName.put(c.name(), ef);
@@ -59,7 +60,7 @@ public class EntityCache<E> {
 		}
 		
 		for(Field f : ClassUtil.getAllFields(entityClass)) {			
-			if (f.isAnnotationPresent(ManyToOne.class)) {
+			if (ClassUtil.isAnnotationPresent(f, ManyToOne.class)) {
 				logger.trace("Found link alias '{}' for class {}", f.getName(), entityClass.getName());
 				@SuppressWarnings("unchecked")
 				EntityLink<E,?> el = new EntityLink(entityClass, f.getType(), f);
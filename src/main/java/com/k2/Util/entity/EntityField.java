@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import com.k2.Util.classes.ClassUtil;
 import com.k2.Util.classes.Getter;
+import com.k2.Util.classes.PropertyIndex;
 
 public class EntityField <E,T> {
 	
@@ -33,7 +34,8 @@ public class EntityField <E,T> {
 		this.type = fieldType;
 		logger.trace("Caching Field '{}' on class {} with type {}", field.getName(), entityClass.getName(), this.type.getName());
 		this.field = field;
-		Member m = ClassUtil.getGetterMember(entityClass, field.getType(), field.getName());
+		PropertyIndex.Property property = PropertyIndex.forClass(entityClass).getProperty(field.getName());
+		Member m = (property == null) ? null : property.getReadMember(field.getType());
 		if (m instanceof Method) {
 			this.getterMethod = (Method)m;
 			logger.trace("Caching Field '{}' on class {} with getter method {}()", field.getName(), entityClass.getName(), this.getterMethod.getName());
@@ -41,7 +43,7 @@ public class EntityField <E,T> {
 			this.getterMethod = null;
 			logger.trace("Caching Field '{}' on class {} with no getter method", field.getName(), entityClass.getName());
 		}
-		m = ClassUtil.getSetterMember(entityClass, field.getType(), field.getName());
+		m = (property == null) ? null : property.getWriteMember(field.getType());
 		if (m instanceof Method) {
 			this.setterMethod = (Method)m;
 			logger.trace("Caching Field '{}' on class {} with setter method {}({})", 
@@ -52,8 +54,8 @@ public class EntityField <E,T> {
 		}
 		getter = ClassUtil.getGetter(entityClass, fieldType, field.getName());
 		this.alias = field.getName();
-		if (field.isAnnotationPresent(Column.class)) {
-			this.columnName = field.getAnnotation(Column.class).name();
+		if (ClassUtil.isAnnotationPresent(field, Column.class)) {
+			this.columnName = ClassUtil.getAnnotation(field, Column.class).name();
 			logger.trace("Caching Field '{}' on class {} with column name '{}'", field.getName(), entityClass.getName(), this.columnName);
 		} else {
 			this.columnName = null;
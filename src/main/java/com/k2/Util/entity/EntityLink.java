@@ -16,6 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.k2.Util.KeyUtil;
+import com.k2.Util.classes.ClassUtil;
 import com.k2.Util.exceptions.UtilityError;
 
 public class EntityLink<E,L> extends EntityField<E,L>{
@@ -31,8 +32,8 @@ public class EntityLink<E,L> extends EntityField<E,L>{
 		
 		logger.trace("Caching link {} on entity class {} to entity class {}", field.getName(), entityClass.getName(), field.getType().getName());
 		
-		if (field.isAnnotationPresent(ManyToOne.class)) {
-			ManyToOne mto = field.getAnnotation(ManyToOne.class);
+		if (ClassUtil.isAnnotationPresent(field, ManyToOne.class)) {
+			ManyToOne mto = ClassUtil.getAnnotation(field, ManyToOne.class);
 			this.fetchType = mto.fetch();
 			this.cascadeTypes = mto.cascade();
 			
@@ -41,9 +42,9 @@ public class EntityLink<E,L> extends EntityField<E,L>{
 			throw new UtilityError("The link field {}.{} to {} is not annotated with an @ManyToOne!", entityClass.getName(), field.getName(), linkToClass.getName());
 		}
 		
-		if (field.isAnnotationPresent(JoinColumn.class)) {
+		if (ClassUtil.isAnnotationPresent(field, JoinColumn.class)) {
 			
-			JoinColumn jc = field.getAnnotation(JoinColumn.class);
+			JoinColumn jc = ClassUtil.getAnnotation(field, JoinColumn.class);
 						
 			String sourceColumnName = jc.name();
 			String targetColumnName = jc.referencedColumnName();
@@ -56,7 +57,7 @@ public class EntityLink<E,L> extends EntityField<E,L>{
 							targetPk.length,
 							entityClass.getName(),
 							field.getName());
-				Column c = targetPk[0].getAnnotation(Column.class);
+				Column c = ClassUtil.getAnnotation(targetPk[0], Column.class);
 				targetColumnName = (c.name()==null||c.name().equals(""))?targetPk[0].getName():c.name();
 			}
 			
@@ -70,9 +71,9 @@ public class EntityLink<E,L> extends EntityField<E,L>{
 			joins.add(ej);
 		}
 		
-		if (field.isAnnotationPresent(JoinColumns.class)) {
+		if (ClassUtil.isAnnotationPresent(field, JoinColumns.class)) {
 			
-			JoinColumns jcs = field.getAnnotation(JoinColumns.class);
+			JoinColumns jcs = ClassUtil.getAnnotation(field, JoinColumns.class);
 			
 			logger.trace("Caching link {} on entity class {} with multiple joins", field.getName(), entityClass.getName());
 
@@ -8,9 +8,9 @@ import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -20,13 +20,15 @@ import javax.persistence.OneToMany;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
 import com.k2.Util.Identity.EntityToKey;
 import com.k2.Util.Identity.Id;
 import com.k2.Util.Identity.Identified;
 import com.k2.Util.Identity.Identity;
 import com.k2.Util.Identity.KeyConstructor;
+import com.k2.Util.KeyInterner;
+import com.k2.Util.classes.AnnotationSummary;
 import com.k2.Util.classes.ClassUtil;
+import com.k2.Util.classes.TypeHierarchy;
 import com.k2.Util.exceptions.UtilityError;
 
 
@@ -34,7 +36,24 @@ public class EntityUtil {
 	
 	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 	
-	private static Map<Class<?>, EntityCache<?>> entities = new HashMap<Class<?>,EntityCache<?>>();
+	private static Map<Class<?>, EntityCache<?>> entities = new ConcurrentHashMap<Class<?>,EntityCache<?>>();
+	
+	static {
+		ClassUtil.addEvictionListener(EntityUtil::evict);
+	}
+	
+	/**
+	 * This static method discards the entity cache, id member, key generator, key constructor and domain entity map cached for the given class.
+	 * It is called by ClassUtil.evict()
+	 * @param cls	The class whose cached entity data is to be discarded
+	 */
+	public static void evict(Class<?> cls) {
+		entities.remove(cls);
+		idMembersMap.remove(cls);
+		keyGenerators.remove(cls);
+		keyConstructors.remove(cls);
+		domainEntityMaps.remove(cls);
+	}
 	
 	@SuppressWarnings("unchecked")
 	public static <E> EntityCache<E> getEntityCache(Class<E> entityClass) {
@@ -79,7 +98,7 @@ public class EntityUtil {
 	/**
 	 * The static map of id fields for each class.
 	 */
-	private static Map<Class<?>, Member> idMembersMap = new HashMap<Class<?>, Member>();
+	private static Map<Class<?>, Member> idMembersMap = new ConcurrentHashMap<Class<?>, Member>();
 	
 	/**
 	 * This internal method extracts from class the field holding the id value.
@@ -99,7 +118,7 @@ public class EntityUtil {
 		if (id != null) return id;
 		
 		for (Field f : ClassUtil.getDeclaredFields(cls)) {
-			if (f.isAnnotationPresent(javax.persistence.Id.class) || f.isAnnotationPresent(javax.persistence.EmbeddedId.class)) {
+			if (ClassUtil.isAnnotationPresent(f, javax.persistence.Id.class) || ClassUtil.isAnnotationPresent(f, javax.persistence.EmbeddedId.class)) {
 				if (f.getType() instanceof Serializable) {
 					idMembersMap.put(cls, f);
 					return f;
@@ -110,7 +129,7 @@ public class EntityUtil {
 		}
 		
 		for (Method m : ClassUtil.getDeclaredMethods(cls)) {
-			if (m.isAnnotationPresent(javax.persistence.Id.class) || m.isAnnotationPresent(javax.persistence.EmbeddedId.class)) {
+			if (ClassUtil.isAnnotationPresent(m, javax.persistence.Id.class) || ClassUtil.isAnnotationPresent(m, javax.persistence.EmbeddedId.class)) {
 				if (m.getReturnType() instanceof Serializable) {
 					if (m.getParameterCount() == 0) {
 						idMembersMap.put(cls, m);
@@ -141,7 +160,7 @@ public class EntityUtil {
 
 	
 	@SuppressWarnings("rawtypes")
-	private static Map<Class, EntityToKey> keyGenerators = new HashMap<Class, EntityToKey>();
+	private static Map<Class, EntityToKey> keyGenerators = new ConcurrentHashMap<Class, EntityToKey>();
 	/**
 	 * This method gets the serializable id value from an object.
 	 * 
@@ -163,7 +182,7 @@ public class EntityUtil {
 			etk = EntityToKey.forClass(obj.getClass());
 			keyGenerators.put(obj.getClass(), etk);
 		}
-		return (Serializable) etk.getKey(obj);
+		return KeyInterner.canonicalize((Serializable) etk.getKey(obj));
 	}
 	
 	/**
@@ -177,7 +196,7 @@ public class EntityUtil {
 	/**
 	 * A map of key constructors for indexed by the class of the keys that they construct
 	 */
-	private static Map<Class<? extends Serializable>, KeyConstructor> keyConstructors = new HashMap<Class<? extends Serializable>, KeyConstructor>();
+	private static Map<Class<? extends Serializable>, KeyConstructor> keyConstructors = new ConcurrentHashMap<Class<? extends Serializable>, KeyConstructor>();
 	/**
 	 * This static method converts the given string representation of a key into an instance of the given key class and 
 	 * @param keyCls		The class of the key that is to be generatated from the string representation of the key
@@ -224,23 +243,25 @@ public class EntityUtil {
 
 	public static Class<?> getBaseEntityClass(Class<?> entityClass) {
 		
-		List<Class<?>> classes = ClassUtil.getSupertypes(entityClass);
-		for (Class<?> cls : Lists.reverse(classes)) {
-			if (cls.isAnnotationPresent(Entity.class))
-				return cls;
+		Class<?>[] classes = TypeHierarchy.forClass(entityClass).getSuperclasses();
+		for (int i=classes.length-1; i>=0; i--) {
+			if (AnnotationSummary.isAnnotationPresent(classes[i], Entity.class))
+				return classes[i];
 		}
 		return entityClass;
 	}
 
 	public static boolean isRootEntity(Class<?> cls) {
-		if (cls.isAnnotationPresent(RootEntity.class)) 
-			return true;
-		if (cls.getSuperclass() != Object.class)
-			return isRootEntity(cls.getSuperclass());
+		for (Class<?> c : TypeHierarchy.forClass(cls).getSuperclasses()) {
+			if (c == Object.class) 
+				return false;
+			if (AnnotationSummary.isAnnotationPresent(c, RootEntity.class)) 
+				return true;
+		}
 		return false;
 	}
 	
-	private static Map<Class<?>, DomainEntityMap<?>> domainEntityMaps = new HashMap<Class<?>, DomainEntityMap<?>>();
+	private static Map<Class<?>, DomainEntityMap<?>> domainEntityMaps = new ConcurrentHashMap<Class<?>, DomainEntityMap<?>>();
 	
 	private static <T> DomainEntityMap<T> getDomainEntityMap(Class<T> cls) {
 		DomainEntityMap<T> dem = (DomainEntityMap<T>) domainEntityMaps.get(cls);
@@ -284,7 +305,7 @@ public class EntityUtil {
 	
 	public static String getPath(Object parent, Object child) {
 		for (Field f : ClassUtil.getFields(parent.getClass(), child.getClass())) {
-			if (f.isAnnotationPresent(Column.class) || f.isAnnotationPresent(OneToMany.class) || f.isAnnotationPresent(ManyToOne.class)) {
+			if (ClassUtil.isAnnotationPresent(f, Column.class) || ClassUtil.isAnnotationPresent(f, OneToMany.class) || ClassUtil.isAnnotationPresent(f, ManyToOne.class)) {
 				try {
 					if (child.getClass().isAssignableFrom(f.getType())) {
 						Object value = f.get(parent);
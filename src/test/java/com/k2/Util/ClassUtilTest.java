@@ -3,21 +3,52 @@ package com.k2.Util;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
 import javax.persistence.Tuple;
 import javax.persistence.TupleElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -36,9 +67,31 @@ import com.k2.Util.Sample.TooMuch;
 import com.k2.Util.Version.Increment;
 import com.k2.Util.Version.Version;
 import com.k2.Util.Version.VersionExample;
+import com.k2.Util.classes.AnnotationSummary;
+import com.k2.Util.classes.ClassAccessor;
+import com.k2.Util.classes.ClassFile;
+import com.k2.Util.classes.ClassIndex;
+import com.k2.Util.classes.ClassIndexProcessor;
+import com.k2.Util.classes.ClassReloader;
+import com.k2.Util.classes.ClassScanner;
 import com.k2.Util.classes.ClassUtil;
 import com.k2.Util.classes.ClassUtil.AnnotationCheck;
+import com.k2.Util.classes.CompiledGetter;
+import com.k2.Util.classes.CompiledSetter;
+import com.k2.Util.classes.DoubleSetter;
+import com.k2.Util.classes.Getter;
+import com.k2.Util.classes.InMemoryCompiler;
+import com.k2.Util.classes.IntGetter;
+import com.k2.Util.classes.LongGetter;
+import com.k2.Util.classes.LongSetter;
+import com.k2.Util.classes.MethodTable;
+import com.k2.Util.classes.PropertyIndex;
+import com.k2.Util.classes.ScanCache;
+import com.k2.Util.classes.Setter;
+import com.k2.Util.classes.TypeHierarchy;
+import com.k2.Util.classes.TypeResolver;
 import com.k2.Util.exceptions.FileLockedException;
+import com.k2.Util.exceptions.UtilityError;
 import com.k2.Util.tuple.Tuple3;
 import com.k2.Util.tuple.TupleUtil;
 
@@ -55,7 +108,7 @@ public class ClassUtilTest {
 		
 		Class<?>[] classes = ClassUtil.getClasses("com.k2.Util.Sample");
 		
-		assertEquals(6, classes.length);
+		assertEquals(8, classes.length);
 		
 		List<Class<?>> classesList = Arrays.asList(classes);
 		assertTrue(classesList.contains(Bar.class));
@@ -91,6 +144,181 @@ public class ClassUtilTest {
 	}
 	
 
+	@Test
+	public void classScannerTest() {
+		
+		List<String> all = ClassScanner.forPackage("com.k2.Util")
+				.withAnnotations(AnnotationCheck.ALL, TestAnnotation1.class, TestAnnotation2.class)
+				.scan();
+		assertEquals(Arrays.asList(Foo.class.getName()), all);
+		
+		List<String> any = ClassScanner.forPackage("com.k2.Util")
+				.withAnnotations(AnnotationCheck.ANY, TestAnnotation1.class, TestAnnotation2.class)
+				.parallel(false)
+				.scan();
+		assertEquals(3, any.size());
+		assertTrue(any.containsAll(Arrays.asList(Foo.class.getName(), Bar.class.getName(), Too.class.getName())));
+		
+		assertEquals(
+				ClassScanner.forPackage("com.k2.Util").parallel(false).scanEntries(),
+				ClassScanner.forPackage("com.k2.Util").parallel(true).scanEntries());
+		
+		List<String> foos = ClassScanner.forPackage("com.k2.Util.Sample").withSuperTypes(Foo.class).scan();
+		assertEquals(2, foos.size());
+		assertTrue(foos.containsAll(Arrays.asList(Foo.class.getName(), Bar.class.getName())));
+		
+		Set<String> streamed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		ClassScanner.forPackage("com.k2.Util")
+				.withAnnotations(AnnotationCheck.ANY, TestAnnotation1.class, TestAnnotation2.class)
+				.scan(scanned -> streamed.add(scanned.getClassName()));
+		assertEquals(new HashSet<String>(any), streamed);
+	}
+	
+	@Test
+	public void classFileTest() throws IOException {
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream("com/k2/Util/Sample/Bar.class")) {
+			ClassFile classFile = ClassFile.read(is);
+			assertEquals(Bar.class.getName(), classFile.getClassName());
+			assertEquals(Foo.class.getName(), classFile.getSuperClassName());
+			assertFalse(classFile.isInterface());
+			for (Annotation annotation : Bar.class.getDeclaredAnnotations())
+				assertTrue(classFile.getAnnotationNames().contains(annotation.annotationType().getName()));
+		}
+	}
+
+	@Test
+	public void classIndexTest() throws IOException {
+		
+		File root = Files.createTempDirectory("k2-class-index").toFile();
+		try {
+			assertTrue(compile(root, "k2.index.sample.Indexed", "package k2.index.sample; @javax.persistence.Entity public class Indexed { public static class Nested {} "
+					+ "Object anonymous = new Object() {}; void local() { class Local {} } }", true));
+			
+			assertTrue(new File(root, "META-INF/k2/classes/packages").exists());
+			assertTrue(new File(root, "META-INF/k2/classes/k2.index.sample").exists());
+			
+			ClassLoader previous = Thread.currentThread().getContextClassLoader();
+			try (URLClassLoader loader = new URLClassLoader(new URL[] {root.toURI().toURL()}, getClass().getClassLoader())) {
+				Thread.currentThread().setContextClassLoader(loader);
+				
+				assertNotNull(ClassIndex.forPackage(loader, "k2.index"));
+				
+				assertEquals(2, ClassUtil.getClasses("k2.index").length);
+				Class<?>[] entities = ClassUtil.getClasses("k2.index", Entity.class);
+				assertEquals(1, entities.length);
+				assertEquals("k2.index.sample.Indexed", entities[0].getName());
+				
+				// Local and anonymous classes are neither indexed nor scanned
+				assertTrue(new File(root, "k2/index/sample/Indexed$1.class").exists());
+				List<String> scanned = ClassScanner.forPackage("k2.index").withClassLoader(loader).withScanCache(null).scan();
+				assertEquals(2, scanned.size());
+				assertTrue(scanned.containsAll(Arrays.asList("k2.index.sample.Indexed", "k2.index.sample.Indexed$Nested")));
+			} finally {
+				Thread.currentThread().setContextClassLoader(previous);
+			}
+		} finally {
+			FileUtil.deleteCascade(root);
+		}
+	}
+
+	@Test
+	public void scanCacheTest() throws IOException {
+		
+		File root = Files.createTempDirectory("k2-scan-root").toFile();
+		File cacheDir = Files.createTempDirectory("k2-scan-cache").toFile();
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {root.toURI().toURL()}, getClass().getClassLoader())) {
+			assertTrue(compile(root, "k2.scan.sample.First", "package k2.scan.sample; @javax.persistence.Entity public class First {}", false));
+			
+			ScanCache cache = ScanCache.forDirectory(cacheDir).withContentHash(true);
+			List<String> found = ClassScanner.forPackage("k2.scan").withClassLoader(loader).withScanCache(cache).scan();
+			assertEquals(Arrays.asList("k2.scan.sample.First"), found);
+			assertEquals(1, cacheDir.listFiles().length);
+			
+			assertEquals(found, ClassScanner.forPackage("k2.scan").withClassLoader(loader).withScanCache(cache).scan());
+			
+			// Changing the root invalidates its cached results
+			assertTrue(compile(root, "k2.scan.sample.Second", "package k2.scan.sample; @javax.persistence.Entity public class Second {}", false));
+			found = ClassScanner.forPackage("k2.scan").withClassLoader(loader).withScanCache(cache)
+					.withAnnotations(AnnotationCheck.ALL, Entity.class).scan();
+			assertEquals(2, found.size());
+			assertTrue(found.contains("k2.scan.sample.Second"));
+		} finally {
+			FileUtil.deleteCascade(root);
+			FileUtil.deleteCascade(cacheDir);
+		}
+	}
+
+	@Test
+	public void scanCacheClassPathTest() throws IOException, ClassNotFoundException {
+		
+		File root = Files.createTempDirectory("k2-scan-root").toFile();
+		File baseRoot = Files.createTempDirectory("k2-scan-base").toFile();
+		File cacheDir = Files.createTempDirectory("k2-scan-cache").toFile();
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {root.toURI().toURL(), baseRoot.toURI().toURL()}, getClass().getClassLoader())) {
+			assertTrue(compile(baseRoot, "k2.base.Marker", "package k2.base; @java.lang.annotation.Inherited "
+					+ "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Marker {}", false));
+			assertTrue(compile(baseRoot, "k2.base.Base", "package k2.base; @Marker public class Base {}", false));
+			// The child is compiled against the base and then moved to its own root
+			assertTrue(compile(baseRoot, "k2.scan.sample.Child", "package k2.scan.sample; public class Child extends k2.base.Base {}", false));
+			assertTrue(new File(root, "k2").mkdir());
+			Files.move(new File(baseRoot, "k2/scan").toPath(), new File(root, "k2/scan").toPath());
+			
+			Class<? extends Annotation> marker = loader.loadClass("k2.base.Marker").asSubclass(Annotation.class);
+			ScanCache cache = ScanCache.forDirectory(cacheDir);
+			assertEquals(Arrays.asList("k2.scan.sample.Child"),
+					ClassScanner.forPackage("k2.scan").withClassLoader(loader).withScanCache(cache).withAnnotations(AnnotationCheck.ALL, marker).scan());
+			
+			// The inherited annotations of the cached root change with the super class in the other root
+			assertTrue(compile(baseRoot, "k2.base.Base", "package k2.base; public class Base {}", false));
+			assertEquals(Collections.emptyList(),
+					ClassScanner.forPackage("k2.scan").withClassLoader(loader).withScanCache(cache).withAnnotations(AnnotationCheck.ALL, marker).scan());
+		} finally {
+			FileUtil.deleteCascade(root);
+			FileUtil.deleteCascade(baseRoot);
+			FileUtil.deleteCascade(cacheDir);
+		}
+	}
+
+	@Test
+	public void jarWithoutDirectoriesScanTest() throws IOException {
+		
+		File root = Files.createTempDirectory("k2-jar-root").toFile();
+		File jar = File.createTempFile("k2-scan", ".jar");
+		try {
+			assertTrue(compile(root, "k2.jar.sample.Jarred", "package k2.jar.sample; @javax.persistence.Entity public class Jarred {}", false));
+			
+			// Only the class file is written to the jar, without entries for the directories of its package
+			try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+				out.putNextEntry(new JarEntry("k2/jar/sample/Jarred.class"));
+				out.write(Files.readAllBytes(new File(root, "k2/jar/sample/Jarred.class").toPath()));
+				out.closeEntry();
+			}
+			
+			try (URLClassLoader loader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, getClass().getClassLoader())) {
+				assertNull(loader.getResource("k2/jar"));
+				List<String> found = ClassScanner.forPackage("k2.jar").withClassLoader(loader).withScanCache(null)
+						.withAnnotations(AnnotationCheck.ALL, Entity.class).scan();
+				assertEquals(Arrays.asList("k2.jar.sample.Jarred"), found);
+			}
+		} finally {
+			FileUtil.deleteCascade(root);
+			jar.delete();
+		}
+	}
+
+	private boolean compile(File root, String className, String source, boolean index) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("string:///"+className.replace('.', '/')+".java"), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) { return source; }
+		};
+		List<String> options = new ArrayList<String>(Arrays.asList("-d", root.getAbsolutePath(), "-classpath", System.getProperty("java.class.path")+File.pathSeparator+root.getAbsolutePath()));
+		if (!index) options.add("-proc:none");
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null, Arrays.asList(sourceFile));
+		if (index) task.setProcessors(Arrays.asList(new ClassIndexProcessor()));
+		return task.call();
+	}
+
 	private class A {
 		int a;
 		A(int a) { this.a=a; }
@@ -113,6 +341,482 @@ public class ClassUtilTest {
 		AD(int a, int d) { super(a); this.d=d; }
 	}
 	
+	public static class Named {
+		private String name;
+		public String getName() { return name; }
+		public void setName(String name) { this.name = name; }
+	}
+	
+	@Test
+	public void getterSetterCacheTest() throws InterruptedException {
+		Getter<Named, String> getter = ClassUtil.getGetter(Named.class, String.class, "name");
+		assertSame(getter, ClassUtil.getGetter(Named.class, String.class, "name"));
+		assertNotNull(ClassUtil.getGetter(Named.class, Object.class, "name"));
+		
+		Setter<Named, String> setter = ClassUtil.getSetter(Named.class, String.class, "name");
+		assertEquals(String.class, setter.getJavaType());
+		assertSame(setter, ClassUtil.getSetter(Named.class, String.class, "name"));
+		
+		Named named = new Named();
+		setter.set(named, "Foo");
+		assertEquals("Foo", getter.get(named));
+		assertTrue(getter instanceof CompiledGetter);
+		assertTrue(setter instanceof CompiledSetter);
+		
+		ABC abc = new ABC(1, 2, 3);
+		ClassUtil.getSetter(ABC.class, int.class, "c").set(abc, 4);
+		assertEquals(Integer.valueOf(4), ClassUtil.getGetter(ABC.class, int.class, "c").get(abc));
+		assertEquals(Integer.valueOf(1), ClassUtil.getGetter(ABC.class, int.class, "a").get(abc));
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		AtomicInteger failures = new AtomicInteger();
+		for (int i=0; i<8; i++) {
+			threads.add(new Thread(() -> {
+				for (int j=0; j<1000; j++) {
+					if (ClassUtil.getGetter(ABC.class, int.class, "c") == null) failures.incrementAndGet();
+					if (ClassUtil.getAllFields(ABC.class).length != 4) failures.incrementAndGet();
+				}
+			}));
+		}
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join();
+		assertEquals(0, failures.get());
+		
+		// Callers receive their own copies of the cached fields and methods
+		Field[] fields = ClassUtil.getAllFields(ABC.class);
+		fields[0] = null;
+		assertNotNull(ClassUtil.getAllFields(ABC.class)[0]);
+		Method[] methods = ClassUtil.getAllMethods(ABC.class);
+		methods[0] = null;
+		assertNotNull(ClassUtil.getAllMethods(ABC.class)[0]);
+	}
+
+	public static class Coded {
+		private String code;
+		public String getCode() { return code; }
+		public void setCode(String code) { this.code = code; }
+		public void setCode(int code) { this.code = Integer.toString(code); }
+	}
+
+	@Test
+	public void overloadedSetterCacheTest() {
+		Setter<Coded, String> stringSetter = ClassUtil.getSetter(Coded.class, String.class, "code");
+		assertSame(stringSetter, ClassUtil.getSetter(Coded.class, String.class, "code"));
+		
+		// The setter of the other overload is cached against its value type rather than created on every call
+		Setter<Coded, Integer> intSetter = ClassUtil.getSetter(Coded.class, int.class, "code");
+		assertNotNull(intSetter);
+		assertNotSame(stringSetter, intSetter);
+		assertSame(intSetter, ClassUtil.getSetter(Coded.class, int.class, "code"));
+		
+		Coded coded = new Coded();
+		intSetter.set(coded, 42);
+		assertEquals("42", coded.getCode());
+		
+		assertNotNull(ClassUtil.getGetter(Coded.class, String.class, "code"));
+		assertNull(ClassUtil.getGetter(Coded.class, Integer.class, "code"));
+		assertNull(ClassUtil.getGetter(Coded.class, Integer.class, "code"));
+	}
+
+	public static class Flagged {
+		private boolean active;
+		private String label;
+		public boolean isActive() { return active; }
+		public void setActive(boolean active) { this.active = active; }
+		public String getter() { return label; }
+		public int getCount() { return 0; }
+	}
+
+	public static class Linked {
+		private String location;
+		public String getURL() { return location; }
+		public void setURL(String url) { this.location = url; }
+	}
+
+	@Test
+	public void propertyIndexTest() throws NoSuchMethodException, NoSuchFieldException {
+		PropertyIndex index = PropertyIndex.forClass(Flagged.class);
+		assertSame(index, PropertyIndex.forClass(Flagged.class));
+		assertEquals(3, index.getProperties().size());
+		assertNull(index.getProperty("ter"));
+
+		assertEquals(Flagged.class.getMethod("isActive"), index.getReadMember("active", boolean.class));
+		assertEquals(Flagged.class.getMethod("setActive", boolean.class), index.getWriteMember("active", boolean.class));
+		assertEquals(Flagged.class.getDeclaredField("label"), index.getReadMember("label", String.class));
+		assertNull(index.getReadMember("label", Integer.class));
+		assertEquals(int.class, index.getProperty("count").getJavaType());
+		assertNull(index.getProperty("count").getField());
+
+		assertEquals("active", ClassUtil.getAliasFromMethodName("isActive"));
+		assertTrue(ClassUtil.canGet(Flagged.class, boolean.class, "active"));
+		assertFalse(ClassUtil.canGet(Flagged.class, String.class, "active"));
+
+		Flagged flagged = new Flagged();
+		ClassUtil.getSetter(Flagged.class, boolean.class, "active").set(flagged, true);
+		assertEquals(Boolean.TRUE, ClassUtil.getGetter(Flagged.class, boolean.class, "active").get(flagged));
+		assertEquals("active", ClassUtil.getGetter(Flagged.class, boolean.class, "active").getAlias());
+
+		// Setters are matched to boxed and primitive values by the same rule whether or not they are cached
+		assertEquals(Flagged.class.getMethod("setActive", boolean.class), index.getWriteMember("active", Boolean.class));
+		assertSame(ClassUtil.getSetter(Flagged.class, boolean.class, "active"), ClassUtil.getSetter(Flagged.class, Boolean.class, "active"));
+		assertNull(ClassUtil.getSetter(Flagged.class, String.class, "active"));
+		
+		// Getters are matched to boxed and primitive types by the same rule
+		assertEquals(Flagged.class.getMethod("isActive"), index.getReadMember("active", Boolean.class));
+		assertEquals(Flagged.class.getMethod("isActive"), index.getReadMember("active", Object.class));
+		assertEquals(Flagged.class.getMethod("getCount"), index.getReadMember("count", Number.class));
+		assertSame(ClassUtil.getGetter(Flagged.class, boolean.class, "active"), ClassUtil.getGetter(Flagged.class, Object.class, "active"));
+		assertEquals(Boolean.TRUE, ClassUtil.getGetter(Flagged.class, Boolean.class, "active").get(flagged));
+	}
+
+	@Test
+	public void propertyIndexAcronymTest() throws NoSuchMethodException {
+		PropertyIndex index = PropertyIndex.forClass(Linked.class);
+		Method getURL = Linked.class.getMethod("getURL");
+		assertEquals(getURL, index.getReadMember("URL", String.class));
+		assertEquals(getURL, index.getReadMember("uRL", String.class));
+		assertEquals(Linked.class.getMethod("setURL", String.class), index.getWriteMember("URL", String.class));
+		assertNull(index.getProperty("url"));
+
+		Linked linked = new Linked();
+		ClassUtil.getSetter(Linked.class, String.class, "URL").set(linked, "http://k2");
+		assertEquals("http://k2", ClassUtil.getGetter(Linked.class, String.class, "URL").get(linked));
+		assertTrue(ClassUtil.canGet(Linked.class, String.class, "URL"));
+	}
+
+	public static class Measured {
+		private long count;
+		private double weight;
+		public double getWeight() { return weight; }
+		public void setWeight(double weight) { this.weight = weight; }
+	}
+
+	@Test
+	public void primitiveGetterSetterTest() {
+		Measured measured = new Measured();
+		LongSetter<Measured> countSetter = ClassUtil.getLongSetter(Measured.class, "count");
+		LongGetter<Measured> countGetter = ClassUtil.getLongGetter(Measured.class, "count");
+		countSetter.setLong(measured, 5000000000L);
+		assertEquals(5000000000L, countGetter.getLong(measured));
+		assertEquals(Long.valueOf(5000000000L), countGetter.get(measured));
+		assertSame(countGetter, ClassUtil.getGetter(Measured.class, long.class, "count"));
+
+		DoubleSetter<Measured> weightSetter = ClassUtil.getDoubleSetter(Measured.class, "weight");
+		weightSetter.set(measured, 2.5d);
+		assertEquals(2.5d, ClassUtil.getDoubleGetter(Measured.class, "weight").getDouble(measured), 0d);
+		assertEquals(Getter.Type.METHOD, ClassUtil.getDoubleGetter(Measured.class, "weight").getType());
+
+		ABC abc = new ABC(1, 2, 3);
+		ClassUtil.getIntSetter(ABC.class, "b").setInt(abc, 7);
+		assertEquals(7, ClassUtil.getIntGetter(ABC.class, "b").getInt(abc));
+		assertTrue(ClassUtil.getGetter(ABC.class, int.class, "b") instanceof IntGetter);
+
+		Flagged flagged = new Flagged();
+		ClassUtil.getBooleanSetter(Flagged.class, "active").setBoolean(flagged, true);
+		assertTrue(ClassUtil.getBooleanGetter(Flagged.class, "active").getBoolean(flagged));
+
+		assertNull(ClassUtil.getIntGetter(Measured.class, "weight"));
+	}
+
+	@Test
+	public void inMemoryCompilerTest() throws Exception {
+		File cacheDir = Files.createTempDirectory("k2-compiler-cache").toFile();
+		try {
+			Map<String, String> sources = new LinkedHashMap<String, String>();
+			sources.put("k2.compiled.Greeting", "package k2.compiled; public class Greeting implements java.util.function.Supplier<String> { public String get() { return Name.NAME; } }");
+			sources.put("k2.compiled.Name", "package k2.compiled; public class Name { public static final String NAME = \"Hello\"; public static class Nested {} }");
+			
+			InMemoryCompiler compiler = InMemoryCompiler.create().withCacheDirectory(cacheDir);
+			Map<String, Class<?>> classes = compiler.compile(getClass().getClassLoader(), sources);
+			assertEquals(2, classes.size());
+			@SuppressWarnings("unchecked")
+			Supplier<String> greeting = (Supplier<String>) classes.get("k2.compiled.Greeting").newInstance();
+			assertEquals("Hello", greeting.get());
+			assertEquals(2, cacheDir.listFiles().length);
+			
+			Map<String, byte[]> byteCode = compiler.getByteCode(sources);
+			assertEquals(3, byteCode.size());
+			assertTrue(byteCode.containsKey("k2.compiled.Name$Nested"));
+			
+			// A new compiler reads the byte code cached on disk
+			Map<String, byte[]> cached = InMemoryCompiler.create().withCacheDirectory(cacheDir).getByteCode(sources);
+			assertArrayEquals(byteCode.get("k2.compiled.Greeting"), cached.get("k2.compiled.Greeting"));
+			
+			try {
+				compiler.compile(getClass().getClassLoader(), "k2.compiled.Broken", "package k2.compiled; public class Broken { int x = \"\"; }");
+				fail("Expected a UtilityError");
+			} catch (UtilityError e) {
+				assertTrue(e.getMessage().contains("k2.compiled.Broken"));
+			}
+			
+			// The byte code of the least recently used sources is dropped from memory and compiled again
+			Map<String, String> name = Collections.singletonMap("k2.compiled.Name", sources.get("k2.compiled.Name"));
+			Map<String, String> other = Collections.singletonMap("k2.compiled.Other", "package k2.compiled; public class Other {}");
+			InMemoryCompiler bounded = InMemoryCompiler.create().withMaxCached(1);
+			byte[] nameByteCode = bounded.getByteCode(name).get("k2.compiled.Name");
+			assertSame(nameByteCode, bounded.getByteCode(name).get("k2.compiled.Name"));
+			bounded.getByteCode(other);
+			assertNotSame(nameByteCode, bounded.getByteCode(name).get("k2.compiled.Name"));
+
+			compiler.clear();
+			assertEquals(0, cacheDir.listFiles().length);
+		} finally {
+			FileUtil.deleteCascade(cacheDir);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void classReloaderTest() throws Exception {
+		ClassReloader reloader = ClassReloader.forParentClassLoader(getClass().getClassLoader());
+		String source = "package k2.reload; public class Rule implements java.util.function.Supplier<String> { public String getName() { return \"%s\"; } public String get() { return getName(); } }";
+		
+		Class<?> first = reloader.reload("k2.reload.Rule", String.format(source, "first"));
+		assertEquals("first", ((Supplier<String>)first.newInstance()).get());
+		assertSame(first, reloader.loadClass("k2.reload.Rule"));
+		ClassReloader.Generation firstGeneration = reloader.getCurrentGeneration();
+		assertEquals(1, firstGeneration.getNumber());
+		
+		MethodTable table = MethodTable.forClass(first);
+		Getter<?,String> getter = ClassUtil.getGetter(first, String.class, "name");
+		List<Class<?>> evicted = new ArrayList<Class<?>>();
+		ClassUtil.addEvictionListener(cls -> { if (cls.getName().startsWith("k2.reload.")) evicted.add(cls); });
+		
+		Class<?> second = reloader.reload("k2.reload.Rule", String.format(source, "second"));
+		assertNotSame(first, second);
+		assertEquals("second", ((Supplier<String>)second.newInstance()).get());
+		assertSame(second, reloader.loadClass("k2.reload.Rule"));
+		assertEquals(2, reloader.getCurrentGeneration().getNumber());
+		assertEquals(1, reloader.getGenerations().size());
+		
+		// Retiring the first generation evicted the cached data of its classes
+		assertTrue(firstGeneration.isRetired());
+		assertEquals(Arrays.asList(first), evicted);
+		assertNotSame(table, MethodTable.forClass(first));
+		assertNotSame(getter, ClassUtil.getGetter(first, String.class, "name"));
+		
+		reloader.retireAll();
+		assertNull(reloader.getCurrentGeneration());
+		assertEquals(2, reloader.getGenerationCount());
+		assertEquals(Arrays.asList(first, second), evicted);
+	}
+
+	public static class Container<T> {
+		public List<T> items;
+		public Map<String, ? extends List<T>> groups;
+		public T[] array;
+		public Optional<List<T>> nested;
+	}
+	
+	public static class NumberList extends ArrayList<Integer> {
+		private static final long serialVersionUID = 1L;
+	}
+	
+	public static class StringContainer extends Container<String> {
+		public NumberList numbers;
+	}
+	
+	@Test
+	public void typeResolverTest() throws NoSuchFieldException {
+		Field items = Container.class.getField("items");
+		assertEquals(Object.class, ClassUtil.getFieldGenericTypeClass(items, 0));
+		assertEquals(String.class, ClassUtil.getFieldGenericTypeClass(StringContainer.class, items, 0));
+		assertEquals(List.class, ClassUtil.getFieldGenericTypeClass(StringContainer.class, Container.class.getField("groups"), 1));
+		assertEquals(List.class, ClassUtil.getFieldGenericTypeClass(StringContainer.class, Container.class.getField("nested"), 0));
+		assertNull(ClassUtil.getFieldGenericTypeClass(StringContainer.class, Container.class.getField("array"), 0));
+		
+		assertEquals(String.class, ClassUtil.getFieldElementClass(StringContainer.class, items));
+		assertEquals(String.class, ClassUtil.getFieldElementClass(StringContainer.class, Container.class.getField("array")));
+		assertEquals(Integer.class, ClassUtil.getFieldElementClass(StringContainer.class, StringContainer.class.getField("numbers")));
+		assertEquals(String.class, ClassUtil.getClassGenericTypeClass(StringContainer.class, 0));
+		
+		TypeResolver resolver = TypeResolver.forClass(StringContainer.class);
+		assertSame(resolver.getFieldTypeArguments(items), resolver.getFieldTypeArguments(items));
+		assertArrayEquals(new Class<?>[] {String.class, List.class}, resolver.getFieldTypeArguments(Container.class.getField("groups")));
+		
+		assertEquals(1, ClassUtil.getFields(StringContainer.class, Integer.class).length);
+	}
+
+	@Entity(name="annotated")
+	@Table(name="ANNOTATED")
+	@Deprecated
+	public static class Annotated {
+		@Id
+		@Column(name="ID")
+		public Long id;
+		@Deprecated
+		public String name;
+		public String description;
+		@Column(name="DESCRIPTION")
+		public String getDescription() { return description; }
+	}
+
+	@Test
+	public void annotationSummaryTest() throws NoSuchFieldException, NoSuchMethodException {
+		Field id = Annotated.class.getField("id");
+		Field name = Annotated.class.getField("name");
+		Method getDescription = Annotated.class.getMethod("getDescription");
+
+		assertTrue(ClassUtil.isAnnotationPresent(id, Id.class));
+		assertEquals("ID", ClassUtil.getAnnotation(id, Column.class).name());
+		assertFalse(ClassUtil.isAnnotationPresent(name, Column.class));
+		assertNull(ClassUtil.getAnnotation(name, Id.class));
+		assertEquals("DESCRIPTION", ClassUtil.getAnnotation(getDescription, Column.class).name());
+		assertEquals("annotated", ClassUtil.getAnnotation(Annotated.class, Entity.class).name());
+
+		// Annotation types first used after the summary was built are registered and the summary rebuilt
+		assertTrue(ClassUtil.isAnnotationPresent(name, Deprecated.class));
+		assertFalse(ClassUtil.isAnnotationPresent(id, Deprecated.class));
+		assertTrue(ClassUtil.isAnnotationPresent(Annotated.class, Deprecated.class));
+		assertEquals("ANNOTATED", ClassUtil.getAnnotation(Annotated.class, Table.class).name());
+
+		assertArrayEquals(new Field[] {id}, ClassUtil.getAnnotatedFields(Annotated.class, Column.class));
+		assertArrayEquals(new Method[] {getDescription}, ClassUtil.getAnnotatedMethods(Annotated.class, Column.class));
+
+		AnnotationSummary summary = AnnotationSummary.forClass(Annotated.class);
+		assertSame(summary, AnnotationSummary.forClass(Annotated.class));
+		ClassUtil.evict(Annotated.class);
+		assertNotSame(summary, AnnotationSummary.forClass(Annotated.class));
+		assertTrue(ClassUtil.isAnnotationPresent(name, Deprecated.class));
+
+		// Evicting an annotation type frees its bit so reloaded annotation types never run out of bits
+		Map<String, String> sources = new LinkedHashMap<String, String>();
+		sources.put("k2.annotated.Marker", "package k2.annotated; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Marker {}");
+		sources.put("k2.annotated.Marked", "package k2.annotated; @Marker public class Marked {}");
+		for (int i=0; i<100; i++) {
+			Map<String, Class<?>> classes = InMemoryCompiler.getDefault().compile(getClass().getClassLoader(), sources);
+			@SuppressWarnings("unchecked")
+			Class<? extends Annotation> marker = (Class<? extends Annotation>) classes.get("k2.annotated.Marker");
+			assertNotEquals(0L, AnnotationSummary.register(marker));
+			assertTrue(AnnotationSummary.isAnnotationPresent(classes.get("k2.annotated.Marked"), marker));
+			ClassUtil.evict(marker);
+			ClassUtil.evict(classes.get("k2.annotated.Marked"));
+		}
+	}
+
+	public static abstract class PackageNamedBase {
+		abstract String name();
+		public String describe() { return name(); }
+	}
+	
+	@Test
+	public void createClassFromStringTest() throws ReflectiveOperationException {
+		// A class generated in the package of the class it extends can override its package private methods
+		String source = "package com.k2.Util; public class GeneratedPackageNamed extends ClassUtilTest.PackageNamedBase { String name() { return \"Generated\"; } }";
+		Class<? extends PackageNamedBase> cls = ClassUtil.createClassFromString(PackageNamedBase.class, "com.k2.Util", "GeneratedPackageNamed", source);
+		assertSame(PackageNamedBase.class.getClassLoader(), cls.getClassLoader());
+		assertEquals("Generated", cls.newInstance().describe());
+		assertSame(cls, ClassUtil.createClassFromString(PackageNamedBase.class, "com.k2.Util", "GeneratedPackageNamed", source));
+		
+		// A class of another package is isolated in its own class loader
+		Class<? extends Named> isolated = ClassUtil.createClassFromString(Named.class, "k2.generated", "GeneratedNamed",
+				"package k2.generated; public class GeneratedNamed extends com.k2.Util.ClassUtilTest.Named {}");
+		assertNotSame(Named.class.getClassLoader(), isolated.getClassLoader());
+		assertSame(Named.class.getClassLoader(), isolated.getClassLoader().getParent());
+	}
+	
+	@Test
+	public void classAccessorTest() {
+		ClassAccessor<Foo> fooAccessor = ClassAccessor.forClass(Foo.class);
+		assertSame(fooAccessor, ClassAccessor.forClass(Foo.class));
+		assertNotEquals(ClassAccessor.class, fooAccessor.getClass());
+		assertEquals(8, fooAccessor.size());
+		
+		Foo foo = new Foo();
+		int name = fooAccessor.indexOf("name");
+		fooAccessor.set(foo, name, "Foo");
+		assertEquals("Foo", foo.name);
+		assertEquals("Foo", fooAccessor.get(foo, name));
+		fooAccessor.set(foo, "id", 10L);
+		assertEquals(Long.valueOf(10), fooAccessor.get(foo, "id"));
+		assertEquals(-1, fooAccessor.indexOf("missing"));
+		
+		ClassAccessor<Named> namedAccessor = ClassAccessor.forClass(Named.class);
+		Named named = new Named();
+		namedAccessor.set(named, "name", "Named");
+		assertEquals("Named", named.getName());
+		assertEquals("Named", namedAccessor.get(named, "name"));
+		
+		ClassAccessor<ABC> abcAccessor = ClassAccessor.forClass(ABC.class);
+		ABC abc = new ABC(1, 2, 3);
+		abcAccessor.set(abc, "b", 5);
+		assertEquals(5, abc.b);
+		assertEquals(Integer.valueOf(3), abcAccessor.get(abc, "c"));
+		assertTrue(abcAccessor.isReadable(abcAccessor.indexOf("aAndB")));
+		assertFalse(abcAccessor.isWritable(abcAccessor.indexOf("aAndB")));
+	}
+	
+	public interface Greeter {
+		default String greet() { return "Hello"; }
+		Object self();
+	}
+	
+	public static abstract class Holder<T> implements Greeter {
+		public void hold(T value) {}
+		public Object self() { return this; }
+	}
+	
+	public static class StringHolder extends Holder<String> {
+		@Override
+		public void hold(String value) {}
+		@Override
+		public StringHolder self() { return this; }
+	}
+	
+	@Test
+	public void methodTableTest() throws NoSuchMethodException {
+		MethodTable table = MethodTable.forClass(StringHolder.class);
+		assertSame(table, MethodTable.forClass(StringHolder.class));
+		
+		assertEquals(3, table.getMethods().length);
+		assertEquals(StringHolder.class.getMethod("hold", String.class), table.findMethod("hold", String.class));
+		assertNull(table.findMethod("hold", Object.class));
+		assertEquals(StringHolder.class, table.findMethod("self").getDeclaringClass());
+		assertEquals(Greeter.class, ClassUtil.findMethod(StringHolder.class, "greet").getDeclaringClass());
+		assertEquals(1, table.getMethods("hold", 1).length);
+		assertEquals(0, table.getMethods("hold", 0).length);
+		assertEquals(0, table.getMethods("missing", 0).length);
+	}
+	
+	static class NamedBase {
+		private String name;
+		public String getName() { return name; }
+		public void setName(String name) { this.name = name; }
+	}
+	
+	public static class PublicNamed extends NamedBase {}
+	
+	@Test
+	public void methodTableVisibilityBridgeTest() {
+		MethodTable table = MethodTable.forClass(PublicNamed.class);
+		assertEquals(NamedBase.class, table.findMethod("getName").getDeclaringClass());
+		assertEquals(NamedBase.class, table.findMethod("setName", String.class).getDeclaringClass());
+		assertEquals(2, ClassUtil.getAllMethods(PublicNamed.class).length);
+		
+		PublicNamed named = new PublicNamed();
+		ClassUtil.getSetter(PublicNamed.class, String.class, "name").set(named, "Named");
+		assertEquals("Named", ClassUtil.getGetter(PublicNamed.class, String.class, "name").get(named));
+	}
+	
+	static class RenamedBase {
+		public void rename(Object name) {}
+	}
+	
+	public static class PublicRenamed extends RenamedBase {
+		public void rename(String name) {}
+	}
+	
+	@Test
+	public void methodTableOverloadedBridgeTest() {
+		// The visibility bridge of rename(Object) does not bridge to the overload declared by the class
+		MethodTable table = MethodTable.forClass(PublicRenamed.class);
+		assertEquals(RenamedBase.class, table.findMethod("rename", Object.class).getDeclaringClass());
+		assertEquals(PublicRenamed.class, table.findMethod("rename", String.class).getDeclaringClass());
+		assertEquals(2, table.getMethods("rename", 1).length);
+		
+		assertNull(MethodTable.forClass(StringHolder.class).findMethod("hold", Object.class));
+	}
+	
 	@Test
 	public void canGetTest() {
 		assertTrue(ClassUtil.canGet(ABC.class, int.class, "a"));
@@ -144,6 +848,38 @@ public class ClassUtilTest {
 		assertEquals(A.class, cls);
 
 	}
+
+	@Test
+	public void typeHierarchyTest() {
+		
+		TypeHierarchy hierarchy = TypeHierarchy.forClass(ArrayList.class);
+		assertSame(hierarchy, TypeHierarchy.forClass(ArrayList.class));
+		assertEquals(3, hierarchy.getDepth());
+		assertEquals(Object.class, hierarchy.getSuperclasses()[3]);
+		assertTrue(hierarchy.getInterfaceList().contains(Collection.class));
+		assertTrue(hierarchy.getInterfaceList().indexOf(List.class) < hierarchy.getInterfaceList().indexOf(Collection.class));
+		assertTrue(hierarchy.isAssignableTo(Iterable.class));
+		assertTrue(hierarchy.isAssignableTo(Object.class));
+		assertFalse(hierarchy.isAssignableTo(Set.class));
+		assertTrue(hierarchy.hasSuperclass(AbstractCollection.class));
+		assertFalse(hierarchy.hasSuperclass(AbstractSet.class));
+		assertEquals(AbstractCollection.class, hierarchy.getCommonSuperclass(HashSet.class));
+		assertTrue(TypeHierarchy.isAssignable(Object[].class, String[].class));
+		assertFalse(TypeHierarchy.isAssignable(Integer.class, int.class));
+
+		// Interfaces have no super classes but are assignable to Object
+		TypeHierarchy list = TypeHierarchy.forClass(List.class);
+		assertEquals(Arrays.asList(List.class), list.getSuperclassList());
+		assertFalse(list.hasSuperclass(Object.class));
+		assertTrue(list.isAssignableTo(Object.class));
+
+		// Callers own the list of supertypes so changing it does not change the hierarchy
+		List<Class<?>> supertypes = ClassUtil.getSupertypes(ABC.class);
+		supertypes.add(Object.class);
+		assertEquals(4, ClassUtil.getSupertypes(ABC.class).size());
+		assertEquals(Object.class, ClassUtil.findMatchingSupertype(ABC.class, String.class));
+		assertNull(ClassUtil.findMatchingSupertype(List.class, ArrayList.class));
+	}
 	
 	@Test
 	public void getPackageNameFromCanonicalNameTest() {
@@ -12,12 +12,22 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import javax.persistence.Embeddable;
 import javax.persistence.Tuple;
 import javax.persistence.TupleElement;
 
@@ -38,8 +48,14 @@ import com.k2.Util.Sample.TooMuch;
 import com.k2.Util.Version.Increment;
 import com.k2.Util.Version.Version;
 import com.k2.Util.Version.VersionExample;
+import com.k2.Util.classes.ClassUtil;
 import com.k2.Util.classes.ClassUtil.AnnotationCheck;
+import com.k2.Util.classes.CopyPlan;
+import com.k2.Util.classes.DeepCloner;
+import com.k2.Util.classes.Equivalence;
+import com.k2.Util.classes.ObjectDiff;
 import com.k2.Util.exceptions.FileLockedException;
+import com.k2.Util.exceptions.UtilityError;
 import com.k2.Util.tuple.Tuple3;
 import com.k2.Util.tuple.TupleUtil;
 
@@ -215,7 +231,443 @@ public class ObjectUtilTest {
 		assertEquals("This is an A", a2.name);
 
 	}
-	
+
+	public static class Copied {
+		public static int instances = 0;
+		private final long version;
+		private double amount;
+		public String name;
+		public Copied() { this(0L, 0.0, null); }
+		Copied(long version, double amount, String name) { this.version = version; this.amount = amount; this.name = name; instances++; }
+	}
+
+	@Test
+	public void copyPlanTest() {
+		Copied original = new Copied(3L, 1.5, "original");
+		int instances = Copied.instances;
+
+		Copied clone = ObjectUtil.clone(original);
+		assertNotSame(original, clone);
+		assertEquals(3L, clone.version);
+		assertEquals(1.5, clone.amount, 0.0);
+		assertEquals("original", clone.name);
+		assertEquals(instances+1, Copied.instances);
+
+		Copied target = new Copied();
+		ObjectUtil.copy(new Copied(4L, 2.5, "copied"), target);
+		assertEquals(4L, target.version);
+		assertEquals(2.5, target.amount, 0.0);
+		assertEquals("copied", target.name);
+
+		CopyPlan<Copied> plan = CopyPlan.forClass(Copied.class);
+		assertSame(plan, CopyPlan.forClass(Copied.class));
+		assertEquals(3, plan.size());
+		assertTrue(plan.canInstantiate());
+		assertFalse(CopyPlan.forClass(A.class).canInstantiate());
+	}
+
+	public static class Node {
+		public String name;
+		public Date created = new Date();
+		public Node parent;
+		public List<Node> children = new ArrayList<Node>();
+		public Map<String, Node> byName = new HashMap<String, Node>();
+		public int[] counts = new int[] {1, 2, 3};
+		public Node[] siblings;
+		public Node() {}
+		Node(String name, Node parent) {
+			this.name = name;
+			this.parent = parent;
+			if (parent != null) {
+				parent.children.add(this);
+				parent.byName.put(name, this);
+			}
+		}
+	}
+
+	@Test
+	public void deepCloneTest() {
+		Node root = new Node("root", null);
+		Node child1 = new Node("child1", root);
+		Node child2 = new Node("child2", root);
+		child1.siblings = new Node[] {child2};
+
+		Node clone = ObjectUtil.deepClone(root);
+		assertNotSame(root, clone);
+		assertSame(root.name, clone.name);
+		assertNotSame(root.created, clone.created);
+		assertEquals(root.created, clone.created);
+		assertNotSame(root.counts, clone.counts);
+		assertArrayEquals(root.counts, clone.counts);
+
+		assertEquals(2, clone.children.size());
+		Node clone1 = clone.children.get(0);
+		Node clone2 = clone.children.get(1);
+		assertNotSame(child1, clone1);
+		assertSame(clone, clone1.parent);
+		assertSame(clone1, clone.byName.get("child1"));
+		assertSame(clone2, clone1.siblings[0]);
+		assertEquals("child2", clone2.name);
+
+		assertSame(TimeUnit.DAYS, ObjectUtil.deepClone(TimeUnit.DAYS));
+		List<String> names = Collections.unmodifiableList(Arrays.asList("a", "b"));
+		assertEquals(names, ObjectUtil.deepClone(names));
+	}
+
+	public static class Label {
+		public String text = "label";
+	}
+
+	@Test
+	public void registerImmutableTest() {
+		Label label = new Label();
+		assertFalse(DeepCloner.isImmutable(Label.class));
+		assertNotSame(label, ObjectUtil.deepClone(label));
+
+		// Classes checked before a type is registered as immutable are checked again
+		DeepCloner.registerImmutable(Label.class);
+		assertTrue(DeepCloner.isImmutable(Label.class));
+		assertSame(label, ObjectUtil.deepClone(label));
+		ClassUtil.evict(Label.class);
+		assertTrue(DeepCloner.isImmutable(Label.class));
+	}
+
+	public static class Scheduled {
+		public Set<TimeUnit> units = EnumSet.of(TimeUnit.DAYS, TimeUnit.HOURS);
+		public Map<TimeUnit, List<String>> byUnit = new EnumMap<TimeUnit, List<String>>(TimeUnit.class);
+		public List<String> names = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList("a", "b")));
+		public Map<String, Date> dates = Collections.unmodifiableMap(new HashMap<String, Date>());
+		public List<Integer> fixed = Arrays.asList(1, 2);
+	}
+
+	public static class SizedList extends ArrayList<String> {
+		private static final long serialVersionUID = 1L;
+		public SizedList(int size) { super(size); }
+	}
+
+	public static class Sized {
+		public SizedList list = new SizedList(1);
+	}
+
+	@Test
+	public void deepCloneCollectionsTest() {
+		Scheduled scheduled = new Scheduled();
+		scheduled.byUnit.put(TimeUnit.DAYS, new ArrayList<String>(Arrays.asList("monday")));
+
+		Scheduled clone = ObjectUtil.deepClone(scheduled);
+		assertNotSame(scheduled.units, clone.units);
+		assertTrue(clone.units instanceof EnumSet);
+		assertEquals(scheduled.units, clone.units);
+		assertNotSame(scheduled.byUnit, clone.byUnit);
+		assertTrue(clone.byUnit instanceof EnumMap);
+		assertNotSame(scheduled.byUnit.get(TimeUnit.DAYS), clone.byUnit.get(TimeUnit.DAYS));
+		assertEquals(Arrays.asList("monday"), clone.byUnit.get(TimeUnit.DAYS));
+		assertNotSame(scheduled.names, clone.names);
+		assertEquals(Arrays.asList("a", "b"), clone.names);
+		try {
+			clone.names.add("c");
+			fail("The clone of an unmodifiable list is unmodifiable");
+		} catch (UnsupportedOperationException e) {}
+		try {
+			clone.dates.put("now", new Date());
+			fail("The clone of an unmodifiable map is unmodifiable");
+		} catch (UnsupportedOperationException e) {}
+		assertNotSame(scheduled.fixed, clone.fixed);
+		assertEquals(Arrays.asList(1, 2), clone.fixed);
+
+		// Collections that can not be instantiated as their own class can not be cloned into fields of their class
+		try {
+			ObjectUtil.deepClone(new Sized());
+			fail("Cloning a field of a collection class without a zero arg constructor is an error");
+		} catch (UtilityError e) {
+			assertTrue(e.getMessage().contains("Sized.list"));
+		}
+	}
+
+	@Test
+	public void equivalenceTest() {
+		Node root = new Node("root", null);
+		new Node("child1", root);
+		new Node("child2", root);
+		Node clone = ObjectUtil.deepClone(root);
+
+		// The parent references make the graphs cyclic
+		assertTrue(ObjectUtil.equivalent(root, clone));
+		assertEquals(ObjectUtil.equivalenceHash(root), ObjectUtil.equivalenceHash(clone));
+
+		clone.children.get(1).counts[2] = 4;
+		assertFalse(ObjectUtil.equivalent(root, clone));
+		clone.children.get(1).counts[2] = 3;
+		clone.byName.get("child1").name = "renamed";
+		assertFalse(ObjectUtil.equivalent(root, clone));
+
+		Copied copied = new Copied(1L, -0.0, null);
+		Equivalence<Copied> equivalence = Equivalence.forClass(Copied.class);
+		assertSame(equivalence, Equivalence.forClass(Copied.class));
+		assertTrue(equivalence.test(copied, new Copied(1L, 0.0, null)));
+		assertEquals(equivalence.hash(copied), equivalence.hash(new Copied(1L, 0.0, null)));
+		assertFalse(equivalence.test(copied, new Copied(2L, 0.0, null)));
+		assertFalse(equivalence.test(copied, new Copied(1L, 0.0, "named")));
+
+		// NaN is equivalent to NaN as it is unchanged in a snapshot
+		Copied nan = new Copied(1L, Double.NaN, null);
+		assertTrue(equivalence.test(nan, new Copied(1L, Double.NaN, null)));
+		assertFalse(ObjectUtil.snapshot(nan).isDirty(nan));
+		assertTrue(ObjectUtil.diff(nan, new Copied(1L, Double.NaN, null)).isEmpty());
+	}
+
+	@Test
+	public void equivalenceCycleTest() {
+		Date created = new Date();
+		Node loop = new Node("node", null);
+		loop.created = created;
+		loop.parent = loop;
+		Node first = new Node("node", null);
+		Node second = new Node("node", null);
+		first.created = created;
+		second.created = created;
+		first.parent = second;
+		second.parent = first;
+
+		// A self referencing node is compared to each node of the two node cycle in turn
+		assertTrue(ObjectUtil.equivalent(loop, first));
+		assertTrue(ObjectUtil.equivalent(first, loop));
+		assertEquals(ObjectUtil.equivalenceHash(loop), ObjectUtil.equivalenceHash(first));
+		second.name = "other";
+		assertFalse(ObjectUtil.equivalent(loop, first));
+		assertFalse(ObjectUtil.equivalent(first, loop));
+	}
+
+	@Test
+	public void equivalenceSetTest() {
+		// Sets are equivalent whatever the order in which their elements are iterated
+		Set<Copied> lhs = new HashSet<Copied>();
+		Set<Copied> rhs = new LinkedHashSet<Copied>();
+		for (int i=0; i<20; i++) lhs.add(new Copied(i, i, "copied"+i));
+		for (int i=19; i>=0; i--) rhs.add(new Copied(i, i, "copied"+i));
+		assertTrue(ObjectUtil.equivalent(lhs, rhs));
+		assertEquals(ObjectUtil.equivalenceHash(lhs), ObjectUtil.equivalenceHash(rhs));
+		rhs.iterator().next().name = "changed";
+		assertFalse(ObjectUtil.equivalent(lhs, rhs));
+		
+		Set<String> ab = new LinkedHashSet<String>(Arrays.asList("a", "b"));
+		Set<String> ba = new LinkedHashSet<String>(Arrays.asList("b", "a"));
+		assertTrue(ObjectUtil.equivalent(ab, ba));
+		assertFalse(ObjectUtil.equivalent(ab, new LinkedHashSet<String>(Arrays.asList("a", "c"))));
+		assertFalse(ObjectUtil.equivalent(Arrays.asList("a", "b"), Arrays.asList("b", "a")));
+	}
+
+	@Test
+	public void diffTest() {
+		Node before = new Node("root", null);
+		new Node("child1", before);
+		new Node("child2", before);
+		Node after = ObjectUtil.deepClone(before);
+		assertTrue(ObjectUtil.diff(before, after).isEmpty());
+
+		after.name = "renamed";
+		after.children.get(0).counts[1] = 5;
+		new Node("child3", after);
+		after.byName.remove("child2");
+
+		List<String> changes = new ArrayList<String>();
+		for (ObjectDiff.Change change : ObjectUtil.diff(before, after)) changes.add(change.getType()+" "+change.getPath());
+		assertEquals(5, changes.size());
+		assertTrue(changes.contains("CHANGED /name"));
+		assertTrue(changes.contains("CHANGED /children[0]/counts"));
+		assertTrue(changes.contains("ADDED /children[2]"));
+		assertTrue(changes.contains("REMOVED /byName[child2]"));
+		assertTrue(changes.contains("ADDED /byName[child3]"));
+
+		Copied copied = new Copied(1L, 2.5, "copied");
+		ObjectDiff.Snapshot<Copied> snapshot = ObjectUtil.snapshot(copied);
+		assertFalse(snapshot.isDirty(copied));
+		copied.amount = 3.5;
+		copied.name = "changed";
+		assertTrue(snapshot.isDirty(copied));
+		assertEquals(Arrays.asList("amount", "name"), snapshot.getDirtyFields(copied));
+		List<ObjectDiff.Change> diff = snapshot.diff(copied);
+		assertEquals(2, diff.size());
+		assertEquals("/amount", diff.get(0).getPath());
+		assertEquals(2.5, diff.get(0).getBefore());
+		assertEquals(3.5, diff.get(0).getAfter());
+	}
+
+	@Test
+	public void diffCycleTest() {
+		Date created = new Date();
+		Node loop = new Node("node", null);
+		loop.created = created;
+		loop.parent = loop;
+		Node first = new Node("node", null);
+		Node second = new Node("node", null);
+		first.created = created;
+		second.created = created;
+		first.parent = second;
+		second.parent = first;
+
+		assertTrue(ObjectUtil.diff(loop, first).isEmpty());
+		second.name = "other";
+		List<String> paths = new ArrayList<String>();
+		for (ObjectDiff.Change change : ObjectUtil.diff(loop, first)) paths.add(change.getPath());
+		assertEquals(Arrays.asList("/parent/name"), paths);
+	}
+
+	@Test
+	public void snapshotReferenceTest() {
+		Node root = new Node("root", null);
+		Node child1 = new Node("child1", root);
+		Node child2 = new Node("child2", root);
+		ObjectDiff.Snapshot<Node> snapshot = ObjectUtil.snapshot(root);
+		ObjectDiff.Snapshot<Node> childSnapshot = ObjectUtil.snapshot(child1);
+
+		// Referenced nodes are recorded by identity so changes within them do not make the referring node dirty
+		child1.name = "renamed";
+		child2.counts[0] = 5;
+		assertFalse(snapshot.isDirty(root));
+		assertEquals(Arrays.asList("name"), childSnapshot.getDirtyFields(child1));
+		root.name = "changed";
+		assertEquals(Arrays.asList("name"), childSnapshot.getDirtyFields(child1));
+
+		// Embedded values are compared field by field
+		root.created.setTime(root.created.getTime()+1000);
+		assertEquals(Arrays.asList("name", "created"), snapshot.getDirtyFields(root));
+
+		Node child3 = new Node("child3", root);
+		root.children.remove(child2);
+		child1.parent = child3;
+		assertEquals(Arrays.asList("name", "children", "byName", "created"), snapshot.getDirtyFields(root));
+		assertEquals(Arrays.asList("name", "parent"), childSnapshot.getDirtyFields(child1));
+
+		List<String> changes = new ArrayList<String>();
+		for (ObjectDiff.Change change : snapshot.diff(root)) changes.add(change.getType()+" "+change.getPath());
+		assertTrue(changes.contains("CHANGED /children[1]"));
+		assertTrue(changes.contains("ADDED /byName[child3]"));
+		assertFalse(changes.contains("CHANGED /children[0]/name"));
+		ObjectDiff.Change parent = childSnapshot.diff(child1).get(1);
+		assertSame(root, parent.getBefore());
+		assertSame(child3, parent.getAfter());
+	}
+
+	@Embeddable
+	public static class Address {
+		public String street;
+		public Address() {}
+		public Address(String street) { this.street = street; }
+	}
+
+	public static class Addressed {
+		public Set<Address> addresses = new HashSet<Address>();
+	}
+
+	@Test
+	public void snapshotSetTest() {
+		Addressed addressed = new Addressed();
+		Address home = new Address("home");
+		addressed.addresses.add(home);
+		addressed.addresses.add(new Address("work"));
+		ObjectDiff.Snapshot<Addressed> snapshot = ObjectUtil.snapshot(addressed);
+
+		// Embedded values without equals() are matched to their recorded clones through their equivalence
+		assertFalse(snapshot.isDirty(addressed));
+		assertTrue(snapshot.diff(addressed).isEmpty());
+
+		home.street = "moved";
+		assertTrue(snapshot.isDirty(addressed));
+		List<String> changes = new ArrayList<String>();
+		for (ObjectDiff.Change change : snapshot.diff(addressed)) changes.add(change.getType()+" "+change.getPath());
+		assertEquals(Arrays.asList("REMOVED /addresses[]", "ADDED /addresses[]"), changes);
+		assertEquals("home", ((Address)snapshot.diff(addressed).get(0).getBefore()).street);
+		assertSame(home, snapshot.diff(addressed).get(1).getAfter());
+	}
+
+	public static class Registered {
+		public static Node shared = new Node("shared", null);
+		public static final Node FIXED = new Node("fixed", null);
+	}
+
+	@Test
+	public void objectPathStaticTest() {
+		// Static fields are read and written through the path whatever object it is applied to
+		Registered registered = new Registered();
+		Node shared = Registered.shared;
+		assertEquals(Arrays.asList(shared), ObjectUtil.getObjectsAt(registered, "shared", Node.class));
+		assertEquals(Arrays.asList(Registered.FIXED), ObjectUtil.getObjectsAt(registered, "FIXED", Node.class));
+		
+		Node replacement = new Node("replacement", null);
+		try {
+			ObjectUtil.putObjectAt(registered, "shared", replacement);
+			assertSame(replacement, Registered.shared);
+		} finally {
+			Registered.shared = shared;
+		}
+		try {
+			ObjectUtil.putObjectAt(registered, "FIXED", replacement);
+			fail("Static final fields can not be set");
+		} catch (UtilityError e) {
+			assertSame(Registered.FIXED, ObjectUtil.getObjectsAt(registered, "FIXED", Node.class).get(0));
+		}
+	}
+
+	@Test
+	public void objectPathTest() {
+		Node root = new Node("root", null);
+		Node child1 = new Node("child1", root);
+		Node child2 = new Node("child2", root);
+		Node grandChild1 = new Node("grandChild1", child1);
+		Node grandChild2 = new Node("grandChild2", child2);
+
+		ObjectPath path = ObjectPath.compile("/children/children");
+		assertSame(path, ObjectPath.compile("/children/children"));
+		// Compiling many other paths only drops the least recently used compiled paths
+		for (int i=0; i<4096; i++) {
+			ObjectPath.compile("/children/name"+i);
+			assertSame(path, ObjectPath.compile("/children/children"));
+		}
+		assertEquals(2, path.size());
+		assertEquals(Arrays.asList(grandChild1, grandChild2), ObjectUtil.getObjectsAt(root, "/children/children", Node.class));
+		assertEquals(Arrays.asList(child1, child2), ObjectUtil.getObjectsAt(grandChild1, "parent/parent/children", Node.class));
+		assertEquals(Arrays.asList(root), ObjectUtil.getObjectsAt(grandChild2, "parent/parent", Node.class));
+
+		Node child3 = new Node();
+		ObjectUtil.putObjectAt(grandChild1, "parent/parent/children", child3);
+		assertEquals(3, root.children.size());
+		ObjectUtil.putObjectAt(child3, "parent", root);
+		assertSame(root, child3.parent);
+
+		ObjectUtil.deleteObjectAt(root, "children/children", grandChild2);
+		assertTrue(child2.children.isEmpty());
+		assertEquals(Arrays.asList(grandChild1), path.getObjects(root, Node.class));
+		ObjectUtil.deleteObjectAt(child3, "parent", root);
+		assertNull(child3.parent);
+	}
+
+	@Test
+	public void streamObjectsAtTest() {
+		Node root = new Node("root", null);
+		for (int i=0; i<100; i++) {
+			Node child = new Node("child"+i, root);
+			for (int j=0; j<10; j++) new Node("grandChild"+i+"."+j, child);
+		}
+		root.children.get(0).children.add(null);
+
+		assertEquals(1000, ObjectUtil.streamObjectsAt(root, "children/children", Node.class).count());
+		assertEquals(1000, ObjectUtil.streamObjectsAt(root, "children/children", Node.class, true).count());
+		assertEquals(100, ObjectUtil.streamObjectsAt(root.children.get(0), "parent/children", Node.class, true).count());
+		assertEquals("grandChild0.0", ObjectUtil.streamObjectsAt(root, "children/children", Node.class).findFirst().get().name);
+		assertEquals(ObjectUtil.getObjectsAt(root, "children/children", Node.class),
+				ObjectUtil.streamObjectsAt(root, "children/children", Node.class, true).collect(Collectors.toList()));
+		assertEquals(Arrays.asList("grandChild0.0", "grandChild0.1", "grandChild0.2"),
+				ObjectUtil.streamObjectsAt(root, "children/children/name", String.class).limit(3).collect(Collectors.toList()));
+
+		// The path is only followed as far as the iterator is advanced
+		root.children.get(1).children = null;
+		Iterator<Node> i = ObjectUtil.iterateObjectsAt(root, "children/children", Node.class);
+		assertEquals("grandChild0.0", i.next().name);
+		assertTrue(i.hasNext());
+		assertFalse(ObjectUtil.iterateObjectsAt(new Node(), "parent/children", Node.class).hasNext());
+	}
+
 	@Test
 	public void getTest() {
 		A a = new A(1, "hello");
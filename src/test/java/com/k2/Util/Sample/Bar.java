@@ -0,0 +1,9 @@
+package com.k2.Util.Sample;
+
+@TestAnnotation1
+public class Bar extends Foo {
+
+	public String bar;
+	public String humbug;
+
+}
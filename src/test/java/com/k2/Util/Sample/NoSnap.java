@@ -0,0 +1,10 @@
+package com.k2.Util.Sample;
+
+import javax.persistence.Id;
+
+public class NoSnap {
+
+	@Id
+	public String aw;
+
+}
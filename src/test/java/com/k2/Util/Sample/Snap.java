@@ -0,0 +1,7 @@
+package com.k2.Util.Sample;
+
+public class Snap {
+
+	public String aw;
+
+}
@@ -0,0 +1,13 @@
+package com.k2.Util.Sample;
+
+import javax.persistence.Id;
+
+@TestAnnotation2
+public class Too {
+
+	@Id
+	public Long id;
+	public String name;
+	public String description;
+
+}
@@ -0,0 +1,7 @@
+package com.k2.Util.Sample;
+
+public class TooMuch extends Too {
+
+	public String much;
+
+}
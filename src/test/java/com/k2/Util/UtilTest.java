@@ -5,15 +5,27 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Serializable;
 import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -34,6 +46,7 @@ import com.k2.Util.Version.Version;
 import com.k2.Util.Version.VersionExample;
 import com.k2.Util.classes.ClassUtil.AnnotationCheck;
 import com.k2.Util.exceptions.FileLockedException;
+import com.k2.Util.exceptions.UtilityError;
 
 public class UtilTest {
 	
@@ -160,6 +173,220 @@ public class UtilTest {
 		
 	}
 
+	public static class OrderKey implements Serializable {
+		private static final long serialVersionUID = 1L;
+		@RootId
+		public long customerId;
+		public String orderRef;
+		public Date placed;
+		public int line;
+		public OrderKey() {}
+		OrderKey(long customerId, String orderRef, Date placed, int line) {
+			this.customerId = customerId;
+			this.orderRef = orderRef;
+			this.placed = placed;
+			this.line = line;
+		}
+	}
+
+	public static class ShipmentKey implements Serializable {
+		private static final long serialVersionUID = 1L;
+		public OrderKey order;
+		public UUID shipment;
+		public Increment increment;
+		public BigDecimal weight;
+	}
+
+	@Test
+	public void KeyCodecTest() {
+		
+		OrderKey key = new OrderKey(-5L, "Ref-\u00e9\u4e2d\ud83d\ude00", new Date(1234567890123L), 300);
+		byte[] bytes = KeyUtil.toBytes(key);
+		// 1 byte customer id, 1 byte length and 13 bytes of UTF-8 order ref, 8 bytes placed and 2 bytes line
+		assertEquals(25, bytes.length);
+		assertEquals(bytes.length, KeyCodec.sizeOf(key));
+		OrderKey decoded = KeyUtil.fromBytes(OrderKey.class, bytes);
+		assertEquals(key.customerId, decoded.customerId);
+		assertEquals(key.orderRef, decoded.orderRef);
+		assertEquals(key.placed, decoded.placed);
+		assertEquals(key.line, decoded.line);
+		assertTrue(bytes.length < KeyUtil.serialize(key).length());
+
+		ShipmentKey shipment = new ShipmentKey();
+		shipment.order = key;
+		shipment.shipment = UUID.randomUUID();
+		shipment.increment = Increment.MINOR;
+		shipment.weight = new BigDecimal("12.50");
+		ByteBuffer buffer = ByteBuffer.allocateDirect(128);
+		buffer.put((byte)7);
+		KeyCodec.encode(shipment, buffer);
+		buffer.flip();
+		assertEquals(7, buffer.get());
+		ShipmentKey decodedShipment = KeyCodec.decode(ShipmentKey.class, buffer);
+		assertFalse(buffer.hasRemaining());
+		assertEquals(key.orderRef, decodedShipment.order.orderRef);
+		assertEquals(shipment.shipment, decodedShipment.shipment);
+		assertEquals(Increment.MINOR, decodedShipment.increment);
+		assertEquals(shipment.weight, decodedShipment.weight);
+
+		assertEquals(Long.MIN_VALUE, (long)KeyUtil.fromBytes(Long.class, KeyUtil.toBytes(Long.MIN_VALUE)));
+		assertEquals("", KeyUtil.fromBytes(String.class, KeyUtil.toBytes("")));
+		try {
+			KeyUtil.fromBytes(OrderKey.class, Arrays.copyOf(bytes, 10));
+			fail("Decoding a truncated key should fail");
+		} catch (UtilityError e) {}
+		try {
+			byte[] negativeLength = new byte[] {-1, -1, -1, -1, -1, -1, -1, -1, -1, 1, 'a'};
+			KeyUtil.fromBytes(String.class, negativeLength);
+			fail("Decoding a string with a negative length should fail");
+		} catch (UtilityError e) {}
+
+		// Unpaired surrogates have no UTF-8 encoding so can not be read back
+		for (String unpaired : Arrays.asList("a\ud83d", "\ude00b", "a\ude00\ud83d")) {
+			try {
+				KeyUtil.toBytes(new OrderKey(1L, unpaired, new Date(0L), 1));
+				fail("Encoding an unpaired surrogate should fail");
+			} catch (UtilityError e) {
+				assertTrue(e.getMessage().contains("unpaired surrogate"));
+			}
+			try {
+				OrderedKeyCodec.toBytes(unpaired);
+				fail("Encoding an unpaired surrogate should fail");
+			} catch (UtilityError e) {}
+		}
+	}
+
+	@Test
+	public void KeyClassCodecTest() {
+		
+		OrderKey key = new OrderKey(-5L, "a:b c/\u00e9", new Date(1234567890123L), 300);
+		String ser = KeyUtil.serialize(key);
+		assertEquals("-5:a%3Ab+c%2F%C3%A9:1234567890123:300", ser);
+		OrderKey parsed = KeyUtil.deserialize(OrderKey.class, ser);
+		assertEquals(key.customerId, parsed.customerId);
+		assertEquals(key.orderRef, parsed.orderRef);
+		assertEquals(key.placed, parsed.placed);
+		assertEquals(key.line, parsed.line);
+
+		key.orderRef = "";
+		parsed = KeyUtil.deserialize(OrderKey.class, KeyUtil.serialize(key));
+		assertEquals("", parsed.orderRef);
+		assertEquals(300, parsed.line);
+
+		KeyClassCodec<OrderKey> codec = KeyClassCodec.forClass(OrderKey.class);
+		assertSame(codec, KeyClassCodec.forClass(OrderKey.class));
+		assertEquals(4, codec.size());
+		ByteBuffer buffer = ByteBuffer.allocate(codec.sizeOf(key));
+		codec.write(key, buffer);
+		buffer.flip();
+		assertEquals(key.placed, codec.read(buffer).placed);
+
+		assertEquals("12345", KeyUtil.serialize(12345L));
+		assertEquals(Long.valueOf(12345L), KeyUtil.deserialize(Long.class, "12345"));
+		assertEquals("a+b", KeyUtil.serialize("a b"));
+		assertEquals("a b", KeyUtil.deserialize(String.class, "a+b"));
+		UUID uuid = UUID.randomUUID();
+		assertEquals(uuid, KeyUtil.deserialize(UUID.class, KeyUtil.serialize(uuid)));
+		try {
+			KeyUtil.deserialize(OrderKey.class, "1:2:3");
+			fail("Deserializing the wrong number of fields should fail");
+		} catch (UtilityError e) {}
+		try {
+			KeyUtil.deserialize(OrderKey.class, "x:a:1:2");
+			fail("Deserializing an invalid number should fail");
+		} catch (UtilityError e) {}
+	}
+
+	@Test
+	public void OrderedKeyCodecTest() {
+		
+		List<OrderKey> keys = new ArrayList<OrderKey>();
+		long[] customers = new long[] {Long.MIN_VALUE, -300L, -1L, 0L, 7L, 256L, Long.MAX_VALUE};
+		String[] refs = new String[] {"", "\u0000", "a", "a\u0000b", "ab", "b", "\u00e9", "\u4e2d"};
+		long[] times = new long[] {-86400000L, 0L, 1234567890123L};
+		int[] lines = new int[] {Integer.MIN_VALUE, -1, 0, 1, 300};
+		for (long customer : customers) for (String ref : refs) for (long time : times) for (int line : lines)
+			keys.add(new OrderKey(customer, ref, new Date(time), line));
+		Collections.shuffle(keys, new Random(42));
+
+		TreeMap<byte[], OrderKey> sorted = new TreeMap<byte[], OrderKey>(OrderedKeyCodec.UNSIGNED_BYTES);
+		for (OrderKey key : keys) sorted.put(KeyUtil.toOrderedBytes(key), key);
+		assertEquals(keys.size(), sorted.size());
+
+		Comparator<OrderKey> natural = Comparator.<OrderKey>comparingLong(k -> k.customerId)
+				.thenComparing(k -> k.orderRef)
+				.thenComparing(k -> k.placed)
+				.thenComparingInt(k -> k.line);
+		keys.sort(natural);
+		assertEquals(keys, new ArrayList<OrderKey>(sorted.values()));
+
+		for (Map.Entry<byte[], OrderKey> entry : sorted.entrySet()) {
+			OrderKey decoded = KeyUtil.fromOrderedBytes(OrderKey.class, entry.getKey());
+			assertEquals(0, natural.compare(entry.getValue(), decoded));
+		}
+
+		byte[] prefix = OrderedKeyCodec.rootPrefix(OrderKey.class, -1L);
+		SortedMap<byte[], OrderKey> customerKeys = sorted.subMap(prefix, OrderedKeyCodec.prefixEnd(prefix));
+		assertEquals(refs.length*times.length*lines.length, customerKeys.size());
+		for (OrderKey key : customerKeys.values()) assertEquals(-1L, key.customerId);
+
+		assertTrue(OrderedKeyCodec.compare(KeyUtil.toOrderedBytes(-0.5), KeyUtil.toOrderedBytes(0.25)) < 0);
+		assertTrue(OrderedKeyCodec.compare(KeyUtil.toOrderedBytes(-2.5f), KeyUtil.toOrderedBytes(-0.5f)) < 0);
+		assertEquals(-2.5f, KeyUtil.fromOrderedBytes(Float.class, KeyUtil.toOrderedBytes(-2.5f)), 0.0f);
+		assertNull(OrderedKeyCodec.prefixEnd(new byte[] {(byte)0xFF}));
+		try {
+			OrderedKeyCodec.rootPrefix(OrderKey.class, "customer");
+			fail("A root prefix should only be created from a value of the root id");
+		} catch (UtilityError e) {}
+	}
+
+	public static class LineKey implements Serializable {
+		private static final long serialVersionUID = 1L;
+		public Long order;
+		public Integer line;
+		public LineKey() {}
+		public LineKey(Long order, Integer line) {
+			this.order = order;
+			this.line = line;
+		}
+		@Override
+		public int hashCode() { return Objects.hash(order, line); }
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LineKey)) return false;
+			LineKey other = (LineKey)obj;
+			return Objects.equals(order, other.order) && Objects.equals(line, other.line);
+		}
+	}
+
+	@Test
+	public void KeyInternerTest() {
+		
+		@SuppressWarnings("unchecked")
+		Class<Serializable> keyClass = (Class<Serializable>)(Class<?>)LineKey.class;
+		assertNotSame(KeyUtil.deserialize(LineKey.class, "1:2"), KeyUtil.deserialize(LineKey.class, "1:2"));
+		KeyInterner.setEnabled(true);
+		try {
+			LineKey key = KeyUtil.deserialize(LineKey.class, "1:2");
+			assertSame(key, KeyUtil.deserialize(LineKey.class, "1:2"));
+			assertSame(key, KeyUtil.constructKey(keyClass, 1L, 2));
+			assertSame(key, KeyUtil.fromBytes(LineKey.class, KeyUtil.toBytes(new LineKey(1L, 2))));
+			LineKey other = KeyUtil.deserialize(LineKey.class, "1:3");
+			assertNotSame(key, other);
+			assertEquals(2, KeyInterner.size(LineKey.class));
+			assertSame(other, KeyUtil.deserialize(LineKey.class, "1:3"));
+
+			// Keys without value equality are not interned
+			assertNotSame(KeyUtil.deserialize(OrderKey.class, "1:a:0:1"), KeyUtil.deserialize(OrderKey.class, "1:a:0:1"));
+			assertEquals(0, KeyInterner.size(OrderKey.class));
+		} finally {
+			KeyInterner.setEnabled(false);
+		}
+		LineKey key = new LineKey(5L, 6);
+		assertSame(key, KeyInterner.intern(key));
+		assertSame(key, KeyInterner.intern(new LineKey(5L, 6)));
+	}
+
 	@Test
 	public void BooleanUtilTest() {
 		
@@ -0,0 +1,7 @@
+package com.k2.Util.Version;
+
+public class VersionExample {
+
+	public Version version = new SimpleVersion(1, 0, 0);
+
+}